@@ -0,0 +1,126 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * @author Thierry
+ *
+ * Estado compartilhado pelos benchmarks que acessam o banco: uma coleção de tarefas com
+ * {@link #tamanho} documentos no {@code mongod} local (banco {@code TaskManagerCRUD_bench},
+ * para não tocar nos dados reais).
+ *
+ * A coleção só é recriada quando não tem o tamanho pedido, então execuções seguidas com o
+ * mesmo tamanho reaproveitam os dados. As tarefas inseridas durante uma iteração são
+ * excluídas ao fim dela, mantendo o tamanho estável.
+ */
+@State(Scope.Benchmark)
+public class ColecaoTarefasBenchmark {
+
+    /** Número de tarefas na coleção durante a medição. */
+    @Param({"1000", "100000", "1000000"})
+    public int tamanho;
+
+    /** Quantas tarefas são inseridas por comando ao popular a coleção. */
+    private static final int LOTE_CARGA = 10_000;
+
+    /** Quantos IDs existentes são guardados para sorteio nas leituras e atualizações. */
+    private static final int AMOSTRA_IDS = 10_000;
+
+    /** O DAO medido. */
+    TarefaDAO dao;
+
+    /** IDs de tarefas existentes, sorteados pelos benchmarks. */
+    private String[] ids;
+
+    /** IDs das tarefas inseridas pelos benchmarks na iteração atual. */
+    private final List<String> inseridas = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        dao = new TarefaDAO(ConexaoMongo.conectar(), false, ConexaoMongo.tamanhoMaximoPool());
+        dao.garantirIndices();
+        long atual = dao.contarTarefas();
+        if (atual != tamanho) {
+            System.out.println("INFO: Recriando a colecao de benchmark com " + tamanho + " tarefas (havia " + atual + ").");
+            ConexaoMongo.conectar().getCollection("tarefas").drop();
+            dao.garantirIndices();
+            for (int inicio = 0; inicio < tamanho; inicio += LOTE_CARGA) {
+                dao.adicionarTarefasEmLote(novasTarefas(Math.min(LOTE_CARGA, tamanho - inicio)), new OpcoesLote(LOTE_CARGA, false));
+            }
+        }
+        ids = amostrarIds();
+    }
+
+    /**
+     * Percorre a coleção em ordem de {@code _id}, trazendo só o ID, e guarda uma amostra
+     * uniforme de até {@link #AMOSTRA_IDS} IDs.
+     */
+    private String[] amostrarIds() {
+        ConsultaTarefas soIds = ConsultaTarefas.TODAS.comCampos(ConsultaTarefas.Campo.ID);
+        int passo = Math.max(1, tamanho / AMOSTRA_IDS);
+        List<String> amostra = new ArrayList<>();
+        Tarefa apos = null;
+        long posicao = 0;
+        while (true) {
+            List<Tarefa> pagina = dao.listarTarefasPaginado(soIds, apos, LOTE_CARGA);
+            if (pagina.isEmpty()) {
+                break;
+            }
+            for (Tarefa tarefa : pagina) {
+                if (posicao++ % passo == 0) {
+                    amostra.add(tarefa.getId());
+                }
+            }
+            apos = pagina.get(pagina.size() - 1);
+        }
+        return amostra.toArray(String[]::new);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removerInseridas() {
+        if (!inseridas.isEmpty()) {
+            dao.excluirTarefasEmLote(inseridas, OpcoesLote.PADRAO);
+            inseridas.clear();
+        }
+    }
+
+    /** @return O ID de uma tarefa existente, sorteado. */
+    String idAleatorio() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /** @return Uma tarefa existente (apenas com o ID), sorteada, para servir de âncora de página. */
+    Tarefa ancoraAleatoria() {
+        Tarefa ancora = new Tarefa(null, null, null);
+        ancora.setId(idAleatorio());
+        return ancora;
+    }
+
+    /** Registra uma tarefa inserida por um benchmark, para removê-la ao fim da iteração. */
+    void registrarInserida(Tarefa tarefa) {
+        inseridas.add(tarefa.getId());
+    }
+
+    /** Cria tarefas novas (ainda sem ID) com dados variados. */
+    static List<Tarefa> novasTarefas(int quantidade) {
+        Prioridade[] prioridades = Prioridade.values();
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        List<Tarefa> tarefas = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            long numero = aleatorio.nextLong(1_000_000_000L);
+            Tarefa tarefa = new Tarefa("Tarefa " + numero, "Descrição da tarefa de benchmark número " + numero,
+                    prioridades[aleatorio.nextInt(prioridades.length)]);
+            tarefa.setConcluida(aleatorio.nextBoolean());
+            tarefas.add(tarefa);
+        }
+        return tarefas;
+    }
+}
@@ -0,0 +1,23 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+/**
+ * @author Thierry
+ *
+ * Ponto de entrada do {@code benchmarks.jar}. Repassa os argumentos ao JMH e, se nenhum formato
+ * de resultado for informado ({@code -rf}), grava os resultados em JSON em {@code jmh-resultado.json},
+ * para que possam ser comparados entre versões por ferramentas (ou pelo JMH Visualizer).
+ */
+public class ExecutarBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        List<String> argumentos = new ArrayList<>(List.of(args));
+        if (!argumentos.contains("-rf")) {
+            argumentos.addAll(List.of("-rf", "json", "-rff", "jmh-resultado.json"));
+        }
+        Main.main(argumentos.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,250 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Thierry
+ *
+ * Compara o {@link IndiceConcorrenteTarefas} com o jeito mais simples de guardar tarefas em memória
+ * de forma thread-safe: um {@code Collections.synchronizedMap(new HashMap<>())}, em que toda leitura
+ * e gravação disputam a mesma trava e uma consulta filtrada percorre todas as tarefas.
+ *
+ * O grupo {@code misto} põe leitores contando as tarefas Alta pendentes ao mesmo tempo que
+ * gravadores invertem o status de tarefas sorteadas. Serve também de teste de estresse: os leitores
+ * conferem, a cada consulta, que pendentes e concluídas somam o total, e ao fim de cada iteração a
+ * soma das versões precisa ter crescido exatamente o número de inversões feitas (nenhuma gravação
+ * perdida). Qualquer divergência interrompe a execução com {@link IllegalStateException}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndiceConcorrenteTarefasBenchmark {
+
+    /** Estrutura medida. */
+    @Param({"indice", "synchronizedHashMap"})
+    public String implementacao;
+
+    /** Número de tarefas guardadas. */
+    @Param({"10000", "100000"})
+    public int tamanho;
+
+    /**
+     * As operações medidas, nas duas estruturas.
+     */
+    private interface Armazem {
+
+        void inserir(Tarefa tarefa);
+
+        Tarefa obter(ObjectId id);
+
+        /** Inverte o status da tarefa, gravando uma instância nova com a versão seguinte. */
+        void alternar(ObjectId id);
+
+        /** @return {tarefas Alta pendentes, pendentes, concluídas}, lidas em um mesmo instante. */
+        long[] contar();
+
+        long somarVersoes();
+    }
+
+    private static final ConsultaTarefas ALTA_PENDENTES =
+            ConsultaTarefas.TODAS.comPrioridade(Prioridade.ALTA).comConcluida(false);
+    private static final ConsultaTarefas PENDENTES = ConsultaTarefas.TODAS.comConcluida(false);
+    private static final ConsultaTarefas CONCLUIDAS = ConsultaTarefas.TODAS.comConcluida(true);
+
+    /**
+     * O índice concorrente: leituras sobre um instantâneo, gravações travando uma faixa.
+     */
+    private static final class ArmazemIndice implements Armazem {
+
+        private final IndiceConcorrenteTarefas indice = new IndiceConcorrenteTarefas();
+
+        @Override
+        public void inserir(Tarefa tarefa) {
+            indice.inserirSeAusente(tarefa);
+        }
+
+        @Override
+        public Tarefa obter(ObjectId id) {
+            return indice.obter(id);
+        }
+
+        @Override
+        public void alternar(ObjectId id) {
+            indice.alterar(id, IndiceConcorrenteTarefasBenchmark::alternada);
+        }
+
+        @Override
+        public long[] contar() {
+            IndiceConcorrenteTarefas.Instantaneo instantaneo = indice.instantaneo();
+            return new long[]{instantaneo.contar(ALTA_PENDENTES), instantaneo.contar(PENDENTES), instantaneo.contar(CONCLUIDAS)};
+        }
+
+        @Override
+        public long somarVersoes() {
+            long[] soma = {0};
+            indice.instantaneo().percorrer(ConsultaTarefas.TODAS, tarefa -> soma[0] += tarefa.getVersao());
+            return soma[0];
+        }
+    }
+
+    /**
+     * A referência: um {@link HashMap} sincronizado, sem índices secundários.
+     */
+    private static final class ArmazemSincronizado implements Armazem {
+
+        private final Map<ObjectId, Tarefa> mapa = Collections.synchronizedMap(new HashMap<>());
+
+        @Override
+        public void inserir(Tarefa tarefa) {
+            mapa.putIfAbsent(tarefa.getObjectId(), tarefa);
+        }
+
+        @Override
+        public Tarefa obter(ObjectId id) {
+            return mapa.get(id);
+        }
+
+        @Override
+        public void alternar(ObjectId id) {
+            mapa.computeIfPresent(id, (chave, atual) -> alternada(atual));
+        }
+
+        @Override
+        public long[] contar() {
+            long altaPendentes = 0;
+            long pendentes = 0;
+            long concluidas = 0;
+            // Percorrer um synchronizedMap exige travá-lo durante toda a iteração.
+            synchronized (mapa) {
+                for (Tarefa tarefa : mapa.values()) {
+                    if (tarefa.isConcluida()) {
+                        concluidas++;
+                    } else {
+                        pendentes++;
+                        if (tarefa.getPrioridade() == Prioridade.ALTA) {
+                            altaPendentes++;
+                        }
+                    }
+                }
+            }
+            return new long[]{altaPendentes, pendentes, concluidas};
+        }
+
+        @Override
+        public long somarVersoes() {
+            synchronized (mapa) {
+                return mapa.values().stream().mapToLong(Tarefa::getVersao).sum();
+            }
+        }
+    }
+
+    private Armazem armazem;
+
+    /** IDs das tarefas guardadas, sorteados pelos benchmarks. */
+    private ObjectId[] ids;
+
+    /** Soma das versões no início da iteração. */
+    private long versoesIniciais;
+
+    /** Inversões de status feitas na iteração. */
+    private final LongAdder alternancias = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        armazem = switch (implementacao) {
+            case "indice" -> new ArmazemIndice();
+            case "synchronizedHashMap" -> new ArmazemSincronizado();
+            default -> throw new IllegalArgumentException("Implementacao desconhecida: " + implementacao);
+        };
+        List<Tarefa> tarefas = ColecaoTarefasBenchmark.novasTarefas(tamanho);
+        ids = new ObjectId[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            Tarefa tarefa = tarefas.get(i);
+            tarefa.setObjectId(new ObjectId());
+            tarefa.setVersao(1);
+            ids[i] = tarefa.getObjectId();
+            armazem.inserir(tarefa);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void iniciarIteracao() {
+        versoesIniciais = armazem.somarVersoes();
+        alternancias.reset();
+    }
+
+    /**
+     * Confere que nenhuma inversão de status se perdeu durante a iteração.
+     */
+    @TearDown(Level.Iteration)
+    public void verificar() {
+        long esperado = versoesIniciais + alternancias.sum();
+        long atual = armazem.somarVersoes();
+        if (atual != esperado) {
+            throw new IllegalStateException("Gravacoes perdidas: soma das versoes " + atual + ", esperada " + esperado);
+        }
+    }
+
+    @Benchmark
+    public Tarefa buscarPorId() {
+        return armazem.obter(idAleatorio());
+    }
+
+    @Benchmark
+    @Group("misto")
+    @GroupThreads(3)
+    public long consultar() {
+        long[] contagens = armazem.contar();
+        if (contagens[1] + contagens[2] != tamanho) {
+            throw new IllegalStateException("Pendentes (" + contagens[1] + ") e concluidas (" + contagens[2]
+                    + ") nao somam o total (" + tamanho + ")");
+        }
+        return contagens[0];
+    }
+
+    @Benchmark
+    @Group("misto")
+    @GroupThreads(3)
+    public void alternar() {
+        armazem.alternar(idAleatorio());
+        alternancias.increment();
+    }
+
+    private ObjectId idAleatorio() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /** @return Uma cópia da tarefa com o status invertido e a versão seguinte. */
+    private static Tarefa alternada(Tarefa atual) {
+        Tarefa nova = new Tarefa(atual.getTitulo(), atual.getDescricao(), atual.getPrioridade());
+        nova.setObjectId(atual.getObjectId());
+        nova.setConcluida(!atual.isConcluida());
+        nova.setVersao(atual.getVersao() + 1);
+        return nova;
+    }
+}
@@ -0,0 +1,105 @@
+package com.mycompany.taskmanagercrud;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Thierry
+ *
+ * Mede apenas o custo da conversão entre {@link Tarefa} e BSON, sem acesso ao banco.
+ * É o custo pago por documento em toda leitura e escrita do {@link TarefaDAO}.
+ *
+ * Compara o {@link TarefaCodec} com o caminho anterior, que decodificava cada documento
+ * em um {@link Document} e depois copiava os campos para a {@link Tarefa}. Rode com
+ * {@code -prof gc} para ver a diferença de alocação por operação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapeamentoTarefaBenchmark {
+
+    private final TarefaCodec tarefaCodec = new TarefaCodec();
+    private final DocumentCodec documentCodec = new DocumentCodec();
+
+    /** Tarefa como criada pela interface. */
+    private Tarefa tarefa;
+
+    /** A mesma tarefa em BSON, como chega do MongoDB. */
+    private byte[] bson;
+
+    @Setup
+    public void preparar() {
+        tarefa = new Tarefa("Revisar relatório mensal", "Conferir os números do relatório antes de enviar à diretoria", Prioridade.ALTA);
+        tarefa.setObjectId(new ObjectId());
+        bson = codificar();
+    }
+
+    @Benchmark
+    public Tarefa decodificarComCodec() {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+            return tarefaCodec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+    /** Caminho anterior: BSON -> Document -> Tarefa. */
+    @Benchmark
+    public Tarefa decodificarViaDocument() {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+            Document doc = documentCodec.decode(reader, DecoderContext.builder().build());
+            Tarefa lida = new Tarefa(doc.getString("titulo"), doc.getString("descricao"),
+                    Prioridade.deCodigo(doc.getInteger("prioridade")));
+            lida.setConcluida(doc.getBoolean("concluida", false));
+            lida.setId(doc.getObjectId("_id").toHexString());
+            return lida;
+        }
+    }
+
+    @Benchmark
+    public byte[] codificarComCodec() {
+        return codificar();
+    }
+
+    /** Caminho anterior: Tarefa -> Document -> BSON. */
+    @Benchmark
+    public byte[] codificarViaDocument() {
+        Document doc = new Document("_id", tarefa.getObjectId())
+                .append("titulo", tarefa.getTitulo())
+                .append("descricao", tarefa.getDescricao())
+                .append("prioridade", tarefa.getPrioridade().getCodigo())
+                .append("concluida", tarefa.isConcluida());
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            documentCodec.encode(writer, doc, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    private byte[] codificar() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            tarefaCodec.encode(writer, tarefa, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Thierry
+ *
+ * Mede a vazão e a latência (distribuição por amostragem) das operações do {@link TarefaDAO}
+ * contra um {@code mongod} local, para cada tamanho de {@link ColecaoTarefasBenchmark}.
+ *
+ * As operações em lote usam {@link OperationsPerInvocation}, então os números são por tarefa
+ * e podem ser comparados diretamente com as variantes de uma tarefa por comando.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dtaskmanager.mongo.banco=TaskManagerCRUD_bench")
+public class TarefaDAOBenchmark {
+
+    /** Número de tarefas por comando nas variantes em lote. */
+    private static final int LOTE = 100;
+
+    /** Tamanho da página nas leituras paginadas (o mesmo da tabela). */
+    private static final int PAGINA = 100;
+
+    /**
+     * Tarefas recém-inseridas a cada invocação, para que as exclusões sempre encontrem o que excluir
+     * sem que a inserção entre na medição.
+     */
+    @State(Scope.Thread)
+    public static class ParaExcluir {
+
+        /** Tarefas a excluir na próxima invocação. */
+        List<String> ids = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void inserir(ColecaoTarefasBenchmark colecao) {
+            ids.clear();
+            List<Tarefa> tarefas = ColecaoTarefasBenchmark.novasTarefas(LOTE);
+            colecao.dao.adicionarTarefasEmLote(tarefas, OpcoesLote.PADRAO);
+            tarefas.forEach(tarefa -> ids.add(tarefa.getId()));
+        }
+    }
+
+    // --- Inserção ---
+
+    @Benchmark
+    public Tarefa adicionarTarefa(ColecaoTarefasBenchmark colecao) {
+        Tarefa tarefa = colecao.dao.adicionarTarefa(ColecaoTarefasBenchmark.novasTarefas(1).get(0));
+        colecao.registrarInserida(tarefa);
+        return tarefa;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public ResultadoLote adicionarTarefasEmLote(ColecaoTarefasBenchmark colecao) {
+        List<Tarefa> tarefas = ColecaoTarefasBenchmark.novasTarefas(LOTE);
+        ResultadoLote resultado = colecao.dao.adicionarTarefasEmLote(tarefas, OpcoesLote.PADRAO);
+        tarefas.forEach(colecao::registrarInserida);
+        return resultado;
+    }
+
+    // --- Leitura ---
+
+    /** Lê a coleção inteira com um cursor só: o custo cresce linearmente com o tamanho. */
+    @Benchmark
+    public List<Tarefa> listarTarefas(ColecaoTarefasBenchmark colecao) {
+        return colecao.dao.listarTarefas();
+    }
+
+    /** A mesma leitura em faixas paralelas: a diferença para {@link #listarTarefas} é o ganho das faixas. */
+    @Benchmark
+    public List<Tarefa> listarTarefasEmParalelo(ColecaoTarefasBenchmark colecao) {
+        return colecao.dao.listarTarefasEmParalelo();
+    }
+
+    /** Lê uma página da tabela a partir de uma posição sorteada: deve ser constante com o tamanho. */
+    @Benchmark
+    public List<Tarefa> listarTarefasPaginado(ColecaoTarefasBenchmark colecao) {
+        return colecao.dao.listarTarefasPaginado(ConsultaTarefas.TODAS, colecao.ancoraAleatoria(), PAGINA);
+    }
+
+    @Benchmark
+    public Tarefa buscarTarefaPorId(ColecaoTarefasBenchmark colecao) {
+        return colecao.dao.buscarTarefaPorId(colecao.idAleatorio());
+    }
+
+    // --- Atualização ---
+
+    @Benchmark
+    public Tarefa atualizarStatusTarefa(ColecaoTarefasBenchmark colecao) {
+        return colecao.dao.atualizarStatusTarefa(colecao.idAleatorio(), ThreadLocalRandom.current().nextBoolean());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public ResultadoLote atualizarStatusEmLote(ColecaoTarefasBenchmark colecao) {
+        Map<String, Boolean> novoStatusPorId = new HashMap<>();
+        for (int i = 0; i < LOTE; i++) {
+            novoStatusPorId.put(colecao.idAleatorio(), ThreadLocalRandom.current().nextBoolean());
+        }
+        return colecao.dao.atualizarStatusEmLote(novoStatusPorId, OpcoesLote.PADRAO);
+    }
+
+    // --- Exclusão ---
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public int excluirTarefa(ColecaoTarefasBenchmark colecao, ParaExcluir paraExcluir) {
+        int excluidas = 0;
+        for (String id : paraExcluir.ids) {
+            if (colecao.dao.excluirTarefa(id)) {
+                excluidas++;
+            }
+        }
+        return excluidas;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public ResultadoLote excluirTarefasEmLote(ColecaoTarefasBenchmark colecao, ParaExcluir paraExcluir) {
+        return colecao.dao.excluirTarefasEmLote(paraExcluir.ids, OpcoesLote.PADRAO);
+    }
+}
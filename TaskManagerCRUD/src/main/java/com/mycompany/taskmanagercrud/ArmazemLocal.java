@@ -0,0 +1,778 @@
+package com.mycompany.taskmanagercrud;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Armazenamento local das tarefas, em disco, para o modo offline: todas as leituras e gravações
+ * da interface são atendidas aqui, na latência do disco local, e o {@link SincronizadorTarefas}
+ * leva as alterações ao MongoDB (e traz as de outros clientes) em segundo plano.
+ *
+ * Os dados ficam em dois arquivos:
+ * <ul>
+ *   <li>{@code tarefas.log}: log somente de acréscimo. Cada gravação acrescenta um registro com o
+ *   estado completo da tarefa (em BSON, pelo {@link TarefaCodec}), uma exclusão ou a confirmação de
+ *   que uma alteração chegou ao MongoDB. O log é a fonte da verdade;</li>
+ *   <li>{@code tarefas.idx}: índice mapeado em memória ({@link MappedByteBuffer}) com a posição do
+ *   registro mais recente de cada tarefa, sua versão no MongoDB e se ela tem alterações pendentes.
+ *   Ele evita reler o log inteiro ao abrir; se faltar ou estiver desatualizado, é reconstruído a partir do log.</li>
+ * </ul>
+ *
+ * As tarefas vivas são decodificadas do log uma vez, ao abrir, e ficam em um
+ * {@link IndiceConcorrenteTarefas}, atualizado a cada registro acrescentado. As leituras são
+ * atendidas dele, sem travas e sem ler o disco; o log só é lido ao abrir (e ao compactar).
+ *
+ * Cada tarefa guarda a versão do MongoDB em que a alteração local se baseou; o sincronizador a usa
+ * para detectar conflitos. Ao abrir, se a maior parte do log for de registros antigos, ele é compactado.
+ */
+public class ArmazemLocal implements AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(ArmazemLocal.class);
+
+    /** Versão base de uma tarefa criada localmente e ainda não enviada ao MongoDB. */
+    public static final long VERSAO_NOVA = -1;
+
+    // Tipos de registro do log.
+    private static final byte SALVAR = 1;
+    private static final byte EXCLUIR = 2;
+    private static final byte SINCRONIZADA = 3;
+
+    // Bits da situação de uma tarefa.
+    private static final byte PENDENTE = 1;
+    private static final byte EXCLUIDA = 2;
+
+    /** Cabeçalho de um registro do log: tamanho, tipo, situação, versão e referência. */
+    private static final int CABECALHO_REGISTRO = 4 + 1 + 1 + 8 + 8;
+
+    /** Identifica o formato do arquivo de índice. */
+    private static final int MAGICO = 0x54534B31;
+
+    /** Cabeçalho do índice: mágico, número de entradas e tamanho do log já indexado. */
+    private static final int CABECALHO_INDICE = 32;
+
+    /** Entrada do índice: ObjectId (12), posição no log (8), versão base (8) e situação (1). */
+    private static final int TAMANHO_ENTRADA = 32;
+
+    /** Número de entradas que cabem no índice recém-criado; ele dobra quando enche. */
+    private static final int CAPACIDADE_INICIAL = 4096;
+
+    /** Número mínimo de entradas no índice para valer a pena compactar o log. */
+    private static final int MINIMO_COMPACTACAO = 10_000;
+
+    /** Leitura inicial de um registro; registros maiores precisam de uma segunda leitura. */
+    private static final int LEITURA_INICIAL = 512;
+
+    private static final EncoderContext CODIFICACAO = EncoderContext.builder().build();
+    private static final DecoderContext DECODIFICACAO = DecoderContext.builder().build();
+
+    /**
+     * Estado atual de uma tarefa, como está no índice.
+     *
+     * @param posicaoIndice A posição da entrada no arquivo de índice.
+     * @param offset A posição do registro mais recente no log.
+     * @param versaoBase A versão do MongoDB em que o estado local se baseia.
+     * @param situacao Os bits {@link #PENDENTE} e {@link #EXCLUIDA}.
+     */
+    private record Entrada(int posicaoIndice, long offset, long versaoBase, byte situacao) {
+
+        boolean pendente() {
+            return (situacao & PENDENTE) != 0;
+        }
+
+        boolean excluida() {
+            return (situacao & EXCLUIDA) != 0;
+        }
+    }
+
+    /**
+     * Uma alteração local ainda não enviada ao MongoDB.
+     *
+     * @param id O ID da tarefa.
+     * @param offset A posição do registro no log; identifica a alteração ao confirmá-la.
+     * @param versaoBase A versão do MongoDB em que a alteração se baseou ({@link #VERSAO_NOVA} se a tarefa é nova).
+     * @param tarefa O novo estado da tarefa, ou {@code null} se ela foi excluída.
+     */
+    record Pendencia(String id, long offset, long versaoBase, Tarefa tarefa) { }
+
+    /**
+     * Situação de uma tarefa local, usada para compará-la com o MongoDB.
+     *
+     * @param id O ID da tarefa.
+     * @param versaoBase A versão do MongoDB conhecida localmente.
+     * @param pendente Se há uma alteração local ainda não enviada.
+     */
+    record SituacaoLocal(String id, long versaoBase, boolean pendente) { }
+
+    /** Diretório dos arquivos. */
+    private final Path diretorio;
+    private final Path arquivoLog;
+    private final Path arquivoIndice;
+
+    /** Canal do log; as leituras são posicionais e podem ser feitas em paralelo às gravações. */
+    private FileChannel log;
+    /** Fim do log, onde o próximo registro será gravado. Protegido por {@code this}. */
+    private long fimLog;
+    private FileChannel canalIndice;
+    /** O índice mapeado em memória. Protegido por {@code this}. */
+    private MappedByteBuffer indice;
+    /** Número de entradas gravadas no índice (inclusive as substituídas). Protegido por {@code this}. */
+    private int totalEntradas;
+
+    /** Estado atual de cada tarefa: as vivas e as excluídas com exclusão ainda pendente. */
+    private final Map<ObjectId, Entrada> entradas = new ConcurrentHashMap<>();
+
+    /**
+     * As tarefas vivas, decodificadas, com a versão base como versão. Substituído a cada abertura
+     * do log e alterado apenas com a trava do objeto; as leituras usam instantâneos dele.
+     */
+    private volatile IndiceConcorrenteTarefas tarefas;
+
+    /** Codec usado para gravar e ler as tarefas do log. */
+    private final TarefaCodec codec = new TarefaCodec();
+
+    /**
+     * Abre (ou cria) o armazenamento local em um diretório.
+     *
+     * @param diretorio O diretório dos arquivos; é criado se não existir.
+     * @throws IOException se os arquivos não puderem ser abertos.
+     */
+    public ArmazemLocal(Path diretorio) throws IOException {
+        this.diretorio = diretorio;
+        this.arquivoLog = diretorio.resolve("tarefas.log");
+        this.arquivoIndice = diretorio.resolve("tarefas.idx");
+        Files.createDirectories(diretorio);
+        abrir();
+        if (totalEntradas > MINIMO_COMPACTACAO && totalEntradas > 2 * entradas.size()) {
+            compactar();
+        }
+        REGISTRO.info("abrir", "diretorio", diretorio, "tarefas", entradas.size(),
+                "pendentes", entradas.values().stream().filter(Entrada::pendente).count());
+    }
+
+    // --- Leitura ---
+
+    /**
+     * Busca uma tarefa pelo ID.
+     *
+     * @param id O ID (String hexadecimal) da tarefa.
+     * @return Uma cópia da tarefa, ou {@code null} se ela não existir ou o ID for inválido.
+     */
+    public Tarefa buscarTarefaPorId(String id) {
+        return id != null && ObjectId.isValid(id) ? copiar(tarefas.obter(new ObjectId(id))) : null;
+    }
+
+    /**
+     * @return Todas as tarefas, em ordem de {@code _id}.
+     */
+    public List<Tarefa> listarTarefas() {
+        List<Tarefa> todas = new ArrayList<>();
+        tarefas.instantaneo().percorrer(ConsultaTarefas.TODAS, tarefa -> todas.add(tarefa.copiar()));
+        todas.sort(ConsultaTarefas.TODAS.comparador());
+        return todas;
+    }
+
+    /**
+     * Lista uma página de uma consulta, com a mesma semântica de
+     * {@link TarefaDAO#listarTarefasPaginado(ConsultaTarefas, Tarefa, int)}.
+     * Apenas as {@code limite} primeiras tarefas são ordenadas.
+     */
+    public List<Tarefa> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite) {
+        List<Tarefa> pagina = tarefas.instantaneo().pagina(consulta, apos, limite);
+        pagina.replaceAll(ArmazemLocal::copiar);
+        return pagina;
+    }
+
+    /**
+     * Os filtros de prioridade e status são contados nos bitsets do índice, sem visitar as tarefas.
+     *
+     * @see TarefaDAO#contarTarefas(ConsultaTarefas)
+     */
+    public long contarTarefas(ConsultaTarefas consulta) {
+        return tarefas.instantaneo().contar(consulta);
+    }
+
+    /**
+     * Conta as tarefas por prioridade e status nos bitsets do índice em memória, sem visitar as tarefas.
+     *
+     * @see TarefaDAO#calcularEstatisticas()
+     */
+    public EstatisticasTarefas calcularEstatisticas() {
+        return tarefas.instantaneo().estatisticas();
+    }
+
+    /** @see TarefaDAO#buscarTarefaNaPosicao(ConsultaTarefas, long) */
+    public Tarefa buscarTarefaNaPosicao(ConsultaTarefas consulta, long posicao) {
+        return copiar(tarefas.instantaneo().naPosicao(consulta, posicao));
+    }
+
+    /**
+     * Busca tarefas que contenham alguma das palavras (como prefixo de uma palavra do título ou da
+     * descrição), da mais para a menos relevante. É uma aproximação local da busca {@code $text}.
+     */
+    public List<Tarefa> buscarTarefasPorTexto(String texto, int limite) {
+        List<String> palavras = IndiceBuscaTarefas.tokenizar(texto);
+        Map<Tarefa, Integer> pontuacao = new HashMap<>();
+        tarefas.instantaneo().percorrer(ConsultaTarefas.TODAS, tarefa -> {
+            List<String> termosTitulo = IndiceBuscaTarefas.tokenizar(tarefa.getTitulo());
+            List<String> termosDescricao = IndiceBuscaTarefas.tokenizar(tarefa.getDescricao());
+            int pontos = 0;
+            for (String palavra : palavras) {
+                pontos += termosTitulo.stream().anyMatch(termo -> termo.startsWith(palavra)) ? 3 : 0;
+                pontos += termosDescricao.stream().anyMatch(termo -> termo.startsWith(palavra)) ? 1 : 0;
+            }
+            if (pontos > 0) {
+                pontuacao.put(tarefa, pontos);
+            }
+        });
+        return pontuacao.entrySet().stream()
+                .sorted(Map.Entry.<Tarefa, Integer>comparingByValue().reversed())
+                .limit(limite)
+                .map(entrada -> entrada.getKey().copiar())
+                .toList();
+    }
+
+    // --- Gravação local ---
+
+    /**
+     * Adiciona uma tarefa. O ID é gerado aqui, e a tarefa fica pendente de envio.
+     *
+     * @param tarefa A tarefa a ser adicionada.
+     * @return A mesma tarefa, com o ID preenchido.
+     */
+    public synchronized Tarefa adicionarTarefa(Tarefa tarefa) {
+        tarefa.setObjectId(new ObjectId());
+        tarefa.setVersao(0);
+        anexar(SALVAR, PENDENTE, VERSAO_NOVA, -1, tarefa);
+        return tarefa;
+    }
+
+    /** @see TarefaDAO#atualizarStatusTarefa(String, boolean) */
+    public synchronized Tarefa atualizarStatusTarefa(String id, boolean concluida) {
+        Entrada entrada = entradaViva(id);
+        if (entrada == null) {
+            return null;
+        }
+        Tarefa tarefa = tarefas.obter(new ObjectId(id)).copiar();
+        tarefa.setConcluida(concluida);
+        anexar(SALVAR, PENDENTE, entrada.versaoBase(), -1, tarefa);
+        return tarefa;
+    }
+
+    /**
+     * Atualiza os detalhes de uma tarefa. Como em {@link TarefaDAO#atualizarTarefa},
+     * apenas os campos preenchidos são alterados.
+     *
+     * @return A tarefa atualizada, ou {@code null} se ela não existir ou nada foi informado.
+     */
+    public synchronized Tarefa atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        Entrada entrada = entradaViva(id);
+        if (entrada == null) {
+            return null;
+        }
+        Tarefa tarefa = tarefas.obter(new ObjectId(id)).copiar();
+        boolean algumaAlteracao = false;
+        if (novoTitulo != null && !novoTitulo.trim().isEmpty()) {
+            tarefa.setTitulo(novoTitulo.trim());
+            algumaAlteracao = true;
+        }
+        if (novaDescricao != null && !novaDescricao.trim().isEmpty()) {
+            tarefa.setDescricao(novaDescricao.trim());
+            algumaAlteracao = true;
+        }
+        if (novaPrioridade != null) {
+            tarefa.setPrioridade(novaPrioridade);
+            algumaAlteracao = true;
+        }
+        if (!algumaAlteracao) {
+            return null;
+        }
+        anexar(SALVAR, PENDENTE, entrada.versaoBase(), -1, tarefa);
+        return tarefa;
+    }
+
+    /**
+     * Exclui uma tarefa. Se ela nunca chegou ao MongoDB, não há nada a enviar.
+     *
+     * @return {@code true} se a tarefa existia.
+     */
+    public synchronized boolean excluirTarefa(String id) {
+        Entrada entrada = entradaViva(id);
+        if (entrada == null) {
+            return false;
+        }
+        byte situacao = entrada.versaoBase() == VERSAO_NOVA ? 0 : PENDENTE;
+        anexar(EXCLUIR, situacao, entrada.versaoBase(), -1, apenasId(new ObjectId(id)));
+        return true;
+    }
+
+    /** @see TarefaDAO#adicionarTarefasEmLote(List, OpcoesLote) */
+    public synchronized ResultadoLote adicionarTarefasEmLote(List<Tarefa> tarefas) {
+        List<String> ids = new ArrayList<>(tarefas.size());
+        for (Tarefa tarefa : tarefas) {
+            adicionarTarefa(tarefa);
+            ids.add(tarefa.getId());
+        }
+        ResultadoLote resultado = new ResultadoLote(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            resultado.definir(i, ResultadoLote.Situacao.SUCESSO, null);
+        }
+        resultado.somarAfetados(ids.size());
+        return resultado;
+    }
+
+    /** @see TarefaDAO#atualizarStatusEmLote(Map, OpcoesLote) */
+    public synchronized ResultadoLote atualizarStatusEmLote(Map<String, Boolean> novoStatusPorId) {
+        List<String> ids = new ArrayList<>(novoStatusPorId.keySet());
+        ResultadoLote resultado = new ResultadoLote(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            definirResultado(resultado, i, id, ObjectId.isValid(id) && atualizarStatusTarefa(id, novoStatusPorId.get(id)) != null);
+        }
+        return resultado;
+    }
+
+    /** @see TarefaDAO#definirStatusEmLote(Collection, boolean, OpcoesLote) */
+    public synchronized ResultadoLote definirStatusEmLote(Collection<String> ids, boolean concluida) {
+        return atualizarStatusEmLote(ids.stream().collect(HashMap::new, (mapa, id) -> mapa.put(id, concluida), Map::putAll));
+    }
+
+    /** @see TarefaDAO#excluirTarefasEmLote(Collection, OpcoesLote) */
+    public synchronized ResultadoLote excluirTarefasEmLote(Collection<String> ids) {
+        List<String> lista = new ArrayList<>(ids);
+        ResultadoLote resultado = new ResultadoLote(lista);
+        for (int i = 0; i < lista.size(); i++) {
+            String id = lista.get(i);
+            definirResultado(resultado, i, id, ObjectId.isValid(id) && excluirTarefa(id));
+        }
+        return resultado;
+    }
+
+    private static void definirResultado(ResultadoLote resultado, int indice, String id, boolean sucesso) {
+        if (!ObjectId.isValid(id)) {
+            resultado.definir(indice, ResultadoLote.Situacao.ID_INVALIDO, "Formato de ID invalido: " + id);
+        } else if (sucesso) {
+            resultado.definir(indice, ResultadoLote.Situacao.SUCESSO, null);
+            resultado.somarAfetados(1);
+        } else {
+            resultado.definir(indice, ResultadoLote.Situacao.FALHA, "Tarefa nao encontrada: " + id);
+        }
+    }
+
+    // --- Sincronização ---
+
+    /**
+     * @return As alterações locais ainda não enviadas ao MongoDB.
+     */
+    List<Pendencia> listarPendencias() {
+        List<Pendencia> pendencias = new ArrayList<>();
+        entradas.forEach((id, entrada) -> {
+            if (entrada.pendente()) {
+                pendencias.add(new Pendencia(id.toHexString(), entrada.offset(), entrada.versaoBase(),
+                        entrada.excluida() ? null : copiar(tarefas.obter(id))));
+            }
+        });
+        return pendencias;
+    }
+
+    /**
+     * @return A situação de cada tarefa viva.
+     */
+    List<SituacaoLocal> listarSituacoes() {
+        List<SituacaoLocal> situacoes = new ArrayList<>(entradas.size());
+        entradas.forEach((id, entrada) -> {
+            if (!entrada.excluida()) {
+                situacoes.add(new SituacaoLocal(id.toHexString(), entrada.versaoBase(), entrada.pendente()));
+            }
+        });
+        return situacoes;
+    }
+
+    /**
+     * Registra que uma alteração chegou ao MongoDB. Se a tarefa foi alterada de novo enquanto isso,
+     * a nova alteração continua pendente, mas passa a se basear na versão confirmada.
+     *
+     * @param pendencia A alteração enviada.
+     * @param novaVersao A versão da tarefa no MongoDB após a gravação.
+     */
+    synchronized void confirmarSincronizacao(Pendencia pendencia, long novaVersao) {
+        anexar(SINCRONIZADA, (byte) 0, novaVersao, pendencia.offset(), apenasId(new ObjectId(pendencia.id())));
+    }
+
+    /**
+     * Aplica localmente o estado de uma tarefa no MongoDB.
+     *
+     * @param id O ID da tarefa.
+     * @param remota O estado no MongoDB, ou {@code null} se ela foi excluída lá.
+     * @param forcar Se {@code true}, descarta uma alteração local pendente (resolução de conflito);
+     * se {@code false}, tarefas com alterações pendentes não são tocadas.
+     * @return {@code true} se o estado local mudou.
+     */
+    synchronized boolean aplicarRemota(String id, Tarefa remota, boolean forcar) {
+        ObjectId objectId = new ObjectId(id);
+        Entrada entrada = entradas.get(objectId);
+        if (entrada != null && entrada.pendente() && !forcar) {
+            return false;
+        }
+        if (remota == null) {
+            if (entrada == null) {
+                return false;
+            }
+            anexar(EXCLUIR, (byte) 0, entrada.versaoBase(), -1, apenasId(objectId));
+            return true;
+        }
+        if (entrada != null && !entrada.pendente() && !entrada.excluida() && entrada.versaoBase() == remota.getVersao()) {
+            return false;
+        }
+        anexar(SALVAR, (byte) 0, remota.getVersao(), -1, remota);
+        return true;
+    }
+
+    /**
+     * @return O número de alterações locais ainda não enviadas.
+     */
+    public long contarPendencias() {
+        return entradas.values().stream().filter(Entrada::pendente).count();
+    }
+
+    /**
+     * Força a gravação do log e do índice no disco. As gravações normais ficam no cache do
+     * sistema operacional, o que já as protege de uma queda da aplicação (mas não de uma queda de energia).
+     */
+    public synchronized void gravarNoDisco() {
+        try {
+            log.force(false);
+            indice.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Grava o que estiver pendente no disco e fecha os arquivos.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            gravarNoDisco();
+            log.close();
+            canalIndice.close();
+        } catch (IOException | UncheckedIOException e) {
+            REGISTRO.erro("fechar", "erro", e.getMessage());
+        }
+    }
+
+    // --- Log e índice ---
+
+    /**
+     * Abre os arquivos, carrega o índice e aplica os registros do log que ainda não estão nele.
+     */
+    private void abrir() throws IOException {
+        log = FileChannel.open(arquivoLog, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fimLog = log.size();
+        canalIndice = FileChannel.open(arquivoIndice, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long tamanho = Math.max(canalIndice.size(), CABECALHO_INDICE + (long) CAPACIDADE_INICIAL * TAMANHO_ENTRADA);
+        indice = canalIndice.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+
+        long logIndexado = 0;
+        if (indice.getInt(0) == MAGICO && indice.getLong(8) <= fimLog) {
+            totalEntradas = indice.getInt(4);
+            logIndexado = indice.getLong(8);
+            byte[] id = new byte[12];
+            for (int i = 0; i < totalEntradas; i++) {
+                int posicao = CABECALHO_INDICE + i * TAMANHO_ENTRADA;
+                indice.get(posicao, id);
+                colocar(new ObjectId(id), new Entrada(i, indice.getLong(posicao + 12),
+                        indice.getLong(posicao + 20), indice.get(posicao + 28)));
+            }
+        } else {
+            // Índice novo, de outro formato ou desatualizado: é reconstruído a partir do log.
+            totalEntradas = 0;
+            indice.putInt(0, MAGICO);
+            indice.putInt(4, 0);
+            indice.putLong(8, 0);
+        }
+        reproduzirLog(logIndexado);
+        carregarTarefas();
+    }
+
+    /**
+     * Decodifica do log o estado atual de cada tarefa viva e troca as tarefas em memória por elas.
+     * É a única leitura das tarefas no log; depois, {@link #anexar} mantém a memória em dia.
+     */
+    private void carregarTarefas() {
+        List<Tarefa> vivas = new ArrayList<>(entradas.size());
+        for (Entrada entrada : entradas.values()) {
+            if (!entrada.excluida()) {
+                vivas.add(lerTarefa(entrada));
+            }
+        }
+        IndiceConcorrenteTarefas carregadas = new IndiceConcorrenteTarefas();
+        carregadas.inserirSeAusentes(vivas, false);
+        tarefas = carregadas;
+    }
+
+    /**
+     * Aplica ao índice os registros do log a partir de uma posição. Um registro incompleto no fim
+     * (gravação interrompida) é descartado.
+     */
+    private void reproduzirLog(long inicio) throws IOException {
+        long posicao = inicio;
+        ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO_REGISTRO);
+        while (posicao < fimLog) {
+            cabecalho.clear();
+            int tamanho = lerCompleto(cabecalho, posicao) == CABECALHO_REGISTRO ? cabecalho.getInt(0) : -1;
+            if (tamanho < CABECALHO_REGISTRO - 4 || posicao + 4 + tamanho > fimLog) {
+                REGISTRO.aviso("descartarIncompleto", "arquivo", arquivoLog, "posicao", posicao);
+                log.truncate(posicao);
+                fimLog = posicao;
+                break;
+            }
+            ObjectId id = lerRegistro(posicao).getObjectId();
+            aplicarRegistro(posicao, cabecalho.get(4), cabecalho.get(5), cabecalho.getLong(6), cabecalho.getLong(14), id);
+            posicao += 4 + tamanho;
+        }
+        indice.putLong(8, fimLog);
+    }
+
+    /**
+     * Acrescenta um registro ao log e atualiza o índice e as tarefas em memória.
+     * Deve ser chamado com a trava do objeto.
+     */
+    private void anexar(byte tipo, byte situacao, long versao, long referencia, Tarefa tarefa) {
+        BasicOutputBuffer bson = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(bson), tarefa, CODIFICACAO);
+        ByteBuffer registro = ByteBuffer.allocate(CABECALHO_REGISTRO + bson.getSize());
+        registro.putInt(CABECALHO_REGISTRO - 4 + bson.getSize())
+                .put(tipo).put(situacao).putLong(versao).putLong(referencia)
+                .put(bson.getInternalBuffer(), 0, bson.getSize())
+                .flip();
+        long offset = fimLog;
+        try {
+            while (registro.hasRemaining()) {
+                log.write(registro, offset + registro.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao gravar no armazenamento local", e);
+        }
+        fimLog += registro.limit();
+        aplicarRegistro(offset, tipo, situacao, versao, referencia, tarefa.getObjectId());
+        indice.putLong(8, fimLog);
+        atualizarTarefas(tipo, tarefa);
+    }
+
+    /**
+     * Leva às tarefas em memória um registro recém-acrescentado, já aplicado ao índice. As tarefas
+     * guardadas são compartilhadas com os instantâneos, então cada mudança grava uma nova instância.
+     */
+    private void atualizarTarefas(byte tipo, Tarefa tarefa) {
+        ObjectId id = tarefa.getObjectId();
+        Entrada entrada = entradas.get(id);
+        if (entrada == null || entrada.excluida()) {
+            tarefas.remover(id, atual -> true);
+        } else if (tipo == SINCRONIZADA) {
+            tarefas.alterar(id, atual -> comVersaoBase(atual, entrada.versaoBase()));
+        } else {
+            Tarefa nova = comVersaoBase(tarefa, entrada.versaoBase());
+            if (tarefas.alterar(id, atual -> nova) == null) {
+                tarefas.inserirSeAusente(nova);
+            }
+        }
+    }
+
+    /**
+     * Atualiza o índice com um registro do log (gravado agora ou relido ao abrir).
+     */
+    private void aplicarRegistro(long offset, byte tipo, byte situacao, long versao, long referencia, ObjectId id) {
+        if (tipo == SINCRONIZADA) {
+            Entrada atual = entradas.get(id);
+            if (atual == null) {
+                return;
+            }
+            // Só a alteração confirmada deixa de ser pendente; uma posterior continua na fila.
+            byte novaSituacao = atual.offset() == referencia ? (byte) (atual.situacao() & ~PENDENTE) : atual.situacao();
+            Entrada atualizada = new Entrada(atual.posicaoIndice(), atual.offset(), versao, novaSituacao);
+            gravarEntrada(id, atualizada);
+            colocar(id, atualizada);
+            return;
+        }
+        garantirCapacidade();
+        byte novaSituacao = (byte) (situacao | (tipo == EXCLUIR ? EXCLUIDA : 0));
+        Entrada nova = new Entrada(totalEntradas, offset, versao, novaSituacao);
+        gravarEntrada(id, nova);
+        totalEntradas++;
+        indice.putInt(4, totalEntradas);
+        colocar(id, nova);
+    }
+
+    /**
+     * Guarda a entrada no mapa; tarefas excluídas e já sincronizadas saem dele.
+     */
+    private void colocar(ObjectId id, Entrada entrada) {
+        if (entrada.excluida() && !entrada.pendente()) {
+            entradas.remove(id);
+        } else {
+            entradas.put(id, entrada);
+        }
+    }
+
+    private void gravarEntrada(ObjectId id, Entrada entrada) {
+        int posicao = CABECALHO_INDICE + entrada.posicaoIndice() * TAMANHO_ENTRADA;
+        indice.put(posicao, id.toByteArray());
+        indice.putLong(posicao + 12, entrada.offset());
+        indice.putLong(posicao + 20, entrada.versaoBase());
+        indice.put(posicao + 28, entrada.situacao());
+    }
+
+    /**
+     * Dobra o tamanho do índice mapeado quando não houver espaço para mais uma entrada.
+     */
+    private void garantirCapacidade() {
+        long necessario = CABECALHO_INDICE + (long) (totalEntradas + 1) * TAMANHO_ENTRADA;
+        if (necessario <= indice.capacity()) {
+            return;
+        }
+        try {
+            indice.force();
+            indice = canalIndice.map(FileChannel.MapMode.READ_WRITE, 0, indice.capacity() * 2L);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao aumentar o indice local", e);
+        }
+    }
+
+    /**
+     * Reescreve o log apenas com o registro atual de cada tarefa. O índice é apagado antes de o
+     * novo log substituir o antigo (de forma atômica) e então reconstruído; uma interrupção em
+     * qualquer ponto deixa um log completo, do qual o índice pode ser refeito.
+     */
+    private void compactar() throws IOException {
+        long tamanhoAnterior = fimLog;
+        Path novoLog = diretorio.resolve("tarefas.log.novo");
+        try (FileChannel destino = FileChannel.open(novoLog, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entrada entrada : entradas.values()) {
+                ByteBuffer registro = lerBytesRegistro(entrada.offset());
+                // O registro copiado já carrega a situação e a versão atuais.
+                registro.put(5, (byte) (entrada.situacao() & PENDENTE));
+                registro.putLong(6, entrada.versaoBase());
+                registro.putLong(14, -1);
+                while (registro.hasRemaining()) {
+                    destino.write(registro);
+                }
+            }
+            destino.force(true);
+        }
+        log.close();
+        canalIndice.close();
+        Files.delete(arquivoIndice);
+        Files.move(novoLog, arquivoLog, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        entradas.clear();
+        abrir();
+        REGISTRO.info("compactar", "bytesAntes", tamanhoAnterior, "bytesDepois", fimLog);
+    }
+
+    private Entrada entradaViva(String id) {
+        if (id == null || !ObjectId.isValid(id)) {
+            return null;
+        }
+        Entrada entrada = entradas.get(new ObjectId(id));
+        return entrada == null || entrada.excluida() ? null : entrada;
+    }
+
+    /**
+     * Lê do log o estado de uma tarefa, com a versão base como versão.
+     */
+    private Tarefa lerTarefa(Entrada entrada) {
+        Tarefa tarefa = lerRegistro(entrada.offset());
+        tarefa.setVersao(Math.max(entrada.versaoBase(), 0));
+        return tarefa;
+    }
+
+    /**
+     * @return Uma cópia da tarefa com a versão base como versão (0 se ela é nova), para guardar em memória.
+     */
+    private static Tarefa comVersaoBase(Tarefa tarefa, long versaoBase) {
+        Tarefa copia = tarefa.copiar();
+        copia.setVersao(Math.max(versaoBase, 0));
+        return copia;
+    }
+
+    private static Tarefa copiar(Tarefa tarefa) {
+        return tarefa == null ? null : tarefa.copiar();
+    }
+
+    /**
+     * Decodifica a tarefa gravada em um registro do log.
+     */
+    private Tarefa lerRegistro(long offset) {
+        ByteBuffer registro = lerBytesRegistro(offset);
+        registro.position(CABECALHO_REGISTRO);
+        try (BsonBinaryReader leitor = new BsonBinaryReader(registro.slice())) {
+            return codec.decode(leitor, DECODIFICACAO);
+        }
+    }
+
+    /**
+     * Lê um registro inteiro do log (cabeçalho e BSON). Na maioria dos casos, basta uma leitura.
+     */
+    private ByteBuffer lerBytesRegistro(long offset) {
+        try {
+            ByteBuffer registro = ByteBuffer.allocate(LEITURA_INICIAL);
+            lerCompleto(registro, offset);
+            int total = 4 + registro.getInt(0);
+            if (total > LEITURA_INICIAL) {
+                registro = ByteBuffer.allocate(total);
+                lerCompleto(registro, offset);
+            }
+            return registro.limit(total).position(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao ler o armazenamento local", e);
+        }
+    }
+
+    /**
+     * Lê do log até encher o buffer ou chegar ao fim do arquivo.
+     *
+     * @return O número de bytes lidos.
+     */
+    private int lerCompleto(ByteBuffer destino, long posicao) throws IOException {
+        int inicio = destino.position();
+        while (destino.hasRemaining()) {
+            int lidos = log.read(destino, posicao + destino.position() - inicio);
+            if (lidos < 0) {
+                break;
+            }
+        }
+        return destino.position() - inicio;
+    }
+
+    /**
+     * Tarefa só com o ID, gravada nos registros de exclusão e de confirmação.
+     */
+    private static Tarefa apenasId(ObjectId id) {
+        Tarefa tarefa = new Tarefa(null, null, null);
+        tarefa.setObjectId(id);
+        return tarefa;
+    }
+}
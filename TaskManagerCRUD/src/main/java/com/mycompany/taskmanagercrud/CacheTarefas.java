@@ -0,0 +1,553 @@
+package com.mycompany.taskmanagercrud;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Cache de leitura (read-through) das tarefas, na frente do {@link TarefaDAO}.
+ * Guarda até um número configurável de tarefas, indexadas pelo {@link ObjectId}, e descarta
+ * as menos usadas recentemente (LRU) ou as menos usadas no total (LFU) quando enche.
+ * Também guarda quais IDs compõem cada página já listada e o total de tarefas de cada consulta,
+ * de modo que listagens e buscas repetidas não voltem ao banco.
+ *
+ * A coerência é mantida por um change stream sobre a coleção "tarefas": toda inserção,
+ * atualização ou exclusão feita por qualquer cliente chega como um evento e é aplicada ao cache.
+ * Enquanto o change stream não estiver funcionando (por exemplo, com um {@code mongod} que não é
+ * replica set), o cache fica inativo e todas as leituras vão direto ao banco.
+ */
+public class CacheTarefas implements AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(CacheTarefas.class);
+
+    /**
+     * Política usada para escolher qual tarefa descartar quando o cache enche.
+     */
+    public enum PoliticaRemocao {
+        /** Descarta a tarefa acessada há mais tempo. */
+        LRU,
+        /** Descarta a tarefa acessada menos vezes (em empate, a mais antiga). */
+        LFU
+    }
+
+    /**
+     * Ouvinte das alterações recebidas pelo change stream, inclusive as feitas por outros clientes.
+     * Os métodos são chamados na thread do change stream.
+     */
+    public interface OuvinteAlteracoes {
+        /** Uma tarefa foi inserida. */
+        void tarefaInserida(Tarefa tarefa);
+        /** Uma tarefa foi atualizada; {@code tarefa} é o seu novo estado. */
+        void tarefaAtualizada(Tarefa tarefa);
+        /** Uma tarefa foi excluída. */
+        void tarefaExcluida(String id);
+        /** O cache foi esvaziado e qualquer visão das tarefas deve ser recarregada. */
+        void cacheInvalidado();
+    }
+
+    /** Número máximo de páginas (listas de IDs) guardadas. */
+    private static final int MAX_PAGINAS = 256;
+
+    /** Espera, em milissegundos, antes de reabrir um change stream que falhou. */
+    private static final long ESPERA_RECONEXAO_MS = 1000;
+
+    /** DAO usado nas leituras que não estão no cache. */
+    private final TarefaDAO tarefaDAO;
+
+    /** Tarefas em cache, com a política de remoção escolhida. Protegido por {@code this}. */
+    private final Armazenamento tarefas;
+
+    /** IDs de cada página já listada, indexados pela consulta, âncora e limite. Protegido por {@code this}. */
+    private final Map<ChavePagina, List<ObjectId>> paginas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChavePagina, List<ObjectId>> maisAntiga) {
+            return size() > MAX_PAGINAS;
+        }
+    };
+
+    /** Total de tarefas de cada consulta já contada. Protegido por {@code this}. */
+    private final Map<ConsultaTarefas, Long> totais = new HashMap<>();
+
+    /**
+     * Incrementado a cada evento aplicado. Uma leitura no banco que começou antes de um evento
+     * pode ter trazido um dado já antigo, então seu resultado não é guardado. Protegido por {@code this}.
+     */
+    private long sequenciaEventos;
+
+    /** Indica se o change stream está ativo, condição para que o cache seja usado. */
+    private volatile boolean ativo;
+
+    /** Indica se o cache foi fechado. */
+    private volatile boolean fechado;
+
+    /** Cursor do change stream aberto, para que {@link #close()} possa interrompê-lo. */
+    private volatile MongoCursor<ChangeStreamDocument<Tarefa>> cursorAlteracoes;
+
+    /** Ouvintes das alterações recebidas. */
+    private final List<OuvinteAlteracoes> ouvintes = new CopyOnWriteArrayList<>();
+
+    /** Thread virtual que consome o change stream. */
+    private final Thread threadAlteracoes;
+
+    /** Chave de uma página: a consulta, o ID após o qual ela começa e o número de tarefas. */
+    private record ChavePagina(ConsultaTarefas consulta, ObjectId aposId, int limite) { }
+
+    /**
+     * Cria o cache e começa a acompanhar o change stream da coleção.
+     *
+     * @param tarefaDAO O DAO usado nas leituras que não estão no cache.
+     * @param capacidade O número máximo de tarefas em cache.
+     * @param politica A política de remoção quando o cache enche.
+     */
+    public CacheTarefas(TarefaDAO tarefaDAO, int capacidade, PoliticaRemocao politica) {
+        this.tarefaDAO = tarefaDAO;
+        this.tarefas = politica == PoliticaRemocao.LFU ? new ArmazenamentoLfu(capacidade) : new ArmazenamentoLru(capacidade);
+        this.threadAlteracoes = Thread.ofVirtual().name("cache-tarefas-change-stream").start(this::acompanharAlteracoes);
+    }
+
+    /**
+     * Adiciona um ouvinte das alterações recebidas pelo change stream.
+     *
+     * @param ouvinte O ouvinte.
+     */
+    public void adicionarOuvinte(OuvinteAlteracoes ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * @return {@code true} se o change stream está ativo e as leituras estão sendo servidas pelo cache.
+     */
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    /**
+     * Busca uma tarefa pelo ID, primeiro no cache e, se não estiver lá, no banco.
+     *
+     * @param id O ID (String hexadecimal) da tarefa.
+     * @return A tarefa, ou {@code null} se ela não existir ou o ID for inválido.
+     * @see TarefaDAO#buscarTarefaPorId(String)
+     */
+    public Tarefa buscarTarefa(String id) {
+        long sequencia;
+        synchronized (this) {
+            if (ativo && ObjectId.isValid(id)) {
+                Tarefa tarefa = tarefas.obter(new ObjectId(id));
+                if (tarefa != null) {
+                    return tarefa;
+                }
+            }
+            sequencia = sequenciaEventos;
+        }
+        Tarefa tarefa = tarefaDAO.buscarTarefaPorId(id);
+        if (tarefa != null) {
+            synchronized (this) {
+                if (ativo && sequencia == sequenciaEventos) {
+                    tarefas.guardar(tarefa.getObjectId(), tarefa);
+                }
+            }
+        }
+        return tarefa;
+    }
+
+    /**
+     * Lista uma página de tarefas, servida pelo cache quando a mesma página já foi listada
+     * e todas as suas tarefas continuam em cache.
+     * Consultas com projeção trazem tarefas incompletas e por isso não passam pelo cache.
+     *
+     * @see TarefaDAO#listarTarefasPaginado(ConsultaTarefas, Tarefa, int)
+     */
+    public List<Tarefa> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite) {
+        if (consulta.campos() != null) {
+            return tarefaDAO.listarTarefasPaginado(consulta, apos, limite);
+        }
+        ChavePagina chave = new ChavePagina(consulta, apos == null ? null : apos.getObjectId(), limite);
+        long sequencia;
+        synchronized (this) {
+            if (ativo) {
+                List<ObjectId> ids = paginas.get(chave);
+                if (ids != null) {
+                    List<Tarefa> pagina = new ArrayList<>(ids.size());
+                    for (ObjectId id : ids) {
+                        Tarefa tarefa = tarefas.obter(id);
+                        if (tarefa == null) {
+                            break;
+                        }
+                        pagina.add(tarefa);
+                    }
+                    if (pagina.size() == ids.size()) {
+                        return pagina;
+                    }
+                }
+            }
+            sequencia = sequenciaEventos;
+        }
+        List<Tarefa> pagina = tarefaDAO.listarTarefasPaginado(consulta, apos, limite);
+        synchronized (this) {
+            if (ativo && sequencia == sequenciaEventos) {
+                List<ObjectId> ids = new ArrayList<>(pagina.size());
+                for (Tarefa tarefa : pagina) {
+                    ObjectId id = tarefa.getObjectId();
+                    ids.add(id);
+                    tarefas.guardar(id, tarefa);
+                }
+                paginas.put(chave, ids);
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Conta as tarefas de uma consulta, usando o total já conhecido quando o cache está ativo.
+     *
+     * @see TarefaDAO#contarTarefas(ConsultaTarefas)
+     */
+    public long contarTarefas(ConsultaTarefas consulta) {
+        long sequencia;
+        synchronized (this) {
+            Long total = totais.get(consulta);
+            if (ativo && total != null) {
+                return total;
+            }
+            sequencia = sequenciaEventos;
+        }
+        long contagem = tarefaDAO.contarTarefas(consulta);
+        synchronized (this) {
+            if (ativo && sequencia == sequenciaEventos) {
+                totais.put(consulta, contagem);
+            }
+        }
+        return contagem;
+    }
+
+    /**
+     * Atualiza no cache uma tarefa alterada por este cliente, sem esperar o evento do change stream.
+     *
+     * @param tarefa O novo estado da tarefa.
+     */
+    public synchronized void atualizar(Tarefa tarefa) {
+        ObjectId id = tarefa.getObjectId();
+        if (tarefas.obter(id) != null) {
+            tarefas.guardar(id, tarefa);
+        }
+    }
+
+    /**
+     * Consome o change stream enquanto o cache estiver aberto, reabrindo-o após falhas.
+     * Se o servidor não suportar change streams, o cache fica desativado de vez.
+     */
+    private void acompanharAlteracoes() {
+        BsonDocument tokenRetomada = null;
+        while (!fechado) {
+            try {
+                ChangeStreamIterable<Tarefa> alteracoes = tarefaDAO.observarAlteracoes();
+                if (tokenRetomada != null) {
+                    alteracoes = alteracoes.resumeAfter(tokenRetomada);
+                }
+                try (MongoCursor<ChangeStreamDocument<Tarefa>> cursor = alteracoes.cursor()) {
+                    cursorAlteracoes = cursor;
+                    // A partir daqui nenhum evento é perdido: o cache pode ser usado.
+                    ativo = true;
+                    REGISTRO.info("ativar");
+                    while (!fechado && cursor.hasNext()) {
+                        ChangeStreamDocument<Tarefa> evento = cursor.next();
+                        tokenRetomada = evento.getResumeToken();
+                        aplicarEvento(evento);
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == 40573) {
+                    // "The $changeStream stage is only supported on replica sets"
+                    REGISTRO.aviso("desativar", "motivo", "o MongoDB nao e um replica set", "erro", e.getErrorMessage());
+                    desativar();
+                    return;
+                }
+                tokenRetomada = tratarFalha(e, tokenRetomada);
+            } catch (MongoException | IllegalStateException e) {
+                if (fechado) {
+                    return;
+                }
+                tokenRetomada = tratarFalha(e, tokenRetomada);
+            }
+        }
+    }
+
+    /**
+     * Desativa o cache após uma falha do change stream e espera antes de tentar de novo.
+     * Se o token de retomada não for mais aceito, a próxima tentativa começa do zero.
+     */
+    private BsonDocument tratarFalha(RuntimeException e, BsonDocument tokenRetomada) {
+        REGISTRO.aviso("desativar", "motivo", "falha no change stream", "erro", e.getMessage());
+        desativar();
+        try {
+            Thread.sleep(ESPERA_RECONEXAO_MS);
+        } catch (InterruptedException interrompida) {
+            Thread.currentThread().interrupt();
+            fechado = true;
+        }
+        // Código 286 (ChangeStreamHistoryLost): o ponto de retomada já saiu do oplog.
+        return e instanceof MongoException mongo && mongo.getCode() == 286 ? null : tokenRetomada;
+    }
+
+    /**
+     * Esvazia e desativa o cache: sem change stream, o que está em memória pode estar desatualizado.
+     */
+    private void desativar() {
+        synchronized (this) {
+            ativo = false;
+            limpar();
+        }
+        ouvintes.forEach(OuvinteAlteracoes::cacheInvalidado);
+    }
+
+    /**
+     * Aplica ao cache um evento do change stream e repassa-o aos ouvintes.
+     */
+    private void aplicarEvento(ChangeStreamDocument<Tarefa> evento) {
+        // O documento completo já chega decodificado pelo TarefaCodec.
+        Tarefa tarefa = evento.getFullDocument();
+        ObjectId id = evento.getDocumentKey() == null ? null : evento.getDocumentKey().getObjectId("_id").getValue();
+        switch (evento.getOperationType()) {
+            case INSERT -> {
+                synchronized (this) {
+                    sequenciaEventos++;
+                    if (tarefa != null) {
+                        tarefas.guardar(id, tarefa);
+                    }
+                    // Uma tarefa nova pode entrar em páginas e contagens já feitas.
+                    invalidarConsultas();
+                }
+                if (tarefa != null) {
+                    ouvintes.forEach(ouvinte -> ouvinte.tarefaInserida(tarefa));
+                }
+            }
+            case UPDATE, REPLACE -> {
+                synchronized (this) {
+                    sequenciaEventos++;
+                    if (tarefa == null) {
+                        // A tarefa foi excluída antes do updateLookup; a exclusão chega em seguida.
+                        tarefas.remover(id);
+                    } else if (tarefas.obter(id) != null) {
+                        tarefas.guardar(id, tarefa);
+                    }
+                    // Campos filtrados ou ordenados podem ter mudado, deslocando a tarefa entre páginas.
+                    invalidarConsultas();
+                }
+                if (tarefa != null) {
+                    ouvintes.forEach(ouvinte -> ouvinte.tarefaAtualizada(tarefa));
+                }
+            }
+            case DELETE -> {
+                synchronized (this) {
+                    sequenciaEventos++;
+                    tarefas.remover(id);
+                    invalidarConsultas();
+                }
+                ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(id.toHexString()));
+            }
+            default -> {
+                // DROP, RENAME, INVALIDATE...: a coleção mudou como um todo.
+                synchronized (this) {
+                    sequenciaEventos++;
+                    limpar();
+                }
+                ouvintes.forEach(OuvinteAlteracoes::cacheInvalidado);
+            }
+        }
+    }
+
+    /** Descarta as páginas e contagens guardadas. Deve ser chamado com o monitor de {@code this}. */
+    private void invalidarConsultas() {
+        paginas.clear();
+        totais.clear();
+    }
+
+    /** Esvazia todas as estruturas do cache. Deve ser chamado com o monitor de {@code this}. */
+    private void limpar() {
+        sequenciaEventos++;
+        tarefas.limpar();
+        invalidarConsultas();
+    }
+
+    /**
+     * Fecha o change stream e desativa o cache.
+     */
+    @Override
+    public void close() {
+        fechado = true;
+        MongoCursor<ChangeStreamDocument<Tarefa>> cursor = cursorAlteracoes;
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (MongoException e) {
+                // O cursor pode já estar fechado pela própria thread do change stream.
+            }
+        }
+        threadAlteracoes.interrupt();
+        synchronized (this) {
+            ativo = false;
+            limpar();
+        }
+    }
+
+    /**
+     * Estrutura de armazenamento das tarefas, com a política de remoção embutida.
+     * Acessada sempre com o monitor do {@link CacheTarefas}.
+     */
+    private interface Armazenamento {
+        Tarefa obter(ObjectId id);
+        void guardar(ObjectId id, Tarefa tarefa);
+        void remover(ObjectId id);
+        void limpar();
+    }
+
+    /**
+     * Armazenamento LRU: um {@link LinkedHashMap} em ordem de acesso.
+     */
+    private static final class ArmazenamentoLru implements Armazenamento {
+        private final Map<ObjectId, Tarefa> mapa;
+
+        ArmazenamentoLru(int capacidade) {
+            this.mapa = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ObjectId, Tarefa> maisAntiga) {
+                    return size() > capacidade;
+                }
+            };
+        }
+
+        @Override
+        public Tarefa obter(ObjectId id) {
+            return mapa.get(id);
+        }
+
+        @Override
+        public void guardar(ObjectId id, Tarefa tarefa) {
+            mapa.put(id, tarefa);
+        }
+
+        @Override
+        public void remover(ObjectId id) {
+            mapa.remove(id);
+        }
+
+        @Override
+        public void limpar() {
+            mapa.clear();
+        }
+    }
+
+    /**
+     * Armazenamento LFU com custo O(1): cada tarefa conhece sua frequência de acesso, e há um
+     * conjunto ordenado por inserção para cada frequência. A tarefa removida é a mais antiga
+     * do conjunto de menor frequência.
+     */
+    private static final class ArmazenamentoLfu implements Armazenamento {
+
+        /** Tarefa guardada e quantas vezes ela foi acessada. */
+        private static final class Entrada {
+            Tarefa tarefa;
+            int frequencia = 1;
+
+            Entrada(Tarefa tarefa) {
+                this.tarefa = tarefa;
+            }
+        }
+
+        private final int capacidade;
+        private final Map<ObjectId, Entrada> entradas = new HashMap<>();
+        private final Map<Integer, LinkedHashSet<ObjectId>> idsPorFrequencia = new HashMap<>();
+        private int menorFrequencia;
+
+        ArmazenamentoLfu(int capacidade) {
+            this.capacidade = capacidade;
+        }
+
+        @Override
+        public Tarefa obter(ObjectId id) {
+            Entrada entrada = entradas.get(id);
+            if (entrada == null) {
+                return null;
+            }
+            incrementar(id, entrada);
+            return entrada.tarefa;
+        }
+
+        @Override
+        public void guardar(ObjectId id, Tarefa tarefa) {
+            if (capacidade <= 0) {
+                return;
+            }
+            Entrada entrada = entradas.get(id);
+            if (entrada != null) {
+                entrada.tarefa = tarefa;
+                incrementar(id, entrada);
+                return;
+            }
+            if (entradas.size() >= capacidade) {
+                LinkedHashSet<ObjectId> menosUsadas = idsPorFrequencia.get(menorFrequencia);
+                ObjectId removida = menosUsadas.iterator().next();
+                menosUsadas.remove(removida);
+                if (menosUsadas.isEmpty()) {
+                    idsPorFrequencia.remove(menorFrequencia);
+                }
+                entradas.remove(removida);
+            }
+            entradas.put(id, new Entrada(tarefa));
+            idsPorFrequencia.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(id);
+            menorFrequencia = 1;
+        }
+
+        @Override
+        public void remover(ObjectId id) {
+            Entrada entrada = entradas.remove(id);
+            if (entrada == null) {
+                return;
+            }
+            LinkedHashSet<ObjectId> ids = idsPorFrequencia.get(entrada.frequencia);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsPorFrequencia.remove(entrada.frequencia);
+                if (menorFrequencia == entrada.frequencia) {
+                    // Recalcula apenas quando o conjunto mínimo some; a próxima inserção volta a 1.
+                    menorFrequencia = idsPorFrequencia.keySet().stream().min(Integer::compare).orElse(0);
+                }
+            }
+        }
+
+        @Override
+        public void limpar() {
+            entradas.clear();
+            idsPorFrequencia.clear();
+            menorFrequencia = 0;
+        }
+
+        /** Move a tarefa para o conjunto da frequência seguinte. */
+        private void incrementar(ObjectId id, Entrada entrada) {
+            LinkedHashSet<ObjectId> atual = idsPorFrequencia.get(entrada.frequencia);
+            atual.remove(id);
+            if (atual.isEmpty()) {
+                idsPorFrequencia.remove(entrada.frequencia);
+                if (menorFrequencia == entrada.frequencia) {
+                    menorFrequencia++;
+                }
+            }
+            entrada.frequencia++;
+            idsPorFrequencia.computeIfAbsent(entrada.frequencia, f -> new LinkedHashSet<>()).add(id);
+        }
+    }
+}
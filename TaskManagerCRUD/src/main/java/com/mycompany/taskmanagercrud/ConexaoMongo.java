@@ -1,55 +1,297 @@
 package com.mycompany.taskmanagercrud;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  * @author Thierry
- * 
+ *
  * Responsavel por estabalecer e gerenciar a conexão com o banco de dados MongoDB.
  * garantindo que apenas uma instância do cliente MongoDB e do banco de dados seja criada e reutilizada.
+ *
+ * A conexão é configurada externamente (veja {@link #carregarConfiguracao()}): URI, tamanho do pool,
+ * tempos limite, preferência de leitura, write concern e compressão. O cliente é criado uma única vez,
+ * de forma segura entre threads, e fechado automaticamente quando a JVM é encerrada.
  */
 public class ConexaoMongo {
-    
-     /**
-     * Cliente MongoDB. Interface principal para interagir com uma instância do MongoDB.
-     * É estático para ser compartilhado através da classe.
-     */
-    private static MongoClient mongoClient;
-     /**
-     * Representa o banco de dados específico ('TaskManagerCRUD') com o qual a aplicação interage.
-     * É estático para ser compartilhado através da classe.
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(ConexaoMongo.class);
+
+    /** Arquivo de configuração procurado no classpath. */
+    private static final String ARQUIVO_CONFIGURACAO = "/taskmanager.properties";
+
+    /** Prefixo das chaves de configuração da conexão. */
+    private static final String PREFIXO = "taskmanager.mongo.";
+
+    /**
+     * Ações executadas no encerramento da JVM antes de o cliente ser fechado,
+     * na ordem inversa do registro (veja {@link #aoEncerrar(Runnable)}).
      */
-    
-    private static MongoDatabase database;
+    private static final List<Runnable> acoesEncerramento = new CopyOnWriteArrayList<>();
+
+    /** Se o cliente já foi criado (e precisa ser fechado no encerramento). */
+    private static volatile boolean conectado;
+
+    static {
+        // Registrado aqui, e não ao conectar, para que as ações de encerramento rodem também
+        // quando não há MongoDB (armazenamento em memória, veja TarefaRepository#criar()).
+        Runtime.getRuntime().addShutdownHook(new Thread(ConexaoMongo::encerrar, "conexao-mongo-desligamento"));
+    }
+
      /**
      * Construtor privado para previnir instanciação direta,
      * reforçando o aspecto de utilitário da classe.
      */
-    
+    private ConexaoMongo() {
+    }
+
+    /**
+     * Guarda o cliente e o banco de dados. A JVM só inicializa esta classe no primeiro acesso a ela,
+     * e a inicialização de classes é sincronizada e publicada com segurança para todas as threads;
+     * assim, o cliente é criado uma única vez sem precisar de locks em {@link #conectar()}.
+     */
+    private static final class Conexao {
+
+        /**
+         * Cliente MongoDB. Interface principal para interagir com uma instância do MongoDB.
+         * Mantém o pool de conexões, compartilhado por toda a aplicação.
+         */
+        static final MongoClient CLIENTE;
+
+        /**
+         * Representa o banco de dados específico com o qual a aplicação interage
+         * ('TaskManagerCRUD', por padrão).
+         */
+        static final MongoDatabase BANCO;
+
+        /** Número máximo de conexões do pool, como configurado (ou o padrão do driver). */
+        static final int POOL_MAXIMO;
+
+        static {
+            Properties configuracao = carregarConfiguracao();
+            ConnectionString uri = new ConnectionString(
+                    configuracao.getProperty(PREFIXO + "uri", "mongodb://localhost:27017"));
+            MongoClientSettings configuracoes = criarConfiguracoes(uri, configuracao);
+            CLIENTE = MongoClients.create(configuracoes);
+            POOL_MAXIMO = configuracoes.getConnectionPoolSettings().getMaxSize();
+            // Se o banco não existir, o MongoDB o cria na primeira inserção de dados.
+            BANCO = CLIENTE.getDatabase(configuracao.getProperty(PREFIXO + "banco", "TaskManagerCRUD"));
+            MetricasTarefas.registrarJmx();
+            conectado = true;
+            // Mostra apenas os hosts: a URI pode conter usuário e senha.
+            REGISTRO.info("conectar", "hosts", uri.getHosts(), "banco", BANCO.getName());
+        }
+    }
+
      /**
-     * Estabelece (se ainda não estiver estabelecida) e retorna a conexão com o banco de dados MongoDB.
-     * Se o cliente MongoDB não foi inicializado, cria uma nova conexão com o servidor
-     * MongoDB em "mongodb://localhost:27017" e obtém o banco de dados "TaskManagerCRUD".
+     * Retorna a conexão com o banco de dados MongoDB, criando o cliente no primeiro acesso.
+     * Pode ser chamado de qualquer thread; todas recebem a mesma instância.
      *
-     * @return A instância do {@link MongoDatabase} conectada ao banco "TaskManagerCRUD".
+     * @return A instância do {@link MongoDatabase} configurada (por padrão, o banco "TaskManagerCRUD").
      */
     public static MongoDatabase conectar() {
-        // Verifica se o mongoClient ainda não foi inicializado
-        if (mongoClient == null) {
-            // Cria uma nova instância do MongoClient para o servidor local na porta padrão
-            mongoClient = MongoClients.create("mongodb://localhost:27017");
-            // Obtém uma referência ao banco de dados "TaskManagerCRUD"
-            // Se o banco não existir, o MongoDB geralmente o cria na primeira inserção de dados.
-            database = mongoClient.getDatabase("TaskManagerCRUD");
-            }
-        // Imprime uma mensagem no console indicando que a conexão foi processada.
-        // Esta mensagem aparecerá toda vez que conectar() for chamado.
-        // Para evitar múltiplas mensagens, poderia ser movido para dentro do if.
-        System.out.println("Conectado com sucesso ao MongoDB local!");
-        // Retorna a instância do MongoDatabase, seja ela recém-criada ou a existente.
-        return database;
+        return Conexao.BANCO;
+    }
+
+    /**
+     * Retorna o número máximo de conexões do pool, criando o cliente no primeiro acesso.
+     * É o limite de consultas que podem estar em andamento ao mesmo tempo.
+     *
+     * @return O tamanho máximo do pool ({@code pool.maximo}, ou o padrão do driver).
+     */
+    public static int tamanhoMaximoPool() {
+        return Conexao.POOL_MAXIMO;
+    }
+
+    /**
+     * Registra uma ação a ser executada no encerramento da JVM, antes de o cliente MongoDB ser fechado
+     * (também sem conexão com o MongoDB).
+     * É o lugar para gravar dados pendentes: ganchos de desligamento comuns rodam em paralelo e
+     * poderiam encontrar o cliente já fechado.
+     *
+     * @param acao A ação a ser executada.
+     */
+    public static void aoEncerrar(Runnable acao) {
+        acoesEncerramento.add(acao);
+    }
+
+    /**
+     * Executa as ações registradas em {@link #aoEncerrar} (da última para a primeira) e fecha o cliente, se houver.
+     */
+    private static void encerrar() {
+        for (int i = acoesEncerramento.size() - 1; i >= 0; i--) {
+            try {
+                acoesEncerramento.get(i).run();
+            } catch (RuntimeException e) {
+                REGISTRO.erro("encerrar", "erro", e.getMessage());
+            }
+        }
+        if (conectado) {
+            Conexao.CLIENTE.close();
+            REGISTRO.info("desconectar");
+        }
+    }
+
+    /**
+     * Carrega a configuração da conexão. As fontes são lidas em ordem, e cada uma
+     * sobrescreve as chaves da anterior:
+     * <ol>
+     *   <li>o arquivo {@code taskmanager.properties} do classpath;</li>
+     *   <li>o arquivo indicado pela propriedade de sistema {@code taskmanager.config}, se houver;</li>
+     *   <li>as propriedades de sistema que começam com {@code taskmanager.mongo.} (por exemplo,
+     *   {@code -Dtaskmanager.mongo.uri=...}).</li>
+     * </ol>
+     * Chaves ausentes mantêm o valor da URI ou, se ela também não definir, o padrão do driver.
+     *
+     * @return As propriedades de configuração.
+     */
+    static Properties carregarConfiguracao() {
+        Properties configuracao = new Properties();
+        try (InputStream entrada = ConexaoMongo.class.getResourceAsStream(ARQUIVO_CONFIGURACAO)) {
+            if (entrada != null) {
+                configuracao.load(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            REGISTRO.erro("carregarConfiguracao", "arquivo", ARQUIVO_CONFIGURACAO, "erro", e.getMessage());
+        }
+        String arquivoExterno = System.getProperty("taskmanager.config");
+        if (arquivoExterno != null) {
+            try (Reader leitor = Files.newBufferedReader(Path.of(arquivoExterno), StandardCharsets.UTF_8)) {
+                configuracao.load(leitor);
+            } catch (IOException e) {
+                REGISTRO.erro("carregarConfiguracao", "arquivo", arquivoExterno, "erro", e.getMessage());
+            }
+        }
+        for (String chave : System.getProperties().stringPropertyNames()) {
+            if (chave.startsWith(PREFIXO)) {
+                configuracao.setProperty(chave, System.getProperty(chave));
+            }
+        }
+        return configuracao;
+    }
+
+    /**
+     * Monta as configurações do cliente: parte da URI e aplica por cima as chaves definidas.
+     *
+     * @param uri A URI de conexão.
+     * @param configuracao As propriedades de configuração.
+     * @return As configurações do {@link MongoClient}.
+     */
+    static MongoClientSettings criarConfiguracoes(ConnectionString uri, Properties configuracao) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder().applyConnectionString(uri);
+
+        // Pool de conexões
+        Integer poolMinimo = lerInteiro(configuracao, "pool.minimo");
+        Integer poolMaximo = lerInteiro(configuracao, "pool.maximo");
+        Long esperaMaxima = lerLong(configuracao, "pool.esperaMaximaMs");
+        builder.applyToConnectionPoolSettings(pool -> {
+            if (poolMinimo != null) {
+                pool.minSize(poolMinimo);
+            }
+            if (poolMaximo != null) {
+                pool.maxSize(poolMaximo);
+            }
+            if (esperaMaxima != null) {
+                pool.maxWaitTime(esperaMaxima, TimeUnit.MILLISECONDS);
+            }
+            // Estado do pool e espera por conexões, para as métricas
+            pool.addConnectionPoolListener(MetricasTarefas.ouvintePool());
+        });
+
+        // Tempos limite de conexão, de leitura no socket e de seleção de servidor
+        Long conexao = lerLong(configuracao, "timeout.conexaoMs");
+        Long socket = lerLong(configuracao, "timeout.socketMs");
+        builder.applyToSocketSettings(configuracoesSocket -> {
+            if (conexao != null) {
+                configuracoesSocket.connectTimeout(conexao, TimeUnit.MILLISECONDS);
+            }
+            if (socket != null) {
+                configuracoesSocket.readTimeout(socket, TimeUnit.MILLISECONDS);
+            }
+        });
+        Long selecaoServidor = lerLong(configuracao, "timeout.selecaoServidorMs");
+        if (selecaoServidor != null) {
+            builder.applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(selecaoServidor, TimeUnit.MILLISECONDS));
+        }
+
+        // Preferência de leitura e write concern
+        String preferenciaLeitura = configuracao.getProperty(PREFIXO + "readPreference");
+        if (preferenciaLeitura != null && !preferenciaLeitura.isBlank()) {
+            builder.readPreference(ReadPreference.valueOf(preferenciaLeitura.trim()));
+        }
+        String writeConcern = configuracao.getProperty(PREFIXO + "writeConcern");
+        if (writeConcern != null && !writeConcern.isBlank()) {
+            WriteConcern valor = WriteConcern.valueOf(writeConcern.trim());
+            if (valor == null) {
+                throw new IllegalArgumentException("Write concern desconhecido: " + writeConcern);
+            }
+            builder.writeConcern(valor);
+        }
+
+        // Compressão da comunicação com o servidor, na ordem de preferência (ex.: "zstd,snappy")
+        String compressao = configuracao.getProperty(PREFIXO + "compressao");
+        if (compressao != null) {
+            builder.compressorList(lerCompressores(compressao));
+        }
+
+        // Latência de cada comando enviado ao servidor, para as métricas
+        builder.addCommandListener(MetricasTarefas.ouvinteComandos());
+        return builder.build();
+    }
+
+    /**
+     * Converte uma lista separada por vírgulas ({@code zstd}, {@code snappy}, {@code zlib}) em compressores.
+     * O zstd e o snappy exigem as bibliotecas {@code zstd-jni} e {@code snappy-java} no classpath.
+     */
+    private static List<MongoCompressor> lerCompressores(String compressao) {
+        List<MongoCompressor> compressores = new ArrayList<>();
+        for (String nome : compressao.split(",")) {
+            switch (nome.trim().toLowerCase(Locale.ROOT)) {
+                case "" -> { }
+                case "zstd" -> compressores.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> compressores.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> compressores.add(MongoCompressor.createZlibCompressor());
+                default -> throw new IllegalArgumentException("Compressor desconhecido: " + nome.trim());
+            }
+        }
+        return compressores;
+    }
+
+    private static Integer lerInteiro(Properties configuracao, String chave) {
+        Long valor = lerLong(configuracao, chave);
+        return valor == null ? null : Math.toIntExact(valor);
+    }
+
+    private static Long lerLong(Properties configuracao, String chave) {
+        String valor = configuracao.getProperty(PREFIXO + chave);
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor invalido para " + PREFIXO + chave + ": " + valor, e);
+        }
     }
 }
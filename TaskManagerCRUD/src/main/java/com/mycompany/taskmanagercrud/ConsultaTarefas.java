@@ -0,0 +1,180 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @author Thierry
+ *
+ * Descrição tipada de uma consulta de tarefas: filtros, ordenação e projeção.
+ * É executada pelo próprio MongoDB ({@link TarefaDAO#listarTarefasPaginado}), de modo que apenas
+ * as tarefas e os campos pedidos trafegam pela rede.
+ *
+ * Instâncias são imutáveis; os métodos {@code com...} devolvem uma nova consulta.
+ *
+ * @param prioridade Apenas tarefas com esta prioridade, ou {@code null} para todas.
+ * @param prioridadeMinima Apenas tarefas com esta prioridade ou uma mais urgente, ou {@code null} para todas.
+ * @param concluida Apenas tarefas com este status, ou {@code null} para todas.
+ * @param prefixoTitulo Apenas tarefas cujo título começa com este texto, ou {@code null} para todas.
+ * @param ordenarPor O campo usado na ordenação. Empates são desfeitos pelo {@code _id}.
+ * @param decrescente Se a ordenação é decrescente.
+ * @param campos Os campos a trazer do banco, ou {@code null} para todos.
+ * O {@code _id} e o campo de ordenação são sempre trazidos.
+ */
+public record ConsultaTarefas(Prioridade prioridade, Prioridade prioridadeMinima, Boolean concluida, String prefixoTitulo,
+                              Campo ordenarPor, boolean decrescente, Set<Campo> campos) {
+
+    /**
+     * Campos de uma tarefa que podem ser usados em ordenação e projeção.
+     */
+    public enum Campo {
+        ID("_id"),
+        TITULO("titulo"),
+        DESCRICAO("descricao"),
+        PRIORIDADE("prioridade"),
+        CONCLUIDA("concluida");
+
+        /** Nome do campo no documento do MongoDB. */
+        private final String nomeDocumento;
+
+        Campo(String nomeDocumento) {
+            this.nomeDocumento = nomeDocumento;
+        }
+
+        /**
+         * @return O nome do campo no documento do MongoDB.
+         */
+        public String getNomeDocumento() {
+            return nomeDocumento;
+        }
+
+        /**
+         * Obtém o valor deste campo em uma tarefa.
+         *
+         * @param tarefa A tarefa.
+         * @return O valor do campo.
+         */
+        public Object valorEm(Tarefa tarefa) {
+            return switch (this) {
+                case ID -> tarefa.getObjectId();
+                case TITULO -> tarefa.getTitulo();
+                case DESCRICAO -> tarefa.getDescricao();
+                case PRIORIDADE -> tarefa.getPrioridade();
+                case CONCLUIDA -> tarefa.isConcluida();
+            };
+        }
+
+        /**
+         * Obtém o valor deste campo em uma tarefa como ele é gravado no MongoDB
+         * (a prioridade vira o seu código), para uso em filtros.
+         *
+         * @param tarefa A tarefa.
+         * @return O valor do campo no documento.
+         */
+        public Object valorNoDocumento(Tarefa tarefa) {
+            Object valor = valorEm(tarefa);
+            return valor instanceof Prioridade prioridade ? prioridade.getCodigo() : valor;
+        }
+    }
+
+    /** Consulta sem filtros, em ordem crescente de {@code _id}, com todos os campos. */
+    public static final ConsultaTarefas TODAS = new ConsultaTarefas(null, null, null, null, Campo.ID, false, null);
+
+    /**
+     * Normaliza a consulta: textos vazios viram {@code null} e a ordenação padrão é pelo {@code _id}.
+     */
+    public ConsultaTarefas {
+        prefixoTitulo = prefixoTitulo == null || prefixoTitulo.isBlank() ? null : prefixoTitulo.trim();
+        ordenarPor = ordenarPor == null ? Campo.ID : ordenarPor;
+        campos = campos == null ? null : Set.copyOf(campos);
+    }
+
+    /** @return Uma cópia desta consulta filtrando pela prioridade ({@code null} remove o filtro). */
+    public ConsultaTarefas comPrioridade(Prioridade prioridade) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, ordenarPor, decrescente, campos);
+    }
+
+    /**
+     * @return Uma cópia desta consulta filtrando pelas tarefas com a prioridade informada ou uma
+     * mais urgente ({@code null} remove o filtro). No banco, é um filtro por faixa sobre o código.
+     */
+    public ConsultaTarefas comPrioridadeMinima(Prioridade prioridadeMinima) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, ordenarPor, decrescente, campos);
+    }
+
+    /** @return Uma cópia desta consulta filtrando pelo status ({@code null} remove o filtro). */
+    public ConsultaTarefas comConcluida(Boolean concluida) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, ordenarPor, decrescente, campos);
+    }
+
+    /** @return Uma cópia desta consulta filtrando pelo início do título ({@code null} remove o filtro). */
+    public ConsultaTarefas comPrefixoTitulo(String prefixoTitulo) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, ordenarPor, decrescente, campos);
+    }
+
+    /** @return Uma cópia desta consulta com outra ordenação. */
+    public ConsultaTarefas ordenadaPor(Campo campo, boolean decrescente) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, campo, decrescente, campos);
+    }
+
+    /** @return Uma cópia desta consulta trazendo apenas os campos informados (além do {@code _id} e do campo de ordenação). */
+    public ConsultaTarefas comCampos(Campo primeiro, Campo... demais) {
+        return new ConsultaTarefas(prioridade, prioridadeMinima, concluida, prefixoTitulo, ordenarPor, decrescente, EnumSet.of(primeiro, demais));
+    }
+
+    /**
+     * Avalia os filtros da consulta em memória, com o mesmo resultado que o MongoDB daria.
+     * Usado por quem guarda tarefas fora do banco (por exemplo, o {@link ArmazemLocal}).
+     *
+     * @param tarefa A tarefa.
+     * @return {@code true} se a tarefa atende a todos os filtros.
+     */
+    public boolean aceita(Tarefa tarefa) {
+        return (prioridade == null || prioridade == tarefa.getPrioridade())
+                && (prioridadeMinima == null || (tarefa.getPrioridade() != null
+                        && tarefa.getPrioridade().getCodigo() >= prioridadeMinima.getCodigo()))
+                && (concluida == null || concluida == tarefa.isConcluida())
+                && (prefixoTitulo == null || (tarefa.getTitulo() != null && tarefa.getTitulo().startsWith(prefixoTitulo)));
+    }
+
+    /**
+     * Ordem da consulta em memória, igual à do MongoDB: pelo campo de ordenação (valores nulos
+     * primeiro) e, em caso de empate, pelo {@code _id}; tudo invertido se for decrescente.
+     *
+     * @return O comparador de tarefas.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Comparator<Tarefa> comparador() {
+        Comparator<Tarefa> porId = Comparator.comparing(Tarefa::getObjectId, Comparator.nullsFirst(Comparator.naturalOrder()));
+        Comparator<Tarefa> ordem = ordenarPor == Campo.ID ? porId
+                : Comparator.comparing((Tarefa tarefa) -> (Comparable) ordenarPor.valorEm(tarefa),
+                        Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(porId);
+        return decrescente ? ordem.reversed() : ordem;
+    }
+
+    /**
+     * @return {@code true} se a consulta não tem filtros e segue a ordem crescente de {@code _id}.
+     * Nesse caso, uma tarefa nova sempre entra no fim do resultado.
+     */
+    public boolean isOrdemNatural() {
+        return prioridade == null && prioridadeMinima == null && concluida == null && prefixoTitulo == null
+                && ordenarPor == Campo.ID && !decrescente;
+    }
+
+    /**
+     * Verifica se a mudança de uma tarefa pode alterar sua posição no resultado desta consulta
+     * (ou fazê-la entrar ou sair dele), ou seja, se algum campo filtrado ou ordenado mudou.
+     *
+     * @param antes A tarefa antes da mudança.
+     * @param depois A tarefa depois da mudança.
+     * @return {@code true} se a tarefa pode ter mudado de posição.
+     */
+    public boolean afetaPosicao(Tarefa antes, Tarefa depois) {
+        return ((prioridade != null || prioridadeMinima != null) && antes.getPrioridade() != depois.getPrioridade())
+                || (concluida != null && antes.isConcluida() != depois.isConcluida())
+                || (prefixoTitulo != null && !Objects.equals(antes.getTitulo(), depois.getTitulo()))
+                || !Objects.equals(ordenarPor.valorEm(antes), ordenarPor.valorEm(depois));
+    }
+}
@@ -0,0 +1,134 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.Arrays;
+
+/**
+ * @author Thierry
+ *
+ * Contagem das tarefas por prioridade e status, com os totais e as taxas de conclusão.
+ * Imutável: cada alteração cria uma instância nova, que pode ser compartilhada entre threads.
+ *
+ * Tarefas sem prioridade (ou com uma prioridade desconhecida) são contadas em uma faixa à parte,
+ * consultada com {@code prioridade == null}.
+ */
+public final class EstatisticasTarefas {
+
+    /** Prioridades pelo ordinal; a posição seguinte à última é a das tarefas sem prioridade. */
+    private static final Prioridade[] PRIORIDADES = Prioridade.values();
+
+    /** Nenhuma tarefa. */
+    public static final EstatisticasTarefas VAZIA = new EstatisticasTarefas(new long[(PRIORIDADES.length + 1) * 2]);
+
+    /** Contagens, na posição {@link #posicao}. */
+    private final long[] contagens;
+
+    private EstatisticasTarefas(long[] contagens) {
+        this.contagens = contagens;
+    }
+
+    /**
+     * @return Estas estatísticas com {@code quantidade} somada às tarefas de uma prioridade e status
+     * (negativa para subtrair).
+     */
+    public EstatisticasTarefas somar(Prioridade prioridade, boolean concluida, long quantidade) {
+        long[] novas = contagens.clone();
+        novas[posicao(prioridade, concluida)] += quantidade;
+        return new EstatisticasTarefas(novas);
+    }
+
+    /**
+     * @return Estas estatísticas com as contagens de {@code outras} somadas, faixa a faixa.
+     */
+    public EstatisticasTarefas somar(EstatisticasTarefas outras) {
+        long[] novas = contagens.clone();
+        for (int i = 0; i < novas.length; i++) {
+            novas[i] += outras.contagens[i];
+        }
+        return new EstatisticasTarefas(novas);
+    }
+
+    /**
+     * @param prioridade A prioridade, ou {@code null} para as tarefas sem prioridade.
+     * @param concluida O status.
+     * @return O número de tarefas com essa prioridade e esse status.
+     */
+    public long contar(Prioridade prioridade, boolean concluida) {
+        return contagens[posicao(prioridade, concluida)];
+    }
+
+    /**
+     * @param prioridade A prioridade, ou {@code null} para as tarefas sem prioridade.
+     * @return O número de tarefas com essa prioridade.
+     */
+    public long contar(Prioridade prioridade) {
+        return contar(prioridade, false) + contar(prioridade, true);
+    }
+
+    /**
+     * @return O número total de tarefas.
+     */
+    public long getTotal() {
+        return Arrays.stream(contagens).sum();
+    }
+
+    /**
+     * @return O número de tarefas concluídas.
+     */
+    public long getConcluidas() {
+        long total = 0;
+        for (int i = 1; i < contagens.length; i += 2) {
+            total += contagens[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return O número de tarefas pendentes.
+     */
+    public long getPendentes() {
+        return getTotal() - getConcluidas();
+    }
+
+    /**
+     * @return A fração das tarefas que está concluída (de 0 a 1; 0 se não houver tarefas).
+     */
+    public double getTaxaConclusao() {
+        return taxa(getConcluidas(), getTotal());
+    }
+
+    /**
+     * @param prioridade A prioridade, ou {@code null} para as tarefas sem prioridade.
+     * @return A fração das tarefas dessa prioridade que está concluída (de 0 a 1).
+     */
+    public double getTaxaConclusao(Prioridade prioridade) {
+        return taxa(contar(prioridade, true), contar(prioridade));
+    }
+
+    @Override
+    public boolean equals(Object outro) {
+        return outro instanceof EstatisticasTarefas estatisticas && Arrays.equals(contagens, estatisticas.contagens);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(contagens);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder("EstatisticasTarefas{");
+        for (Prioridade prioridade : PRIORIDADES) {
+            texto.append(prioridade).append("=").append(contar(prioridade, false)).append("/").append(contar(prioridade, true)).append(", ");
+        }
+        return texto.append("sem prioridade=").append(contar(null, false)).append("/").append(contar(null, true))
+                .append(", total=").append(getTotal()).append("}").toString();
+    }
+
+    private static double taxa(long parte, long total) {
+        return total == 0 ? 0 : (double) parte / total;
+    }
+
+    private static int posicao(Prioridade prioridade, boolean concluida) {
+        return (prioridade == null ? PRIORIDADES.length : prioridade.ordinal()) * 2 + (concluida ? 1 : 0);
+    }
+}
@@ -0,0 +1,210 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+
+/**
+ * @author Thierry
+ *
+ * Fila de escrita atrasada (write-behind) para atualizações de tarefas.
+ * Em vez de enviar um {@code updateOne} a cada clique, as alterações ficam em memória,
+ * agrupadas pelo ID da tarefa: vários {@code $set} seguidos sobre a mesma tarefa são mesclados
+ * em um só. A fila é gravada com um único {@code bulkWrite} quando atinge um número de tarefas,
+ * quando passa um intervalo de tempo, ou quando a aplicação é encerrada.
+ */
+public class FilaEscritaAtrasada implements AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(FilaEscritaAtrasada.class);
+
+    /**
+     * Alterações pendentes de uma tarefa.
+     *
+     * @param campos Os campos acumulados para o {@code $set}.
+     * @param conclusao Concluído quando as alterações forem gravadas (ou falharem).
+     */
+    private record Pendente(Document campos, CompletableFuture<Void> conclusao) { }
+
+    /** Armazenamento usado para gravar as alterações acumuladas. */
+    private final TarefaRepository repositorio;
+
+    /** Número de tarefas pendentes que dispara uma gravação imediata. */
+    private final int limiteTarefas;
+
+    /** Alterações pendentes, indexadas pelo ID da tarefa. Protegido por {@code this}. */
+    private Map<String, Pendente> pendentes = new LinkedHashMap<>();
+
+    /** Indica se uma gravação por tamanho já foi agendada e ainda não rodou. Protegido por {@code this}. */
+    private boolean gravacaoAgendada;
+
+    /** Indica se a fila já foi fechada. Protegido por {@code this}. */
+    private boolean fechada;
+
+    /** Thread única que grava a fila, periodicamente ou quando ela enche. */
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fila-escrita-atrasada");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Cria a fila e inicia a gravação periódica.
+     * Também registra, em {@link ConexaoMongo#aoEncerrar}, a gravação do que estiver pendente
+     * quando a JVM for encerrada (antes de o cliente MongoDB ser fechado).
+     *
+     * @param repositorio O armazenamento usado para gravar as alterações.
+     * @param limiteTarefas Número de tarefas pendentes que dispara uma gravação imediata.
+     * @param intervaloMs Intervalo máximo, em milissegundos, que uma alteração fica na fila.
+     */
+    public FilaEscritaAtrasada(TarefaRepository repositorio, int limiteTarefas, long intervaloMs) {
+        this.repositorio = repositorio;
+        this.limiteTarefas = limiteTarefas;
+        agendador.scheduleWithFixedDelay(this::descarregar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        // Roda antes de o cliente MongoDB ser fechado no encerramento da JVM.
+        ConexaoMongo.aoEncerrar(this::close);
+    }
+
+    /**
+     * Enfileira a alteração do status de conclusão de uma tarefa.
+     *
+     * @param id O ID (String hexadecimal) da tarefa.
+     * @param concluida O novo status de conclusão.
+     * @return Um future concluído quando a alteração for gravada no banco.
+     */
+    public CompletableFuture<Void> enfileirarStatus(String id, boolean concluida) {
+        return enfileirar(id, new Document("concluida", concluida));
+    }
+
+    /**
+     * Enfileira a alteração dos detalhes de uma tarefa.
+     * Assim como em {@link TarefaRepository#atualizarTarefa}, apenas os valores não vazios são alterados.
+     *
+     * @param id O ID (String hexadecimal) da tarefa.
+     * @param novoTitulo O novo título.
+     * @param novaDescricao A nova descrição.
+     * @param novaPrioridade A nova prioridade.
+     * @return Um future concluído quando a alteração for gravada no banco.
+     */
+    public CompletableFuture<Void> enfileirarDetalhes(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        Document campos = new Document();
+        if (novoTitulo != null && !novoTitulo.trim().isEmpty()) {
+            campos.append("titulo", novoTitulo.trim());
+        }
+        if (novaDescricao != null && !novaDescricao.trim().isEmpty()) {
+            campos.append("descricao", novaDescricao.trim());
+        }
+        if (novaPrioridade != null) {
+            campos.append("prioridade", novaPrioridade.getCodigo());
+        }
+        if (campos.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return enfileirar(id, campos);
+    }
+
+    /**
+     * Descarta as alterações pendentes de uma tarefa, por exemplo porque ela foi excluída.
+     * O future dessas alterações é concluído normalmente, pois não há mais nada a gravar.
+     *
+     * @param id O ID (String hexadecimal) da tarefa.
+     */
+    public void descartar(String id) {
+        Pendente pendente;
+        synchronized (this) {
+            pendente = pendentes.remove(id);
+        }
+        if (pendente != null) {
+            pendente.conclusao().complete(null);
+        }
+    }
+
+    /**
+     * @param id O ID (String hexadecimal) da tarefa.
+     * @return {@code true} se a tarefa tiver alterações na fila, ainda não enviadas ao banco.
+     */
+    public synchronized boolean isPendente(String id) {
+        return pendentes.containsKey(id);
+    }
+
+    /**
+     * Mescla os campos com as alterações já pendentes da tarefa.
+     * Campos repetidos ficam com o valor mais recente.
+     */
+    private CompletableFuture<Void> enfileirar(String id, Document campos) {
+        synchronized (this) {
+            if (fechada) {
+                return CompletableFuture.failedFuture(new IllegalStateException("A fila de escrita atrasada já foi fechada."));
+            }
+            Pendente pendente = pendentes.computeIfAbsent(id, chave -> new Pendente(new Document(), new CompletableFuture<>()));
+            pendente.campos().putAll(campos);
+            if (pendentes.size() >= limiteTarefas && !gravacaoAgendada) {
+                gravacaoAgendada = true;
+                agendador.execute(this::descarregar);
+            }
+            return pendente.conclusao();
+        }
+    }
+
+    /**
+     * Grava imediatamente todas as alterações pendentes com um único {@code bulkWrite}.
+     * Alterações enfileiradas durante a gravação ficam para a próxima.
+     */
+    public void descarregar() {
+        Map<String, Pendente> lote;
+        synchronized (this) {
+            gravacaoAgendada = false;
+            if (pendentes.isEmpty()) {
+                return;
+            }
+            lote = pendentes;
+            pendentes = new LinkedHashMap<>();
+        }
+
+        Map<String, Document> camposPorId = new LinkedHashMap<>();
+        lote.forEach((id, pendente) -> camposPorId.put(id, pendente.campos()));
+        try {
+            ResultadoLote resultado = repositorio.atualizarCamposEmLote(camposPorId, OpcoesLote.PADRAO);
+            for (int i = 0; i < resultado.getTotal(); i++) {
+                CompletableFuture<Void> conclusao = lote.get(resultado.getId(i)).conclusao();
+                if (resultado.getSituacao(i) == ResultadoLote.Situacao.SUCESSO) {
+                    conclusao.complete(null);
+                } else {
+                    conclusao.completeExceptionally(new IllegalStateException("Falha ao gravar a tarefa " + resultado.getId(i)
+                            + ": " + resultado.getSituacao(i) + (resultado.getMensagem(i) != null ? " - " + resultado.getMensagem(i) : "")));
+                }
+            }
+        } catch (RuntimeException e) {
+            REGISTRO.erro("gravar", "tarefas", lote.size(), "erro", e.getMessage());
+            for (Pendente pendente : lote.values()) {
+                pendente.conclusao().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Para a gravação periódica e grava o que ainda estiver pendente.
+     * Pode ser chamado mais de uma vez (pela janela e pelo gancho de desligamento).
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (fechada) {
+                return;
+            }
+            fechada = true;
+        }
+        agendador.shutdown();
+        try {
+            // Espera uma gravação que já esteja em curso antes de gravar o restante nesta thread.
+            agendador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        descarregar();
+    }
+}
@@ -0,0 +1,173 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Thierry
+ *
+ * Histograma de latências com faixas log-lineares, no estilo do HdrHistogram: cada potência de 2
+ * é dividida em 64 faixas iguais, então qualquer valor, de 1 ns a horas, é registrado com erro
+ * relativo de no máximo 1/64 (cerca de 1,6%) em memória fixa (cerca de 30 KB).
+ *
+ * O registro não usa travas (um incremento atômico na faixa), e pode ser feito por várias
+ * threads ao mesmo tempo. Os percentis são calculados sobre uma cópia das contagens.
+ */
+public class HistogramaLatencia {
+
+    /** Bits de precisão de cada potência de 2: 2^6 = 64 faixas por potência. */
+    private static final int BITS_SUBFAIXA = 6;
+
+    /** Número de faixas por potência de 2. */
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+
+    /** Valores abaixo deste limite têm uma faixa cada (são exatos). */
+    private static final int LIMITE_EXATO = SUBFAIXAS * 2;
+
+    /** Número total de faixas, suficiente para qualquer {@code long} positivo. */
+    private static final int TOTAL_FAIXAS = indiceDe(Long.MAX_VALUE) + 1;
+
+    /** Contagem de cada faixa. */
+    private final AtomicLongArray contagens = new AtomicLongArray(TOTAL_FAIXAS);
+
+    /** Número total de valores registrados. */
+    private final LongAdder total = new LongAdder();
+
+    /** Soma dos valores registrados, em nanossegundos. */
+    private final LongAdder soma = new LongAdder();
+
+    /** Maior valor registrado. */
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra uma duração.
+     *
+     * @param nanos A duração, em nanossegundos. Valores negativos contam como zero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(nanos, 0);
+        contagens.incrementAndGet(indiceDe(valor));
+        total.increment();
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Tira uma cópia consistente o bastante para relatórios (as faixas são lidas uma a uma,
+     * sem parar quem está registrando).
+     *
+     * @return A cópia das contagens.
+     */
+    public Instantaneo instantaneo() {
+        long[] copia = new long[TOTAL_FAIXAS];
+        long contados = 0;
+        for (int i = 0; i < TOTAL_FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            contados += copia[i];
+        }
+        return new Instantaneo(copia, contados, soma.sum(), maximo.get());
+    }
+
+    /**
+     * Cópia das contagens de um histograma em um instante.
+     */
+    public static final class Instantaneo {
+
+        private final long[] contagens;
+        private final long total;
+        private final long soma;
+        private final long maximo;
+
+        private Instantaneo(long[] contagens, long total, long soma, long maximo) {
+            this.contagens = contagens;
+            this.total = total;
+            this.soma = soma;
+            this.maximo = maximo;
+        }
+
+        /** @return O número de valores registrados. */
+        public long getTotal() {
+            return total;
+        }
+
+        /** @return A soma dos valores, em nanossegundos. */
+        public long getSoma() {
+            return soma;
+        }
+
+        /** @return O maior valor registrado, em nanossegundos. */
+        public long getMaximo() {
+            return maximo;
+        }
+
+        /** @return A média, em nanossegundos, ou 0 se nada foi registrado. */
+        public double getMedia() {
+            return total == 0 ? 0 : (double) soma / total;
+        }
+
+        /**
+         * Calcula um percentil. O valor devolvido é o limite superior da faixa em que ele cai,
+         * de modo que o percentil real nunca é maior que o informado.
+         *
+         * @param percentil O percentil, de 0 a 100 (por exemplo, 99.9).
+         * @return O valor do percentil, em nanossegundos, ou 0 se nada foi registrado.
+         */
+        public long percentil(double percentil) {
+            if (total == 0) {
+                return 0;
+            }
+            long posicao = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+            long acumulado = 0;
+            for (int i = 0; i < contagens.length; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= posicao) {
+                    return Math.min(limiteSuperior(i), maximo);
+                }
+            }
+            return maximo;
+        }
+
+        /**
+         * Conta os valores menores ou iguais a um limite (com a precisão das faixas),
+         * como o {@code le} de um histograma do Prometheus.
+         *
+         * @param limiteNanos O limite, em nanossegundos.
+         * @return O número de valores registrados até o limite.
+         */
+        public long contarAte(long limiteNanos) {
+            long contados = 0;
+            for (int i = 0; i < contagens.length && limiteSuperior(i) <= limiteNanos; i++) {
+                contados += contagens[i];
+            }
+            return contados;
+        }
+    }
+
+    /**
+     * Calcula a faixa de um valor: exata abaixo de {@link #LIMITE_EXATO}; acima, os 6 bits
+     * seguintes ao bit mais alto escolhem uma das 64 faixas da potência de 2.
+     */
+    private static int indiceDe(long valor) {
+        if (valor < LIMITE_EXATO) {
+            return (int) valor;
+        }
+        int deslocamento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBFAIXA;
+        int topo = (int) (valor >>> deslocamento);
+        return LIMITE_EXATO + (deslocamento - 1) * SUBFAIXAS + (topo - SUBFAIXAS);
+    }
+
+    /**
+     * @return O maior valor que cai na faixa.
+     */
+    private static long limiteSuperior(int indice) {
+        if (indice < LIMITE_EXATO) {
+            return indice;
+        }
+        int deslocamento = (indice - LIMITE_EXATO) / SUBFAIXAS + 1;
+        long topo = (indice - LIMITE_EXATO) % SUBFAIXAS + SUBFAIXAS;
+        long limite = ((topo + 1) << deslocamento) - 1;
+        // A última faixa passa do maior long.
+        return limite < 0 ? Long.MAX_VALUE : limite;
+    }
+}
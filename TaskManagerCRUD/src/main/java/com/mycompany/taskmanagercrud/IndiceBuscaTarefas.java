@@ -0,0 +1,298 @@
+package com.mycompany.taskmanagercrud;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * @author Thierry
+ *
+ * Índice invertido em memória sobre o título e a descrição das tarefas, usado para a busca
+ * enquanto o usuário digita (type-ahead), sem ir ao banco.
+ *
+ * Cada termo aponta para as tarefas que o contêm, com um peso (termos do título valem mais
+ * que os da descrição). Os termos ficam em um {@link TreeMap}, de modo que cada palavra
+ * digitada pode ser buscada como prefixo. Termos são normalizados: minúsculas e sem acentos.
+ *
+ * O índice é carregado uma vez a partir do banco e depois mantido incrementalmente pelos
+ * eventos do {@link TarefaRepository} (é um {@link OuvinteTarefas}). Leituras e escritas são
+ * protegidas por um {@link ReadWriteLock}, então várias buscas podem rodar ao mesmo tempo.
+ */
+public class IndiceBuscaTarefas implements OuvinteTarefas {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(IndiceBuscaTarefas.class);
+
+    /** Peso de um termo encontrado no título. */
+    private static final int PESO_TITULO = 3;
+
+    /** Peso de um termo encontrado na descrição. */
+    private static final int PESO_DESCRICAO = 1;
+
+    /** Quantas tarefas são lidas de cada vez na carga e indexadas com a trava obtida uma vez só. */
+    private static final int LOTE_CARGA = 1000;
+
+    /** Separa o texto em palavras (qualquer sequência de letras ou dígitos). */
+    private static final Pattern SEPARADOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Marcas de acentuação, removidas após a decomposição Unicode. */
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+
+    /** Armazenamento usado na carga inicial. */
+    private final TarefaRepository repositorio;
+
+    /** Termo -> (ID da tarefa -> peso do termo na tarefa). */
+    private final NavigableMap<String, Map<String, Integer>> termos = new TreeMap<>();
+
+    /**
+     * Cópias das tarefas indexadas, pelo ID. Guardadas para exibir os resultados e para desindexá-las;
+     * são cópias porque a interface pode alterar as instâncias originais.
+     */
+    private final Map<String, Tarefa> tarefas = new HashMap<>();
+
+    /**
+     * IDs alterados por eventos enquanto a carga inicial está em andamento.
+     * A carga não sobrescreve essas tarefas, pois já leu um estado possivelmente antigo delas.
+     * É {@code null} fora da carga.
+     */
+    private Set<String> alteradasDuranteCarga;
+
+    /** Protege {@link #termos}, {@link #tarefas} e {@link #alteradasDuranteCarga}. */
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+
+    /**
+     * Cria o índice e passa a ouvir as alterações feitas pelo armazenamento.
+     * O índice começa vazio; chame {@link #carregar()} para preenchê-lo.
+     *
+     * @param repositorio O armazenamento das tarefas.
+     */
+    public IndiceBuscaTarefas(TarefaRepository repositorio) {
+        this.repositorio = repositorio;
+        repositorio.adicionarOuvinte(this);
+    }
+
+    /**
+     * Carrega todas as tarefas do banco no índice. Operação bloqueante, que deve ser feita
+     * fora da EDT. Alterações que chegarem durante a carga prevalecem sobre o que foi lido.
+     *
+     * As tarefas são lidas em fluxo e indexadas em lotes de {@value #LOTE_CARGA}: a coleção nunca
+     * fica inteira na memória, e as buscas só esperam enquanto cada lote é indexado.
+     */
+    public void carregar() {
+        trava.writeLock().lock();
+        try {
+            alteradasDuranteCarga = new HashSet<>();
+        } finally {
+            trava.writeLock().unlock();
+        }
+        List<Tarefa> lote = new ArrayList<>(LOTE_CARGA);
+        long[] lidas = {0};
+        try (Stream<Tarefa> todas = repositorio.abrirFluxoTarefas(ConsultaTarefas.TODAS, LOTE_CARGA)) {
+            todas.forEach(tarefa -> {
+                lote.add(tarefa);
+                if (lote.size() == LOTE_CARGA) {
+                    lidas[0] += indexarDaCarga(lote);
+                }
+            });
+        }
+        lidas[0] += indexarDaCarga(lote);
+        trava.writeLock().lock();
+        try {
+            alteradasDuranteCarga = null;
+        } finally {
+            trava.writeLock().unlock();
+        }
+        REGISTRO.info("carregar", "tarefas", lidas[0], "termos", termos.size());
+    }
+
+    /**
+     * Indexa e esvazia um lote da carga, exceto as tarefas já alteradas por eventos.
+     *
+     * @return O tamanho do lote.
+     */
+    private int indexarDaCarga(List<Tarefa> lote) {
+        int tamanho = lote.size();
+        trava.writeLock().lock();
+        try {
+            for (Tarefa tarefa : lote) {
+                if (!alteradasDuranteCarga.contains(tarefa.getId())) {
+                    indexar(tarefa);
+                }
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+        lote.clear();
+        return tamanho;
+    }
+
+    /**
+     * Busca tarefas que contenham todas as palavras digitadas, cada uma como prefixo de um termo
+     * (o usuário ainda pode estar digitando). Os resultados vêm do mais para o menos relevante.
+     *
+     * @param texto O texto digitado.
+     * @param limite O número máximo de tarefas a retornar.
+     * @return As tarefas encontradas.
+     */
+    public List<Tarefa> buscar(String texto, int limite) {
+        List<String> palavras = tokenizar(texto);
+        if (palavras.isEmpty()) {
+            return List.of();
+        }
+        trava.readLock().lock();
+        try {
+            Map<String, Integer> pontuacao = null;
+            for (String palavra : palavras) {
+                Map<String, Integer> encontradas = pontuar(palavra);
+                if (pontuacao == null) {
+                    pontuacao = encontradas;
+                } else {
+                    // Interseção: a tarefa precisa conter todas as palavras.
+                    pontuacao.keySet().retainAll(encontradas.keySet());
+                    pontuacao.replaceAll((id, pontos) -> pontos + encontradas.get(id));
+                }
+                if (pontuacao.isEmpty()) {
+                    return List.of();
+                }
+            }
+            List<Map.Entry<String, Integer>> ordenadas = new ArrayList<>(pontuacao.entrySet());
+            ordenadas.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            List<Tarefa> resultado = new ArrayList<>(Math.min(limite, ordenadas.size()));
+            for (int i = 0; i < ordenadas.size() && resultado.size() < limite; i++) {
+                resultado.add(tarefas.get(ordenadas.get(i).getKey()));
+            }
+            return resultado;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return O número de tarefas indexadas.
+     */
+    public int getTotalTarefas() {
+        trava.readLock().lock();
+        try {
+            return tarefas.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void tarefaAdicionada(Tarefa tarefa) {
+        reindexar(tarefa.getId(), tarefa);
+    }
+
+    @Override
+    public void tarefaAtualizada(Tarefa anterior, Tarefa tarefa) {
+        reindexar(tarefa.getId(), tarefa);
+    }
+
+    @Override
+    public void tarefaExcluida(Tarefa tarefa) {
+        reindexar(tarefa.getId(), null);
+    }
+
+    /**
+     * Substitui a tarefa no índice pelo seu novo estado ({@code null} apenas a remove).
+     */
+    private void reindexar(String id, Tarefa tarefa) {
+        trava.writeLock().lock();
+        try {
+            if (alteradasDuranteCarga != null) {
+                alteradasDuranteCarga.add(id);
+            }
+            desindexar(id);
+            if (tarefa != null) {
+                indexar(tarefa);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Soma, para cada tarefa, o peso dos termos que começam com a palavra.
+     * Deve ser chamado com a trava de leitura.
+     */
+    private Map<String, Integer> pontuar(String palavra) {
+        Map<String, Integer> pontuacao = new HashMap<>();
+        for (Map<String, Integer> ocorrencias : termos.subMap(palavra, true, palavra + Character.MAX_VALUE, true).values()) {
+            ocorrencias.forEach((id, peso) -> pontuacao.merge(id, peso, Integer::sum));
+        }
+        return pontuacao;
+    }
+
+    /**
+     * Adiciona os termos de uma tarefa ao índice. Deve ser chamado com a trava de escrita.
+     */
+    private void indexar(Tarefa original) {
+        Tarefa tarefa = new Tarefa(original.getTitulo(), original.getDescricao(), original.getPrioridade());
+        tarefa.setObjectId(original.getObjectId());
+        tarefa.setConcluida(original.isConcluida());
+        tarefas.put(tarefa.getId(), tarefa);
+        pesosDosTermos(tarefa).forEach((termo, peso) ->
+                termos.computeIfAbsent(termo, t -> new HashMap<>()).put(tarefa.getId(), peso));
+    }
+
+    /**
+     * Remove os termos de uma tarefa do índice. Deve ser chamado com a trava de escrita.
+     */
+    private void desindexar(String id) {
+        Tarefa anterior = tarefas.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        for (String termo : pesosDosTermos(anterior).keySet()) {
+            Map<String, Integer> ocorrencias = termos.get(termo);
+            if (ocorrencias != null) {
+                ocorrencias.remove(id);
+                if (ocorrencias.isEmpty()) {
+                    termos.remove(termo);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula o peso de cada termo de uma tarefa.
+     */
+    private static Map<String, Integer> pesosDosTermos(Tarefa tarefa) {
+        Map<String, Integer> pesos = new HashMap<>();
+        for (String termo : tokenizar(tarefa.getTitulo())) {
+            pesos.merge(termo, PESO_TITULO, Integer::sum);
+        }
+        for (String termo : tokenizar(tarefa.getDescricao())) {
+            pesos.merge(termo, PESO_DESCRICAO, Integer::sum);
+        }
+        return pesos;
+    }
+
+    /**
+     * Separa um texto em termos normalizados (minúsculas e sem acentos).
+     */
+    static List<String> tokenizar(String texto) {
+        List<String> palavras = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return palavras;
+        }
+        String normalizado = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        for (String palavra : SEPARADOR.split(normalizado.toLowerCase())) {
+            if (!palavra.isEmpty()) {
+                palavras.add(palavra);
+            }
+        }
+        return palavras;
+    }
+}
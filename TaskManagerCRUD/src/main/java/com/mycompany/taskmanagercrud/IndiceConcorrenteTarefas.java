@@ -0,0 +1,538 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.concurrent.locks.ReentrantLock;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Índice concorrente de tarefas em memória, pelo {@link ObjectId}, com índices secundários por
+ * prioridade e por status em bitsets. Responde consultas como "todas as tarefas Alta pendentes"
+ * combinando palavras de 64 bits, sem olhar cada tarefa; contagens sem filtro de título nem
+ * chegam a ler as tarefas ({@link Long#bitCount}).
+ *
+ * As tarefas são divididas em {@link #FAIXAS} faixas pelo hash do ID. Cada faixa tem uma trava
+ * própria, usada só pelas gravações, e um {@link Segmento} imutável: os IDs ordenados, as tarefas
+ * nas mesmas posições e os bitsets calculados a partir delas. Uma gravação monta um segmento novo
+ * (cópia da faixa com a alteração) e o publica em um campo {@code volatile}; assim, gravações em
+ * faixas diferentes não disputam trava, e leituras nunca travam.
+ *
+ * O custo de uma gravação é proporcional ao tamanho da faixa (o total dividido por {@link #FAIXAS}),
+ * não ao total; é a troca feita para que leituras e {@link Instantaneo instantâneos} sejam livres de trava.
+ * Uma substituição copia os arrays da faixa, mas só acerta os bits que mudaram. Cargas grandes
+ * devem usar {@link #inserirSeAusentes}, que monta o segmento de cada faixa uma única vez por lote
+ * em vez de uma vez por tarefa.
+ *
+ * As tarefas guardadas são compartilhadas com os leitores e não devem ser alteradas:
+ * quem grava entrega uma instância nova.
+ */
+public class IndiceConcorrenteTarefas {
+
+    /** Número de faixas (potência de 2). */
+    static final int FAIXAS = 256;
+
+    /** Prioridades pelo ordinal, sem criar o array de {@link Prioridade#values()} a cada consulta. */
+    private static final Prioridade[] PRIORIDADES = Prioridade.values();
+
+    /**
+     * Conteúdo imutável de uma faixa.
+     */
+    private static final class Segmento {
+
+        static final Segmento VAZIO = new Segmento(new ObjectId[0], new Tarefa[0]);
+
+        /** IDs em ordem crescente. */
+        final ObjectId[] ids;
+
+        /** Tarefa de cada ID, na mesma posição. */
+        final Tarefa[] tarefas;
+
+        /** Um bitset por prioridade (pelo ordinal): o bit {@code i} indica a tarefa na posição {@code i}. */
+        final long[][] porPrioridade;
+
+        /** Bitset das tarefas concluídas. */
+        final long[] concluidas;
+
+        private Segmento(ObjectId[] ids, Tarefa[] tarefas, long[][] porPrioridade, long[] concluidas) {
+            this.ids = ids;
+            this.tarefas = tarefas;
+            this.porPrioridade = porPrioridade;
+            this.concluidas = concluidas;
+        }
+
+        /** Cria o segmento calculando todos os bitsets a partir das tarefas. */
+        Segmento(ObjectId[] ids, Tarefa[] tarefas) {
+            this.ids = ids;
+            this.tarefas = tarefas;
+            int palavras = (ids.length + 63) >>> 6;
+            this.porPrioridade = new long[PRIORIDADES.length][palavras];
+            this.concluidas = new long[palavras];
+            for (int i = 0; i < tarefas.length; i++) {
+                long bit = 1L << i;
+                if (tarefas[i].getPrioridade() != null) {
+                    porPrioridade[tarefas[i].getPrioridade().ordinal()][i >>> 6] |= bit;
+                }
+                if (tarefas[i].isConcluida()) {
+                    concluidas[i >>> 6] |= bit;
+                }
+            }
+        }
+
+        /**
+         * @return Os bits, na palavra {@code w}, das tarefas que atendem aos filtros de prioridade
+         * e de status da consulta (o filtro de título não é avaliado aqui).
+         */
+        long selecionar(int w, ConsultaTarefas consulta) {
+            int restantes = ids.length - (w << 6);
+            long bits = restantes >= 64 ? -1L : (1L << restantes) - 1;
+            if (consulta.prioridade() != null) {
+                bits &= porPrioridade[consulta.prioridade().ordinal()][w];
+            }
+            if (consulta.prioridadeMinima() != null) {
+                long faixa = 0;
+                for (Prioridade prioridade : PRIORIDADES) {
+                    if (prioridade.getCodigo() >= consulta.prioridadeMinima().getCodigo()) {
+                        faixa |= porPrioridade[prioridade.ordinal()][w];
+                    }
+                }
+                bits &= faixa;
+            }
+            if (consulta.concluida() != null) {
+                bits &= consulta.concluida() ? concluidas[w] : ~concluidas[w];
+            }
+            return bits;
+        }
+
+        /**
+         * @return Uma cópia do segmento com a tarefa na posição indicada por {@code posicao}
+         * (o resultado de {@link Arrays#binarySearch}) inserida, substituída ou, se {@code nova}
+         * for {@code null}, removida.
+         */
+        Segmento com(int posicao, ObjectId id, Tarefa nova) {
+            if (posicao >= 0 && nova != null) {
+                return substituida(posicao, nova);
+            }
+            if (posicao >= 0) {
+                ObjectId[] idsNovos = new ObjectId[ids.length - 1];
+                Tarefa[] tarefasNovas = new Tarefa[ids.length - 1];
+                System.arraycopy(ids, 0, idsNovos, 0, posicao);
+                System.arraycopy(ids, posicao + 1, idsNovos, posicao, ids.length - posicao - 1);
+                System.arraycopy(tarefas, 0, tarefasNovas, 0, posicao);
+                System.arraycopy(tarefas, posicao + 1, tarefasNovas, posicao, ids.length - posicao - 1);
+                return new Segmento(idsNovos, tarefasNovas);
+            }
+            int insercao = -posicao - 1;
+            ObjectId[] idsNovos = new ObjectId[ids.length + 1];
+            Tarefa[] tarefasNovas = new Tarefa[ids.length + 1];
+            System.arraycopy(ids, 0, idsNovos, 0, insercao);
+            System.arraycopy(ids, insercao, idsNovos, insercao + 1, ids.length - insercao);
+            System.arraycopy(tarefas, 0, tarefasNovas, 0, insercao);
+            System.arraycopy(tarefas, insercao, tarefasNovas, insercao + 1, ids.length - insercao);
+            idsNovos[insercao] = id;
+            tarefasNovas[insercao] = nova;
+            return new Segmento(idsNovos, tarefasNovas);
+        }
+
+        /**
+         * @return Uma cópia do segmento com a tarefa da posição trocada. Os IDs são compartilhados,
+         * e só os bitsets cujo bit muda são copiados e acertados; os outros também são compartilhados.
+         */
+        private Segmento substituida(int posicao, Tarefa nova) {
+            Tarefa antiga = tarefas[posicao];
+            Tarefa[] tarefasNovas = tarefas.clone();
+            tarefasNovas[posicao] = nova;
+            int w = posicao >>> 6;
+            long bit = 1L << posicao;
+            long[][] prioridadesNovas = porPrioridade;
+            if (antiga.getPrioridade() != nova.getPrioridade()) {
+                prioridadesNovas = porPrioridade.clone();
+                if (antiga.getPrioridade() != null) {
+                    int ordinal = antiga.getPrioridade().ordinal();
+                    prioridadesNovas[ordinal] = porPrioridade[ordinal].clone();
+                    prioridadesNovas[ordinal][w] &= ~bit;
+                }
+                if (nova.getPrioridade() != null) {
+                    int ordinal = nova.getPrioridade().ordinal();
+                    prioridadesNovas[ordinal] = porPrioridade[ordinal].clone();
+                    prioridadesNovas[ordinal][w] |= bit;
+                }
+            }
+            long[] concluidasNovas = concluidas;
+            if (antiga.isConcluida() != nova.isConcluida()) {
+                concluidasNovas = concluidas.clone();
+                concluidasNovas[w] ^= bit;
+            }
+            return new Segmento(ids, tarefasNovas, prioridadesNovas, concluidasNovas);
+        }
+
+        /**
+         * @return Uma cópia do segmento com várias tarefas novas, de IDs ausentes, intercaladas na
+         * ordem dos IDs; os bitsets são calculados uma vez só.
+         *
+         * @param novas As tarefas novas, em ordem crescente de ID e sem IDs repetidos.
+         */
+        Segmento comTodas(List<Tarefa> novas) {
+            int total = ids.length + novas.size();
+            ObjectId[] idsNovos = new ObjectId[total];
+            Tarefa[] tarefasNovas = new Tarefa[total];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < total; k++) {
+                if (j == novas.size() || (i < ids.length && ids[i].compareTo(novas.get(j).getObjectId()) < 0)) {
+                    idsNovos[k] = ids[i];
+                    tarefasNovas[k] = tarefas[i++];
+                } else {
+                    tarefasNovas[k] = novas.get(j++);
+                    idsNovos[k] = tarefasNovas[k].getObjectId();
+                }
+            }
+            return new Segmento(idsNovos, tarefasNovas);
+        }
+    }
+
+    /**
+     * Uma faixa: a trava das gravações e o segmento atual.
+     */
+    private static final class Faixa {
+
+        final ReentrantLock trava = new ReentrantLock();
+
+        volatile Segmento segmento = Segmento.VAZIO;
+    }
+
+    /**
+     * Cópia, feita sem trava, do estado de todas as faixas em um instante. Cada tarefa aparece uma
+     * única vez, em um estado que ela realmente teve; gravações feitas depois não são vistas.
+     * Faixas diferentes podem ter sido lidas em instantes ligeiramente diferentes.
+     */
+    public static final class Instantaneo {
+
+        private final Segmento[] segmentos;
+
+        private Instantaneo(Segmento[] segmentos) {
+            this.segmentos = segmentos;
+        }
+
+        /**
+         * @return O número de tarefas.
+         */
+        public int tamanho() {
+            int total = 0;
+            for (Segmento segmento : segmentos) {
+                total += segmento.ids.length;
+            }
+            return total;
+        }
+
+        /**
+         * Entrega as tarefas que atendem aos filtros da consulta, em qualquer ordem. Os filtros de
+         * prioridade e status usam os bitsets; só o de título olha cada tarefa.
+         *
+         * @param consulta A consulta (apenas os filtros são usados).
+         * @param acao Recebe cada tarefa; as tarefas não devem ser alteradas.
+         */
+        public void percorrer(ConsultaTarefas consulta, Consumer<Tarefa> acao) {
+            for (Segmento segmento : segmentos) {
+                for (int w = 0; w < segmento.concluidas.length; w++) {
+                    long bits = segmento.selecionar(w, consulta);
+                    while (bits != 0) {
+                        Tarefa tarefa = segmento.tarefas[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                        if (consulta.prefixoTitulo() == null || consulta.aceita(tarefa)) {
+                            acao.accept(tarefa);
+                        }
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param consulta A consulta (apenas os filtros são usados).
+         * @return O número de tarefas que atendem aos filtros.
+         */
+        public long contar(ConsultaTarefas consulta) {
+            if (consulta.prefixoTitulo() != null) {
+                long[] total = {0};
+                percorrer(consulta, tarefa -> total[0]++);
+                return total[0];
+            }
+            long total = 0;
+            for (Segmento segmento : segmentos) {
+                for (int w = 0; w < segmento.concluidas.length; w++) {
+                    total += Long.bitCount(segmento.selecionar(w, consulta));
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Conta as tarefas por prioridade e status só com os bitsets, sem visitar as tarefas.
+         *
+         * @return As estatísticas deste instantâneo.
+         */
+        public EstatisticasTarefas estatisticas() {
+            EstatisticasTarefas estatisticas = EstatisticasTarefas.VAZIA;
+            for (boolean concluida : new boolean[]{false, true}) {
+                ConsultaTarefas porStatus = ConsultaTarefas.TODAS.comConcluida(concluida);
+                long comPrioridade = 0;
+                for (Prioridade prioridade : Prioridade.values()) {
+                    long quantidade = contar(porStatus.comPrioridade(prioridade));
+                    estatisticas = estatisticas.somar(prioridade, concluida, quantidade);
+                    comPrioridade += quantidade;
+                }
+                estatisticas = estatisticas.somar(null, concluida, contar(porStatus) - comPrioridade);
+            }
+            return estatisticas;
+        }
+
+        /**
+         * Lista uma página da consulta: as {@code limite} primeiras tarefas depois de {@code apos},
+         * na ordem da consulta. Só elas ficam em um heap; o resto não é ordenado.
+         *
+         * @param consulta A consulta (filtros e ordem).
+         * @param apos A última tarefa da página anterior, ou {@code null} para a primeira página.
+         * @param limite O tamanho máximo da página.
+         * @return As tarefas da página, que não devem ser alteradas.
+         */
+        public List<Tarefa> pagina(ConsultaTarefas consulta, Tarefa apos, int limite) {
+            return primeiras(consulta, consulta.comparador(), apos, limite);
+        }
+
+        /**
+         * Busca a tarefa em uma posição da consulta sem ordenar todas: o heap guarda só as tarefas
+         * até a posição, contadas do início ou do fim da consulta, o que estiver mais perto.
+         *
+         * @param consulta A consulta (filtros e ordem).
+         * @param posicao A posição, a partir de 0.
+         * @return A tarefa, que não deve ser alterada, ou {@code null} se a posição passar do fim.
+         */
+        public Tarefa naPosicao(ConsultaTarefas consulta, long posicao) {
+            long total = contar(consulta);
+            if (posicao < 0 || posicao >= total) {
+                return null;
+            }
+            boolean doInicio = posicao < total - posicao;
+            Comparator<Tarefa> ordem = doInicio ? consulta.comparador() : consulta.comparador().reversed();
+            List<Tarefa> primeiras = primeiras(consulta, ordem, null, (int) (doInicio ? posicao + 1 : total - posicao));
+            return primeiras.get(primeiras.size() - 1);
+        }
+
+        /**
+         * @return As {@code limite} primeiras tarefas da consulta na ordem dada, depois de {@code apos}.
+         */
+        private List<Tarefa> primeiras(ConsultaTarefas consulta, Comparator<Tarefa> ordem, Tarefa apos, int limite) {
+            if (limite <= 0) {
+                return new ArrayList<>();
+            }
+            // A maior das "limite" menores tarefas vistas até agora fica no topo.
+            PriorityQueue<Tarefa> menores = new PriorityQueue<>(limite + 1, ordem.reversed());
+            percorrer(consulta, tarefa -> {
+                if (apos != null && ordem.compare(tarefa, apos) <= 0) {
+                    return;
+                }
+                if (menores.size() < limite) {
+                    menores.add(tarefa);
+                } else if (ordem.compare(tarefa, menores.peek()) < 0) {
+                    menores.poll();
+                    menores.add(tarefa);
+                }
+            });
+            List<Tarefa> lista = new ArrayList<>(menores);
+            lista.sort(ordem);
+            return lista;
+        }
+    }
+
+    private final Faixa[] faixas = new Faixa[FAIXAS];
+
+    /**
+     * Cria um índice vazio.
+     */
+    public IndiceConcorrenteTarefas() {
+        for (int i = 0; i < FAIXAS; i++) {
+            faixas[i] = new Faixa();
+        }
+    }
+
+    /**
+     * Busca uma tarefa, sem trava.
+     *
+     * @param id O ID.
+     * @return A tarefa guardada (que não deve ser alterada), ou {@code null} se ela não existir.
+     */
+    public Tarefa obter(ObjectId id) {
+        Segmento segmento = faixaDe(id).segmento;
+        int posicao = Arrays.binarySearch(segmento.ids, id);
+        return posicao >= 0 ? segmento.tarefas[posicao] : null;
+    }
+
+    /**
+     * @return Um instantâneo de todas as tarefas, obtido sem trava.
+     */
+    public Instantaneo instantaneo() {
+        Segmento[] segmentos = new Segmento[FAIXAS];
+        for (int i = 0; i < FAIXAS; i++) {
+            segmentos[i] = faixas[i].segmento;
+        }
+        return new Instantaneo(segmentos);
+    }
+
+    /**
+     * @return O número de tarefas.
+     */
+    public int tamanho() {
+        return instantaneo().tamanho();
+    }
+
+    /**
+     * Guarda uma tarefa nova.
+     *
+     * @param tarefa A tarefa, com o ID preenchido. Passa a ser compartilhada com os leitores.
+     * @return {@code false} se já existir uma tarefa com o mesmo ID (nada é alterado).
+     */
+    public boolean inserirSeAusente(Tarefa tarefa) {
+        ObjectId id = tarefa.getObjectId();
+        Faixa faixa = faixaDe(id);
+        faixa.trava.lock();
+        try {
+            Segmento segmento = faixa.segmento;
+            int posicao = Arrays.binarySearch(segmento.ids, id);
+            if (posicao >= 0) {
+                return false;
+            }
+            faixa.segmento = segmento.com(posicao, id, tarefa);
+            return true;
+        } finally {
+            faixa.trava.unlock();
+        }
+    }
+
+    /**
+     * Guarda várias tarefas novas de uma vez. As tarefas são agrupadas por faixa, as faixas
+     * envolvidas são travadas (sempre na mesma ordem, sem risco de deadlock) e o segmento de cada
+     * uma é montado uma única vez: o custo é o de uma cópia por faixa, e não uma por tarefa.
+     *
+     * @param novas As tarefas, com o ID preenchido. Passam a ser compartilhadas com os leitores.
+     * @param pararNaPrimeiraFalha Se {@code true}, nenhuma tarefa depois da primeira recusada é guardada.
+     * @return Para cada tarefa, na mesma ordem, se ela foi guardada. É recusada a que tiver o ID de
+     * uma tarefa já existente ou de uma tarefa anterior da lista.
+     */
+    public boolean[] inserirSeAusentes(List<Tarefa> novas, boolean pararNaPrimeiraFalha) {
+        boolean[] guardadas = new boolean[novas.size()];
+        int[] faixaDe = new int[novas.size()];
+        boolean[] envolvidas = new boolean[FAIXAS];
+        for (int i = 0; i < novas.size(); i++) {
+            faixaDe[i] = indiceDaFaixa(novas.get(i).getObjectId());
+            envolvidas[faixaDe[i]] = true;
+        }
+        for (int f = 0; f < FAIXAS; f++) {
+            if (envolvidas[f]) {
+                faixas[f].trava.lock();
+            }
+        }
+        try {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            List<Tarefa>[] porFaixa = new List[FAIXAS];
+            Set<ObjectId> vistos = new HashSet<>();
+            for (int i = 0; i < novas.size(); i++) {
+                Tarefa tarefa = novas.get(i);
+                ObjectId id = tarefa.getObjectId();
+                if (Arrays.binarySearch(faixas[faixaDe[i]].segmento.ids, id) >= 0 || !vistos.add(id)) {
+                    if (pararNaPrimeiraFalha) {
+                        break;
+                    }
+                    continue;
+                }
+                if (porFaixa[faixaDe[i]] == null) {
+                    porFaixa[faixaDe[i]] = new ArrayList<>();
+                }
+                porFaixa[faixaDe[i]].add(tarefa);
+                guardadas[i] = true;
+            }
+            for (int f = 0; f < FAIXAS; f++) {
+                if (porFaixa[f] != null) {
+                    porFaixa[f].sort(Comparator.comparing(Tarefa::getObjectId));
+                    faixas[f].segmento = faixas[f].segmento.comTodas(porFaixa[f]);
+                }
+            }
+            return guardadas;
+        } finally {
+            for (int f = FAIXAS - 1; f >= 0; f--) {
+                if (envolvidas[f]) {
+                    faixas[f].trava.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Substitui uma tarefa atomicamente: nenhuma outra gravação na mesma tarefa acontece entre
+     * a leitura do estado atual e a publicação do novo.
+     *
+     * @param id O ID.
+     * @param alteracao Recebe o estado atual (que não deve ser alterado) e devolve uma instância
+     * nova, com o mesmo ID, ou {@code null} para desistir.
+     * @return O novo estado, ou {@code null} se a tarefa não existir ou a alteração desistir.
+     */
+    public Tarefa alterar(ObjectId id, UnaryOperator<Tarefa> alteracao) {
+        Faixa faixa = faixaDe(id);
+        faixa.trava.lock();
+        try {
+            Segmento segmento = faixa.segmento;
+            int posicao = Arrays.binarySearch(segmento.ids, id);
+            if (posicao < 0) {
+                return null;
+            }
+            Tarefa nova = alteracao.apply(segmento.tarefas[posicao]);
+            if (nova != null) {
+                faixa.segmento = segmento.com(posicao, id, nova);
+            }
+            return nova;
+        } finally {
+            faixa.trava.unlock();
+        }
+    }
+
+    /**
+     * Remove uma tarefa, se ela atender a uma condição.
+     *
+     * @param id O ID.
+     * @param condicao Avaliada sobre o estado atual, com a faixa travada.
+     * @return A tarefa removida, ou {@code null} se ela não existir ou não atender à condição.
+     */
+    public Tarefa remover(ObjectId id, Predicate<Tarefa> condicao) {
+        Faixa faixa = faixaDe(id);
+        faixa.trava.lock();
+        try {
+            Segmento segmento = faixa.segmento;
+            int posicao = Arrays.binarySearch(segmento.ids, id);
+            if (posicao < 0 || !condicao.test(segmento.tarefas[posicao])) {
+                return null;
+            }
+            Tarefa removida = segmento.tarefas[posicao];
+            faixa.segmento = segmento.com(posicao, id, null);
+            return removida;
+        } finally {
+            faixa.trava.unlock();
+        }
+    }
+
+    private Faixa faixaDe(ObjectId id) {
+        return faixas[indiceDaFaixa(id)];
+    }
+
+    private static int indiceDaFaixa(ObjectId id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (FAIXAS - 1);
+    }
+}
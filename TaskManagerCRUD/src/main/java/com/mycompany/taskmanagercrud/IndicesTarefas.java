@@ -0,0 +1,275 @@
+package com.mycompany.taskmanagercrud;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * @author Thierry
+ *
+ * Gerencia os índices da coleção de tarefas.
+ * Os índices são declarados em {@link #DEFINICOES}, cada um com um número de versão que faz
+ * parte do seu nome no MongoDB ({@code nome_vN}). Na inicialização, {@link #garantirIndices()}
+ * cria os índices que faltam e remove as versões antigas, de modo que alterar a definição de
+ * um índice é só uma questão de incrementar sua versão.
+ *
+ * Também oferece um modo de diagnóstico, que executa {@code explain()} em cada consulta e
+ * agregação feita pela aplicação e avisa quando ela não usa índice (varredura completa da coleção) ou precisa
+ * ordenar o resultado em memória.
+ */
+public class IndicesTarefas {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(IndicesTarefas.class);
+
+    /**
+     * Definição de um índice gerenciado.
+     *
+     * @param nome O nome base do índice, sem a versão.
+     * @param versao A versão da definição. Deve ser incrementada sempre que as chaves ou opções mudarem.
+     * @param chaves As chaves do índice.
+     * @param opcoes As opções do índice. O nome é preenchido com o nome versionado.
+     */
+    public record DefinicaoIndice(String nome, int versao, Bson chaves, IndexOptions opcoes) {
+
+        public DefinicaoIndice {
+            opcoes = opcoes.name(nome + "_v" + versao);
+        }
+
+        /**
+         * @return O nome do índice no MongoDB, com a versão ({@code nome_vN}).
+         */
+        public String getNomeVersionado() {
+            return nome + "_v" + versao;
+        }
+    }
+
+    /** Índices gerenciados da coleção de tarefas. */
+    public static final List<DefinicaoIndice> DEFINICOES = List.of(
+            // Filtros por status e prioridade (barra de filtros da tabela). A prioridade é o código
+            // numérico, então "pendentes de prioridade Média ou maior, mais urgentes primeiro" é uma
+            // faixa neste índice, já na ordem (prioridade, _id) da paginação, sem ordenação em memória.
+            new DefinicaoIndice("concluida_prioridade", 2,
+                    Indexes.ascending("concluida", "prioridade", "_id"), new IndexOptions()),
+            // Filtro e ordenação por prioridade sem filtro de status.
+            new DefinicaoIndice("prioridade", 1,
+                    Indexes.ascending("prioridade", "_id"), new IndexOptions()),
+            // Filtro por início do título e ordenação pelo título.
+            new DefinicaoIndice("titulo", 1,
+                    Indexes.ascending("titulo"), new IndexOptions()),
+            // Tarefas alteradas desde a última sincronização do modo offline.
+            new DefinicaoIndice("modificadaEm", 1,
+                    Indexes.ascending("modificadaEm"), new IndexOptions()),
+            // Busca textual em título e descrição (a coleção só pode ter um índice de texto).
+            new DefinicaoIndice("texto", 1,
+                    Indexes.compoundIndex(Indexes.text("titulo"), Indexes.text("descricao")),
+                    new IndexOptions().defaultLanguage("portuguese"))
+    );
+
+    /**
+     * @param nome O nome base do índice, sem a versão.
+     * @return A definição do índice gerenciado com esse nome.
+     * @throws IllegalArgumentException Se não houver índice gerenciado com esse nome.
+     */
+    public static DefinicaoIndice definicao(String nome) {
+        for (DefinicaoIndice definicao : DEFINICOES) {
+            if (definicao.nome().equals(nome)) {
+                return definicao;
+            }
+        }
+        throw new IllegalArgumentException("Indice desconhecido: " + nome);
+    }
+
+    /** Estágios de um plano de execução que indicam uma consulta mal atendida por índices. */
+    private static final Set<String> ESTAGIOS_SUSPEITOS = Set.of("COLLSCAN", "SORT");
+
+    /** A coleção de tarefas. */
+    private final MongoCollection<Document> colecao;
+
+    /** Se cada consulta deve ser analisada com {@code explain()}. */
+    private final boolean diagnostico;
+
+    /** Formatos de consulta já reportados, para avisar apenas uma vez sobre cada um. */
+    private final Set<String> avisosEmitidos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Cria o gerenciador de índices.
+     *
+     * @param colecao A coleção de tarefas.
+     * @param diagnostico Se cada consulta deve ser analisada com {@code explain()}.
+     */
+    public IndicesTarefas(MongoCollection<Document> colecao, boolean diagnostico) {
+        this.colecao = colecao;
+        this.diagnostico = diagnostico;
+    }
+
+    /**
+     * Garante que os índices declarados em {@link #DEFINICOES} existam na versão atual.
+     * Versões antigas de um índice são removidas antes da criação da nova (o que também
+     * é obrigatório para o índice de texto, que é único por coleção).
+     * Falhas são registradas e não impedem o funcionamento da aplicação, que apenas fica mais lenta.
+     */
+    public void garantirIndices() {
+        try {
+            Set<String> existentes = new HashSet<>();
+            for (Document indice : colecao.listIndexes()) {
+                existentes.add(indice.getString("name"));
+            }
+            for (DefinicaoIndice definicao : DEFINICOES) {
+                // Remove as outras versões deste índice.
+                for (String existente : existentes) {
+                    if (existente.matches(Pattern.quote(definicao.nome()) + "_v\\d+")
+                            && !existente.equals(definicao.getNomeVersionado())) {
+                        colecao.dropIndex(existente);
+                        REGISTRO.info("removerIndice", "nome", existente, "motivo", "versao antiga");
+                    }
+                }
+                if (!existentes.contains(definicao.getNomeVersionado())) {
+                    colecao.createIndex(definicao.chaves(), definicao.opcoes());
+                    REGISTRO.info("criarIndice", "nome", definicao.getNomeVersionado());
+                }
+            }
+        } catch (MongoException e) {
+            REGISTRO.erro("garantirIndices", "erro", e.getMessage());
+        }
+    }
+
+    /**
+     * @return {@code true} se o modo de diagnóstico estiver ativo.
+     */
+    public boolean isDiagnostico() {
+        return diagnostico;
+    }
+
+    /**
+     * No modo de diagnóstico, executa {@code explain()} sobre a consulta e avisa se o plano
+     * escolhido pelo MongoDB varre a coleção inteira ou ordena em memória.
+     * Cada formato de consulta (filtro e ordenação, sem os valores) é reportado apenas uma vez.
+     * Fora do modo de diagnóstico, não faz nada.
+     *
+     * @param operacao Nome da operação do DAO, usado na mensagem.
+     * @param consulta A consulta a ser analisada (ela não é executada).
+     * @param filtro O filtro da consulta.
+     * @param ordenacao A ordenação da consulta, ou {@code null}.
+     */
+    public void diagnosticar(String operacao, FindIterable<?> consulta, Bson filtro, Bson ordenacao) {
+        if (!diagnostico) {
+            return;
+        }
+        avisarSeSemIndice(operacao, consulta::explain, () -> operacao + " filtro=" + formaDe(filtro.toBsonDocument()).toJson()
+                + (ordenacao == null ? "" : " ordenacao=" + ordenacao.toBsonDocument().toJson()));
+    }
+
+    /**
+     * No modo de diagnóstico, executa {@code explain()} sobre uma agregação e avisa, como
+     * {@link #diagnosticar(String, FindIterable, Bson, Bson)}, se a leitura da coleção que a
+     * alimenta varre a coleção inteira ou ordena em memória. Fora do modo de diagnóstico, não faz nada.
+     *
+     * @param operacao Nome da operação do DAO, usado na mensagem.
+     * @param agregacao A agregação a ser analisada (ela não é executada).
+     * @param pipeline Os estágios da agregação; a forma reportada traz só os seus nomes.
+     */
+    public void diagnosticar(String operacao, AggregateIterable<?> agregacao, List<? extends Bson> pipeline) {
+        if (!diagnostico) {
+            return;
+        }
+        avisarSeSemIndice(operacao, agregacao::explain, () -> operacao + " pipeline="
+                + pipeline.stream().map(estagio -> estagio.toBsonDocument().getFirstKey()).toList());
+    }
+
+    /**
+     * Executa o {@code explain()} e emite o aviso, uma vez por forma, se o plano vencedor tiver
+     * algum dos {@link #ESTAGIOS_SUSPEITOS}.
+     */
+    private void avisarSeSemIndice(String operacao, Supplier<Document> explicar, Supplier<String> forma) {
+        try {
+            List<String> estagios = new ArrayList<>();
+            coletarPlanosVencedores(explicar.get(), estagios);
+            estagios.retainAll(ESTAGIOS_SUSPEITOS);
+            if (!estagios.isEmpty() && avisosEmitidos.add(forma.get())) {
+                REGISTRO.aviso("consultaSemIndice", "operacao", operacao, "estagios", estagios, "forma", forma.get());
+            }
+        } catch (MongoException e) {
+            REGISTRO.erro("explain", "operacao", operacao, "erro", e.getMessage());
+        }
+    }
+
+    /**
+     * Coleta os estágios do plano vencedor de um {@code explain()}. Apenas ele importa; os planos
+     * rejeitados também aparecem no resultado. Em uma agregação, o plano fica no topo (quando o
+     * servidor executa a leitura e o agrupamento juntos) ou no estágio {@code $cursor} inicial.
+     */
+    private static void coletarPlanosVencedores(Document explicacao, List<String> estagios) {
+        Document planejador = explicacao.get("queryPlanner", Document.class);
+        if (planejador != null) {
+            coletarEstagios(planejador.get("winningPlan"), estagios);
+        }
+        if (explicacao.get("stages") instanceof List<?> etapas) {
+            for (Object etapa : etapas) {
+                if (etapa instanceof Document documento && documento.get("$cursor") instanceof Document cursor) {
+                    coletarPlanosVencedores(cursor, estagios);
+                }
+            }
+        }
+    }
+
+    /**
+     * Percorre recursivamente o plano de execução, coletando o nome de todos os estágios.
+     * A recursão cobre tanto o formato clássico ({@code winningPlan.inputStage...}) quanto
+     * o do mecanismo SBE ({@code winningPlan.queryPlan...}).
+     */
+    private static void coletarEstagios(Object no, List<String> estagios) {
+        if (no instanceof Document documento) {
+            Object estagio = documento.get("stage");
+            if (estagio instanceof String nome) {
+                estagios.add(nome);
+            }
+            for (Object valor : documento.values()) {
+                coletarEstagios(valor, estagios);
+            }
+        } else if (no instanceof List<?> lista) {
+            for (Object item : lista) {
+                coletarEstagios(item, estagios);
+            }
+        }
+    }
+
+    /**
+     * Substitui os valores de um filtro por {@code 1}, mantendo apenas os campos e operadores.
+     * Assim, consultas que diferem apenas nos valores (por exemplo, a âncora de cada página)
+     * têm o mesmo formato.
+     */
+    private static BsonDocument formaDe(BsonDocument filtro) {
+        BsonDocument forma = new BsonDocument();
+        filtro.forEach((chave, valor) -> forma.put(chave, abstrair(valor)));
+        return forma;
+    }
+
+    private static BsonValue abstrair(BsonValue valor) {
+        if (valor.isDocument()) {
+            return formaDe(valor.asDocument());
+        }
+        if (valor.isArray()) {
+            BsonArray forma = new BsonArray();
+            valor.asArray().forEach(filho -> forma.add(abstrair(filho)));
+            return forma;
+        }
+        return new BsonInt32(1);
+    }
+}
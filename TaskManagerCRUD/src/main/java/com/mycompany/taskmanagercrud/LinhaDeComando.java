@@ -0,0 +1,189 @@
+package com.mycompany.taskmanagercrud;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @author Thierry
+ *
+ * Interface de linha de comando, sem janela, para exportar e importar tarefas
+ * e para iniciar o servidor REST ({@link ServidorRest}).
+ * É usada por {@link TaskManagerCRUD#main(String[])} quando o programa recebe argumentos:
+ * <pre>
+ * exportar &lt;arquivo&gt; [--formato jsonl|csv] [--prioridade P] [--prioridade-minima P] [--concluida true|false]
+ * importar &lt;arquivo&gt; [--formato jsonl|csv] [--lote N] [--paralelismo N]
+ * servidor [--porta N] [--backlog N]
+ * migrar-prioridades
+ * </pre>
+ * O formato, se omitido, é deduzido da extensão do arquivo. Exportação, importação e servidor usam o
+ * armazenamento escolhido por {@code -Dtaskmanager.armazenamento} ({@link TarefaRepository#criar()}).
+ * O comando {@code migrar-prioridades}, próprio do MongoDB, converte as prioridades gravadas como
+ * texto em códigos numéricos ({@link TarefaDAO#migrarPrioridades()}).
+ */
+public final class LinhaDeComando {
+
+    /** Tamanho padrão dos lotes de importação. */
+    private static final int LOTE_PADRAO = 1000;
+
+    /** Número padrão de lotes enviados ao mesmo tempo na importação. */
+    private static final int PARALELISMO_PADRAO = 4;
+
+    /** Porta padrão do servidor REST. */
+    private static final int PORTA_PADRAO = 8080;
+
+    /** Tamanho padrão da fila de conexões pendentes do servidor REST. */
+    private static final int BACKLOG_PADRAO = 1024;
+
+    /**
+     * Construtor privado: a classe só tem métodos estáticos.
+     */
+    private LinhaDeComando() {
+    }
+
+    /**
+     * Executa o comando indicado pelos argumentos.
+     *
+     * @param args O comando, o arquivo e as opções.
+     * @return O código de saída: 0 em caso de sucesso, 1 se houve falhas e 2 para argumentos inválidos.
+     */
+    public static int executar(String[] args) {
+        if (args[0].equals("servidor")) {
+            Map<String, String> opcoes = lerOpcoes(args, 1);
+            return opcoes == null ? 2 : executarServidor(opcoes);
+        }
+        if (args[0].equals("migrar-prioridades") && args.length == 1) {
+            return executarMigracaoPrioridades();
+        }
+        if (args.length < 2 || !(args[0].equals("exportar") || args[0].equals("importar"))) {
+            mostrarUso();
+            return 2;
+        }
+        Path arquivo = Path.of(args[1]);
+        Map<String, String> opcoes = lerOpcoes(args, 2);
+        if (opcoes == null) {
+            return 2;
+        }
+
+        try {
+            TransferenciaTarefas.Formato formato = opcoes.containsKey("formato")
+                    ? TransferenciaTarefas.Formato.valueOf(opcoes.remove("formato").toUpperCase(Locale.ROOT))
+                    : TransferenciaTarefas.Formato.doArquivo(arquivo);
+            // MongoDB ou memória, conforme -Dtaskmanager.armazenamento.
+            TransferenciaTarefas transferencia = new TransferenciaTarefas(TarefaRepository.criar());
+            TransferenciaTarefas.Progresso resultado;
+            if (args[0].equals("exportar")) {
+                ConsultaTarefas consulta = ConsultaTarefas.TODAS;
+                if (opcoes.containsKey("prioridade")) {
+                    consulta = consulta.comPrioridade(Prioridade.converter(opcoes.remove("prioridade")));
+                }
+                if (opcoes.containsKey("prioridade-minima")) {
+                    consulta = consulta.comPrioridadeMinima(Prioridade.converter(opcoes.remove("prioridade-minima")));
+                }
+                if (opcoes.containsKey("concluida")) {
+                    consulta = consulta.comConcluida(Boolean.valueOf(opcoes.remove("concluida")));
+                }
+                verificarOpcoesRestantes(opcoes);
+                resultado = transferencia.exportar(arquivo, formato, consulta,
+                        progresso -> System.out.println("INFO: Exportando... " + progresso));
+            } else {
+                int lote = Integer.parseInt(opcoes.getOrDefault("lote", String.valueOf(LOTE_PADRAO)));
+                int paralelismo = Integer.parseInt(opcoes.getOrDefault("paralelismo", String.valueOf(PARALELISMO_PADRAO)));
+                opcoes.remove("lote");
+                opcoes.remove("paralelismo");
+                verificarOpcoesRestantes(opcoes);
+                resultado = transferencia.importar(arquivo, formato, lote, paralelismo,
+                        progresso -> System.out.println("INFO: Importando... " + progresso));
+            }
+            return resultado.falhas() == 0 ? 0 : 1;
+        } catch (IllegalArgumentException e) {
+            // Inclui NumberFormatException e formatos desconhecidos.
+            System.err.println("ERRO: " + e.getMessage());
+            mostrarUso();
+            return 2;
+        } catch (IOException e) {
+            System.err.println("ERRO: Falha ao acessar o arquivo " + arquivo + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Inicia o servidor REST e bloqueia até a JVM ser encerrada (Ctrl+C ou sinal de término).
+     */
+    private static int executarServidor(Map<String, String> opcoes) {
+        try {
+            int porta = Integer.parseInt(opcoes.getOrDefault("porta", String.valueOf(PORTA_PADRAO)));
+            int backlog = Integer.parseInt(opcoes.getOrDefault("backlog", String.valueOf(BACKLOG_PADRAO)));
+            opcoes.remove("porta");
+            opcoes.remove("backlog");
+            verificarOpcoesRestantes(opcoes);
+            // MongoDB ou memória, conforme -Dtaskmanager.armazenamento.
+            ServidorRest servidor = new ServidorRest(TarefaRepository.criar(),
+                    new InetSocketAddress(porta), backlog);
+            // Para o servidor antes de o cliente MongoDB ser fechado.
+            ConexaoMongo.aoEncerrar(servidor::close);
+            servidor.iniciar();
+            servidor.aguardarEncerramento();
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERRO: " + e.getMessage());
+            mostrarUso();
+            return 2;
+        } catch (IOException e) {
+            System.err.println("ERRO: Falha ao iniciar o servidor REST: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Converte as prioridades antigas (texto) em códigos numéricos.
+     */
+    private static int executarMigracaoPrioridades() {
+        TarefaDAO dao = new TarefaDAO(ConexaoMongo.conectar());
+        long convertidas = dao.migrarPrioridades();
+        long restantes = dao.contarPrioridadesEmTexto();
+        System.out.println("INFO: " + convertidas + " tarefa(s) convertida(s) para prioridade numerica.");
+        if (restantes > 0) {
+            System.err.println("AVISO: " + restantes + " tarefa(s) com prioridade em texto nao reconhecida.");
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Lê as opções no formato {@code --nome valor} a partir de uma posição dos argumentos.
+     *
+     * @return As opções, ou {@code null} se alguma for inválida (o uso já foi mostrado).
+     */
+    private static Map<String, String> lerOpcoes(String[] args, int inicio) {
+        Map<String, String> opcoes = new HashMap<>();
+        for (int i = inicio; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("ERRO: Opcao invalida: " + args[i]);
+                mostrarUso();
+                return null;
+            }
+            opcoes.put(args[i].substring(2), args[i + 1]);
+        }
+        return opcoes;
+    }
+
+    private static void verificarOpcoesRestantes(Map<String, String> opcoes) {
+        if (!opcoes.isEmpty()) {
+            throw new IllegalArgumentException("Opcao desconhecida: --" + opcoes.keySet().iterator().next());
+        }
+    }
+
+    private static void mostrarUso() {
+        System.err.println("""
+                Uso:
+                  exportar <arquivo> [--formato jsonl|csv] [--prioridade P] [--prioridade-minima P] [--concluida true|false]
+                  importar <arquivo> [--formato jsonl|csv] [--lote N] [--paralelismo N]
+                  servidor [--porta N] [--backlog N]
+                  migrar-prioridades
+                Sem argumentos, a interface grafica e aberta.""");
+    }
+}
@@ -0,0 +1,457 @@
+package com.mycompany.taskmanagercrud;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * @author Thierry
+ *
+ * Métricas da aplicação: contagem, erros e histograma de latência ({@link HistogramaLatencia})
+ * de cada operação do {@link TarefaDAO} e de cada comando enviado ao MongoDB, além do estado
+ * do pool de conexões do driver.
+ *
+ * As métricas de comandos e do pool vêm dos ouvintes do driver ({@link CommandListener} e
+ * {@link ConnectionPoolListener}), instalados por {@link ConexaoMongo}. Elas são expostas por JMX
+ * (MXBeans no domínio {@code com.mycompany.taskmanagercrud}, visíveis no JConsole/VisualVM) e
+ * no formato de texto do Prometheus ({@link #formatoPrometheus()}), servido em {@code /metrics}.
+ */
+public final class MetricasTarefas {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(MetricasTarefas.class);
+
+    /** Registro da duração de cada operação, em nome do {@link TarefaDAO} (nível DEBUG). */
+    private static final Registro REGISTRO_DAO = Registro.para(TarefaDAO.class);
+
+    /** Domínio dos MXBeans. */
+    private static final String DOMINIO_JMX = "com.mycompany.taskmanagercrud";
+
+    /**
+     * Limites ({@code le}, em segundos) das faixas exportadas ao Prometheus.
+     * Com eles, {@code histogram_quantile} calcula percentis em qualquer janela de tempo.
+     */
+    private static final double[] LIMITES_SEGUNDOS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    /**
+     * Operações do {@link TarefaDAO} que são medidas.
+     */
+    public enum Operacao {
+        INSERIR, LISTAR, BUSCAR, CONTAR, ATUALIZAR_STATUS, ATUALIZAR, EXCLUIR, LOTE;
+
+        /** @return O nome da operação nas métricas (por exemplo, {@code atualizar_status}). */
+        public String getNome() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Latência e erros de uma operação ou comando.
+     */
+    private record Metrica(HistogramaLatencia latencia, LongAdder erros) {
+
+        Metrica() {
+            this(new HistogramaLatencia(), new LongAdder());
+        }
+    }
+
+    /**
+     * Estatísticas de uma operação ou comando, como aparecem no JMX. Tempos em milissegundos;
+     * os percentis são calculados desde o início da aplicação.
+     */
+    public interface LatenciaMXBean {
+
+        long getContagem();
+
+        long getErros();
+
+        double getMediaMs();
+
+        double getP50Ms();
+
+        double getP90Ms();
+
+        double getP99Ms();
+
+        double getP999Ms();
+
+        double getMaximoMs();
+    }
+
+    /**
+     * Estado do pool de conexões do driver, como aparece no JMX.
+     */
+    public interface PoolConexoesMXBean {
+
+        /** @return Conexões abertas (livres ou em uso). */
+        long getAbertas();
+
+        /** @return Conexões emprestadas a uma operação neste momento. */
+        long getEmUso();
+
+        /** @return Operações esperando uma conexão livre. */
+        long getAguardando();
+
+        /** @return Pedidos de conexão que falharam (por exemplo, tempo de espera esgotado). */
+        long getFalhasObtencao();
+
+        /** @return O 99º percentil da espera por uma conexão, em milissegundos. */
+        double getEsperaP99Ms();
+    }
+
+    /** Métricas das operações do DAO. */
+    private static final Map<Operacao, Metrica> OPERACOES = new EnumMap<>(Operacao.class);
+
+    /** Métricas dos comandos do MongoDB, pelo nome do comando ({@code find}, {@code update}...). */
+    private static final Map<String, Metrica> COMANDOS = new ConcurrentHashMap<>();
+
+    // Contadores do pool de conexões; os medidores são diferenças entre eles.
+    private static final LongAdder CONEXOES_CRIADAS = new LongAdder();
+    private static final LongAdder CONEXOES_FECHADAS = new LongAdder();
+    private static final LongAdder PEDIDOS_CONEXAO = new LongAdder();
+    private static final LongAdder CONEXOES_OBTIDAS = new LongAdder();
+    private static final LongAdder CONEXOES_DEVOLVIDAS = new LongAdder();
+    private static final LongAdder FALHAS_OBTENCAO = new LongAdder();
+    private static final HistogramaLatencia ESPERA_CONEXAO = new HistogramaLatencia();
+
+    /** Garante que os MXBeans sejam registrados uma única vez. */
+    private static final AtomicBoolean JMX_REGISTRADO = new AtomicBoolean();
+
+    static {
+        for (Operacao operacao : Operacao.values()) {
+            OPERACOES.put(operacao, new Metrica());
+        }
+    }
+
+    /**
+     * Construtor privado: a classe só tem métodos estáticos.
+     */
+    private MetricasTarefas() {
+    }
+
+    /**
+     * Executa e mede uma operação do DAO. Exceções são contadas como erros e repassadas.
+     *
+     * @param operacao A operação medida.
+     * @param acao O corpo da operação.
+     * @return O resultado da ação.
+     */
+    static <T> T medir(Operacao operacao, Supplier<T> acao) {
+        Metrica metrica = OPERACOES.get(operacao);
+        long inicio = System.nanoTime();
+        boolean sucesso = false;
+        try {
+            T resultado = acao.get();
+            sucesso = true;
+            return resultado;
+        } catch (RuntimeException e) {
+            metrica.erros().increment();
+            throw e;
+        } finally {
+            long duracao = System.nanoTime() - inicio;
+            metrica.latencia().registrar(duracao);
+            if (REGISTRO_DAO.isAtivo(Registro.Nivel.DEBUG)) {
+                REGISTRO_DAO.debug(operacao.getNome(), "duracaoUs", duracao / 1000, "sucesso", sucesso);
+            }
+        }
+    }
+
+    /**
+     * @return O ouvinte que mede a latência de cada comando enviado ao MongoDB.
+     */
+    static CommandListener ouvinteComandos() {
+        return new CommandListener() {
+            @Override
+            public void commandSucceeded(CommandSucceededEvent evento) {
+                comando(evento.getCommandName()).latencia().registrar(evento.getElapsedTime(TimeUnit.NANOSECONDS));
+            }
+
+            @Override
+            public void commandFailed(CommandFailedEvent evento) {
+                Metrica metrica = comando(evento.getCommandName());
+                metrica.erros().increment();
+                metrica.latencia().registrar(evento.getElapsedTime(TimeUnit.NANOSECONDS));
+            }
+        };
+    }
+
+    /**
+     * @return O ouvinte que acompanha as conexões do pool do driver.
+     */
+    static ConnectionPoolListener ouvintePool() {
+        return new ConnectionPoolListener() {
+            @Override
+            public void connectionCreated(ConnectionCreatedEvent evento) {
+                CONEXOES_CRIADAS.increment();
+            }
+
+            @Override
+            public void connectionClosed(ConnectionClosedEvent evento) {
+                CONEXOES_FECHADAS.increment();
+            }
+
+            @Override
+            public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent evento) {
+                PEDIDOS_CONEXAO.increment();
+            }
+
+            @Override
+            public void connectionCheckedOut(ConnectionCheckedOutEvent evento) {
+                CONEXOES_OBTIDAS.increment();
+                ESPERA_CONEXAO.registrar(evento.getElapsedTime(TimeUnit.NANOSECONDS));
+            }
+
+            @Override
+            public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent evento) {
+                FALHAS_OBTENCAO.increment();
+            }
+
+            @Override
+            public void connectionCheckedIn(ConnectionCheckedInEvent evento) {
+                CONEXOES_DEVOLVIDAS.increment();
+            }
+        };
+    }
+
+    /**
+     * Registra os MXBeans das operações e do pool no servidor de MBeans da plataforma.
+     * Os MXBeans de comandos são registrados à medida que cada comando aparece.
+     * Chamadas repetidas não têm efeito.
+     */
+    static void registrarJmx() {
+        if (!JMX_REGISTRADO.compareAndSet(false, true)) {
+            return;
+        }
+        for (Map.Entry<Operacao, Metrica> entrada : OPERACOES.entrySet()) {
+            registrarMXBean("type=Operacao,name=" + entrada.getKey().getNome(), latenciaMXBean(entrada.getValue()));
+        }
+        COMANDOS.forEach((nome, metrica) -> registrarMXBean("type=Comando,name=" + nome, latenciaMXBean(metrica)));
+        registrarMXBean("type=PoolConexoes", new PoolConexoesMXBean() {
+            @Override
+            public long getAbertas() {
+                return CONEXOES_CRIADAS.sum() - CONEXOES_FECHADAS.sum();
+            }
+
+            @Override
+            public long getEmUso() {
+                return CONEXOES_OBTIDAS.sum() - CONEXOES_DEVOLVIDAS.sum();
+            }
+
+            @Override
+            public long getAguardando() {
+                return Math.max(0, PEDIDOS_CONEXAO.sum() - CONEXOES_OBTIDAS.sum() - FALHAS_OBTENCAO.sum());
+            }
+
+            @Override
+            public long getFalhasObtencao() {
+                return FALHAS_OBTENCAO.sum();
+            }
+
+            @Override
+            public double getEsperaP99Ms() {
+                return ESPERA_CONEXAO.instantaneo().percentil(99) / 1e6;
+            }
+        });
+    }
+
+    /**
+     * Inicia um servidor HTTP que responde apenas {@code GET /metrics}, para quem não usa o
+     * {@link ServidorRest} (que já tem essa rota). As threads são daemon: o servidor não impede
+     * o encerramento da aplicação.
+     *
+     * @param porta A porta do servidor.
+     * @throws IOException se a porta não puder ser aberta.
+     */
+    public static void iniciarExportador(int porta) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.createContext("/metrics", MetricasTarefas::responder);
+        servidor.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "exportador-metricas");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        servidor.start();
+        REGISTRO.info("exportar", "url", "http://localhost:" + porta + "/metrics");
+    }
+
+    /**
+     * Responde uma requisição com as métricas no formato de texto do Prometheus.
+     */
+    static void responder(HttpExchange troca) throws IOException {
+        try (troca) {
+            byte[] corpo = formatoPrometheus().getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        }
+    }
+
+    /**
+     * Gera todas as métricas no formato de texto do Prometheus (versão 0.0.4). As latências
+     * são histogramas em segundos, com as faixas de {@link #LIMITES_SEGUNDOS}.
+     *
+     * @return O texto das métricas.
+     */
+    public static String formatoPrometheus() {
+        StringBuilder texto = new StringBuilder(16 * 1024);
+
+        cabecalho(texto, "taskmanager_dao_operacao_segundos", "histogram", "Latencia das operacoes do TarefaDAO.");
+        OPERACOES.forEach((operacao, metrica) ->
+                histograma(texto, "taskmanager_dao_operacao_segundos", "operacao", operacao.getNome(), metrica.latencia().instantaneo()));
+        cabecalho(texto, "taskmanager_dao_operacao_erros_total", "counter", "Operacoes do TarefaDAO que terminaram com excecao.");
+        OPERACOES.forEach((operacao, metrica) ->
+                amostra(texto, "taskmanager_dao_operacao_erros_total", "operacao=\"" + operacao.getNome() + "\"", metrica.erros().sum()));
+
+        Map<String, Metrica> comandos = new TreeMap<>(COMANDOS);
+        cabecalho(texto, "taskmanager_mongodb_comando_segundos", "histogram", "Latencia dos comandos enviados ao MongoDB.");
+        comandos.forEach((nome, metrica) ->
+                histograma(texto, "taskmanager_mongodb_comando_segundos", "comando", nome, metrica.latencia().instantaneo()));
+        cabecalho(texto, "taskmanager_mongodb_comando_erros_total", "counter", "Comandos do MongoDB que falharam.");
+        comandos.forEach((nome, metrica) ->
+                amostra(texto, "taskmanager_mongodb_comando_erros_total", "comando=\"" + nome + "\"", metrica.erros().sum()));
+
+        cabecalho(texto, "taskmanager_mongodb_pool_conexoes", "gauge", "Conexoes do pool do driver, por estado.");
+        amostra(texto, "taskmanager_mongodb_pool_conexoes", "estado=\"abertas\"", CONEXOES_CRIADAS.sum() - CONEXOES_FECHADAS.sum());
+        amostra(texto, "taskmanager_mongodb_pool_conexoes", "estado=\"em_uso\"", CONEXOES_OBTIDAS.sum() - CONEXOES_DEVOLVIDAS.sum());
+        cabecalho(texto, "taskmanager_mongodb_pool_aguardando", "gauge", "Operacoes esperando uma conexao livre.");
+        amostra(texto, "taskmanager_mongodb_pool_aguardando", null,
+                Math.max(0, PEDIDOS_CONEXAO.sum() - CONEXOES_OBTIDAS.sum() - FALHAS_OBTENCAO.sum()));
+        cabecalho(texto, "taskmanager_mongodb_pool_falhas_total", "counter", "Pedidos de conexao que falharam.");
+        amostra(texto, "taskmanager_mongodb_pool_falhas_total", null, FALHAS_OBTENCAO.sum());
+        cabecalho(texto, "taskmanager_mongodb_pool_espera_segundos", "histogram", "Espera por uma conexao do pool.");
+        histograma(texto, "taskmanager_mongodb_pool_espera_segundos", null, null, ESPERA_CONEXAO.instantaneo());
+        return texto.toString();
+    }
+
+    private static Metrica comando(String nome) {
+        Metrica metrica = COMANDOS.get(nome);
+        if (metrica != null) {
+            return metrica;
+        }
+        Metrica nova = new Metrica();
+        metrica = COMANDOS.putIfAbsent(nome, nova);
+        if (metrica != null) {
+            return metrica;
+        }
+        if (JMX_REGISTRADO.get()) {
+            registrarMXBean("type=Comando,name=" + nome, latenciaMXBean(nova));
+        }
+        return nova;
+    }
+
+    private static LatenciaMXBean latenciaMXBean(Metrica metrica) {
+        return new LatenciaMXBean() {
+            @Override
+            public long getContagem() {
+                return metrica.latencia().instantaneo().getTotal();
+            }
+
+            @Override
+            public long getErros() {
+                return metrica.erros().sum();
+            }
+
+            @Override
+            public double getMediaMs() {
+                return metrica.latencia().instantaneo().getMedia() / 1e6;
+            }
+
+            @Override
+            public double getP50Ms() {
+                return metrica.latencia().instantaneo().percentil(50) / 1e6;
+            }
+
+            @Override
+            public double getP90Ms() {
+                return metrica.latencia().instantaneo().percentil(90) / 1e6;
+            }
+
+            @Override
+            public double getP99Ms() {
+                return metrica.latencia().instantaneo().percentil(99) / 1e6;
+            }
+
+            @Override
+            public double getP999Ms() {
+                return metrica.latencia().instantaneo().percentil(99.9) / 1e6;
+            }
+
+            @Override
+            public double getMaximoMs() {
+                return metrica.latencia().instantaneo().getMaximo() / 1e6;
+            }
+        };
+    }
+
+    private static void registrarMXBean(String propriedades, Object mxbean) {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName nome = new ObjectName(DOMINIO_JMX + ":" + propriedades);
+            if (!servidor.isRegistered(nome)) {
+                servidor.registerMBean(mxbean, nome);
+            }
+        } catch (JMException e) {
+            REGISTRO.aviso("registrarJmx", "metrica", propriedades, "erro", e.getMessage());
+        }
+    }
+
+    private static void cabecalho(StringBuilder texto, String nome, String tipo, String ajuda) {
+        texto.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        texto.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+
+    /**
+     * Escreve um histograma: as faixas acumuladas ({@code _bucket}), a soma e a contagem.
+     */
+    private static void histograma(StringBuilder texto, String nome, String rotulo, String valorRotulo,
+            HistogramaLatencia.Instantaneo instantaneo) {
+        String rotulos = rotulo == null ? "" : rotulo + "=\"" + valorRotulo + "\",";
+        for (double limite : LIMITES_SEGUNDOS) {
+            amostra(texto, nome + "_bucket", rotulos + "le=\"" + limite + "\"", instantaneo.contarAte((long) (limite * 1e9)));
+        }
+        amostra(texto, nome + "_bucket", rotulos + "le=\"+Inf\"", instantaneo.getTotal());
+        String semLe = rotulo == null ? null : rotulo + "=\"" + valorRotulo + "\"";
+        texto.append(nome).append("_sum").append(semLe == null ? "" : "{" + semLe + "}")
+                .append(' ').append(instantaneo.getSoma() / 1e9).append('\n');
+        amostra(texto, nome + "_count", semLe, instantaneo.getTotal());
+    }
+
+    private static void amostra(StringBuilder texto, String nome, String rotulos, long valor) {
+        texto.append(nome);
+        if (rotulos != null) {
+            texto.append('{').append(rotulos).append('}');
+        }
+        texto.append(' ').append(valor).append('\n');
+    }
+}
@@ -0,0 +1,29 @@
+package com.mycompany.taskmanagercrud;
+
+/**
+ * @author Thierry
+ *
+ * Opções das operações em lote do {@link TarefaDAO}.
+ *
+ * @param tamanhoLote Quantos itens são enviados ao MongoDB em cada comando.
+ * Coleções maiores são divididas em vários comandos desse tamanho.
+ * @param ordenado Se {@code true}, a execução para no primeiro erro e os itens seguintes
+ * não são enviados; se {@code false}, o MongoDB aplica todos os itens que conseguir,
+ * em qualquer ordem, o que costuma ser mais rápido.
+ */
+public record OpcoesLote(int tamanhoLote, boolean ordenado) {
+
+    /** Opções padrão: lotes de 1000 itens, sem ordem (um erro não interrompe os demais itens). */
+    public static final OpcoesLote PADRAO = new OpcoesLote(1000, false);
+
+    /**
+     * Valida as opções.
+     *
+     * @throws IllegalArgumentException se o tamanho do lote não for positivo.
+     */
+    public OpcoesLote {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("O tamanho do lote deve ser positivo: " + tamanhoLote);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.mycompany.taskmanagercrud;
+
+/**
+ * @author Thierry
+ *
+ * Ouvinte das alterações feitas nas tarefas através do {@link TarefaDAO}.
+ * Os métodos são chamados logo depois de a gravação ser confirmada pelo MongoDB,
+ * na própria thread que fez a operação (normalmente uma thread virtual do {@link TarefaServico}),
+ * então as implementações devem ser thread-safe e rápidas.
+ *
+ * Atualizações e exclusões informam também o estado anterior da tarefa, para que o ouvinte possa
+ * desfazer o efeito dele (por exemplo, descontar a tarefa de uma contagem) sem consultar o banco.
+ * Nas operações de uma tarefa só, esse estado é o que o próprio MongoDB devolve na gravação.
+ * Nas operações em lote, que não devolvem documentos, ele é lido logo antes da gravação: uma
+ * alteração feita por outro cliente nesse intervalo não é vista.
+ * As tarefas recebidas são cópias, que o ouvinte não deve alterar.
+ */
+public interface OuvinteTarefas {
+
+    /**
+     * Uma tarefa foi inserida.
+     *
+     * @param tarefa A tarefa inserida, já com o ID preenchido.
+     */
+    void tarefaAdicionada(Tarefa tarefa);
+
+    /**
+     * Uma tarefa foi atualizada. Alterações em lote chegam como uma chamada por tarefa.
+     *
+     * @param anterior O estado completo da tarefa antes da atualização.
+     * @param tarefa O novo estado completo da tarefa.
+     */
+    void tarefaAtualizada(Tarefa anterior, Tarefa tarefa);
+
+    /**
+     * Uma tarefa foi excluída.
+     *
+     * @param tarefa O último estado da tarefa excluída.
+     */
+    void tarefaExcluida(Tarefa tarefa);
+}
@@ -0,0 +1,138 @@
+package com.mycompany.taskmanagercrud;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @author Thierry
+ *
+ * Níveis de prioridade de uma tarefa, do menos ao mais urgente.
+ * O rótulo é o texto exibido na interface; no MongoDB, o campo {@code prioridade} guarda o
+ * {@link #getCodigo() código} numérico, que cresce com a urgência. Assim, o banco ordena e filtra
+ * por faixa ({@code prioridade >= 2}) na ordem certa, usando índice, o que não acontecia com o
+ * texto ("Alta" &lt; "Baixa" &lt; "Média" em ordem alfabética).
+ *
+ * Os códigos são gravados no banco e não devem mudar; um nível novo recebe um código novo.
+ */
+public enum Prioridade {
+    BAIXA(1, "Baixa"),
+    MEDIA(2, "Média"),
+    ALTA(3, "Alta");
+
+    /** Cópia de {@link #values()}, que cria um array novo a cada chamada. */
+    private static final Prioridade[] VALORES = values();
+
+    /** Valor gravado no campo {@code prioridade} do MongoDB. */
+    private final int codigo;
+
+    /** Texto exibido. */
+    private final String rotulo;
+
+    Prioridade(int codigo, String rotulo) {
+        this.codigo = codigo;
+        this.rotulo = rotulo;
+    }
+
+    /**
+     * @return O valor gravado no MongoDB (1 para {@link #BAIXA}, até 3 para {@link #ALTA}).
+     */
+    public int getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * @return O texto exibido, como "Média".
+     */
+    public String getRotulo() {
+        return rotulo;
+    }
+
+    /**
+     * Converte um código gravado no MongoDB na prioridade correspondente.
+     *
+     * @param codigo O código.
+     * @return A prioridade, ou {@code null} se o código não corresponder a nenhuma.
+     */
+    public static Prioridade deCodigo(int codigo) {
+        for (Prioridade prioridade : VALORES) {
+            if (prioridade.codigo == codigo) {
+                return prioridade;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converte um texto informado pelo usuário (linha de comando, API, CSV), como
+     * {@link #deRotulo}, mas rejeitando textos que não correspondem a nenhuma prioridade.
+     *
+     * @param texto O texto.
+     * @return A prioridade, ou {@code null} se o texto for nulo ou vazio.
+     * @throws IllegalArgumentException Se o texto não corresponder a nenhuma prioridade.
+     */
+    public static Prioridade converter(String texto) {
+        Prioridade prioridade = deRotulo(texto);
+        if (prioridade == null && texto != null && !texto.isBlank()) {
+            throw new IllegalArgumentException("Prioridade invalida: " + texto + " (use Baixa, Media ou Alta).");
+        }
+        return prioridade;
+    }
+
+    /**
+     * @return Os textos com que esta prioridade pode ter sido gravada antes de o campo passar a
+     * ser numérico, usados na migração ({@link TarefaDAO#migrarPrioridades()}).
+     */
+    List<String> getTextosAntigos() {
+        return List.of(rotulo, semAcentos(rotulo), rotulo.toLowerCase(Locale.ROOT),
+                semAcentos(rotulo).toLowerCase(Locale.ROOT), name());
+    }
+
+    private static String semAcentos(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+
+    /**
+     * Converte um texto na prioridade correspondente: o rótulo ("Média"), o nome da constante
+     * ("MEDIA") ou o código ("2"), sem diferenciar maiúsculas nem acentos.
+     *
+     * @param texto O texto, como "Alta".
+     * @return A prioridade, ou {@code null} se o texto for nulo ou não corresponder a nenhuma.
+     */
+    public static Prioridade deRotulo(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        for (Prioridade prioridade : VALORES) {
+            if (prioridade.rotulo.equals(texto)) {
+                return prioridade;
+            }
+        }
+        String normalizado = semAcentos(texto.trim());
+        for (Prioridade prioridade : VALORES) {
+            if (normalizado.equalsIgnoreCase(semAcentos(prioridade.rotulo))
+                    || normalizado.equals(String.valueOf(prioridade.codigo))) {
+                return prioridade;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtém a prioridade pela posição na ordem de urgência, sem criar arrays.
+     *
+     * @param ordinal A posição ({@link #ordinal()}).
+     * @return A prioridade, ou {@code null} se a posição for negativa (sem prioridade).
+     */
+    public static Prioridade deOrdinal(int ordinal) {
+        return ordinal < 0 ? null : VALORES[ordinal];
+    }
+
+    /**
+     * @return O rótulo, para que combos e células mostrem o texto sem conversão.
+     */
+    @Override
+    public String toString() {
+        return rotulo;
+    }
+}
@@ -0,0 +1,520 @@
+package com.mycompany.taskmanagercrud;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Thierry
+ *
+ * Registro (log) da aplicação, com níveis e saída estruturada em pares chave=valor:
+ * <pre>
+ * 2026-10-18 14:03:12.481 INFO  [TarefaDAO] op=inserir id=6712f0c2a1b4 titulo="Revisar relatorio"
+ * </pre>
+ *
+ * Quem registra não formata nada nem espera pela escrita: os argumentos são copiados para uma
+ * posição de um anel pré-alocado, e uma única thread em segundo plano monta as linhas e as
+ * entrega à {@link Saida}. Assim, várias threads gravando no banco não disputam o lock do
+ * {@code System.out}, e uma mensagem de um nível desativado custa apenas uma comparação.
+ *
+ * Como a formatação acontece depois, os valores devem ser imutáveis (textos, números, IDs);
+ * um objeto alterado logo após o registro pode aparecer já com o valor novo.
+ *
+ * Configuração: {@code -Dtaskmanager.log.nivel=DEBUG|INFO|AVISO|ERRO} (padrão {@code INFO})
+ * e {@code -Dtaskmanager.log.capacidade} (posições do anel, padrão 8192).
+ */
+public final class Registro {
+
+    /**
+     * Níveis do registro, do mais detalhado ao mais grave.
+     */
+    public enum Nivel {
+        DEBUG("DEBUG"),
+        INFO("INFO "),
+        AVISO("AVISO"),
+        ERRO("ERRO ");
+
+        /** Nome com largura fixa, para alinhar as linhas. */
+        private final String rotulo;
+
+        Nivel(String rotulo) {
+            this.rotulo = rotulo;
+        }
+    }
+
+    /**
+     * Destino das linhas já formatadas. É chamada sempre pela mesma thread, a do registro.
+     */
+    @FunctionalInterface
+    public interface Saida {
+
+        /**
+         * Escreve uma linha (sem a quebra de linha final).
+         *
+         * @param nivel O nível da mensagem.
+         * @param linha A linha formatada; só é válida durante a chamada.
+         */
+        void escrever(Nivel nivel, CharSequence linha);
+
+        /**
+         * Chamado quando não há mais mensagens na fila; é o momento de esvaziar buffers.
+         */
+        default void descarregar() {
+        }
+    }
+
+    /** Saída padrão: DEBUG e INFO no {@code System.out}; AVISO e ERRO no {@code System.err}. */
+    public static final Saida CONSOLE = new Saida() {
+        @Override
+        public void escrever(Nivel nivel, CharSequence linha) {
+            PrintStream destino = nivel.compareTo(Nivel.AVISO) >= 0 ? System.err : System.out;
+            destino.append(linha).append(System.lineSeparator());
+        }
+
+        @Override
+        public void descarregar() {
+            System.out.flush();
+            System.err.flush();
+        }
+    };
+
+    /** Número de posições do anel (potência de 2). */
+    private static final int CAPACIDADE = Integer.highestOneBit(
+            Math.max(64, Integer.getInteger("taskmanager.log.capacidade", 8192)));
+
+    /** Máscara para transformar uma sequência em posição do anel. */
+    private static final int MASCARA = CAPACIDADE - 1;
+
+    /** As mensagens, reaproveitadas a cada volta do anel. */
+    private static final Evento[] EVENTOS = new Evento[CAPACIDADE];
+
+    /**
+     * Sequência esperada em cada posição: igual à sequência de escrita quando a posição está livre,
+     * e a ela mais 1 quando a mensagem foi publicada e aguarda a thread do registro.
+     */
+    private static final AtomicLongArray SEQUENCIAS = new AtomicLongArray(CAPACIDADE);
+
+    /** Próxima sequência a ser reservada por quem registra. */
+    private static final AtomicLong CAUDA = new AtomicLong();
+
+    /** Mensagens DEBUG e INFO descartadas com o anel cheio. */
+    private static final LongAdder DESCARTADAS = new LongAdder();
+
+    /** Formato da data e hora de cada linha. */
+    private static final DateTimeFormatter FORMATO_HORA =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /** Thread que formata e escreve as mensagens. */
+    private static final Thread ESCRITORA;
+
+    /** Nível mínimo registrado. */
+    private static volatile Nivel nivelMinimo = lerNivel(System.getProperty("taskmanager.log.nivel"));
+
+    /** Destino das linhas. */
+    private static volatile Saida saida = CONSOLE;
+
+    /** Indica se a thread do registro está parada esperando mensagens. */
+    private static volatile boolean escritoraDormindo;
+
+    /** Indica que a JVM está encerrando e que a thread do registro deve esvaziar o anel e parar. */
+    private static volatile boolean encerrando;
+
+    /** Indica que a thread do registro já parou; a partir daí, cada mensagem é escrita na hora. */
+    private static volatile boolean encerrado;
+
+    static {
+        for (int i = 0; i < CAPACIDADE; i++) {
+            EVENTOS[i] = new Evento();
+            SEQUENCIAS.set(i, i);
+        }
+        ESCRITORA = new Thread(Registro::escrever, "registro-tarefas");
+        ESCRITORA.setDaemon(true);
+        ESCRITORA.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Registro::encerrar, "registro-tarefas-desligamento"));
+    }
+
+    /** Nome curto de quem registra, mostrado entre colchetes. */
+    private final String origem;
+
+    private Registro(String origem) {
+        this.origem = origem;
+    }
+
+    /**
+     * Obtém o registro de uma classe.
+     *
+     * @param classe A classe que registra as mensagens.
+     * @return Um registro identificado pelo nome simples da classe.
+     */
+    public static Registro para(Class<?> classe) {
+        return new Registro(classe.getSimpleName());
+    }
+
+    /**
+     * Define o nível mínimo registrado, em tempo de execução.
+     *
+     * @param nivel O novo nível mínimo.
+     */
+    public static void definirNivel(Nivel nivel) {
+        nivelMinimo = nivel;
+    }
+
+    /**
+     * Troca o destino das linhas (por exemplo, para um arquivo ou para outro framework de log).
+     *
+     * @param novaSaida O novo destino.
+     */
+    public static void definirSaida(Saida novaSaida) {
+        saida = novaSaida;
+    }
+
+    /**
+     * Permite evitar o cálculo de valores caros quando o nível está desativado.
+     *
+     * @param nivel O nível consultado.
+     * @return {@code true} se mensagens desse nível são registradas.
+     */
+    public boolean isAtivo(Nivel nivel) {
+        return nivel.compareTo(nivelMinimo) >= 0;
+    }
+
+    /**
+     * Registra uma mensagem de depuração, normalmente desativada.
+     * As variantes seguintes acrescentam até três pares chave=valor.
+     *
+     * @param op O nome curto da operação ou do evento (por exemplo, {@code inserir}).
+     */
+    public void debug(String op) {
+        registrar(Nivel.DEBUG, op, null, null, null, null, null, null);
+    }
+
+    public void debug(String op, String chave1, Object valor1) {
+        registrar(Nivel.DEBUG, op, chave1, valor1, null, null, null, null);
+    }
+
+    public void debug(String op, String chave1, Object valor1, String chave2, Object valor2) {
+        registrar(Nivel.DEBUG, op, chave1, valor1, chave2, valor2, null, null);
+    }
+
+    public void debug(String op, String chave1, Object valor1, String chave2, Object valor2, String chave3, Object valor3) {
+        registrar(Nivel.DEBUG, op, chave1, valor1, chave2, valor2, chave3, valor3);
+    }
+
+    /**
+     * Registra uma mensagem informativa.
+     * As variantes seguintes acrescentam até três pares chave=valor.
+     *
+     * @param op O nome curto da operação ou do evento (por exemplo, {@code inserir}).
+     */
+    public void info(String op) {
+        registrar(Nivel.INFO, op, null, null, null, null, null, null);
+    }
+
+    public void info(String op, String chave1, Object valor1) {
+        registrar(Nivel.INFO, op, chave1, valor1, null, null, null, null);
+    }
+
+    public void info(String op, String chave1, Object valor1, String chave2, Object valor2) {
+        registrar(Nivel.INFO, op, chave1, valor1, chave2, valor2, null, null);
+    }
+
+    public void info(String op, String chave1, Object valor1, String chave2, Object valor2, String chave3, Object valor3) {
+        registrar(Nivel.INFO, op, chave1, valor1, chave2, valor2, chave3, valor3);
+    }
+
+    /**
+     * Registra uma mensagem de aviso: algo inesperado, mas que a aplicação contorna.
+     * As variantes seguintes acrescentam até três pares chave=valor.
+     *
+     * @param op O nome curto da operação ou do evento (por exemplo, {@code inserir}).
+     */
+    public void aviso(String op) {
+        registrar(Nivel.AVISO, op, null, null, null, null, null, null);
+    }
+
+    public void aviso(String op, String chave1, Object valor1) {
+        registrar(Nivel.AVISO, op, chave1, valor1, null, null, null, null);
+    }
+
+    public void aviso(String op, String chave1, Object valor1, String chave2, Object valor2) {
+        registrar(Nivel.AVISO, op, chave1, valor1, chave2, valor2, null, null);
+    }
+
+    public void aviso(String op, String chave1, Object valor1, String chave2, Object valor2, String chave3, Object valor3) {
+        registrar(Nivel.AVISO, op, chave1, valor1, chave2, valor2, chave3, valor3);
+    }
+
+    /**
+     * Registra uma mensagem de erro.
+     * As variantes seguintes acrescentam até três pares chave=valor.
+     *
+     * @param op O nome curto da operação ou do evento (por exemplo, {@code inserir}).
+     */
+    public void erro(String op) {
+        registrar(Nivel.ERRO, op, null, null, null, null, null, null);
+    }
+
+    public void erro(String op, String chave1, Object valor1) {
+        registrar(Nivel.ERRO, op, chave1, valor1, null, null, null, null);
+    }
+
+    public void erro(String op, String chave1, Object valor1, String chave2, Object valor2) {
+        registrar(Nivel.ERRO, op, chave1, valor1, chave2, valor2, null, null);
+    }
+
+    public void erro(String op, String chave1, Object valor1, String chave2, Object valor2, String chave3, Object valor3) {
+        registrar(Nivel.ERRO, op, chave1, valor1, chave2, valor2, chave3, valor3);
+    }
+
+    /**
+     * Reserva uma posição do anel e copia a mensagem para ela. Com o anel cheio, DEBUG e INFO
+     * são descartados (e contados); AVISO e ERRO esperam por uma posição livre.
+     */
+    private void registrar(Nivel nivel, String op, String chave1, Object valor1, String chave2, Object valor2,
+            String chave3, Object valor3) {
+        if (!isAtivo(nivel)) {
+            return;
+        }
+        if (encerrado) {
+            escreverAgora(nivel, op, chave1, valor1, chave2, valor2, chave3, valor3);
+            return;
+        }
+        long sequencia;
+        while (true) {
+            sequencia = CAUDA.get();
+            long diferenca = SEQUENCIAS.get((int) sequencia & MASCARA) - sequencia;
+            if (diferenca == 0) {
+                if (CAUDA.compareAndSet(sequencia, sequencia + 1)) {
+                    break;
+                }
+            } else if (diferenca < 0) {
+                // Anel cheio: a thread do registro ainda não liberou esta posição.
+                if (nivel.compareTo(Nivel.AVISO) < 0) {
+                    DESCARTADAS.increment();
+                    return;
+                }
+                if (encerrado) {
+                    escreverAgora(nivel, op, chave1, valor1, chave2, valor2, chave3, valor3);
+                    return;
+                }
+                LockSupport.unpark(ESCRITORA);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+        int posicao = (int) sequencia & MASCARA;
+        EVENTOS[posicao].preencher(System.currentTimeMillis(), nivel, origem, Thread.currentThread().getName(),
+                op, chave1, valor1, chave2, valor2, chave3, valor3);
+        SEQUENCIAS.set(posicao, sequencia + 1);
+        if (escritoraDormindo) {
+            LockSupport.unpark(ESCRITORA);
+        }
+    }
+
+    /**
+     * Escreve a mensagem na thread de quem registra; usado depois que a thread do registro parou.
+     */
+    private void escreverAgora(Nivel nivel, String op, String chave1, Object valor1, String chave2, Object valor2,
+            String chave3, Object valor3) {
+        Evento evento = new Evento();
+        evento.preencher(System.currentTimeMillis(), nivel, origem, Thread.currentThread().getName(),
+                op, chave1, valor1, chave2, valor2, chave3, valor3);
+        StringBuilder linha = new StringBuilder(160);
+        evento.formatar(linha);
+        synchronized (Registro.class) {
+            saida.escrever(nivel, linha);
+            saida.descarregar();
+        }
+    }
+
+    /**
+     * Laço da thread do registro: formata e escreve as mensagens na ordem em que foram reservadas,
+     * e dorme quando o anel está vazio.
+     */
+    private static void escrever() {
+        StringBuilder linha = new StringBuilder(256);
+        long cabeca = 0;
+        while (true) {
+            int posicao = (int) cabeca & MASCARA;
+            if (SEQUENCIAS.get(posicao) == cabeca + 1) {
+                Evento evento = EVENTOS[posicao];
+                linha.setLength(0);
+                evento.formatar(linha);
+                Nivel nivel = evento.nivel;
+                evento.limpar();
+                SEQUENCIAS.set(posicao, cabeca + CAPACIDADE);
+                cabeca++;
+                escreverLinha(nivel, linha);
+                continue;
+            }
+            relatarDescartadas(linha);
+            descarregarSaida();
+            if (encerrando && CAUDA.get() == cabeca) {
+                break;
+            }
+            escritoraDormindo = true;
+            if (SEQUENCIAS.get(posicao) != cabeca + 1) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            escritoraDormindo = false;
+        }
+        encerrado = true;
+    }
+
+    /**
+     * Escreve uma linha sem deixar uma exceção da saída derrubar a thread do registro.
+     */
+    private static void escreverLinha(Nivel nivel, CharSequence linha) {
+        try {
+            saida.escrever(nivel, linha);
+        } catch (RuntimeException e) {
+            System.err.println("ERRO: Falha ao escrever no registro: " + e.getMessage());
+        }
+    }
+
+    private static void descarregarSaida() {
+        try {
+            saida.descarregar();
+        } catch (RuntimeException e) {
+            System.err.println("ERRO: Falha ao escrever no registro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Informa, em uma linha própria, quantas mensagens foram descartadas desde o último relato.
+     */
+    private static void relatarDescartadas(StringBuilder linha) {
+        long descartadas = DESCARTADAS.sumThenReset();
+        if (descartadas > 0) {
+            Evento evento = new Evento();
+            evento.preencher(System.currentTimeMillis(), Nivel.AVISO, "Registro", ESCRITORA.getName(),
+                    "descartar", "mensagens", descartadas, "motivo", "fila cheia", null, null);
+            linha.setLength(0);
+            evento.formatar(linha);
+            escreverLinha(Nivel.AVISO, linha);
+        }
+    }
+
+    /**
+     * Gancho de desligamento: pede à thread do registro que escreva o que falta e espera por ela.
+     * Mensagens registradas depois disso são escritas diretamente.
+     */
+    private static void encerrar() {
+        encerrando = true;
+        LockSupport.unpark(ESCRITORA);
+        try {
+            ESCRITORA.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Nivel lerNivel(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return Nivel.INFO;
+        }
+        try {
+            return Nivel.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("AVISO: Nivel de registro invalido: " + valor + ". Usando INFO.");
+            return Nivel.INFO;
+        }
+    }
+
+    /**
+     * Uma posição do anel: os argumentos de uma mensagem, ainda sem formatar.
+     */
+    private static final class Evento {
+
+        long instante;
+        Nivel nivel;
+        String origem;
+        String thread;
+        String op;
+        String chave1;
+        Object valor1;
+        String chave2;
+        Object valor2;
+        String chave3;
+        Object valor3;
+
+        void preencher(long instante, Nivel nivel, String origem, String thread, String op,
+                String chave1, Object valor1, String chave2, Object valor2, String chave3, Object valor3) {
+            this.instante = instante;
+            this.nivel = nivel;
+            this.origem = origem;
+            this.thread = thread;
+            this.op = op;
+            this.chave1 = chave1;
+            this.valor1 = valor1;
+            this.chave2 = chave2;
+            this.valor2 = valor2;
+            this.chave3 = chave3;
+            this.valor3 = valor3;
+        }
+
+        /** Solta as referências, para não reter objetos até a próxima volta do anel. */
+        void limpar() {
+            preencher(0, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        void formatar(StringBuilder linha) {
+            FORMATO_HORA.formatTo(Instant.ofEpochMilli(instante), linha);
+            linha.append(' ').append(nivel.rotulo).append(" [").append(origem).append("] op=").append(op);
+            par(linha, chave1, valor1);
+            par(linha, chave2, valor2);
+            par(linha, chave3, valor3);
+            if (thread != null && !thread.isEmpty()) {
+                linha.append(" thread=");
+                valor(linha, thread);
+            }
+        }
+
+        private static void par(StringBuilder linha, String chave, Object valor) {
+            if (chave != null) {
+                linha.append(' ').append(chave).append('=');
+                valor(linha, valor);
+            }
+        }
+
+        /**
+         * Escreve um valor; textos com espaços, aspas ou {@code =} ficam entre aspas.
+         */
+        private static void valor(StringBuilder linha, Object valor) {
+            if (valor instanceof Number || valor instanceof Boolean || valor == null) {
+                linha.append(valor);
+                return;
+            }
+            String texto = valor instanceof Throwable erro
+                    ? erro.getClass().getSimpleName() + ": " + erro.getMessage()
+                    : valor.toString();
+            boolean aspas = texto.isEmpty();
+            for (int i = 0; i < texto.length() && !aspas; i++) {
+                char c = texto.charAt(i);
+                aspas = c <= ' ' || c == '"' || c == '=' || c == '\\';
+            }
+            if (!aspas) {
+                linha.append(texto);
+                return;
+            }
+            linha.append('"');
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                switch (c) {
+                    case '"' -> linha.append("\\\"");
+                    case '\\' -> linha.append("\\\\");
+                    case '\n' -> linha.append("\\n");
+                    case '\r' -> linha.append("\\r");
+                    case '\t' -> linha.append("\\t");
+                    default -> linha.append(c);
+                }
+            }
+            linha.append('"');
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mycompany.taskmanagercrud;
+
+/**
+ * @author Thierry
+ *
+ * Resultado de uma atualização condicionada à versão da tarefa (controle de concorrência otimista),
+ * como {@link TarefaDAO#atualizarTarefa(String, String, String, Prioridade, long)}.
+ *
+ * Em um conflito, a tarefa devolvida é o estado atual no banco, para que quem chamou possa
+ * mesclar a sua alteração sobre ele ou apenas exibi-lo, sem recarregar todo o resto.
+ *
+ * @param situacao O que aconteceu com a atualização.
+ * @param tarefa A tarefa atualizada ({@link Situacao#ATUALIZADA}), o estado atual no banco
+ * ({@link Situacao#CONFLITO}) ou {@code null} nos demais casos.
+ */
+public record ResultadoAtualizacao(Situacao situacao, Tarefa tarefa) {
+
+    /**
+     * Situação final de uma atualização.
+     */
+    public enum Situacao {
+        /** A tarefa estava na versão esperada e foi atualizada. */
+        ATUALIZADA,
+        /** A tarefa foi alterada por outro cliente desde que foi lida; nada foi gravado. */
+        CONFLITO,
+        /** A tarefa não existe (foi excluída) ou o ID é inválido. */
+        NAO_ENCONTRADA,
+        /** Nenhum campo válido foi informado; nada foi gravado. */
+        SEM_ALTERACOES
+    }
+
+    /** @return Um resultado de sucesso com a tarefa atualizada. */
+    static ResultadoAtualizacao atualizada(Tarefa tarefa) {
+        return new ResultadoAtualizacao(Situacao.ATUALIZADA, tarefa);
+    }
+
+    /** @return Um resultado de conflito com o estado atual da tarefa no banco. */
+    static ResultadoAtualizacao conflito(Tarefa atual) {
+        return new ResultadoAtualizacao(Situacao.CONFLITO, atual);
+    }
+
+    /** @return Um resultado para uma tarefa que não existe. */
+    static ResultadoAtualizacao naoEncontrada() {
+        return new ResultadoAtualizacao(Situacao.NAO_ENCONTRADA, null);
+    }
+
+    /** @return Um resultado para uma atualização sem campos. */
+    static ResultadoAtualizacao semAlteracoes() {
+        return new ResultadoAtualizacao(Situacao.SEM_ALTERACOES, null);
+    }
+
+    /**
+     * @return {@code true} se a tarefa foi atualizada.
+     */
+    public boolean isAtualizada() {
+        return situacao == Situacao.ATUALIZADA;
+    }
+}
@@ -0,0 +1,136 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Thierry
+ *
+ * Resultado de uma operação em lote do {@link TarefaDAO}.
+ * Guarda a situação de cada item, na mesma ordem em que os itens foram informados,
+ * além do total de documentos efetivamente afetados no banco.
+ */
+public class ResultadoLote {
+
+    /**
+     * Situação final de um item do lote.
+     */
+    public enum Situacao {
+        /** O item foi aceito pelo MongoDB sem erro. */
+        SUCESSO,
+        /** O MongoDB rejeitou o item (por exemplo, ID duplicado em uma inserção). */
+        FALHA,
+        /** O ID informado não é um ObjectId válido; o item nem foi enviado. */
+        ID_INVALIDO,
+        /** O item não foi enviado porque um erro anterior interrompeu um lote ordenado. */
+        NAO_EXECUTADO
+    }
+
+    /** ID (String hexadecimal) de cada item; pode ser {@code null} antes de uma inserção falhar. */
+    private final String[] ids;
+    /** Situação de cada item. */
+    private final Situacao[] situacoes;
+    /** Mensagem de erro de cada item que falhou, ou {@code null}. */
+    private final String[] mensagens;
+    /** Total de documentos inseridos, modificados ou removidos. */
+    private long afetados;
+
+    /**
+     * Cria um resultado em que todos os itens ainda estão como {@link Situacao#NAO_EXECUTADO}.
+     *
+     * @param ids Os IDs dos itens, na ordem em que foram informados.
+     */
+    ResultadoLote(List<String> ids) {
+        this.ids = ids.toArray(new String[0]);
+        this.situacoes = new Situacao[this.ids.length];
+        this.mensagens = new String[this.ids.length];
+        Arrays.fill(situacoes, Situacao.NAO_EXECUTADO);
+    }
+
+    /** Define a situação de um item. */
+    void definir(int indice, Situacao situacao, String mensagem) {
+        situacoes[indice] = situacao;
+        mensagens[indice] = mensagem;
+    }
+
+    /** Soma documentos afetados por um dos comandos enviados. */
+    void somarAfetados(long quantidade) {
+        afetados += quantidade;
+    }
+
+    /**
+     * @return O número de itens do lote.
+     */
+    public int getTotal() {
+        return ids.length;
+    }
+
+    /**
+     * @return O total de documentos inseridos, modificados ou removidos no banco.
+     * Pode ser menor que {@link #getSucessos()} quando, por exemplo, um ID não existia mais
+     * ou o status já tinha o valor pedido.
+     */
+    public long getAfetados() {
+        return afetados;
+    }
+
+    /**
+     * @param indice A posição do item no lote.
+     * @return O ID do item.
+     */
+    public String getId(int indice) {
+        return ids[indice];
+    }
+
+    /**
+     * @param indice A posição do item no lote.
+     * @return A situação do item.
+     */
+    public Situacao getSituacao(int indice) {
+        return situacoes[indice];
+    }
+
+    /**
+     * @param indice A posição do item no lote.
+     * @return A mensagem de erro do item, ou {@code null} se ele não falhou.
+     */
+    public String getMensagem(int indice) {
+        return mensagens[indice];
+    }
+
+    /**
+     * @return Quantos itens foram aceitos sem erro.
+     */
+    public int getSucessos() {
+        int total = 0;
+        for (Situacao situacao : situacoes) {
+            if (situacao == Situacao.SUCESSO) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Os IDs dos itens aceitos sem erro.
+     */
+    public List<String> getIdsComSucesso() {
+        List<String> sucesso = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (situacoes[i] == Situacao.SUCESSO) {
+                sucesso.add(ids[i]);
+            }
+        }
+        return sucesso;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+               "total=" + getTotal() +
+               ", sucessos=" + getSucessos() +
+               ", afetados=" + afetados +
+               '}';
+    }
+}
@@ -0,0 +1,185 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author Thierry
+ *
+ * Resumo das {@link EstatisticasTarefas estatísticas} das tarefas, mantido em memória para que
+ * a interface possa exibi-lo a qualquer momento em tempo constante, sem consultar o banco.
+ *
+ * O resumo é contado uma vez no servidor, por {@link TarefaRepository#calcularEstatisticas()},
+ * e depois mantido pelos eventos do {@link TarefaRepository}, sem consultas: cada evento traz o
+ * estado anterior e o novo da tarefa, e o resumo desconta um e soma o outro.
+ *
+ * Alterações feitas por outros clientes não geram eventos, e nas operações em lote o estado
+ * anterior é lido um pouco antes da gravação (veja {@link OuvinteTarefas}). Para corrigir essas
+ * diferenças, o resumo é recontado a cada {@code revalidacaoMs} (reconciliação).
+ *
+ * No modo offline, a interface lê e grava no {@link ArmazemLocal}, que não gera eventos; o resumo
+ * é então apenas recontado nele, a cada {@code intervaloMs}, e acompanha o que a tabela exibe.
+ */
+public final class ResumoTarefas implements OuvinteTarefas, AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(ResumoTarefas.class);
+
+    /** Armazenamento cujos eventos mantêm o resumo, ou {@code null} se ele é só recontado. */
+    private final TarefaRepository repositorio;
+
+    /** Conta as estatísticas do zero (no servidor ou no armazenamento local). */
+    private final Supplier<EstatisticasTarefas> contagem;
+
+    /** Intervalo, em nanossegundos, entre duas reconciliações. */
+    private final long revalidacaoNanos;
+
+    /** O resumo atual. Só é substituído com {@code this} travado. */
+    private volatile EstatisticasTarefas estatisticas = EstatisticasTarefas.VAZIA;
+
+    /**
+     * Se a próxima verificação deve recontar sem esperar a reconciliação: antes da primeira
+     * contagem e depois de uma que falhou. Protegido por {@code this}.
+     */
+    private boolean recontagemPendente = true;
+
+    /**
+     * Número de alterações recebidas até agora. Comparado antes e depois de cada recontagem, para
+     * saber se alguma chegou enquanto ela rodava. Protegido por {@code this}.
+     */
+    private long alteracoes;
+
+    /** Momento (em {@link System#nanoTime()}) da última recontagem iniciada. Usado só pelo agendador. */
+    private long ultimaRecontagem;
+
+    /** Thread única que faz as recontagens. */
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "resumo-tarefas");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Cria o resumo, passa a ouvir as alterações do armazenamento e agenda a primeira contagem,
+     * feita em segundo plano. Até ela terminar, o resumo tem só as alterações recebidas.
+     *
+     * @param repositorio O armazenamento das tarefas.
+     * @param intervaloMs Intervalo, em milissegundos, em que o agendador verifica se é hora de
+     * recontar; é também a espera até uma nova tentativa depois de uma contagem que falhou.
+     * @param revalidacaoMs Intervalo, em milissegundos, entre duas reconciliações.
+     */
+    public ResumoTarefas(TarefaRepository repositorio, long intervaloMs, long revalidacaoMs) {
+        this(repositorio, repositorio::calcularEstatisticas, intervaloMs, revalidacaoMs);
+    }
+
+    /**
+     * Cria um resumo sem eventos, recontado a cada {@code intervaloMs}. Serve para contagens locais
+     * e baratas, como a do {@link ArmazemLocal#calcularEstatisticas()} no modo offline.
+     *
+     * @param contagem Conta as estatísticas do zero.
+     * @param intervaloMs Intervalo, em milissegundos, entre duas recontagens.
+     */
+    public ResumoTarefas(Supplier<EstatisticasTarefas> contagem, long intervaloMs) {
+        this(null, contagem, intervaloMs, 0);
+    }
+
+    private ResumoTarefas(TarefaRepository repositorio, Supplier<EstatisticasTarefas> contagem, long intervaloMs, long revalidacaoMs) {
+        this.repositorio = repositorio;
+        this.contagem = contagem;
+        this.revalidacaoNanos = TimeUnit.MILLISECONDS.toNanos(revalidacaoMs);
+        if (repositorio != null) {
+            repositorio.adicionarOuvinte(this);
+        }
+        agendador.scheduleWithFixedDelay(this::recontarSeNecessario, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return O resumo mais recente. Não acessa o banco.
+     */
+    public EstatisticasTarefas getEstatisticas() {
+        return estatisticas;
+    }
+
+    @Override
+    public synchronized void tarefaAdicionada(Tarefa tarefa) {
+        somar(tarefa, 1);
+    }
+
+    @Override
+    public synchronized void tarefaAtualizada(Tarefa anterior, Tarefa tarefa) {
+        // Alterações de título ou descrição não mudam as contagens.
+        if (anterior.getPrioridade() != tarefa.getPrioridade() || anterior.isConcluida() != tarefa.isConcluida()) {
+            somar(anterior, -1);
+            somar(tarefa, 1);
+        }
+    }
+
+    @Override
+    public synchronized void tarefaExcluida(Tarefa tarefa) {
+        somar(tarefa, -1);
+    }
+
+    /**
+     * Soma (ou, com {@code quantidade} negativa, desconta) uma tarefa no resumo. Chamado com
+     * {@code this} travado.
+     */
+    private void somar(Tarefa tarefa, long quantidade) {
+        estatisticas = estatisticas.somar(tarefa.getPrioridade(), tarefa.isConcluida(), quantidade);
+        alteracoes++;
+    }
+
+    /**
+     * Reconta o resumo se a contagem ainda não foi feita (ou falhou) ou se o intervalo de
+     * reconciliação passou.
+     *
+     * A agregação devolve só as contagens, então não há como saber se ela viu uma alteração
+     * recebida enquanto rodava; somá-la de novo poderia contá-la em dobro. Se alguma chegou nesse
+     * meio-tempo, a recontagem é descartada e refeita no próximo intervalo; até lá, vale o resumo
+     * mantido pelos eventos, que já inclui a alteração.
+     */
+    private void recontarSeNecessario() {
+        long alteracoesAntes;
+        synchronized (this) {
+            if (!recontagemPendente && System.nanoTime() - ultimaRecontagem < revalidacaoNanos) {
+                return;
+            }
+            alteracoesAntes = alteracoes;
+        }
+        ultimaRecontagem = System.nanoTime();
+        try {
+            EstatisticasTarefas recontadas = contagem.get();
+            synchronized (this) {
+                if (alteracoes != alteracoesAntes) {
+                    REGISTRO.debug("recontagemDescartada", "alteracoes", alteracoes - alteracoesAntes);
+                    recontagemPendente = true;
+                    return;
+                }
+                if (repositorio != null && !recontadas.equals(estatisticas)) {
+                    // Alterações de outros clientes, ou de lotes que correram com elas.
+                    REGISTRO.debug("reconciliar", "antes", estatisticas, "depois", recontadas);
+                }
+                estatisticas = recontadas;
+                recontagemPendente = false;
+            }
+        } catch (RuntimeException e) {
+            // Tenta de novo no próximo intervalo; até lá, o resumo mantido pelos eventos continua valendo.
+            synchronized (this) {
+                recontagemPendente = true;
+            }
+            REGISTRO.erro("recontar", "erro", e.getMessage());
+        }
+    }
+
+    /**
+     * Para de ouvir as alterações e encerra as recontagens.
+     */
+    @Override
+    public void close() {
+        if (repositorio != null) {
+            repositorio.removerOuvinte(this);
+        }
+        agendador.shutdownNow();
+    }
+}
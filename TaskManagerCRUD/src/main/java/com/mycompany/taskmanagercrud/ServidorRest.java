@@ -0,0 +1,731 @@
+package com.mycompany.taskmanagercrud;
+
+import com.mongodb.MongoException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Servidor HTTP sem interface gráfica que expõe as operações do {@link TarefaRepository} (MongoDB ou memória) como uma API REST em JSON.
+ * Usa o {@link HttpServer} do JDK com uma thread virtual por requisição: uma requisição esperando
+ * o MongoDB não ocupa uma thread do sistema, então milhares de clientes simultâneos cabem em um heap pequeno.
+ *
+ * Rotas (todas sob {@code /tarefas}):
+ * <pre>
+ * GET    /tarefas                 lista uma página (prioridade, concluida, titulo, ordenarPor, decrescente, limite, apos)
+ * GET    /tarefas/contagem        conta as tarefas dos mesmos filtros
+ * POST   /tarefas                 cria uma tarefa
+ * GET    /tarefas/{id}            busca uma tarefa
+ * PUT    /tarefas/{id}            altera título, descrição, prioridade e/ou status (condicional com "versao")
+ * POST   /tarefas/{id}/alternar   inverte o status de conclusão
+ * DELETE /tarefas/{id}            exclui uma tarefa (condicional com ?versao=N)
+ * POST   /tarefas/lote            cria várias tarefas          {"tarefas": [...]}
+ * POST   /tarefas/lote/status     define o status de várias    {"ids": [...], "concluida": true}
+ * POST   /tarefas/lote/excluir    exclui várias                {"ids": [...]}
+ * GET    /metrics                 métricas no formato do Prometheus ({@link MetricasTarefas})
+ * </pre>
+ *
+ * As respostas são escritas em fluxo (codificação chunked), direto do resultado da consulta para o socket.
+ * Leituras devolvem um {@code ETag} calculado sobre o conteúdo; uma requisição com {@code If-None-Match}
+ * igual recebe {@code 304 Not Modified}, sem corpo.
+ *
+ * Cada tarefa traz a sua {@code versao}. Um PUT ou DELETE que a informe só é aplicado se a tarefa
+ * ainda estiver nessa versão; caso contrário, a resposta é {@code 409 Conflict} com o estado atual.
+ */
+public class ServidorRest implements AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(ServidorRest.class);
+
+    /** Tamanho padrão de uma página da listagem. */
+    private static final int LIMITE_PADRAO = 100;
+
+    /** Tamanho máximo de uma página da listagem. */
+    private static final int LIMITE_MAXIMO = 1000;
+
+    /** Número máximo de itens em uma operação em lote. */
+    private static final int LIMITE_LOTE = 10_000;
+
+    /** JSON comum (sem os tipos estendidos do MongoDB), em uma linha. */
+    private static final JsonWriterSettings CONFIGURACAO_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+
+    /** Armazenamento que atende as requisições. */
+    private final TarefaRepository repositorio;
+
+    /** O servidor HTTP do JDK. */
+    private final HttpServer servidor;
+
+    /** Executor que cria uma thread virtual por requisição. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Liberado quando o servidor é parado, para quem espera em {@link #aguardarEncerramento()}. */
+    private final CountDownLatch encerrado = new CountDownLatch(1);
+
+    /**
+     * Erro que deve ser devolvido ao cliente com um status HTTP específico.
+     */
+    private static final class ErroHttp extends RuntimeException {
+
+        private final int status;
+
+        ErroHttp(int status, String mensagem) {
+            super(mensagem);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Tarefa lida do corpo de uma requisição. O status e a versão ficam à parte porque, em uma
+     * alteração, "não informado" é diferente de {@code false} ou de zero.
+     */
+    private record TarefaRecebida(Tarefa tarefa, Boolean concluida, Long versao) {
+    }
+
+    /**
+     * Cria o servidor, ainda parado.
+     *
+     * @param repositorio O armazenamento que atende as requisições.
+     * @param endereco O endereço e a porta em que o servidor escuta.
+     * @param backlog Quantas conexões podem aguardar na fila do sistema operacional antes de serem aceitas.
+     * @throws IOException se a porta não puder ser aberta.
+     */
+    public ServidorRest(TarefaRepository repositorio, InetSocketAddress endereco, int backlog) throws IOException {
+        this.repositorio = repositorio;
+        this.servidor = HttpServer.create(endereco, backlog);
+        servidor.setExecutor(executor);
+    }
+
+    /**
+     * Começa a atender as requisições.
+     */
+    public void iniciar() {
+        servidor.createContext("/tarefas", this::tratar);
+        servidor.createContext("/metrics", MetricasTarefas::responder);
+        servidor.start();
+        REGISTRO.info("iniciar", "url", "http://" + servidor.getAddress().getHostString()
+                + ":" + servidor.getAddress().getPort() + "/tarefas");
+    }
+
+    /**
+     * Bloqueia a thread atual até o servidor ser parado (por exemplo, ao encerrar a JVM).
+     */
+    public void aguardarEncerramento() {
+        try {
+            encerrado.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Para de aceitar conexões, dá até um segundo para as requisições em andamento terminarem
+     * e encerra o executor.
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        executor.close();
+        encerrado.countDown();
+        REGISTRO.info("parar");
+    }
+
+    /**
+     * Encaminha uma requisição para a rota correspondente e converte erros em respostas HTTP.
+     */
+    private void tratar(HttpExchange troca) throws IOException {
+        try {
+            String caminho = troca.getRequestURI().getPath().substring("/tarefas".length());
+            if (!caminho.isEmpty() && !caminho.startsWith("/")) {
+                // O contexto "/tarefas" também recebe, por prefixo, caminhos como "/tarefasX".
+                throw new ErroHttp(404, "Rota inexistente: " + troca.getRequestURI().getPath());
+            }
+            String[] partes = caminho.isEmpty() || caminho.equals("/") ? new String[0] : caminho.substring(1).split("/");
+            String metodo = troca.getRequestMethod();
+            if (partes.length == 0) {
+                switch (metodo) {
+                    case "GET" -> listar(troca);
+                    case "POST" -> criar(troca);
+                    default -> throw metodoNaoPermitido(troca, "GET, POST");
+                }
+            } else if (partes[0].equals("contagem") && partes.length == 1) {
+                exigirMetodo(troca, "GET");
+                contar(troca);
+            } else if (partes[0].equals("lote")) {
+                exigirMetodo(troca, "POST");
+                switch (partes.length == 1 ? "" : partes.length == 2 ? partes[1] : "?") {
+                    case "" -> criarEmLote(troca);
+                    case "status" -> definirStatusEmLote(troca);
+                    case "excluir" -> excluirEmLote(troca);
+                    default -> throw new ErroHttp(404, "Rota inexistente: " + troca.getRequestURI().getPath());
+                }
+            } else if (partes.length == 1) {
+                String id = validarId(partes[0]);
+                switch (metodo) {
+                    case "GET" -> buscar(troca, id);
+                    case "PUT" -> atualizar(troca, id);
+                    case "DELETE" -> excluir(troca, id);
+                    default -> throw metodoNaoPermitido(troca, "GET, PUT, DELETE");
+                }
+            } else if (partes.length == 2 && partes[1].equals("alternar")) {
+                exigirMetodo(troca, "POST");
+                alternar(troca, validarId(partes[0]));
+            } else {
+                throw new ErroHttp(404, "Rota inexistente: " + troca.getRequestURI().getPath());
+            }
+        } catch (ErroHttp e) {
+            responderErro(troca, e.status, e.getMessage());
+        } catch (IllegalArgumentException | JsonParseException | BsonInvalidOperationException e) {
+            // Parâmetros ou corpo inválidos (NumberFormatException também cai aqui).
+            responderErro(troca, 400, e.getMessage());
+        } catch (MongoException e) {
+            REGISTRO.erro(troca.getRequestMethod(), "uri", troca.getRequestURI(), "status", 503, "erro", e.getMessage());
+            responderErro(troca, 503, "Banco de dados indisponivel.");
+        } catch (RuntimeException e) {
+            REGISTRO.erro(troca.getRequestMethod(), "uri", troca.getRequestURI(), "status", 500, "erro", e);
+            responderErro(troca, 500, "Erro interno.");
+        } finally {
+            troca.close();
+        }
+    }
+
+    // --- Rotas ---
+
+    /** GET /tarefas: uma página da consulta, com o ID da última tarefa em {@code proxima}. */
+    private void listar(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = lerParametros(troca);
+        ConsultaTarefas consulta = consultaDe(parametros);
+        int limite = Integer.parseInt(parametros.getOrDefault("limite", String.valueOf(LIMITE_PADRAO)));
+        if (limite <= 0 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("O limite deve estar entre 1 e " + LIMITE_MAXIMO + ": " + limite);
+        }
+        Tarefa apos = null;
+        if (parametros.containsKey("apos")) {
+            // A âncora da paginação precisa do campo de ordenação, não só do ID.
+            apos = repositorio.buscarTarefaPorId(validarId(parametros.get("apos")));
+            if (apos == null) {
+                throw new ErroHttp(400, "A tarefa indicada em 'apos' nao existe: " + parametros.get("apos"));
+            }
+        }
+        List<Tarefa> pagina = repositorio.listarTarefasPaginado(consulta, apos, limite);
+        String proxima = pagina.size() == limite ? pagina.get(pagina.size() - 1).getId() : null;
+        if (naoModificado(troca, etagDe(pagina))) {
+            return;
+        }
+        try (Writer saida = iniciarResposta(troca, 200)) {
+            JsonWriter json = new JsonWriter(saida, CONFIGURACAO_JSON);
+            json.writeStartDocument();
+            json.writeStartArray("tarefas");
+            for (Tarefa tarefa : pagina) {
+                escreverTarefa(json, tarefa);
+            }
+            json.writeEndArray();
+            if (proxima == null) {
+                json.writeNull("proxima");
+            } else {
+                json.writeString("proxima", proxima);
+            }
+            json.writeEndDocument();
+        }
+    }
+
+    /** GET /tarefas/contagem */
+    private void contar(HttpExchange troca) throws IOException {
+        long total = repositorio.contarTarefas(consultaDe(lerParametros(troca)));
+        try (Writer saida = iniciarResposta(troca, 200)) {
+            JsonWriter json = new JsonWriter(saida, CONFIGURACAO_JSON);
+            json.writeStartDocument();
+            json.writeInt64("total", total);
+            json.writeEndDocument();
+        }
+    }
+
+    /** GET /tarefas/{id} */
+    private void buscar(HttpExchange troca, String id) throws IOException {
+        Tarefa tarefa = repositorio.buscarTarefaPorId(id);
+        if (tarefa == null) {
+            throw new ErroHttp(404, "Tarefa nao encontrada: " + id);
+        }
+        if (!naoModificado(troca, etagDe(List.of(tarefa)))) {
+            responderTarefa(troca, 200, tarefa);
+        }
+    }
+
+    /** POST /tarefas */
+    private void criar(HttpExchange troca) throws IOException {
+        Tarefa tarefa = lerTarefa(new JsonReader(lerCorpo(troca))).tarefa();
+        exigirTitulo(tarefa);
+        // O ID é sempre gerado pelo servidor.
+        tarefa.setObjectId(null);
+        repositorio.adicionarTarefa(tarefa);
+        troca.getResponseHeaders().set("Location", "/tarefas/" + tarefa.getId());
+        troca.getResponseHeaders().set("ETag", etagDe(List.of(tarefa)));
+        responderTarefa(troca, 201, tarefa);
+    }
+
+    /**
+     * PUT /tarefas/{id}: os campos de texto presentes são alterados; se {@code concluida} vier
+     * no corpo, o status também é definido (em uma segunda operação).
+     */
+    private void atualizar(HttpExchange troca, String id) throws IOException {
+        TarefaRecebida recebida = lerTarefa(new JsonReader(lerCorpo(troca)));
+        Tarefa alteracoes = recebida.tarefa();
+        boolean alteraDetalhes = alteracoes.getTitulo() != null || alteracoes.getDescricao() != null
+                || alteracoes.getPrioridade() != null;
+        boolean alteraStatus = recebida.concluida() != null;
+        if (!alteraDetalhes && !alteraStatus) {
+            throw new ErroHttp(400, "Nenhum campo para alterar.");
+        }
+        if (recebida.versao() != null) {
+            atualizarNaVersao(troca, id, recebida, alteraDetalhes, alteraStatus);
+            return;
+        }
+        Tarefa atualizada = null;
+        if (alteraDetalhes) {
+            atualizada = repositorio.atualizarTarefa(id, alteracoes.getTitulo(), alteracoes.getDescricao(),
+                    alteracoes.getPrioridade());
+        }
+        if (alteraStatus && (atualizada != null || !alteraDetalhes)) {
+            atualizada = repositorio.atualizarStatusTarefa(id, recebida.concluida());
+        }
+        if (atualizada == null) {
+            throw new ErroHttp(404, "Tarefa nao encontrada: " + id);
+        }
+        troca.getResponseHeaders().set("ETag", etagDe(List.of(atualizada)));
+        responderTarefa(troca, 200, atualizada);
+    }
+
+    /**
+     * PUT /tarefas/{id} com {@code versao} no corpo: cada alteração só é aplicada se a tarefa ainda
+     * estiver na versão esperada. Em um conflito, responde {@code 409} com o estado atual da tarefa.
+     */
+    private void atualizarNaVersao(HttpExchange troca, String id, TarefaRecebida recebida,
+            boolean alteraDetalhes, boolean alteraStatus) throws IOException {
+        Tarefa alteracoes = recebida.tarefa();
+        long versao = recebida.versao();
+        ResultadoAtualizacao resultado = null;
+        if (alteraDetalhes) {
+            resultado = repositorio.atualizarTarefa(id, alteracoes.getTitulo(), alteracoes.getDescricao(),
+                    alteracoes.getPrioridade(), versao);
+            if (resultado.isAtualizada()) {
+                versao = resultado.tarefa().getVersao();
+            }
+        }
+        if (alteraStatus && (resultado == null || resultado.isAtualizada())) {
+            resultado = repositorio.atualizarStatusTarefa(id, recebida.concluida(), versao);
+        }
+        switch (resultado.situacao()) {
+            case ATUALIZADA, CONFLITO -> {
+                troca.getResponseHeaders().set("ETag", etagDe(List.of(resultado.tarefa())));
+                responderTarefa(troca, resultado.isAtualizada() ? 200 : 409, resultado.tarefa());
+            }
+            case NAO_ENCONTRADA -> throw new ErroHttp(404, "Tarefa nao encontrada: " + id);
+            case SEM_ALTERACOES -> throw new ErroHttp(400, "Nenhum campo para alterar.");
+        }
+    }
+
+    /** POST /tarefas/{id}/alternar */
+    private void alternar(HttpExchange troca, String id) throws IOException {
+        Tarefa atualizada = repositorio.alternarStatusTarefa(id);
+        if (atualizada == null) {
+            throw new ErroHttp(404, "Tarefa nao encontrada: " + id);
+        }
+        troca.getResponseHeaders().set("ETag", etagDe(List.of(atualizada)));
+        responderTarefa(troca, 200, atualizada);
+    }
+
+    /** DELETE /tarefas/{id}, condicionado à versão se houver {@code ?versao=N} */
+    private void excluir(HttpExchange troca, String id) throws IOException {
+        String versao = lerParametros(troca).get("versao");
+        boolean excluida = versao == null ? repositorio.excluirTarefa(id) : repositorio.excluirTarefaNaVersao(id, Long.parseLong(versao));
+        if (!excluida) {
+            Tarefa atual = versao == null ? null : repositorio.buscarTarefaPorId(id);
+            if (atual == null) {
+                throw new ErroHttp(404, "Tarefa nao encontrada: " + id);
+            }
+            troca.getResponseHeaders().set("ETag", etagDe(List.of(atual)));
+            responderTarefa(troca, 409, atual);
+            return;
+        }
+        troca.sendResponseHeaders(204, -1);
+    }
+
+    /** POST /tarefas/lote, com {@code {"tarefas": [...]}} */
+    private void criarEmLote(HttpExchange troca) throws IOException {
+        List<Tarefa> tarefas = new ArrayList<>();
+        BsonReader leitor = new JsonReader(lerCorpo(troca));
+        leitor.readStartDocument();
+        while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (!leitor.readName().equals("tarefas")) {
+                leitor.skipValue();
+                continue;
+            }
+            leitor.readStartArray();
+            while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                Tarefa tarefa = lerTarefa(leitor).tarefa();
+                exigirTitulo(tarefa);
+                tarefa.setObjectId(null);
+                tarefas.add(tarefa);
+                limitarLote(tarefas.size());
+            }
+            leitor.readEndArray();
+        }
+        leitor.readEndDocument();
+        responderLote(troca, repositorio.adicionarTarefasEmLote(tarefas, OpcoesLote.PADRAO));
+    }
+
+    /** POST /tarefas/lote/status, com {@code {"ids": [...], "concluida": true}} */
+    private void definirStatusEmLote(HttpExchange troca) throws IOException {
+        List<String> ids = new ArrayList<>();
+        Boolean concluida = null;
+        BsonReader leitor = new JsonReader(lerCorpo(troca));
+        leitor.readStartDocument();
+        while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (leitor.readName()) {
+                case "ids" -> lerIds(leitor, ids);
+                case "concluida" -> concluida = leitor.readBoolean();
+                default -> leitor.skipValue();
+            }
+        }
+        leitor.readEndDocument();
+        if (concluida == null) {
+            throw new ErroHttp(400, "O campo 'concluida' e obrigatorio.");
+        }
+        responderLote(troca, repositorio.definirStatusEmLote(ids, concluida, OpcoesLote.PADRAO));
+    }
+
+    /** POST /tarefas/lote/excluir, com {@code {"ids": [...]}} */
+    private void excluirEmLote(HttpExchange troca) throws IOException {
+        List<String> ids = new ArrayList<>();
+        BsonReader leitor = new JsonReader(lerCorpo(troca));
+        leitor.readStartDocument();
+        while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (leitor.readName().equals("ids")) {
+                lerIds(leitor, ids);
+            } else {
+                leitor.skipValue();
+            }
+        }
+        leitor.readEndDocument();
+        responderLote(troca, repositorio.excluirTarefasEmLote(ids, OpcoesLote.PADRAO));
+    }
+
+    // --- Requisição ---
+
+    /**
+     * Lê os parâmetros da query string (o último valor prevalece em caso de repetição).
+     */
+    private static Map<String, String> lerParametros(HttpExchange troca) {
+        Map<String, String> parametros = new HashMap<>();
+        String query = troca.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parametros;
+        }
+        for (String par : query.split("&")) {
+            int igual = par.indexOf('=');
+            String nome = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+            String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+            parametros.put(nome, valor);
+        }
+        return parametros;
+    }
+
+    /**
+     * Monta a consulta a partir dos parâmetros {@code prioridade}, {@code prioridadeMinima} (essa
+     * prioridade ou mais urgente), {@code concluida}, {@code titulo} (início do título),
+     * {@code ordenarPor} (id, titulo, descricao, prioridade ou concluida) e {@code decrescente}.
+     * Prioridades inválidas geram {@link IllegalArgumentException}.
+     */
+    private static ConsultaTarefas consultaDe(Map<String, String> parametros) {
+        ConsultaTarefas consulta = ConsultaTarefas.TODAS;
+        if (parametros.containsKey("prioridade")) {
+            consulta = consulta.comPrioridade(Prioridade.converter(parametros.get("prioridade")));
+        }
+        if (parametros.containsKey("prioridadeMinima")) {
+            consulta = consulta.comPrioridadeMinima(Prioridade.converter(parametros.get("prioridadeMinima")));
+        }
+        if (parametros.containsKey("concluida")) {
+            consulta = consulta.comConcluida(Boolean.valueOf(parametros.get("concluida")));
+        }
+        if (parametros.containsKey("titulo")) {
+            consulta = consulta.comPrefixoTitulo(parametros.get("titulo"));
+        }
+        if (parametros.containsKey("ordenarPor") || parametros.containsKey("decrescente")) {
+            ConsultaTarefas.Campo campo = ConsultaTarefas.Campo.valueOf(
+                    parametros.getOrDefault("ordenarPor", "id").toUpperCase(Locale.ROOT));
+            consulta = consulta.ordenadaPor(campo, Boolean.parseBoolean(parametros.get("decrescente")));
+        }
+        return consulta;
+    }
+
+    /**
+     * Abre o corpo da requisição para leitura em fluxo.
+     */
+    private static InputStreamReader lerCorpo(HttpExchange troca) {
+        return new InputStreamReader(troca.getRequestBody(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lê uma tarefa em JSON: {@code id}, {@code titulo}, {@code descricao}, {@code prioridade},
+     * {@code concluida} e {@code versao}. Campos ausentes ou nulos ficam sem valor; campos desconhecidos são ignorados.
+     */
+    private static TarefaRecebida lerTarefa(BsonReader leitor) {
+        Tarefa tarefa = new Tarefa(null, null, null);
+        Boolean concluida = null;
+        Long versao = null;
+        leitor.readStartDocument();
+        while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String campo = leitor.readName();
+            if (leitor.getCurrentBsonType() == BsonType.NULL) {
+                leitor.readNull();
+                continue;
+            }
+            switch (campo) {
+                case "id" -> tarefa.setId(validarId(leitor.readString()));
+                case "titulo" -> tarefa.setTitulo(leitor.readString());
+                case "descricao" -> tarefa.setDescricao(leitor.readString());
+                case "prioridade" -> tarefa.setPrioridade(switch (leitor.getCurrentBsonType()) {
+                    // O rótulo é o formato da API; o código numérico também é aceito.
+                    case STRING -> Prioridade.converter(leitor.readString());
+                    case INT32 -> prioridadeDeCodigo(leitor.readInt32());
+                    default -> throw new IllegalArgumentException("A prioridade deve ser Baixa, Media ou Alta.");
+                });
+                case "concluida" -> concluida = leitor.readBoolean();
+                case "versao" -> versao = switch (leitor.getCurrentBsonType()) {
+                    case INT32 -> (long) leitor.readInt32();
+                    case INT64 -> leitor.readInt64();
+                    default -> throw new IllegalArgumentException("A versao deve ser um numero inteiro.");
+                };
+                default -> leitor.skipValue();
+            }
+        }
+        leitor.readEndDocument();
+        tarefa.setConcluida(Boolean.TRUE.equals(concluida));
+        return new TarefaRecebida(tarefa, concluida, versao);
+    }
+
+    private static Prioridade prioridadeDeCodigo(int codigo) {
+        Prioridade prioridade = Prioridade.deCodigo(codigo);
+        if (prioridade == null) {
+            throw new IllegalArgumentException("Prioridade invalida: " + codigo + " (use 1, 2 ou 3).");
+        }
+        return prioridade;
+    }
+
+    /**
+     * Lê um array de IDs (Strings hexadecimais). IDs inválidos são mantidos:
+     * a operação em lote os reporta como {@link ResultadoLote.Situacao#ID_INVALIDO}.
+     */
+    private static void lerIds(BsonReader leitor, List<String> ids) {
+        leitor.readStartArray();
+        while (leitor.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            ids.add(leitor.readString());
+            limitarLote(ids.size());
+        }
+        leitor.readEndArray();
+    }
+
+    private static void limitarLote(int tamanho) {
+        if (tamanho > LIMITE_LOTE) {
+            throw new ErroHttp(413, "O lote excede o limite de " + LIMITE_LOTE + " itens.");
+        }
+    }
+
+    private static void exigirTitulo(Tarefa tarefa) {
+        if (tarefa.getTitulo() == null || tarefa.getTitulo().isBlank()) {
+            throw new ErroHttp(400, "O campo 'titulo' e obrigatorio.");
+        }
+    }
+
+    private static String validarId(String id) {
+        if (!ObjectId.isValid(id)) {
+            throw new ErroHttp(400, "ID invalido: " + id);
+        }
+        return id;
+    }
+
+    private static void exigirMetodo(HttpExchange troca, String metodo) {
+        if (!troca.getRequestMethod().equals(metodo)) {
+            throw metodoNaoPermitido(troca, metodo);
+        }
+    }
+
+    private static ErroHttp metodoNaoPermitido(HttpExchange troca, String permitidos) {
+        troca.getResponseHeaders().set("Allow", permitidos);
+        return new ErroHttp(405, "Metodo nao permitido: " + troca.getRequestMethod());
+    }
+
+    // --- Resposta ---
+
+    /**
+     * Envia os cabeçalhos de uma resposta JSON de tamanho desconhecido (codificação chunked)
+     * e devolve um escritor com buffer sobre o corpo.
+     */
+    private static Writer iniciarResposta(HttpExchange troca, int status) throws IOException {
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(status, 0);
+        return new BufferedWriter(new OutputStreamWriter(troca.getResponseBody(), StandardCharsets.UTF_8), 8 * 1024);
+    }
+
+    private static void responderTarefa(HttpExchange troca, int status, Tarefa tarefa) throws IOException {
+        try (Writer saida = iniciarResposta(troca, status)) {
+            escreverTarefa(new JsonWriter(saida, CONFIGURACAO_JSON), tarefa);
+        }
+    }
+
+    /**
+     * Responde com o resumo de uma operação em lote e a situação de cada item.
+     */
+    private static void responderLote(HttpExchange troca, ResultadoLote resultado) throws IOException {
+        try (Writer saida = iniciarResposta(troca, 200)) {
+            JsonWriter json = new JsonWriter(saida, CONFIGURACAO_JSON);
+            json.writeStartDocument();
+            json.writeInt32("total", resultado.getTotal());
+            json.writeInt32("sucessos", resultado.getSucessos());
+            json.writeInt64("afetados", resultado.getAfetados());
+            json.writeStartArray("itens");
+            for (int i = 0; i < resultado.getTotal(); i++) {
+                json.writeStartDocument();
+                escreverTexto(json, "id", resultado.getId(i));
+                json.writeString("situacao", resultado.getSituacao(i).name());
+                if (resultado.getMensagem(i) != null) {
+                    json.writeString("mensagem", resultado.getMensagem(i));
+                }
+                json.writeEndDocument();
+            }
+            json.writeEndArray();
+            json.writeEndDocument();
+        }
+    }
+
+    /**
+     * Responde com {@code {"erro": "..."}}. Se a resposta já tiver começado (um erro no meio de
+     * uma listagem), não há mais como mudar o status, e a conexão é apenas encerrada.
+     */
+    private static void responderErro(HttpExchange troca, int status, String mensagem) throws IOException {
+        if (troca.getResponseCode() != -1) {
+            return;
+        }
+        try (Writer saida = iniciarResposta(troca, status)) {
+            JsonWriter json = new JsonWriter(saida, CONFIGURACAO_JSON);
+            json.writeStartDocument();
+            escreverTexto(json, "erro", mensagem);
+            json.writeEndDocument();
+        }
+    }
+
+    private static void escreverTarefa(BsonWriter json, Tarefa tarefa) {
+        json.writeStartDocument();
+        escreverTexto(json, "id", tarefa.getId());
+        escreverTexto(json, "titulo", tarefa.getTitulo());
+        escreverTexto(json, "descricao", tarefa.getDescricao());
+        escreverTexto(json, "prioridade", rotuloDe(tarefa.getPrioridade()));
+        json.writeBoolean("concluida", tarefa.isConcluida());
+        json.writeInt64("versao", tarefa.getVersao());
+        json.writeEndDocument();
+    }
+
+    /** Na API, a prioridade é exposta pelo rótulo ("Alta"), como antes de o banco guardar o código. */
+    private static String rotuloDe(Prioridade prioridade) {
+        return prioridade == null ? null : prioridade.getRotulo();
+    }
+
+    private static void escreverTexto(BsonWriter json, String campo, String valor) {
+        if (valor == null) {
+            json.writeNull(campo);
+        } else {
+            json.writeString(campo, valor);
+        }
+    }
+
+    // --- ETag ---
+
+    /**
+     * Calcula o ETag de uma resposta a partir do conteúdo das tarefas (um resumo SHA-256 truncado).
+     */
+    private static String etagDe(List<Tarefa> tarefas) {
+        MessageDigest resumo;
+        try {
+            resumo = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponivel", e);
+        }
+        for (Tarefa tarefa : tarefas) {
+            atualizarResumo(resumo, tarefa.getId());
+            atualizarResumo(resumo, tarefa.getTitulo());
+            atualizarResumo(resumo, tarefa.getDescricao());
+            atualizarResumo(resumo, rotuloDe(tarefa.getPrioridade()));
+            resumo.update((byte) (tarefa.isConcluida() ? 1 : 0));
+            resumo.update(ByteBuffer.allocate(Long.BYTES).putLong(0, tarefa.getVersao()));
+        }
+        return "\"" + HexFormat.of().formatHex(resumo.digest(), 0, 16) + "\"";
+    }
+
+    /** Inclui um texto no resumo; o separador impede que ("ab", "c") e ("a", "bc") coincidam. */
+    private static void atualizarResumo(MessageDigest resumo, String valor) {
+        if (valor == null) {
+            resumo.update((byte) 1);
+        } else {
+            resumo.update(valor.getBytes(StandardCharsets.UTF_8));
+            resumo.update((byte) 0);
+        }
+    }
+
+    /**
+     * Define o ETag da resposta e, se o cliente já tiver essa versão ({@code If-None-Match}),
+     * responde {@code 304 Not Modified}.
+     *
+     * @return {@code true} se a resposta 304 foi enviada.
+     */
+    private static boolean naoModificado(HttpExchange troca, String etag) throws IOException {
+        troca.getResponseHeaders().set("ETag", etag);
+        troca.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = troca.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                troca.sendResponseHeaders(304, -1);
+                return true;
+            }
+        }
+        return false;
+    }
+}
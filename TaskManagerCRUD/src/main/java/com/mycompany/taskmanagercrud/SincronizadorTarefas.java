@@ -0,0 +1,314 @@
+package com.mycompany.taskmanagercrud;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Thierry
+ *
+ * Sincroniza o {@link ArmazemLocal} com o MongoDB em segundo plano. A cada ciclo:
+ * <ol>
+ *   <li>envia as alterações locais pendentes. Cada uma é gravada apenas se a tarefa ainda estiver,
+ *   no MongoDB, na versão em que a alteração se baseou ({@link TarefaDAO#substituirTarefaNaVersao});</li>
+ *   <li>traz as alterações feitas por outros clientes: só as tarefas gravadas no MongoDB desde o
+ *   ciclo anterior ({@link TarefaRepository#listarAlteradasDesde}), sem percorrer a coleção.</li>
+ * </ol>
+ * Exclusões feitas por outros clientes não aparecem nessa consulta. Por isso, no primeiro ciclo e
+ * a cada {@code ciclosReconciliacao} ciclos, a versão de cada tarefa no MongoDB é comparada com a
+ * versão conhecida localmente (reconciliação), o que também traz tarefas gravadas antes de o
+ * MongoDB registrar o momento das alterações.
+ * Em um conflito (a tarefa mudou no MongoDB desde a última sincronização), a versão do servidor
+ * prevalece: a alteração local é descartada e um aviso é registrado.
+ *
+ * Se o MongoDB estiver indisponível, o ciclo é simplesmente repetido no próximo intervalo;
+ * enquanto isso, a aplicação continua lendo e gravando no armazenamento local.
+ */
+public class SincronizadorTarefas implements AutoCloseable {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(SincronizadorTarefas.class);
+
+    /** Número de IDs por consulta ao trazer tarefas alteradas. */
+    private static final int LOTE_BUSCA = 1000;
+
+    /** Número padrão de ciclos entre duas reconciliações completas. */
+    public static final int RECONCILIACAO_PADRAO = 10;
+
+    /**
+     * Quanto cada consulta de alterações volta antes da marca do ciclo anterior. Cobre gravações
+     * que terminaram depois da marca com um momento anterior a ela e, nas inserções, que usam o
+     * relógio de cada cliente, a diferença entre esse relógio e o do servidor.
+     */
+    private static final Duration MARGEM_MARCA = Duration.ofMinutes(1);
+
+    /** Armazenamento local sincronizado. */
+    private final ArmazemLocal armazem;
+
+    /** Armazenamento remoto (normalmente o MongoDB) com que o armazenamento local é sincronizado. */
+    private final TarefaRepository repositorio;
+
+    /** Thread única que executa os ciclos, periodicamente ou quando solicitado. */
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sincronizador-tarefas");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Indica se um envio já foi solicitado e ainda não rodou; evita enfileirar vários. */
+    private final AtomicBoolean envioSolicitado = new AtomicBoolean();
+
+    /** Ouvinte chamado (na thread do sincronizador) quando o armazenamento local muda por causa do MongoDB. */
+    private volatile Runnable ouvinteAlteracoesRemotas = () -> { };
+
+    /** Indica se o último ciclo conseguiu falar com o MongoDB; usado para avisar só uma vez por queda. */
+    private boolean conectado = true;
+
+    /** Indica se o ciclo atual alterou o armazenamento local. Usado apenas pela thread do sincronizador. */
+    private boolean houveAlteracaoRemota;
+
+    /** Número de ciclos entre duas reconciliações completas. */
+    private final int ciclosReconciliacao;
+
+    /**
+     * Relógio do MongoDB no início do último recebimento bem-sucedido, ou {@code null} antes do
+     * primeiro. Usado apenas pela thread do sincronizador.
+     */
+    private Instant marca;
+
+    /** Recebimentos desde a última reconciliação. Usado apenas pela thread do sincronizador. */
+    private int ciclosSemReconciliar;
+
+    /**
+     * Cria o sincronizador e inicia os ciclos periódicos; o primeiro roda imediatamente.
+     * A reconciliação completa roda a cada {@link #RECONCILIACAO_PADRAO} ciclos.
+     *
+     * @param armazem O armazenamento local.
+     * @param repositorio O armazenamento remoto.
+     * @param intervaloMs O intervalo, em milissegundos, entre os ciclos.
+     */
+    public SincronizadorTarefas(ArmazemLocal armazem, TarefaRepository repositorio, long intervaloMs) {
+        this(armazem, repositorio, intervaloMs, RECONCILIACAO_PADRAO);
+    }
+
+    /**
+     * Cria o sincronizador e inicia os ciclos periódicos; o primeiro roda imediatamente.
+     *
+     * @param armazem O armazenamento local.
+     * @param repositorio O armazenamento remoto.
+     * @param intervaloMs O intervalo, em milissegundos, entre os ciclos.
+     * @param ciclosReconciliacao A cada quantos ciclos a versão de todas as tarefas é comparada
+     * com o MongoDB; nos demais, só as tarefas alteradas desde o ciclo anterior são trazidas.
+     */
+    public SincronizadorTarefas(ArmazemLocal armazem, TarefaRepository repositorio, long intervaloMs, int ciclosReconciliacao) {
+        this.armazem = armazem;
+        this.repositorio = repositorio;
+        this.ciclosReconciliacao = ciclosReconciliacao;
+        agendador.scheduleWithFixedDelay(() -> executarCiclo(true), 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return O armazenamento local sincronizado.
+     */
+    public ArmazemLocal getArmazem() {
+        return armazem;
+    }
+
+    /**
+     * Define o ouvinte chamado quando tarefas locais são alteradas, incluídas ou excluídas
+     * por causa do MongoDB (alterações de outros clientes ou conflitos). Ele é chamado fora da EDT.
+     *
+     * @param ouvinte O ouvinte a ser notificado.
+     */
+    public void setOuvinteAlteracoesRemotas(Runnable ouvinte) {
+        this.ouvinteAlteracoesRemotas = ouvinte;
+    }
+
+    /**
+     * Solicita o envio das alterações locais pendentes sem esperar o próximo ciclo.
+     * Várias solicitações seguidas resultam em um único envio.
+     */
+    public void solicitarSincronizacao() {
+        if (envioSolicitado.compareAndSet(false, true)) {
+            try {
+                agendador.execute(() -> {
+                    envioSolicitado.set(false);
+                    executarCiclo(false);
+                });
+            } catch (RejectedExecutionException e) {
+                // O sincronizador já foi fechado; as alterações ficam pendentes no armazenamento local.
+                envioSolicitado.set(false);
+            }
+        }
+    }
+
+    /**
+     * Executa um ciclo de sincronização. Nenhuma exceção escapa, pois ela cancelaria
+     * a execução periódica.
+     *
+     * @param receber Se {@code true}, também traz as alterações do MongoDB.
+     */
+    private void executarCiclo(boolean receber) {
+        houveAlteracaoRemota = false;
+        try {
+            enviarPendencias();
+            if (receber) {
+                receberAlteracoes();
+            }
+            armazem.gravarNoDisco();
+            if (!conectado) {
+                conectado = true;
+                REGISTRO.info("reconectar", "situacao", "alteracoes locais sincronizadas");
+            }
+        } catch (MongoException e) {
+            if (conectado) {
+                conectado = false;
+                REGISTRO.aviso("desconectar", "erro", e.getMessage(),
+                        "situacao", "alteracoes gravadas localmente; serao enviadas quando a conexao voltar");
+            }
+        } catch (RuntimeException e) {
+            REGISTRO.erro("sincronizar", "erro", e.getMessage());
+        }
+        if (houveAlteracaoRemota) {
+            ouvinteAlteracoesRemotas.run();
+        }
+    }
+
+    /**
+     * Envia ao MongoDB as alterações locais pendentes, uma a uma.
+     */
+    private void enviarPendencias() {
+        for (ArmazemLocal.Pendencia pendencia : armazem.listarPendencias()) {
+            if (pendencia.tarefa() == null) {
+                enviarExclusao(pendencia);
+            } else if (pendencia.versaoBase() == ArmazemLocal.VERSAO_NOVA) {
+                enviarInclusao(pendencia);
+            } else if (repositorio.substituirTarefaNaVersao(pendencia.tarefa(), pendencia.versaoBase())) {
+                armazem.confirmarSincronizacao(pendencia, pendencia.tarefa().getVersao());
+            } else {
+                resolverConflito(pendencia);
+            }
+        }
+    }
+
+    private void enviarInclusao(ArmazemLocal.Pendencia pendencia) {
+        try {
+            Tarefa tarefa = repositorio.adicionarTarefa(pendencia.tarefa());
+            armazem.confirmarSincronizacao(pendencia, tarefa.getVersao());
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            // O ID já existe: a inclusão foi enviada antes, mas a confirmação não chegou a ser gravada.
+            resolverConflito(pendencia);
+        }
+    }
+
+    private void enviarExclusao(ArmazemLocal.Pendencia pendencia) {
+        if (repositorio.excluirTarefaNaVersao(pendencia.id(), pendencia.versaoBase())) {
+            armazem.confirmarSincronizacao(pendencia, pendencia.versaoBase());
+        } else {
+            resolverConflito(pendencia);
+        }
+    }
+
+    /**
+     * Resolve um conflito a favor do MongoDB: o estado local passa a ser o do servidor.
+     * Uma exclusão de uma tarefa que também já foi excluída no servidor não é conflito.
+     */
+    private void resolverConflito(ArmazemLocal.Pendencia pendencia) {
+        Tarefa remota = repositorio.buscarTarefaPorId(pendencia.id());
+        if (remota == null && pendencia.tarefa() == null) {
+            armazem.confirmarSincronizacao(pendencia, pendencia.versaoBase());
+            return;
+        }
+        // A versão do servidor prevalece: a alteração local é descartada.
+        REGISTRO.aviso("conflito", "id", pendencia.id(),
+                "descartada", pendencia.tarefa() == null ? "exclusao" : pendencia.tarefa().getTitulo());
+        armazem.aplicarRemota(pendencia.id(), remota, true);
+        houveAlteracaoRemota = true;
+    }
+
+    /**
+     * Traz as tarefas incluídas ou alteradas no MongoDB desde o recebimento anterior, ou, se for
+     * hora de {@link #reconciliar() reconciliar}, também as excluídas.
+     * Tarefas com alterações locais pendentes são deixadas para o próximo envio.
+     *
+     * A marca só avança quando o recebimento termina; se ele falhar, o próximo volta a partir da
+     * mesma marca.
+     */
+    private void receberAlteracoes() {
+        // Lido antes da consulta: uma gravação que termine durante ela aparece no próximo recebimento.
+        Instant inicio = repositorio.relogio();
+        if (marca == null || ciclosSemReconciliar >= ciclosReconciliacao) {
+            reconciliar();
+            ciclosSemReconciliar = 0;
+        } else {
+            for (Tarefa remota : repositorio.listarAlteradasDesde(marca.minus(MARGEM_MARCA))) {
+                // Tarefas que já estão na versão local (as da margem, em geral) são ignoradas.
+                houveAlteracaoRemota |= armazem.aplicarRemota(remota.getId(), remota, false);
+            }
+            ciclosSemReconciliar++;
+        }
+        marca = inicio;
+    }
+
+    /**
+     * Compara a versão de cada tarefa no MongoDB com a versão conhecida localmente e traz as
+     * tarefas incluídas, alteradas ou excluídas. Percorre a coleção inteira (só os IDs e as versões).
+     */
+    private void reconciliar() {
+        Map<String, Long> versoesRemotas = repositorio.listarVersoes();
+        Set<String> locais = new HashSet<>();
+        List<String> buscar = new ArrayList<>();
+        for (ArmazemLocal.SituacaoLocal local : armazem.listarSituacoes()) {
+            locais.add(local.id());
+            if (local.pendente()) {
+                continue;
+            }
+            Long versaoRemota = versoesRemotas.get(local.id());
+            if (versaoRemota == null) {
+                houveAlteracaoRemota |= armazem.aplicarRemota(local.id(), null, false);
+            } else if (versaoRemota != local.versaoBase()) {
+                buscar.add(local.id());
+            }
+        }
+        for (String id : versoesRemotas.keySet()) {
+            if (!locais.contains(id)) {
+                buscar.add(id);
+            }
+        }
+        for (int i = 0; i < buscar.size(); i += LOTE_BUSCA) {
+            for (Tarefa remota : repositorio.buscarTarefasPorIds(buscar.subList(i, Math.min(i + LOTE_BUSCA, buscar.size())))) {
+                houveAlteracaoRemota |= armazem.aplicarRemota(remota.getId(), remota, false);
+            }
+        }
+    }
+
+    /**
+     * Para os ciclos, aguardando um que esteja em curso, e fecha o armazenamento local.
+     * As alterações ainda não enviadas ficam gravadas nele para a próxima execução.
+     */
+    @Override
+    public void close() {
+        agendador.shutdown();
+        try {
+            agendador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        armazem.close();
+    }
+}
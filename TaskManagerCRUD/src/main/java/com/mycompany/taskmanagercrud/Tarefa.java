@@ -1,5 +1,7 @@
 package com.mycompany.taskmanagercrud;
 
+import org.bson.types.ObjectId;
+
 /**
  * 
  * @author Thierry
@@ -7,13 +9,16 @@ package com.mycompany.taskmanagercrud;
  *Representa uma tarefa no sistema de gerenciamento de tarefas.
  * Que encapsula os dados de uma tarefa, 
  * incluindo seu identificador, título, descrição, prioridade e status de conclusão.
+ * O identificador é guardado como o próprio {@link ObjectId} do MongoDB (12 bytes), e convertido
+ * para texto hexadecimal apenas quando pedido por {@link #getId()}.
  */
 public class Tarefa {
-    private String id;
+    private ObjectId id;
     private String titulo;
     private String descricao;
-    private String prioridade;
+    private Prioridade prioridade;
     private boolean concluida;
+    private long versao;
 
      /**
      * Construtor para criar uma nova instância de Tarefa.
@@ -24,7 +29,7 @@ public class Tarefa {
      * @param descricao A descrição detalhada da tarefa.
      * @param prioridade O nível de prioridade da tarefa.
      */
-    public Tarefa(String titulo, String descricao, String prioridade) {
+    public Tarefa(String titulo, String descricao, Prioridade prioridade) {
         this.titulo = titulo;
         this.descricao = descricao;
         this.prioridade = prioridade;
@@ -33,19 +38,36 @@ public class Tarefa {
 
     /**
      * Obtém o identificador único da tarefa.
-     * @return O ID da tarefa.
+     * @return O ID da tarefa (String hexadecimal), ou {@code null} se ela ainda não foi persistida.
      */
     public String getId() {
-        return id;
+        return id == null ? null : id.toHexString();
     }
 
     /**
      * Define o identificador único da tarefa.
      * Este método é tipicamente usado após a tarefa ser persistida no banco de dados,
      * que atribui um ID.
-     * @param id O novo ID da tarefa.
+     * @param id O novo ID da tarefa (String hexadecimal), ou {@code null}.
+     * @throws IllegalArgumentException Se o ID não for um ObjectId válido.
      */
     public void setId(String id) {
+        this.id = id == null ? null : new ObjectId(id);
+    }
+
+    /**
+     * Obtém o identificador único da tarefa no formato nativo do MongoDB.
+     * @return O ObjectId da tarefa, ou {@code null} se ela ainda não foi persistida.
+     */
+    public ObjectId getObjectId() {
+        return id;
+    }
+
+    /**
+     * Define o identificador único da tarefa no formato nativo do MongoDB.
+     * @param id O novo ObjectId da tarefa, ou {@code null}.
+     */
+    public void setObjectId(ObjectId id) {
         this.id = id;
     }
 
@@ -83,9 +105,9 @@ public class Tarefa {
 
     /**
      * Obtém a prioridade da tarefa.
-     * @return A prioridade da tarefa.
+     * @return A prioridade da tarefa, ou {@code null} se ela não tiver uma prioridade reconhecida.
      */
-    public String getPrioridade() {
+    public Prioridade getPrioridade() {
         return prioridade;
     }
 
@@ -93,7 +115,7 @@ public class Tarefa {
      * Define a prioridade da tarefa.
      * @param prioridade A nova prioridade da tarefa.
      */
-    public void setPrioridade(String prioridade) {
+    public void setPrioridade(Prioridade prioridade) {
         this.prioridade = prioridade;
     }
 
@@ -112,7 +134,37 @@ public class Tarefa {
     public void setConcluida(boolean concluida) {
         this.concluida = concluida;
     }
-    
+
+    /**
+     * Obtém a versão da tarefa no banco de dados.
+     * Toda gravação no MongoDB incrementa a versão, o que permite detectar alterações
+     * concorrentes (por exemplo, ao sincronizar o armazenamento local).
+     * @return A versão da tarefa; 0 para tarefas ainda não gravadas ou gravadas antes do controle de versão.
+     */
+    public long getVersao() {
+        return versao;
+    }
+
+    /**
+     * Define a versão da tarefa no banco de dados.
+     * @param versao A nova versão.
+     */
+    public void setVersao(long versao) {
+        this.versao = versao;
+    }
+
+    /**
+     * Cria uma cópia independente desta tarefa, com o mesmo ID e a mesma versão.
+     * @return A cópia.
+     */
+    public Tarefa copiar() {
+        Tarefa copia = new Tarefa(titulo, descricao, prioridade);
+        copia.id = id;
+        copia.concluida = concluida;
+        copia.versao = versao;
+        return copia;
+    }
+
     /**
      * Retorna uma representação em String do objeto Tarefa.
      * Útil para debugging e logging.
@@ -121,11 +173,12 @@ public class Tarefa {
     @Override
     public String toString() {
         return "Tarefa{" +
-               "id='" + id + '\'' +
+               "id='" + getId() + '\'' +
                ", titulo='" + titulo + '\'' +
                ", descricao='" + descricao + '\'' +
                ", prioridade='" + prioridade + '\'' +
                ", concluida=" + concluida +
+               ", versao=" + versao +
                '}';
     }
 }
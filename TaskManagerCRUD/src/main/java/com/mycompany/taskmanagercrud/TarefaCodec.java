@@ -0,0 +1,178 @@
+package com.mycompany.taskmanagercrud;
+
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Codec BSON escrito à mão para {@link Tarefa}.
+ * Lê e grava os campos diretamente entre o fluxo BSON do driver e o objeto de domínio,
+ * sem passar por um {@link org.bson.Document} intermediário: cada tarefa lida do banco gera
+ * apenas o próprio objeto {@link Tarefa} e suas Strings.
+ *
+ * Campos desconhecidos (por exemplo, a pontuação de uma busca textual) são ignorados,
+ * e campos ausentes (por causa de uma projeção) ficam com o valor padrão.
+ *
+ * Opcionalmente, cada tarefa gravada leva também o momento da gravação ({@code modificadaEm}),
+ * que o {@link TarefaDAO} usa para encontrar as tarefas alteradas desde uma sincronização.
+ *
+ * Por ser um {@link CollectibleCodec}, o driver usa {@link #generateIdIfAbsentFromDocument}
+ * para preencher o {@code _id} de tarefas novas antes de inseri-las.
+ */
+public class TarefaCodec implements CollectibleCodec<Tarefa> {
+
+    /** Se cada tarefa gravada leva o momento da gravação. */
+    private final boolean gravarMomento;
+
+    /**
+     * Cria o codec sem o momento da gravação, para gravar as tarefas fora do MongoDB.
+     */
+    public TarefaCodec() {
+        this(false);
+    }
+
+    /**
+     * @param gravarMomento Se {@code true}, cada tarefa gravada leva o campo {@code modificadaEm}
+     * com o momento da gravação (no relógio deste cliente).
+     */
+    public TarefaCodec(boolean gravarMomento) {
+        this.gravarMomento = gravarMomento;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Tarefa tarefa, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (tarefa.getObjectId() != null) {
+            writer.writeObjectId("_id", tarefa.getObjectId());
+        }
+        escreverTexto(writer, "titulo", tarefa.getTitulo());
+        escreverTexto(writer, "descricao", tarefa.getDescricao());
+        // A prioridade é gravada como o seu código numérico, para ordenar e filtrar por faixa no banco.
+        if (tarefa.getPrioridade() == null) {
+            writer.writeNull("prioridade");
+        } else {
+            writer.writeInt32("prioridade", tarefa.getPrioridade().getCodigo());
+        }
+        writer.writeBoolean("concluida", tarefa.isConcluida());
+        if (tarefa.getVersao() > 0) {
+            writer.writeInt64("versao", tarefa.getVersao());
+        }
+        if (gravarMomento) {
+            writer.writeDateTime("modificadaEm", System.currentTimeMillis());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Tarefa decode(BsonReader reader, DecoderContext decoderContext) {
+        Tarefa tarefa = new Tarefa(null, null, null);
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String campo = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (campo) {
+                case "_id" -> tarefa.setObjectId(reader.readObjectId());
+                case "titulo" -> tarefa.setTitulo(reader.readString());
+                case "descricao" -> tarefa.setDescricao(reader.readString());
+                case "prioridade" -> tarefa.setPrioridade(lerPrioridade(reader));
+                case "concluida" -> tarefa.setConcluida(reader.readBoolean());
+                // Documentos gravados por outras ferramentas podem ter a versão como int32.
+                case "versao" -> tarefa.setVersao(reader.getCurrentBsonType() == BsonType.INT32
+                        ? reader.readInt32() : reader.readInt64());
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return tarefa;
+    }
+
+    @Override
+    public Class<Tarefa> getEncoderClass() {
+        return Tarefa.class;
+    }
+
+    @Override
+    public Tarefa generateIdIfAbsentFromDocument(Tarefa tarefa) {
+        if (tarefa.getObjectId() == null) {
+            tarefa.setObjectId(new ObjectId());
+        }
+        return tarefa;
+    }
+
+    @Override
+    public boolean documentHasId(Tarefa tarefa) {
+        return tarefa.getObjectId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(Tarefa tarefa) {
+        if (tarefa.getObjectId() == null) {
+            throw new IllegalStateException("A tarefa ainda não tem ID.");
+        }
+        return new BsonObjectId(tarefa.getObjectId());
+    }
+
+    /**
+     * Aplica à tarefa campos com os nomes do documento do MongoDB, como faria um {@code $set}.
+     * A prioridade pode vir como {@link Prioridade} ou como código.
+     *
+     * @param tarefa A tarefa, alterada no lugar.
+     * @param campos Os campos e os novos valores.
+     * @return A própria tarefa.
+     * @throws IllegalArgumentException Se um campo não existir na tarefa.
+     */
+    static Tarefa aplicarCampos(Tarefa tarefa, Document campos) {
+        campos.forEach((campo, valor) -> {
+            switch (campo) {
+                case "titulo" -> tarefa.setTitulo((String) valor);
+                case "descricao" -> tarefa.setDescricao((String) valor);
+                case "prioridade" -> tarefa.setPrioridade(valor instanceof Number codigo
+                        ? Prioridade.deCodigo(codigo.intValue()) : (Prioridade) valor);
+                case "concluida" -> tarefa.setConcluida((Boolean) valor);
+                default -> throw new IllegalArgumentException("Campo desconhecido: " + campo);
+            }
+        });
+        return tarefa;
+    }
+
+    /**
+     * Lê a prioridade: normalmente o código numérico; documentos ainda não migrados por
+     * {@link TarefaDAO#migrarPrioridades()} (e arquivos exportados antes disso) trazem o rótulo.
+     */
+    private static Prioridade lerPrioridade(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> Prioridade.deCodigo(reader.readInt32());
+            case INT64 -> Prioridade.deCodigo((int) reader.readInt64());
+            case DOUBLE -> Prioridade.deCodigo((int) reader.readDouble());
+            case STRING -> Prioridade.deRotulo(reader.readString());
+            default -> {
+                reader.skipValue();
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * Grava um campo de texto, ou {@code null} se ele não estiver preenchido
+     * (o mesmo formato que um {@link org.bson.Document} com valor nulo produziria).
+     */
+    private static void escreverTexto(BsonWriter writer, String campo, String valor) {
+        if (valor == null) {
+            writer.writeNull(campo);
+        } else {
+            writer.writeString(campo, valor);
+        }
+    }
+}
@@ -1,13 +1,65 @@
 package com.mycompany.taskmanagercrud;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
-import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.not;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Filters.regex;
+import static com.mongodb.client.model.Filters.text;
+import static com.mongodb.client.model.Filters.type;
+import static com.mycompany.taskmanagercrud.MetricasTarefas.medir;
+import com.mycompany.taskmanagercrud.MetricasTarefas.Operacao;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.FullDocument;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 /**
@@ -18,8 +70,13 @@ import org.bson.types.ObjectId;
  * Esta classe encapsula toda a lógica de acesso e manipulação dos dados das tarefas
  * no banco de dados MongoDB. Ela abstrai as operações CRUD (Create, Read, Update, Delete)
  * para a coleção de tarefas.
+ * É a implementação de {@link TarefaRepository} sobre o MongoDB; as operações que só existem no
+ * MongoDB (change streams, migração de prioridades) ficam apenas aqui.
  */
-public class TarefaDAO {
+public class TarefaDAO implements TarefaRepository {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(TarefaDAO.class);
 
     /**
      * A coleção MongoDB onde as tarefas são armazenadas.
@@ -27,6 +84,46 @@ public class TarefaDAO {
      */
     private final MongoCollection<Document> colecao;
 
+    /**
+     * A mesma coleção, mas lida e gravada diretamente como {@link Tarefa} pelo {@link TarefaCodec},
+     * sem {@link Document} intermediário. Usada em todas as leituras e inserções; {@link #colecao}
+     * fica com as operações que só enviam filtros e atualizações.
+     */
+    private final MongoCollection<Tarefa> colecaoTarefas;
+
+    /**
+     * Opções de {@code findOneAndUpdate} que fazem o MongoDB devolver o documento como estava antes
+     * da atualização. Os ouvintes recebem esse estado anterior, e o novo estado é calculado a partir
+     * dele e do {@code $set} enviado (veja {@link #notificarAtualizacao(Tarefa, Document)}), sem uma
+     * segunda consulta.
+     */
+    private static final FindOneAndUpdateOptions RETORNAR_ANTERIOR =
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.BEFORE);
+
+    /**
+     * Número mínimo de tarefas por segmento em {@link #listarTarefasEmParalelo(int)}: abaixo disso,
+     * o custo de abrir mais um cursor supera o ganho de lê-lo em paralelo.
+     */
+    private static final int MINIMO_POR_SEGMENTO = 20_000;
+
+    /** Quantos {@code _id} são sorteados por segmento para escolher os limites entre os segmentos. */
+    private static final int AMOSTRAS_POR_SEGMENTO = 32;
+
+    /** O banco da coleção; usado para consultar o relógio do servidor. */
+    private final MongoDatabase database;
+
+    /** Gerenciador dos índices da coleção, também responsável pelo diagnóstico das consultas. */
+    private final IndicesTarefas indices;
+
+    /** Ouvintes notificados a cada alteração gravada através deste DAO. */
+    private final List<OuvinteTarefas> ouvintes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Tamanho máximo do pool do cliente que abriu o banco deste DAO, ou {@code 0} se for desconhecido
+     * ou ilimitado. Limita o número de faixas de {@link #listarTarefasEmParalelo()}.
+     */
+    private final int conexoesMaximas;
+
     /**
      * Construtor da classe TarefaDAO.
      * Inicializa o DAO com uma referência à coleção "tarefas" do banco de dados fornecido.
@@ -36,58 +133,564 @@ public class TarefaDAO {
      * quando o primeiro documento for inserido nela.
      */
     public TarefaDAO(MongoDatabase database) {
+        this(database, false);
+    }
+
+    /**
+     * Construtor da classe TarefaDAO, com a opção de diagnosticar o uso de índices.
+     *
+     * @param database A instância do {@link MongoDatabase} a ser utilizada para obter a coleção de tarefas.
+     * @param diagnosticoIndices Se {@code true}, cada consulta é analisada com {@code explain()}
+     * e as que não usam índice são reportadas (veja {@link IndicesTarefas#diagnosticar}).
+     */
+    public TarefaDAO(MongoDatabase database, boolean diagnosticoIndices) {
+        this(database, diagnosticoIndices, 0);
+    }
+
+    /**
+     * Construtor da classe TarefaDAO, informando também o tamanho do pool de conexões do cliente.
+     *
+     * @param database A instância do {@link MongoDatabase} a ser utilizada para obter a coleção de tarefas.
+     * @param diagnosticoIndices Se {@code true}, cada consulta é analisada com {@code explain()}.
+     * @param conexoesMaximas O tamanho máximo do pool do cliente que criou {@code database}
+     * ({@code ConnectionPoolSettings.getMaxSize()}), ou {@code 0} se for desconhecido ou ilimitado.
+     */
+    public TarefaDAO(MongoDatabase database, boolean diagnosticoIndices, int conexoesMaximas) {
+        this.conexoesMaximas = conexoesMaximas;
+        this.database = database;
         // Obtém uma referência à coleção chamada "tarefas" dentro do banco de dados.
         this.colecao = database.getCollection("tarefas");
+        this.colecaoTarefas = colecao.withDocumentClass(Tarefa.class).withCodecRegistry(
+                CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new TarefaCodec(true)), colecao.getCodecRegistry()));
+        this.indices = new IndicesTarefas(colecao, diagnosticoIndices);
+    }
+
+    /**
+     * Adiciona um ouvinte das alterações feitas através deste DAO.
+     *
+     * @param ouvinte O ouvinte.
+     */
+    @Override
+    public void adicionarOuvinte(OuvinteTarefas ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    /**
+     * Remove um ouvinte adicionado com {@link #adicionarOuvinte}.
+     *
+     * @param ouvinte O ouvinte.
+     */
+    @Override
+    public void removerOuvinte(OuvinteTarefas ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    /**
+     * Cria os índices da coleção que ainda não existem e remove as versões antigas.
+     * Deve ser chamado na inicialização da aplicação.
+     *
+     * @see IndicesTarefas#garantirIndices()
+     */
+    @Override
+    public void garantirIndices() {
+        indices.garantirIndices();
     }
 
     /**
      * Adiciona uma nova tarefa ao banco de dados.
-     * Converte o objeto {@link Tarefa} em um {@link Document} BSON e o insere na coleção.
+     * A tarefa é gravada diretamente pelo {@link TarefaCodec}.
      *
      * @param tarefa O objeto {@link Tarefa} a ser adicionado. O ID da tarefa será
      * automaticamente gerado pelo MongoDB se não estiver presente.
+     * @return A mesma tarefa, agora com o ID gerado preenchido.
      */
-    public void adicionarTarefa(Tarefa tarefa) {
-        // Cria um novo objeto Document (BSON) a partir dos dados da tarefa.
-        Document doc = new Document("titulo", tarefa.getTitulo())
-                .append("descricao", tarefa.getDescricao())
-                .append("prioridade", tarefa.getPrioridade())
-                .append("concluida", tarefa.isConcluida());
-        // Insere o documento na coleção MongoDB.
-        colecao.insertOne(doc);
-        System.out.println("Tarefa '" + tarefa.getTitulo() + "' adicionada ao banco de dados.");
+    @Override
+    public Tarefa adicionarTarefa(Tarefa tarefa) {
+        return medir(Operacao.INSERIR, () -> {
+            // Insere a tarefa na coleção MongoDB. O driver (através do TarefaCodec) preenche
+            // o ObjectId da tarefa antes de enviá-la; ele passa a ser o ID da tarefa.
+            if (tarefa.getVersao() == 0) {
+                tarefa.setVersao(1);
+            }
+            colecaoTarefas.insertOne(tarefa);
+            REGISTRO.info("inserir", "id", tarefa.getId(), "titulo", tarefa.getTitulo());
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaAdicionada(tarefa));
+            return tarefa;
+        });
     }
 
     /**
-     * Lista todas as tarefas armazenadas no banco de dados.
-     * Recupera todos os documentos da coleção, converte cada um em um objeto {@link Tarefa}
-     * e os retorna em uma lista.
+     * Lista todas as tarefas armazenadas no banco de dados, com um único cursor.
+     * Cada documento da coleção é decodificado diretamente em um objeto {@link Tarefa}.
+     * Para coleções grandes, veja {@link #listarTarefasEmParalelo()}.
      *
      * @return Uma {@link List} de objetos {@link Tarefa} representando todas as tarefas.
      * Retorna uma lista vazia se não houver tarefas.
      */
+    @Override
     public List<Tarefa> listarTarefas() {
-        // Cria uma nova ArrayList para armazenar os objetos Tarefa recuperados.
-        List<Tarefa> listaDeTarefas = new ArrayList<>();
-        // colecao.find() executa uma consulta na coleção para retornar todos os documentos.
-        // O loop itera sobre cada Document (representado pela variável doc) retornado.
-        for (Document doc : colecao.find()) {
-            // Cria uma nova instância da classe Tarefa com os dados do documento.
-            Tarefa tarefa = new Tarefa(
-                    doc.getString("titulo"),
-                    doc.getString("descricao"),
-                    doc.getString("prioridade")
-            );
-            // Define o status de conclusão da tarefa.
-            // O segundo parâmetro de getBoolean é um valor default caso o campo não exista no documento.
-            tarefa.setConcluida(doc.getBoolean("concluida", false));
-            // Obtém o ObjectId do campo "_id", converte para String e define o ID da tarefa.
-            tarefa.setId(doc.getObjectId("_id").toHexString());
-            // Adiciona o objeto tarefa (preenchido com os dados do documento) à lista.
-            listaDeTarefas.add(tarefa);
-        }
-        // Retorna a lista contendo todos os objetos Tarefa recuperados.
-        return listaDeTarefas;
+        return medir(Operacao.LISTAR, () -> {
+            // colecaoTarefas.find() executa uma consulta na coleção para retornar todos os documentos,
+            // já decodificados como Tarefa, e into() os acumula na lista.
+            return colecaoTarefas.find().into(new ArrayList<>());
+        });
+    }
+
+    /**
+     * Lista todas as tarefas com até uma faixa lida em paralelo por conexão do pool deste DAO
+     * (veja {@link #listarTarefasEmParalelo(int)}). Um pool de tamanho desconhecido ou ilimitado
+     * não diz quantas leituras cabem ao mesmo tempo; nesse caso, usa o número de núcleos.
+     *
+     * @return Todas as tarefas, em ordem de {@code _id}.
+     */
+    public List<Tarefa> listarTarefasEmParalelo() {
+        return listarTarefasEmParalelo(conexoesMaximas > 0 ? conexoesMaximas : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Lista todas as tarefas dividindo a coleção em faixas de {@code _id} lidas ao mesmo tempo,
+     * cada uma com o seu cursor, em uma virtual thread e em uma conexão própria do pool. Com um
+     * cursor só, a leitura de uma coleção grande fica limitada ao que uma conexão consegue trazer
+     * (e a um núcleo decodificando); com vários, o tempo cai até o limite do servidor ou da rede.
+     *
+     * Os limites das faixas saem de uma amostra aleatória dos {@code _id} ({@code $sample}), para
+     * que as faixas tenham tamanhos parecidos mesmo que os IDs não sejam uniformes no tempo
+     * (importações, por exemplo). O número de faixas é reduzido para que cada uma tenha ao menos
+     * {@link #MINIMO_POR_SEGMENTO} tarefas; em coleções pequenas, a leitura usa um cursor só.
+     *
+     * As faixas são intervalos de {@link ObjectId}; se a coleção tiver algum {@code _id} de outro
+     * tipo (documentos gravados por outra ferramenta), ele ficaria fora de todas as faixas, então
+     * a leitura também usa um cursor só.
+     *
+     * @param segmentosMaximos O número máximo de faixas (e de conexões usadas ao mesmo tempo).
+     * Com {@code 1}, a leitura é sempre sequencial.
+     * @return Todas as tarefas, em ordem de {@code _id} (também quando lidas com um cursor só).
+     */
+    public List<Tarefa> listarTarefasEmParalelo(int segmentosMaximos) {
+        return medir(Operacao.LISTAR, () -> {
+            long estimativa = colecao.estimatedDocumentCount();
+            int segmentos = (int) Math.min(segmentosMaximos, estimativa / MINIMO_POR_SEGMENTO);
+            List<ObjectId> limites = segmentos > 1 && !temIdForaDeObjectId() ? limitesDeSegmentos(segmentos) : List.of();
+            if (limites.isEmpty()) {
+                return colecaoTarefas.find().sort(Sorts.ascending("_id")).into(new ArrayList<>());
+            }
+            List<CompletableFuture<List<Tarefa>>> faixas = new ArrayList<>(limites.size() + 1);
+            int tamanhoEstimado = (int) (estimativa / (limites.size() + 1));
+            // O driver bloqueia esperando a rede: uma virtual thread por faixa não ocupa threads do sistema.
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i <= limites.size(); i++) {
+                    Bson filtro = filtroDaFaixa(limites, i);
+                    faixas.add(CompletableFuture.supplyAsync(() -> colecaoTarefas.find(filtro)
+                            .sort(Sorts.ascending("_id"))
+                            .into(new ArrayList<>(tamanhoEstimado)), executor));
+                }
+                // Estimativa com folga, para que a lista final não precise crescer.
+                List<Tarefa> todas = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, estimativa + estimativa / 8));
+                for (CompletableFuture<List<Tarefa>> faixa : faixas) {
+                    todas.addAll(faixa.join());
+                }
+                REGISTRO.debug("listarParalelo", "faixas", faixas.size(), "tarefas", todas.size());
+                return todas;
+            } catch (CompletionException e) {
+                // Repassa o erro do driver (MongoException etc.) como se a leitura fosse sequencial.
+                throw e.getCause() instanceof RuntimeException causa ? causa : e;
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} se algum documento da coleção tiver um {@code _id} que não é {@link ObjectId}.
+     * A consulta é resolvida pelo índice de {@code _id}.
+     */
+    private boolean temIdForaDeObjectId() {
+        return colecao.find(not(type("_id", BsonType.OBJECT_ID)))
+                .projection(Projections.include("_id"))
+                .first() != null;
+    }
+
+    /**
+     * Escolhe até {@code segmentos - 1} IDs que dividem a coleção em faixas de tamanho parecido,
+     * a partir de uma amostra aleatória dos {@code _id}.
+     *
+     * @return Os limites, em ordem crescente e sem repetição (vazio se a coleção estiver vazia).
+     */
+    private List<ObjectId> limitesDeSegmentos(int segmentos) {
+        List<ObjectId> amostra = new ArrayList<>();
+        colecao.aggregate(List.of(
+                Aggregates.sample(segmentos * AMOSTRAS_POR_SEGMENTO),
+                Aggregates.project(Projections.include("_id"))))
+                .forEach(doc -> {
+                    if (doc.get("_id") instanceof ObjectId id) {
+                        amostra.add(id);
+                    }
+                });
+        amostra.sort(null);
+        List<ObjectId> limites = new ArrayList<>(segmentos - 1);
+        for (int i = 1; i < segmentos && !amostra.isEmpty(); i++) {
+            ObjectId limite = amostra.get(i * amostra.size() / segmentos);
+            if (limites.isEmpty() || limite.compareTo(limites.get(limites.size() - 1)) > 0) {
+                limites.add(limite);
+            }
+        }
+        return limites;
+    }
+
+    /**
+     * @return O filtro da faixa {@code i}: de {@code limites[i - 1]} (inclusive) até
+     * {@code limites[i]} (exclusive); a primeira e a última faixa ficam abertas.
+     */
+    private static Bson filtroDaFaixa(List<ObjectId> limites, int i) {
+        if (i == 0) {
+            return lt("_id", limites.get(0));
+        }
+        if (i == limites.size()) {
+            return gte("_id", limites.get(i - 1));
+        }
+        return and(gte("_id", limites.get(i - 1)), lt("_id", limites.get(i)));
+    }
+
+    /**
+     * Lista uma página de tarefas de uma consulta, usando paginação por chave (keyset).
+     * Diferente de {@code skip}, o custo da consulta não cresce com a posição da página:
+     * a página seguinte começa logo depois da última tarefa da anterior, na ordem da consulta
+     * (campo de ordenação e, em caso de empate, {@code _id}).
+     * Filtros, ordenação e projeção são todos aplicados pelo MongoDB.
+     *
+     * @param consulta Os filtros, a ordenação e os campos desejados.
+     * @param apos A última tarefa da página anterior (basta o ID e o campo de ordenação),
+     * ou {@code null} para buscar a primeira página.
+     * @param limite O número máximo de tarefas a retornar.
+     * @return As tarefas seguintes a {@code apos}, na ordem da consulta.
+     * Retorna uma lista vazia se não houver mais tarefas.
+     */
+    @Override
+    public List<Tarefa> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite) {
+        return medir(Operacao.LISTAR, () -> {
+            Bson filtro = apos == null ? filtroDe(consulta) : and(filtroDe(consulta), filtroApos(consulta, apos));
+            Bson ordenacao = ordenacaoDe(consulta);
+            FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro).sort(ordenacao).limit(limite);
+            if (consulta.campos() != null) {
+                resultado.projection(projecaoDe(consulta));
+            }
+            indices.diagnosticar("listarTarefasPaginado", resultado, filtro, ordenacao);
+            return resultado.into(new ArrayList<>(limite));
+        });
+    }
+
+    /**
+     * Busca uma única tarefa pelo seu ID.
+     *
+     * @param id O ID (como String hexadecimal) da tarefa.
+     * @return A tarefa, ou {@code null} se ela não existir ou se o ID for inválido.
+     */
+    @Override
+    public Tarefa buscarTarefaPorId(String id) {
+        return medir(Operacao.BUSCAR, () -> {
+            ObjectId objectId = paraObjectIdOuNulo(id);
+            if (objectId == null) {
+                REGISTRO.erro("buscar", "id", id, "erro", "ID invalido");
+                return null;
+            }
+            return colecaoTarefas.find(eq("_id", objectId)).first();
+        });
+    }
+
+    /**
+     * Busca várias tarefas pelos seus IDs, com um único {@code $in}.
+     *
+     * @param ids Os IDs (String hexadecimal) das tarefas. IDs inválidos são ignorados.
+     * @return As tarefas encontradas, em qualquer ordem.
+     */
+    @Override
+    public List<Tarefa> buscarTarefasPorIds(Collection<String> ids) {
+        return medir(Operacao.BUSCAR, () -> {
+            List<ObjectId> objectIds = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ObjectId objectId = paraObjectIdOuNulo(id);
+                if (objectId != null) {
+                    objectIds.add(objectId);
+                }
+            }
+            Bson filtro = in("_id", objectIds);
+            FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro);
+            indices.diagnosticar("buscarTarefasPorIds", resultado, filtro, null);
+            return resultado.into(new ArrayList<>(objectIds.size()));
+        });
+    }
+
+    /**
+     * Lista a versão atual de cada tarefa, sem os demais campos.
+     * Usado para descobrir, com pouco tráfego, quais tarefas mudaram desde a última leitura.
+     *
+     * @return A versão de cada tarefa, indexada pelo ID (String hexadecimal).
+     * Tarefas gravadas antes do controle de versão aparecem com a versão 0.
+     */
+    @Override
+    public Map<String, Long> listarVersoes() {
+        return medir(Operacao.LISTAR, () -> {
+            Map<String, Long> versoes = new HashMap<>();
+            FindIterable<Document> resultado = colecao.find().projection(Projections.include("versao"));
+            indices.diagnosticar("listarVersoes", resultado, new Document(), null);
+            for (Document documento : resultado) {
+                Number versao = documento.get("versao", Number.class);
+                versoes.put(documento.getObjectId("_id").toHexString(), versao == null ? 0L : versao.longValue());
+            }
+            return versoes;
+        });
+    }
+
+    /**
+     * Lista as tarefas incluídas ou alteradas a partir de um instante, pelo campo {@code modificadaEm}
+     * (com índice). As atualizações o preenchem com o relógio do servidor ({@code $currentDate});
+     * inserções e substituições, que passam pelo {@link TarefaCodec}, com o relógio deste cliente.
+     * Tarefas gravadas antes de o campo existir só aparecem em {@link #listarVersoes()}.
+     *
+     * @param desde O instante, no relógio do servidor (veja {@link #relogio()}).
+     * @return As tarefas alteradas, em qualquer ordem.
+     */
+    @Override
+    public List<Tarefa> listarAlteradasDesde(Instant desde) {
+        return medir(Operacao.LISTAR, () -> {
+            Bson filtro = gte("modificadaEm", Date.from(desde));
+            FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro);
+            indices.diagnosticar("listarAlteradasDesde", resultado, filtro, null);
+            List<Tarefa> tarefas = resultado.into(new ArrayList<>());
+            REGISTRO.debug("listarAlteradas", "desde", desde, "tarefas", tarefas.size());
+            return tarefas;
+        });
+    }
+
+    /**
+     * @return O relógio do servidor ({@code localTime} do comando {@code hello}), o mesmo que o
+     * {@code $currentDate} usa para preencher {@code modificadaEm}.
+     */
+    @Override
+    public Instant relogio() {
+        return database.runCommand(new Document("hello", 1)).getDate("localTime").toInstant();
+    }
+
+    /**
+     * Abre um change stream sobre a coleção de tarefas.
+     * Eventos de atualização trazem o documento completo já atualizado ({@code updateLookup}).
+     * Change streams exigem que o MongoDB rode como replica set (mesmo que de um nó só).
+     *
+     * @return O change stream, que deve ser iterado (e fechado) por quem chamou.
+     */
+    public ChangeStreamIterable<Tarefa> observarAlteracoes() {
+        return colecaoTarefas.watch().fullDocument(FullDocument.UPDATE_LOOKUP);
+    }
+
+    /**
+     * Conta as tarefas que atendem aos filtros de uma consulta.
+     *
+     * @param consulta A consulta cujos filtros são aplicados.
+     * @return O número de tarefas encontradas.
+     */
+    @Override
+    public long contarTarefas(ConsultaTarefas consulta) {
+        return medir(Operacao.CONTAR, () -> {
+            Bson filtro = filtroDe(consulta);
+            // countDocuments usa o mesmo plano que um find com o filtro.
+            indices.diagnosticar("contarTarefas", colecao.find(filtro), filtro, null);
+            return colecao.countDocuments(filtro);
+        });
+    }
+
+    /**
+     * Calcula as estatísticas no servidor, com um {@code $group} por prioridade e status: só as
+     * contagens (no máximo uma por combinação) trafegam pela rede. A leitura é forçada ({@code hint})
+     * pelo índice {@code concluida_prioridade}, que tem os dois campos; assim o MongoDB percorre só
+     * o índice, sem ler os documentos.
+     *
+     * Se o índice ainda não existir (banco novo, antes de {@link #garantirIndices()}, ou durante a
+     * troca de versão de um índice), o servidor recusa o {@code hint}, e a contagem é refeita sem ele,
+     * com um aviso. No modo de diagnóstico, o plano da agregação usada é analisado como o das consultas.
+     *
+     * Prioridades ainda gravadas como texto (antes da {@link #migrarPrioridades() migração}) são
+     * reconhecidas pelo rótulo.
+     *
+     * @return As contagens, com os totais e as taxas de conclusão.
+     */
+    @Override
+    public EstatisticasTarefas calcularEstatisticas() {
+        return medir(Operacao.CONTAR, () -> {
+            List<Bson> pipeline = List.of(
+                    Aggregates.project(Projections.fields(Projections.include("concluida", "prioridade"), Projections.excludeId())),
+                    Aggregates.group(new Document("prioridade", "$prioridade").append("concluida", "$concluida"),
+                            Accumulators.sum("total", 1L)));
+            EstatisticasTarefas estatisticas;
+            try {
+                AggregateIterable<Document> grupos = colecao.aggregate(pipeline).hint(IndicesTarefas.definicao("concluida_prioridade").chaves());
+                indices.diagnosticar("calcularEstatisticas", grupos, pipeline);
+                estatisticas = somarGrupos(grupos);
+            } catch (MongoCommandException e) {
+                REGISTRO.aviso("estatisticas", "motivo", "indice concluida_prioridade indisponivel", "erro", e.getErrorMessage());
+                AggregateIterable<Document> grupos = colecao.aggregate(pipeline);
+                indices.diagnosticar("calcularEstatisticasSemIndice", grupos, pipeline);
+                estatisticas = somarGrupos(grupos);
+            }
+            REGISTRO.debug("estatisticas", "total", estatisticas.getTotal(), "concluidas", estatisticas.getConcluidas());
+            return estatisticas;
+        });
+    }
+
+    /**
+     * @return As estatísticas com a contagem de cada grupo {prioridade, concluida} do resultado.
+     */
+    private static EstatisticasTarefas somarGrupos(Iterable<Document> grupos) {
+        EstatisticasTarefas estatisticas = EstatisticasTarefas.VAZIA;
+        for (Document grupo : grupos) {
+            Document chave = grupo.get("_id", Document.class);
+            Object prioridade = chave.get("prioridade");
+            estatisticas = estatisticas.somar(
+                    prioridade instanceof Number codigo ? Prioridade.deCodigo(codigo.intValue())
+                            : prioridade instanceof String rotulo ? Prioridade.deRotulo(rotulo) : null,
+                    Boolean.TRUE.equals(chave.get("concluida")),
+                    ((Number) grupo.get("total")).longValue());
+        }
+        return estatisticas;
+    }
+
+    /**
+     * Busca tarefas por palavras do título ou da descrição, usando o índice de texto da coleção.
+     * As tarefas são devolvidas da mais para a menos relevante.
+     *
+     * @param texto As palavras a buscar (na sintaxe do operador {@code $text}).
+     * @param limite O número máximo de tarefas a retornar.
+     * @return As tarefas encontradas.
+     */
+    @Override
+    public List<Tarefa> buscarTarefasPorTexto(String texto, int limite) {
+        return medir(Operacao.LISTAR, () -> {
+            Bson filtro = text(texto);
+            Bson ordenacao = Sorts.metaTextScore("relevancia");
+            FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro)
+                    .projection(Projections.metaTextScore("relevancia"))
+                    .sort(ordenacao)
+                    .limit(limite);
+            indices.diagnosticar("buscarTarefasPorTexto", resultado, filtro, ordenacao);
+            // A pontuação ("relevancia") é ignorada pelo TarefaCodec.
+            return resultado.into(new ArrayList<>());
+        });
+    }
+
+    /**
+     * Abre um fluxo sobre um cursor do MongoDB. Diferente de {@link #listarTarefas()}, nada é
+     * acumulado: o driver só busca o próximo lote de {@code tamanhoLote} documentos (um
+     * {@code getMore}) quando o anterior foi consumido, e cada tarefa pode ser descartada assim
+     * que for processada, então a memória usada não depende do tamanho da coleção.
+     *
+     * Fechar o fluxo fecha o cursor, liberando-o no servidor; o cursor também é fechado pelo
+     * driver quando chega ao fim.
+     *
+     * @param consulta Os filtros, a ordenação e os campos desejados.
+     * @param tamanhoLote Quantos documentos o driver busca a cada ida ao servidor.
+     * @return O fluxo, na ordem da consulta.
+     */
+    @Override
+    public Stream<Tarefa> abrirFluxoTarefas(ConsultaTarefas consulta, int tamanhoLote) {
+        Bson filtro = filtroDe(consulta);
+        Bson ordenacao = ordenacaoDe(consulta);
+        FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro).sort(ordenacao).batchSize(tamanhoLote);
+        if (consulta.campos() != null) {
+            resultado.projection(projecaoDe(consulta));
+        }
+        indices.diagnosticar("abrirFluxoTarefas", resultado, filtro, ordenacao);
+        MongoCursor<Tarefa> cursor = resultado.cursor();
+        // Sequencial e de tamanho desconhecido: o cursor só sabe se há uma próxima tarefa.
+        Spliterator<Tarefa> tarefas = Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(tarefas, false).onClose(cursor::close);
+    }
+
+    /**
+     * Obtém a tarefa que ocupa uma determinada posição no resultado de uma consulta.
+     * Usado para descobrir a âncora de uma página ainda não visitada (por exemplo, quando o
+     * usuário arrasta a barra de rolagem direto para o fim da tabela). Apenas o {@code _id}
+     * e o campo de ordenação são projetados, pois é tudo o que a âncora precisa.
+     *
+     * @param consulta A consulta, com seus filtros e ordenação.
+     * @param posicao A posição (a partir de 0) da tarefa.
+     * @return A tarefa (apenas com ID e campo de ordenação), ou {@code null} se a posição não existir.
+     */
+    @Override
+    public Tarefa buscarTarefaNaPosicao(ConsultaTarefas consulta, long posicao) {
+        return medir(Operacao.LISTAR, () -> {
+            Bson filtro = filtroDe(consulta);
+            Bson ordenacao = ordenacaoDe(consulta);
+            FindIterable<Tarefa> resultado = colecaoTarefas.find(filtro)
+                    .sort(ordenacao)
+                    .projection(Projections.include(consulta.ordenarPor().getNomeDocumento()))
+                    .skip((int) posicao)
+                    .limit(1);
+            indices.diagnosticar("buscarTarefaNaPosicao", resultado, filtro, ordenacao);
+            return resultado.first();
+        });
+    }
+
+    /**
+     * Monta o filtro do MongoDB correspondente aos filtros de uma consulta.
+     */
+    private static Bson filtroDe(ConsultaTarefas consulta) {
+        List<Bson> filtros = new ArrayList<>();
+        if (consulta.prioridade() != null) {
+            filtros.add(eq("prioridade", consulta.prioridade().getCodigo()));
+        }
+        if (consulta.prioridadeMinima() != null) {
+            // Filtro por faixa sobre o código numérico, atendido pelos índices que incluem "prioridade".
+            filtros.add(gte("prioridade", consulta.prioridadeMinima().getCodigo()));
+        }
+        if (consulta.concluida() != null) {
+            filtros.add(eq("concluida", consulta.concluida()));
+        }
+        if (consulta.prefixoTitulo() != null) {
+            // Uma expressão ancorada no início e sem metacaracteres pode usar um índice sobre "titulo".
+            filtros.add(regex("titulo", "^" + consulta.prefixoTitulo().replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0")));
+        }
+        return filtros.isEmpty() ? new Document() : and(filtros);
+    }
+
+    /**
+     * Monta o filtro que seleciona as tarefas que vêm depois da âncora na ordem da consulta.
+     * Para ordenação por um campo F: {@code F > v OU (F == v E _id > id)} (ou {@code <}, se decrescente).
+     */
+    private static Bson filtroApos(ConsultaTarefas consulta, Tarefa apos) {
+        ObjectId idAncora = apos.getObjectId();
+        Bson depoisDoId = consulta.decrescente() ? lt("_id", idAncora) : gt("_id", idAncora);
+        if (consulta.ordenarPor() == ConsultaTarefas.Campo.ID) {
+            return depoisDoId;
+        }
+        String campo = consulta.ordenarPor().getNomeDocumento();
+        Object valor = consulta.ordenarPor().valorNoDocumento(apos);
+        return or(
+                consulta.decrescente() ? lt(campo, valor) : gt(campo, valor),
+                and(eq(campo, valor), depoisDoId));
+    }
+
+    /**
+     * Monta a ordenação da consulta, com o {@code _id} como critério de desempate
+     * (necessário para que a paginação por chave seja estável).
+     */
+    private static Bson ordenacaoDe(ConsultaTarefas consulta) {
+        String campo = consulta.ordenarPor().getNomeDocumento();
+        if (consulta.ordenarPor() == ConsultaTarefas.Campo.ID) {
+            return consulta.decrescente() ? Sorts.descending("_id") : Sorts.ascending("_id");
+        }
+        return consulta.decrescente() ? Sorts.descending(campo, "_id") : Sorts.ascending(campo, "_id");
+    }
+
+    /**
+     * Monta a projeção da consulta: os campos pedidos mais o campo de ordenação e a versão,
+     * necessária para atualizar a tarefa depois. O {@code _id} é sempre incluído pelo MongoDB.
+     */
+    private static Bson projecaoDe(ConsultaTarefas consulta) {
+        List<String> campos = new ArrayList<>();
+        for (ConsultaTarefas.Campo campo : consulta.campos()) {
+            campos.add(campo.getNomeDocumento());
+        }
+        campos.add(consulta.ordenarPor().getNomeDocumento());
+        campos.add("versao");
+        return Projections.include(campos);
     }
 
     /**
@@ -95,24 +698,55 @@ public class TarefaDAO {
      *
      * @param id O ID (como String hexadecimal) da tarefa a ser atualizada.
      * @param concluida O novo status de conclusão (true para concluída, false para não concluída).
-     * @return {@code true} se a atualização foi bem-sucedida e pelo menos um documento foi modificado,
-     * {@code false} caso contrário ou se o ID for inválido.
+     * @return A tarefa como ficou após a atualização, ou {@code null} se ela não existir
+     * ou se o ID for inválido.
      */
-    public boolean atualizarStatusTarefa(String id, boolean concluida) {
-        try {
-            ObjectId objectId = new ObjectId(id); // Converte a String ID para ObjectId
-            // Cria o documento de atualização usando o operador $set para modificar o campo "concluida".
-            Document updateDoc = new Document("$set", new Document("concluida", concluida));
-            // Executa a atualização na coleção, filtrando pelo _id.
-            UpdateResult result = colecao.updateOne(eq("_id", objectId), updateDoc);
-            System.out.println("INFO: Tentativa de atualizar status da tarefa ID " + id + ". Documentos modificados: " + result.getModifiedCount());
-            return result.getModifiedCount() > 0;
-        } catch (IllegalArgumentException e) {
-            System.err.println("ERRO: Formato de ID invalido ao tentar atualizar status da tarefa: " + id + " - " + e.getMessage());
-            return false;
-        }
+    @Override
+    public Tarefa atualizarStatusTarefa(String id, boolean concluida) {
+        return medir(Operacao.ATUALIZAR_STATUS, () -> {
+            try {
+                ObjectId objectId = new ObjectId(id); // Converte a String ID para ObjectId
+                // Cria o documento de atualização usando o operador $set para modificar o campo "concluida".
+                Document campos = new Document("concluida", concluida);
+                // Executa a atualização na coleção, filtrando pelo _id, e recebe o documento como estava antes.
+                Tarefa anterior = colecaoTarefas.findOneAndUpdate(eq("_id", objectId), atualizacao(campos), RETORNAR_ANTERIOR);
+                REGISTRO.info("atualizarStatus", "id", id, "concluida", concluida, "modificados", anterior == null ? 0 : 1);
+                return notificarAtualizacao(anterior, campos);
+            } catch (IllegalArgumentException e) {
+                REGISTRO.erro("atualizarStatus", "id", id, "erro", "ID invalido");
+                return null;
+            }
+        });
     }
     
+    /**
+     * Inverte o status de conclusão de uma tarefa em uma única operação atômica no servidor
+     * (uma atualização com pipeline que faz {@code concluida = !concluida}). Diferente de ler
+     * o status e gravar o oposto, duas inversões simultâneas nunca se perdem.
+     *
+     * @param id O ID (como String hexadecimal) da tarefa.
+     * @return A tarefa como ficou após a atualização, ou {@code null} se ela não existir
+     * ou se o ID for inválido.
+     */
+    @Override
+    public Tarefa alternarStatusTarefa(String id) {
+        return medir(Operacao.ATUALIZAR_STATUS, () -> {
+            ObjectId objectId = paraObjectIdOuNulo(id);
+            if (objectId == null) {
+                REGISTRO.erro("alternarStatus", "id", id, "erro", "ID invalido");
+                return null;
+            }
+            List<Bson> pipeline = List.of(new Document("$set",
+                    new Document("concluida", new Document("$not", "$concluida"))
+                            .append("versao", new Document("$add", List.of(new Document("$ifNull", List.of("$versao", 0L)), 1L)))
+                            .append("modificadaEm", "$$NOW")));
+            Tarefa anterior = colecaoTarefas.findOneAndUpdate(eq("_id", objectId), pipeline, RETORNAR_ANTERIOR);
+            REGISTRO.info("alternarStatus", "id", id, "concluida", anterior == null ? null : !anterior.isConcluida(),
+                    "modificados", anterior == null ? 0 : 1);
+            return anterior == null ? null : notificarAtualizacao(anterior, new Document("concluida", !anterior.isConcluida()));
+        });
+    }
+
     /**
      * Atualiza os detalhes (título, descrição, prioridade) de uma tarefa existente.
      * O status de conclusão não é alterado por este método.
@@ -121,44 +755,113 @@ public class TarefaDAO {
      * @param novoTitulo O novo título para a tarefa.
      * @param novaDescricao A nova descrição para a tarefa.
      * @param novaPrioridade A nova prioridade para a tarefa.
-     * @return {@code true} se a atualização foi bem-sucedida e pelo menos um documento foi modificado,
-     * {@code false} caso contrário, se nenhum campo foi alterado ou se o ID for inválido.
+     * @return A tarefa como ficou após a atualização, ou {@code null} se ela não existir,
+     * se nenhum campo válido foi fornecido ou se o ID for inválido.
      */
-    public boolean atualizarTarefa(String id, String novoTitulo, String novaDescricao, String novaPrioridade) {
-        try {
-            ObjectId objectId = new ObjectId(id);
-            Document updateFields = new Document();
-            boolean algumaAlteracao = false;
+    @Override
+    public Tarefa atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            try {
+                ObjectId objectId = new ObjectId(id);
+                Document updateFields = camposDetalhes(novoTitulo, novaDescricao, novaPrioridade);
 
-            // Adiciona campos ao $set somente se eles forem fornecidos e diferentes do valor atual (opcional, mas bom para evitar updates desnecessários)
-            // Para uma verificação mais robusta de "diferente do valor atual", seria preciso buscar a tarefa primeiro.
-            // Aqui, apenas atualizamos se um novo valor não nulo/vazio for fornecido.
-            if (novoTitulo != null && !novoTitulo.trim().isEmpty()) {
-                updateFields.append("titulo", novoTitulo.trim());
-                algumaAlteracao = true;
-            }
-            if (novaDescricao != null && !novaDescricao.trim().isEmpty()) {
-                updateFields.append("descricao", novaDescricao.trim());
-                algumaAlteracao = true;
-            }
-            if (novaPrioridade != null && !novaPrioridade.trim().isEmpty()) {
-                updateFields.append("prioridade", novaPrioridade.trim());
-                algumaAlteracao = true;
+                if (updateFields.isEmpty()) {
+                    REGISTRO.info("atualizar", "id", id, "modificados", 0, "motivo", "nenhum campo valido");
+                    return null; // Nada para atualizar
+                }
+
+                Document updateDoc = atualizacao(updateFields);
+                Tarefa anterior = colecaoTarefas.findOneAndUpdate(eq("_id", objectId), updateDoc, RETORNAR_ANTERIOR);
+                REGISTRO.info("atualizar", "id", id, "modificados", anterior == null ? 0 : 1);
+                return notificarAtualizacao(anterior, updateFields);
+            } catch (IllegalArgumentException e) {
+                REGISTRO.erro("atualizar", "id", id, "erro", "ID invalido");
+                return null;
             }
+        });
+    }
 
-            if (!algumaAlteracao) {
-                System.out.println("INFO: Nenhum detalhe valido fornecido para atualizar a tarefa ID " + id);
-                return false; // Nada para atualizar
+    /**
+     * Atualiza o status de conclusão de uma tarefa, desde que ela ainda esteja na versão em que
+     * foi lida (controle de concorrência otimista). Não há trava: a condição faz parte do filtro
+     * do {@code findOneAndUpdate}, e a versão é incrementada na mesma operação.
+     *
+     * @param id O ID (como String hexadecimal) da tarefa.
+     * @param concluida O novo status de conclusão.
+     * @param versaoEsperada A versão em que a tarefa foi lida ({@link Tarefa#getVersao()}).
+     * @return O resultado; em um conflito, traz o estado atual da tarefa.
+     */
+    @Override
+    public ResultadoAtualizacao atualizarStatusTarefa(String id, boolean concluida, long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR_STATUS, () -> {
+            return atualizarNaVersao(id, versaoEsperada, new Document("concluida", concluida));
+        });
+    }
+
+    /**
+     * Atualiza os detalhes de uma tarefa, desde que ela ainda esteja na versão em que foi lida.
+     * Como em {@link #atualizarTarefa(String, String, String, Prioridade)}, apenas os valores
+     * não vazios são alterados.
+     *
+     * @param id O ID (como String hexadecimal) da tarefa.
+     * @param novoTitulo O novo título.
+     * @param novaDescricao A nova descrição.
+     * @param novaPrioridade A nova prioridade.
+     * @param versaoEsperada A versão em que a tarefa foi lida ({@link Tarefa#getVersao()}).
+     * @return O resultado; em um conflito, traz o estado atual da tarefa.
+     */
+    @Override
+    public ResultadoAtualizacao atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade,
+            long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            Document campos = camposDetalhes(novoTitulo, novaDescricao, novaPrioridade);
+            if (campos.isEmpty()) {
+                return ResultadoAtualizacao.semAlteracoes();
             }
+            return atualizarNaVersao(id, versaoEsperada, campos);
+        });
+    }
+
+    /**
+     * Aplica um {@code $set} condicionado à versão. Se nenhum documento atender ao filtro,
+     * a tarefa é relida para distinguir um conflito de uma tarefa excluída.
+     */
+    private ResultadoAtualizacao atualizarNaVersao(String id, long versaoEsperada, Document campos) {
+        ObjectId objectId = paraObjectIdOuNulo(id);
+        if (objectId == null) {
+            REGISTRO.erro("atualizarNaVersao", "id", id, "erro", "ID invalido");
+            return ResultadoAtualizacao.naoEncontrada();
+        }
+        Tarefa anterior = colecaoTarefas.findOneAndUpdate(filtroVersao(objectId, versaoEsperada),
+                atualizacao(campos), RETORNAR_ANTERIOR);
+        if (anterior != null) {
+            return ResultadoAtualizacao.atualizada(notificarAtualizacao(anterior, campos));
+        }
+        Tarefa atual = colecaoTarefas.find(eq("_id", objectId)).first();
+        if (atual == null) {
+            return ResultadoAtualizacao.naoEncontrada();
+        }
+        REGISTRO.info("conflito", "id", id, "versaoEsperada", versaoEsperada, "versaoAtual", atual.getVersao());
+        return ResultadoAtualizacao.conflito(atual);
+    }
 
-            Document updateDoc = new Document("$set", updateFields);
-            UpdateResult result = colecao.updateOne(eq("_id", objectId), updateDoc);
-            System.out.println("INFO: Tentativa de atualizar detalhes da tarefa ID " + id + ". Documentos modificados: " + result.getModifiedCount());
-            return result.getModifiedCount() > 0;
-        } catch (IllegalArgumentException e) {
-            System.err.println("ERRO: Formato de ID invalido ao tentar atualizar detalhes da tarefa: " + id + " - " + e.getMessage());
-            return false;
+    /**
+     * Monta o {@code $set} dos detalhes de uma tarefa: apenas os valores não nulos e não vazios entram.
+     */
+    private static Document camposDetalhes(String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        Document campos = new Document();
+        // Para uma verificação de "diferente do valor atual", seria preciso buscar a tarefa primeiro.
+        // Aqui, apenas atualizamos se um novo valor não nulo/vazio for fornecido.
+        if (novoTitulo != null && !novoTitulo.trim().isEmpty()) {
+            campos.append("titulo", novoTitulo.trim());
+        }
+        if (novaDescricao != null && !novaDescricao.trim().isEmpty()) {
+            campos.append("descricao", novaDescricao.trim());
         }
+        if (novaPrioridade != null) {
+            campos.append("prioridade", novaPrioridade.getCodigo());
+        }
+        return campos;
     }
 
     /**
@@ -168,16 +871,453 @@ public class TarefaDAO {
      * @return {@code true} se a exclusão foi bem-sucedida e um documento foi removido,
      * {@code false} caso contrário ou se o ID for inválido.
      */
+    @Override
     public boolean excluirTarefa(String id) {
-        try {
-            ObjectId objectId = new ObjectId(id); // Converte a String ID para ObjectId
-            // Executa a exclusão na coleção, filtrando pelo _id.
-            DeleteResult result = colecao.deleteOne(eq("_id", objectId));
-            System.out.println("INFO: Tentativa de excluir tarefa ID " + id + ". Documentos removidos: " + result.getDeletedCount());
-            return result.getDeletedCount() > 0;
-        } catch (IllegalArgumentException e) {
-            System.err.println("ERRO: Formato de ID invalido ao tentar excluir tarefa: " + id + " - " + e.getMessage());
-            return false;
+        return medir(Operacao.EXCLUIR, () -> {
+            try {
+                ObjectId objectId = new ObjectId(id); // Converte a String ID para ObjectId
+                // Executa a exclusão na coleção, filtrando pelo _id, e recebe o documento excluído.
+                Tarefa excluida = colecaoTarefas.findOneAndDelete(eq("_id", objectId));
+                REGISTRO.info("excluir", "id", id, "removidos", excluida == null ? 0 : 1);
+                if (excluida != null) {
+                    ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+                    return true;
+                }
+                return false;
+            } catch (IllegalArgumentException e) {
+                REGISTRO.erro("excluir", "id", id, "erro", "ID invalido");
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Substitui uma tarefa inteira, desde que ela ainda esteja na versão esperada
+     * (controle de concorrência otimista). A tarefa gravada recebe a versão seguinte.
+     *
+     * @param tarefa O novo estado da tarefa, com o ID preenchido.
+     * @param versaoEsperada A versão em que a tarefa foi lida.
+     * @return {@code true} se a tarefa foi substituída; {@code false} se ela não existe mais
+     * ou foi alterada por outro cliente desde então.
+     */
+    @Override
+    public boolean substituirTarefaNaVersao(Tarefa tarefa, long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            tarefa.setVersao(versaoEsperada + 1);
+            // Por padrão, findOneAndReplace devolve o documento como estava antes.
+            Tarefa anterior = colecaoTarefas.findOneAndReplace(filtroVersao(tarefa.getObjectId(), versaoEsperada), tarefa);
+            if (anterior == null) {
+                tarefa.setVersao(versaoEsperada);
+                return false;
+            }
+            Tarefa atual = tarefa.copiar();
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaAtualizada(anterior, atual));
+            return true;
+        });
+    }
+
+    /**
+     * Exclui uma tarefa, desde que ela ainda esteja na versão esperada.
+     *
+     * @param id O ID (como String hexadecimal) da tarefa.
+     * @param versaoEsperada A versão em que a tarefa foi lida.
+     * @return {@code true} se a tarefa foi excluída; {@code false} se ela não existe mais
+     * ou foi alterada por outro cliente desde então.
+     */
+    @Override
+    public boolean excluirTarefaNaVersao(String id, long versaoEsperada) {
+        return medir(Operacao.EXCLUIR, () -> {
+            ObjectId objectId = paraObjectIdOuNulo(id);
+            if (objectId == null) {
+                REGISTRO.erro("excluir", "id", id, "erro", "ID invalido");
+                return false;
+            }
+            Tarefa excluida = colecaoTarefas.findOneAndDelete(filtroVersao(objectId, versaoEsperada));
+            if (excluida == null) {
+                return false;
+            }
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+            return true;
+        });
+    }
+
+    /**
+     * Adiciona várias tarefas com {@code insertMany}, em comandos de até
+     * {@link OpcoesLote#tamanhoLote()} documentos cada.
+     * Os IDs são gerados no cliente antes do envio, então cada tarefa inserida com sucesso
+     * já sai deste método com o ID preenchido. Tarefas que já tenham um ID (por exemplo, vindas
+     * de uma importação) o mantêm; se ele já existir na coleção, a tarefa falha.
+     *
+     * @param tarefas As tarefas a serem adicionadas.
+     * @param opcoes O tamanho dos lotes e se a inserção deve parar no primeiro erro.
+     * @return A situação de cada tarefa, na mesma ordem da lista.
+     */
+    @Override
+    public ResultadoLote adicionarTarefasEmLote(List<Tarefa> tarefas, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> ids = new ArrayList<>(tarefas.size());
+            for (Tarefa tarefa : tarefas) {
+                if (tarefa.getObjectId() == null) {
+                    tarefa.setObjectId(new ObjectId());
+                }
+                if (tarefa.getVersao() == 0) {
+                    tarefa.setVersao(1);
+                }
+                ids.add(tarefa.getId());
+            }
+            InsertManyOptions insertManyOptions = new InsertManyOptions().ordered(opcoes.ordenado());
+            ResultadoLote resultado = executarEmLotes(ids, tarefas, opcoes,
+                    lote -> {
+                        colecaoTarefas.insertMany(lote, insertManyOptions);
+                        return lote.size();
+                    });
+            // Só as tarefas realmente inseridas ficam com o ID.
+            for (int i = 0; i < tarefas.size(); i++) {
+                Tarefa tarefa = tarefas.get(i);
+                if (resultado.getSituacao(i) == ResultadoLote.Situacao.SUCESSO) {
+                    ouvintes.forEach(ouvinte -> ouvinte.tarefaAdicionada(tarefa));
+                } else {
+                    tarefa.setObjectId(null);
+                }
+            }
+            REGISTRO.info("inserirLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            return resultado;
+        });
+    }
+
+    /**
+     * Define o status de conclusão de várias tarefas, cada uma com o seu próprio valor,
+     * usando {@code bulkWrite} (um {@code updateOne} por tarefa, enviados juntos).
+     * É o que permite, por exemplo, alternar o status de uma seleção mista de tarefas
+     * em uma única ida ao banco.
+     *
+     * @param novoStatusPorId O novo status de cada tarefa, indexado pelo ID (String hexadecimal).
+     * @param opcoes O tamanho dos lotes e se a atualização deve parar no primeiro erro.
+     * @return A situação de cada tarefa, na ordem de iteração do mapa.
+     */
+    @Override
+    public ResultadoLote atualizarStatusEmLote(Map<String, Boolean> novoStatusPorId, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> ids = new ArrayList<>(novoStatusPorId.keySet());
+            List<ObjectId> objectIds = new ArrayList<>(ids.size());
+            List<WriteModel<Document>> modelos = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ObjectId objectId = paraObjectIdOuNulo(id);
+                objectIds.add(objectId);
+                modelos.add(objectId == null ? null : new UpdateOneModel<>(eq("_id", objectId),
+                        atualizacao(new Document("concluida", novoStatusPorId.get(id)))));
+            }
+            Map<ObjectId, Tarefa> anteriores = lerAnteriores(objectIds, opcoes.tamanhoLote());
+            ResultadoLote resultado = executarBulkWrite(ids, modelos, opcoes);
+            REGISTRO.info("atualizarStatusLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            notificarAlteracoes(resultado, anteriores, id -> new Document("concluida", novoStatusPorId.get(id)));
+            return resultado;
+        });
+    }
+
+    /**
+     * Define o mesmo status de conclusão para várias tarefas com {@code updateMany}.
+     * Cada lote vira um único comando com um filtro {@code $in}, o que é mais leve que
+     * {@link #atualizarStatusEmLote(Map, OpcoesLote)} para fechar muitas tarefas de uma vez.
+     * Como o MongoDB informa apenas o total modificado por comando, a situação de cada item
+     * reflete o resultado do lote inteiro em que ele foi enviado.
+     *
+     * @param ids Os IDs (String hexadecimal) das tarefas.
+     * @param concluida O novo status de conclusão.
+     * @param opcoes O tamanho dos lotes e se a atualização deve parar no primeiro lote com erro.
+     * @return A situação de cada tarefa, na ordem de iteração da coleção.
+     */
+    @Override
+    public ResultadoLote definirStatusEmLote(Collection<String> ids, boolean concluida, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> listaIds = new ArrayList<>(ids);
+            List<ObjectId> objectIds = new ArrayList<>(listaIds.size());
+            for (String id : listaIds) {
+                objectIds.add(paraObjectIdOuNulo(id));
+            }
+            Document campos = new Document("concluida", concluida);
+            Document updateDoc = atualizacao(campos);
+            Map<ObjectId, Tarefa> anteriores = lerAnteriores(objectIds, opcoes.tamanhoLote());
+            ResultadoLote resultado = executarEmLotes(listaIds, objectIds, opcoes,
+                    lote -> colecao.updateMany(in("_id", lote), updateDoc).getModifiedCount());
+            REGISTRO.info("definirStatusLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            notificarAlteracoes(resultado, anteriores, id -> campos);
+            return resultado;
+        });
+    }
+
+    /**
+     * Exclui várias tarefas usando {@code bulkWrite} (um {@code deleteOne} por tarefa, enviados juntos).
+     *
+     * @param ids Os IDs (String hexadecimal) das tarefas a serem excluídas.
+     * @param opcoes O tamanho dos lotes e se a exclusão deve parar no primeiro erro.
+     * @return A situação de cada tarefa, na ordem de iteração da coleção.
+     */
+    @Override
+    public ResultadoLote excluirTarefasEmLote(Collection<String> ids, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> listaIds = new ArrayList<>(ids);
+            List<ObjectId> objectIds = new ArrayList<>(listaIds.size());
+            List<WriteModel<Document>> modelos = new ArrayList<>(listaIds.size());
+            for (String id : listaIds) {
+                ObjectId objectId = paraObjectIdOuNulo(id);
+                objectIds.add(objectId);
+                modelos.add(objectId == null ? null : new DeleteOneModel<>(eq("_id", objectId)));
+            }
+            Map<ObjectId, Tarefa> anteriores = lerAnteriores(objectIds, opcoes.tamanhoLote());
+            ResultadoLote resultado = executarBulkWrite(listaIds, modelos, opcoes);
+            REGISTRO.info("excluirLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            if (!ouvintes.isEmpty()) {
+                for (String id : resultado.getIdsComSucesso()) {
+                    Tarefa excluida = anteriores.get(new ObjectId(id));
+                    if (excluida != null) {
+                        ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+                    }
+                }
+            }
+            return resultado;
+        });
+    }
+
+    /**
+     * Aplica um {@code $set} diferente a cada tarefa usando {@code bulkWrite}
+     * (um {@code updateOne} por tarefa, enviados juntos).
+     * Usado pela {@link FilaEscritaAtrasada} para gravar de uma só vez as alterações acumuladas.
+     *
+     * @param camposPorId Os campos a definir em cada tarefa, indexados pelo ID (String hexadecimal).
+     * @param opcoes O tamanho dos lotes e se a atualização deve parar no primeiro erro.
+     * @return A situação de cada tarefa, na ordem de iteração do mapa.
+     */
+    @Override
+    public ResultadoLote atualizarCamposEmLote(Map<String, Document> camposPorId, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> ids = new ArrayList<>(camposPorId.keySet());
+            List<ObjectId> objectIds = new ArrayList<>(ids.size());
+            List<WriteModel<Document>> modelos = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ObjectId objectId = paraObjectIdOuNulo(id);
+                objectIds.add(objectId);
+                modelos.add(objectId == null ? null
+                        : new UpdateOneModel<>(eq("_id", objectId), atualizacao(camposPorId.get(id))));
+            }
+            Map<ObjectId, Tarefa> anteriores = lerAnteriores(objectIds, opcoes.tamanhoLote());
+            ResultadoLote resultado = executarBulkWrite(ids, modelos, opcoes);
+            REGISTRO.info("atualizarCamposLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            notificarAlteracoes(resultado, anteriores, camposPorId::get);
+            return resultado;
+        });
+    }
+
+    /**
+     * Converte as prioridades gravadas como texto ("Alta", "Media", ...) no código numérico
+     * de {@link Prioridade}, com um {@code updateMany} por prioridade enviados em um único {@code bulkWrite}.
+     * Pode ser executada mais de uma vez: documentos já convertidos não são mais encontrados pelos filtros.
+     *
+     * Exceção à regra de {@link #atualizacao(Document)}: a versão não é incrementada, pois o valor
+     * da prioridade não muda, só a forma de gravá-lo (e o {@link TarefaCodec} lê as duas formas).
+     * Assim, quem tem uma alteração pendente na versão atual não recebe um conflito por causa da migração.
+     *
+     * @return O número de tarefas convertidas.
+     */
+    public long migrarPrioridades() {
+        return medir(Operacao.LOTE, () -> {
+            List<WriteModel<Document>> modelos = new ArrayList<>();
+            for (Prioridade prioridade : Prioridade.values()) {
+                modelos.add(new UpdateManyModel<>(in("prioridade", prioridade.getTextosAntigos()),
+                        new Document("$set", new Document("prioridade", prioridade.getCodigo()))));
+            }
+            long convertidas = colecao.bulkWrite(modelos).getModifiedCount();
+            REGISTRO.info("migrarPrioridades", "convertidas", convertidas);
+            return convertidas;
+        });
+    }
+
+    /**
+     * Conta as tarefas cuja prioridade ainda está gravada como texto, por exemplo porque o texto não
+     * corresponde a nenhuma {@link Prioridade} e a {@link #migrarPrioridades() migração} não o reconheceu.
+     *
+     * @return O número de tarefas com prioridade em texto.
+     */
+    public long contarPrioridadesEmTexto() {
+        return medir(Operacao.CONTAR, () -> colecao.countDocuments(type("prioridade", BsonType.STRING)));
+    }
+
+    /**
+     * Monta uma atualização que define os campos, incrementa a versão da tarefa e registra o
+     * momento da alteração ({@code modificadaEm}, no relógio do servidor).
+     * Toda alteração feita por este DAO passa por aqui, de modo que a versão muda
+     * sempre que o documento muda.
+     */
+    private static Document atualizacao(Document campos) {
+        return new Document("$set", campos).append("$inc", new Document("versao", 1L))
+                .append("$currentDate", new Document("modificadaEm", true));
+    }
+
+    /**
+     * Monta o filtro que só aceita o documento na versão esperada.
+     * Documentos gravados antes do controle de versão não têm o campo e valem como versão 0.
+     */
+    private static Bson filtroVersao(ObjectId id, long versaoEsperada) {
+        Bson versao = versaoEsperada == 0
+                ? or(eq("versao", 0L), exists("versao", false))
+                : eq("versao", versaoEsperada);
+        return and(eq("_id", id), versao);
+    }
+
+    /**
+     * Calcula o novo estado de uma tarefa atualizada por {@link #atualizacao(Document)}, a partir do
+     * estado anterior (devolvido pelo {@code findOneAndUpdate}): os campos do {@code $set} e a versão
+     * seguinte, exatamente o que o servidor gravou. Em seguida avisa os ouvintes.
+     *
+     * @param anterior O estado anterior, ou {@code null} se nenhuma tarefa foi atualizada.
+     * @param campos Os campos do {@code $set}.
+     * @return O novo estado, ou {@code null} se {@code anterior} for {@code null}.
+     */
+    private Tarefa notificarAtualizacao(Tarefa anterior, Document campos) {
+        if (anterior == null) {
+            return null;
+        }
+        Tarefa atualizada = TarefaCodec.aplicarCampos(anterior.copiar(), campos);
+        atualizada.setVersao(anterior.getVersao() + 1);
+        if (!ouvintes.isEmpty()) {
+            Tarefa atual = atualizada.copiar();
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaAtualizada(anterior, atual));
+        }
+        return atualizada;
+    }
+
+    /**
+     * Lê o estado atual das tarefas que uma operação em lote vai alterar, para que os ouvintes
+     * recebam o estado anterior de cada uma ({@code bulkWrite} e {@code updateMany} não devolvem
+     * documentos). Sem ouvintes, nada é lido.
+     *
+     * @param ids Os IDs, com {@code null} para os inválidos.
+     * @param tamanhoLote O número máximo de IDs por consulta.
+     * @return As tarefas encontradas, pelo ID.
+     */
+    private Map<ObjectId, Tarefa> lerAnteriores(List<ObjectId> ids, int tamanhoLote) {
+        Map<ObjectId, Tarefa> anteriores = new HashMap<>();
+        if (ouvintes.isEmpty()) {
+            return anteriores;
+        }
+        List<ObjectId> validos = new ArrayList<>(ids.size());
+        for (ObjectId id : ids) {
+            if (id != null) {
+                validos.add(id);
+            }
+        }
+        for (int inicio = 0; inicio < validos.size(); inicio += tamanhoLote) {
+            colecaoTarefas.find(in("_id", validos.subList(inicio, Math.min(inicio + tamanhoLote, validos.size()))))
+                    .forEach(tarefa -> anteriores.put(tarefa.getObjectId(), tarefa));
+        }
+        return anteriores;
+    }
+
+    /**
+     * Avisa os ouvintes das tarefas alteradas com sucesso por uma operação em lote, com o estado
+     * lido por {@link #lerAnteriores} e o novo estado calculado a partir dele.
+     *
+     * @param camposDe Os campos do {@code $set} de cada tarefa, pelo ID.
+     */
+    private void notificarAlteracoes(ResultadoLote resultado, Map<ObjectId, Tarefa> anteriores,
+                                     Function<String, Document> camposDe) {
+        if (ouvintes.isEmpty()) {
+            return;
+        }
+        for (String id : resultado.getIdsComSucesso()) {
+            Tarefa anterior = anteriores.get(new ObjectId(id));
+            // Ausente: a tarefa não existia quando foi lida, e o lote não a alterou.
+            if (anterior != null) {
+                notificarAtualizacao(anterior, camposDe.apply(id));
+            }
         }
     }
+
+    /**
+     * Envia operações de escrita com {@code bulkWrite}, em lotes.
+     */
+    private ResultadoLote executarBulkWrite(List<String> ids, List<WriteModel<Document>> modelos, OpcoesLote opcoes) {
+        BulkWriteOptions bulkWriteOptions = new BulkWriteOptions().ordered(opcoes.ordenado());
+        return executarEmLotes(ids, modelos, opcoes, lote -> {
+            BulkWriteResult result = colecao.bulkWrite(lote, bulkWriteOptions);
+            return result.getInsertedCount() + result.getModifiedCount() + result.getDeletedCount();
+        });
+    }
+
+    /**
+     * Divide os itens em lotes de {@link OpcoesLote#tamanhoLote()}, envia cada lote e registra
+     * a situação de cada item no {@link ResultadoLote}.
+     * Itens {@code null} correspondem a IDs inválidos e não são enviados.
+     *
+     * @param ids Os IDs dos itens, usados no resultado.
+     * @param itens Os itens a enviar, na mesma ordem dos IDs.
+     * @param opcoes O tamanho dos lotes e se a execução deve parar no primeiro erro.
+     * @param enviarLote Envia um lote ao MongoDB e retorna quantos documentos foram afetados.
+     * @return O resultado com a situação de cada item.
+     */
+    private <T> ResultadoLote executarEmLotes(List<String> ids, List<T> itens, OpcoesLote opcoes,
+                                              ToLongFunction<List<T>> enviarLote) {
+        ResultadoLote resultado = new ResultadoLote(ids);
+        // Posição original (na lista de IDs) de cada item válido.
+        int[] posicoes = new int[itens.size()];
+        List<T> validos = new ArrayList<>(itens.size());
+        for (int i = 0; i < itens.size(); i++) {
+            if (itens.get(i) == null) {
+                resultado.definir(i, ResultadoLote.Situacao.ID_INVALIDO, "Formato de ID invalido: " + ids.get(i));
+            } else {
+                posicoes[validos.size()] = i;
+                validos.add(itens.get(i));
+            }
+        }
+
+        for (int inicio = 0; inicio < validos.size(); inicio += opcoes.tamanhoLote()) {
+            int fim = Math.min(inicio + opcoes.tamanhoLote(), validos.size());
+            List<T> lote = validos.subList(inicio, fim);
+            try {
+                resultado.somarAfetados(enviarLote.applyAsLong(lote));
+                for (int i = inicio; i < fim; i++) {
+                    resultado.definir(posicoes[i], ResultadoLote.Situacao.SUCESSO, null);
+                }
+            } catch (MongoBulkWriteException e) {
+                BulkWriteResult parcial = e.getWriteResult();
+                resultado.somarAfetados(parcial.getInsertedCount() + parcial.getModifiedCount() + parcial.getDeletedCount());
+                // Em um lote ordenado, nada depois do primeiro erro é executado.
+                int primeiroErro = fim - inicio;
+                for (BulkWriteError erro : e.getWriteErrors()) {
+                    resultado.definir(posicoes[inicio + erro.getIndex()], ResultadoLote.Situacao.FALHA, erro.getMessage());
+                    primeiroErro = Math.min(primeiroErro, erro.getIndex());
+                }
+                for (int i = 0; i < fim - inicio; i++) {
+                    if (resultado.getSituacao(posicoes[inicio + i]) == ResultadoLote.Situacao.FALHA) {
+                        continue;
+                    }
+                    boolean executado = !opcoes.ordenado() || i < primeiroErro;
+                    resultado.definir(posicoes[inicio + i],
+                            executado ? ResultadoLote.Situacao.SUCESSO : ResultadoLote.Situacao.NAO_EXECUTADO, null);
+                }
+                if (opcoes.ordenado()) {
+                    break;
+                }
+            } catch (MongoException e) {
+                // Erro do comando inteiro (por exemplo, perda de conexão): o lote todo falha.
+                for (int i = inicio; i < fim; i++) {
+                    resultado.definir(posicoes[i], ResultadoLote.Situacao.FALHA, e.getMessage());
+                }
+                REGISTRO.erro("enviarLote", "itens", lote.size(), "erro", e.getMessage());
+                if (opcoes.ordenado()) {
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Converte um ID em String hexadecimal para {@link ObjectId}.
+     *
+     * @return O ObjectId, ou {@code null} se o formato for inválido.
+     */
+    private static ObjectId paraObjectIdOuNulo(String id) {
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id) : null;
+    }
 }
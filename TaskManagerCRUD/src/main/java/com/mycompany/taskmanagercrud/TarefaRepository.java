@@ -0,0 +1,290 @@
+package com.mycompany.taskmanagercrud;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.bson.Document;
+
+/**
+ * @author Thierry
+ *
+ * Armazenamento das tarefas: as operações de leitura e gravação usadas pelo restante da aplicação
+ * (serviço, servidor REST, importação e exportação, sincronização), sem depender de onde as
+ * tarefas ficam.
+ *
+ * Há duas implementações, escolhidas na inicialização por {@link #criar()}:
+ * <ul>
+ *   <li>{@link TarefaDAO}: o MongoDB, padrão;</li>
+ *   <li>{@link TarefaRepositoryMemoria}: tudo em memória, sem banco. Serve para rodar e testar
+ *   carga sem um {@code mongod} e como referência para medir o custo do MongoDB.</li>
+ * </ul>
+ *
+ * Os IDs são Strings hexadecimais de {@link org.bson.types.ObjectId}; IDs inválidos são tratados
+ * como tarefas inexistentes. Toda gravação incrementa a {@link Tarefa#getVersao() versão} da tarefa
+ * e é avisada aos {@link OuvinteTarefas ouvintes}. As implementações são thread-safe.
+ */
+public interface TarefaRepository {
+
+    /**
+     * Cria o armazenamento indicado por {@code -Dtaskmanager.armazenamento}: {@code mongo} (padrão)
+     * ou {@code memoria}. No MongoDB, {@code -Dtaskmanager.diagnosticoIndices=true} ativa o
+     * diagnóstico de índices.
+     *
+     * @return O armazenamento.
+     * @throws IllegalArgumentException Se o armazenamento informado não existir.
+     */
+    static TarefaRepository criar() {
+        String armazenamento = System.getProperty("taskmanager.armazenamento", "mongo");
+        return switch (armazenamento.toLowerCase(Locale.ROOT)) {
+            case "mongo" -> new TarefaDAO(ConexaoMongo.conectar(), Boolean.getBoolean("taskmanager.diagnosticoIndices"),
+                    ConexaoMongo.tamanhoMaximoPool());
+            case "memoria" -> new TarefaRepositoryMemoria();
+            default -> throw new IllegalArgumentException(
+                    "Armazenamento desconhecido: " + armazenamento + " (use mongo ou memoria).");
+        };
+    }
+
+    /**
+     * Adiciona um ouvinte das alterações feitas através deste armazenamento.
+     *
+     * @param ouvinte O ouvinte.
+     */
+    void adicionarOuvinte(OuvinteTarefas ouvinte);
+
+    /**
+     * Remove um ouvinte adicionado com {@link #adicionarOuvinte}.
+     *
+     * @param ouvinte O ouvinte.
+     */
+    void removerOuvinte(OuvinteTarefas ouvinte);
+
+    /**
+     * Prepara os índices do armazenamento. Deve ser chamado na inicialização da aplicação.
+     */
+    void garantirIndices();
+
+    /**
+     * Adiciona uma tarefa. Se ela não tiver ID, um novo é gerado.
+     *
+     * @param tarefa A tarefa.
+     * @return A mesma tarefa, com o ID preenchido.
+     */
+    Tarefa adicionarTarefa(Tarefa tarefa);
+
+    /**
+     * @return Todas as tarefas.
+     */
+    List<Tarefa> listarTarefas();
+
+    /**
+     * Lista uma página de uma consulta, com paginação por chave: a página começa logo depois de
+     * {@code apos}, na ordem da consulta (campo de ordenação e, em caso de empate, {@code _id}).
+     *
+     * @param consulta Os filtros, a ordenação e os campos desejados.
+     * @param apos A última tarefa da página anterior, ou {@code null} para a primeira página.
+     * @param limite O número máximo de tarefas.
+     * @return As tarefas da página, na ordem da consulta.
+     */
+    List<Tarefa> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite);
+
+    /**
+     * @param id O ID da tarefa.
+     * @return A tarefa, ou {@code null} se ela não existir ou o ID for inválido.
+     */
+    Tarefa buscarTarefaPorId(String id);
+
+    /**
+     * @param ids Os IDs das tarefas. IDs inválidos são ignorados.
+     * @return As tarefas encontradas, em qualquer ordem.
+     */
+    List<Tarefa> buscarTarefasPorIds(Collection<String> ids);
+
+    /**
+     * @return A versão de cada tarefa, indexada pelo ID.
+     */
+    Map<String, Long> listarVersoes();
+
+    /**
+     * Lista as tarefas incluídas ou alteradas a partir de um instante, sem percorrer as demais.
+     * Exclusões não aparecem; para encontrá-las, compare com {@link #listarVersoes()}.
+     *
+     * @param desde O instante, no relógio do armazenamento (veja {@link #relogio()}).
+     * @return As tarefas alteradas, em qualquer ordem.
+     */
+    List<Tarefa> listarAlteradasDesde(Instant desde);
+
+    /**
+     * @return O instante atual no relógio do armazenamento, a referência de {@link #listarAlteradasDesde}.
+     */
+    Instant relogio();
+
+    /**
+     * @return O número total de tarefas.
+     */
+    default long contarTarefas() {
+        return contarTarefas(ConsultaTarefas.TODAS);
+    }
+
+    /**
+     * @param consulta A consulta cujos filtros são aplicados.
+     * @return O número de tarefas que atendem aos filtros.
+     */
+    long contarTarefas(ConsultaTarefas consulta);
+
+    /**
+     * Conta as tarefas de cada combinação de prioridade e status, sem trazê-las do armazenamento.
+     *
+     * @return As contagens, com os totais e as taxas de conclusão.
+     */
+    EstatisticasTarefas calcularEstatisticas();
+
+    /**
+     * Busca tarefas por palavras do título ou da descrição, da mais para a menos relevante.
+     *
+     * @param texto As palavras a buscar.
+     * @param limite O número máximo de tarefas.
+     * @return As tarefas encontradas.
+     */
+    List<Tarefa> buscarTarefasPorTexto(String texto, int limite);
+
+    /**
+     * Abre um fluxo com as tarefas de uma consulta, na ordem da consulta. As tarefas são lidas à
+     * medida que o fluxo é consumido, {@code tamanhoLote} de cada vez; nada é acumulado, então uma
+     * passada por milhões de tarefas usa memória constante. Quem consome mais devagar apenas atrasa
+     * a leitura do próximo lote.
+     *
+     * O fluxo prende recursos do armazenamento (no MongoDB, um cursor aberto no servidor) e deve
+     * ser fechado, de preferência com try-with-resources, mesmo que não seja consumido até o fim.
+     *
+     * @param consulta Os filtros, a ordenação e os campos desejados.
+     * @param tamanhoLote Quantas tarefas são lidas de cada vez, quando o armazenamento lê em lotes.
+     * @return O fluxo, sequencial.
+     */
+    Stream<Tarefa> abrirFluxoTarefas(ConsultaTarefas consulta, int tamanhoLote);
+
+    /**
+     * Percorre as tarefas de uma consulta, uma de cada vez, na ordem da consulta
+     * (veja {@link #abrirFluxoTarefas}).
+     *
+     * @param consulta Os filtros, a ordenação e os campos desejados.
+     * @param tamanhoLote Quantas tarefas são lidas de cada vez, quando o armazenamento lê em lotes.
+     * @param acao A ação executada para cada tarefa.
+     * @return O número de tarefas percorridas.
+     */
+    default long percorrerTarefas(ConsultaTarefas consulta, int tamanhoLote, Consumer<Tarefa> acao) {
+        long[] total = {0};
+        try (Stream<Tarefa> tarefas = abrirFluxoTarefas(consulta, tamanhoLote)) {
+            tarefas.forEach(tarefa -> {
+                acao.accept(tarefa);
+                total[0]++;
+            });
+        }
+        return total[0];
+    }
+
+    /**
+     * @param consulta A consulta, com seus filtros e ordenação.
+     * @param posicao A posição (a partir de 0).
+     * @return A tarefa nessa posição do resultado (pode trazer apenas o ID e o campo de ordenação),
+     * ou {@code null} se a posição não existir.
+     */
+    Tarefa buscarTarefaNaPosicao(ConsultaTarefas consulta, long posicao);
+
+    /**
+     * @param id O ID da tarefa.
+     * @param concluida O novo status.
+     * @return A tarefa atualizada, ou {@code null} se ela não existir.
+     */
+    Tarefa atualizarStatusTarefa(String id, boolean concluida);
+
+    /**
+     * Inverte o status de uma tarefa atomicamente: duas inversões simultâneas nunca se perdem.
+     *
+     * @param id O ID da tarefa.
+     * @return A tarefa atualizada, ou {@code null} se ela não existir.
+     */
+    Tarefa alternarStatusTarefa(String id);
+
+    /**
+     * Atualiza os detalhes de uma tarefa; apenas os valores não nulos e não vazios são alterados.
+     *
+     * @return A tarefa atualizada, ou {@code null} se ela não existir ou nada foi informado.
+     */
+    Tarefa atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade);
+
+    /**
+     * Atualiza o status de uma tarefa, desde que ela ainda esteja na versão esperada.
+     *
+     * @return O resultado; em um conflito, traz o estado atual da tarefa.
+     */
+    ResultadoAtualizacao atualizarStatusTarefa(String id, boolean concluida, long versaoEsperada);
+
+    /**
+     * Atualiza os detalhes de uma tarefa, desde que ela ainda esteja na versão esperada.
+     *
+     * @return O resultado; em um conflito, traz o estado atual da tarefa.
+     */
+    ResultadoAtualizacao atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade,
+            long versaoEsperada);
+
+    /**
+     * @param id O ID da tarefa.
+     * @return {@code true} se a tarefa existia e foi excluída.
+     */
+    boolean excluirTarefa(String id);
+
+    /**
+     * Substitui uma tarefa inteira, desde que ela ainda esteja na versão esperada.
+     * A tarefa gravada recebe a versão seguinte.
+     *
+     * @return {@code true} se a tarefa foi substituída.
+     */
+    boolean substituirTarefaNaVersao(Tarefa tarefa, long versaoEsperada);
+
+    /**
+     * Exclui uma tarefa, desde que ela ainda esteja na versão esperada.
+     *
+     * @return {@code true} se a tarefa foi excluída.
+     */
+    boolean excluirTarefaNaVersao(String id, long versaoEsperada);
+
+    /**
+     * Adiciona várias tarefas. As inseridas com sucesso saem com o ID preenchido.
+     *
+     * @return A situação de cada tarefa, na ordem da lista.
+     */
+    ResultadoLote adicionarTarefasEmLote(List<Tarefa> tarefas, OpcoesLote opcoes);
+
+    /**
+     * Define o status de várias tarefas, cada uma com o seu próprio valor.
+     *
+     * @return A situação de cada tarefa, na ordem de iteração do mapa.
+     */
+    ResultadoLote atualizarStatusEmLote(Map<String, Boolean> novoStatusPorId, OpcoesLote opcoes);
+
+    /**
+     * Define o mesmo status para várias tarefas.
+     *
+     * @return A situação de cada tarefa, na ordem de iteração da coleção.
+     */
+    ResultadoLote definirStatusEmLote(Collection<String> ids, boolean concluida, OpcoesLote opcoes);
+
+    /**
+     * Exclui várias tarefas.
+     *
+     * @return A situação de cada tarefa, na ordem de iteração da coleção.
+     */
+    ResultadoLote excluirTarefasEmLote(Collection<String> ids, OpcoesLote opcoes);
+
+    /**
+     * Define campos diferentes em cada tarefa, com os nomes e valores como no documento do MongoDB
+     * ({@code titulo}, {@code descricao}, {@code prioridade} como código e {@code concluida}).
+     *
+     * @return A situação de cada tarefa, na ordem de iteração do mapa.
+     */
+    ResultadoLote atualizarCamposEmLote(Map<String, Document> camposPorId, OpcoesLote opcoes);
+}
@@ -0,0 +1,569 @@
+package com.mycompany.taskmanagercrud;
+
+import static com.mycompany.taskmanagercrud.MetricasTarefas.medir;
+import com.mycompany.taskmanagercrud.MetricasTarefas.Operacao;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Armazenamento das tarefas inteiramente em memória, sem MongoDB ({@code -Dtaskmanager.armazenamento=memoria}).
+ * Os dados se perdem ao encerrar o programa. Serve para rodar a aplicação e testes de carga sem um
+ * {@code mongod} e, com as mesmas {@link MetricasTarefas métricas} do {@link TarefaDAO}, como
+ * referência para medir quanto do tempo de cada operação é custo do banco.
+ *
+ * As tarefas ficam em um {@link IndiceConcorrenteTarefas}, com índices secundários por prioridade e
+ * por status: consultas filtradas combinam os bitsets desses índices em vez de olhar todas as tarefas,
+ * e contagens nem leem as tarefas. Gravações travam só a faixa da tarefa alterada, atualizando os
+ * índices junto; leituras trabalham sobre um instantâneo, sem trava, e nunca veem uma tarefa
+ * fora do índice em que ela está.
+ *
+ * As tarefas guardadas nunca são entregues a quem chama: leituras devolvem cópias e gravações
+ * guardam cópias, como aconteceria com um banco.
+ */
+public class TarefaRepositoryMemoria implements TarefaRepository {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(TarefaRepositoryMemoria.class);
+
+    /** As tarefas, pelo ID, com os índices secundários. */
+    private final IndiceConcorrenteTarefas tarefas = new IndiceConcorrenteTarefas();
+
+    /** Ouvintes notificados a cada alteração. */
+    private final List<OuvinteTarefas> ouvintes = new CopyOnWriteArrayList<>();
+
+    /** Índice de texto da busca, criado na primeira busca. */
+    private volatile IndiceBuscaTarefas indiceTexto;
+
+    /**
+     * Cria um armazenamento vazio.
+     */
+    public TarefaRepositoryMemoria() {
+        // No MongoDB, o JMX é registrado ao conectar; aqui não há conexão.
+        MetricasTarefas.registrarJmx();
+        REGISTRO.info("abrir", "armazenamento", "memoria");
+    }
+
+    @Override
+    public void adicionarOuvinte(OuvinteTarefas ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    @Override
+    public void removerOuvinte(OuvinteTarefas ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    /**
+     * Nada a fazer: os índices secundários existem desde a criação.
+     */
+    @Override
+    public void garantirIndices() {
+    }
+
+    // --- Leitura ---
+
+    @Override
+    public List<Tarefa> listarTarefas() {
+        return medir(Operacao.LISTAR, () -> {
+            return selecionar(ConsultaTarefas.TODAS);
+        });
+    }
+
+    /**
+     * Mantém em um heap apenas as {@code limite} primeiras tarefas da consulta, sem ordenar o resto
+     * (veja {@link IndiceConcorrenteTarefas.Instantaneo#pagina}).
+     */
+    @Override
+    public List<Tarefa> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite) {
+        return medir(Operacao.LISTAR, () -> {
+            List<Tarefa> pagina = tarefas.instantaneo().pagina(consulta, apos, limite);
+            pagina.replaceAll(TarefaRepositoryMemoria::copiar);
+            return pagina;
+        });
+    }
+
+    @Override
+    public Tarefa buscarTarefaPorId(String id) {
+        return medir(Operacao.BUSCAR, () -> {
+            ObjectId objectId = paraObjectIdOuNulo(id);
+            if (objectId == null) {
+                REGISTRO.erro("buscar", "id", id, "erro", "ID invalido");
+                return null;
+            }
+            return copiar(tarefas.obter(objectId));
+        });
+    }
+
+    @Override
+    public List<Tarefa> buscarTarefasPorIds(Collection<String> ids) {
+        return medir(Operacao.BUSCAR, () -> {
+            List<Tarefa> encontradas = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                ObjectId objectId = paraObjectIdOuNulo(id);
+                Tarefa tarefa = objectId == null ? null : tarefas.obter(objectId);
+                if (tarefa != null) {
+                    encontradas.add(copiar(tarefa));
+                }
+            }
+            return encontradas;
+        });
+    }
+
+    @Override
+    public Map<String, Long> listarVersoes() {
+        return medir(Operacao.LISTAR, () -> {
+            Map<String, Long> versoes = new HashMap<>();
+            tarefas.instantaneo().percorrer(ConsultaTarefas.TODAS, tarefa -> versoes.put(tarefa.getId(), tarefa.getVersao()));
+            return versoes;
+        });
+    }
+
+    /**
+     * O armazenamento em memória não guarda o momento de cada alteração: devolve todas as tarefas,
+     * o que está correto (quem chama ignora as que já conhece) e não custa tráfego de rede.
+     */
+    @Override
+    public List<Tarefa> listarAlteradasDesde(Instant desde) {
+        return listarTarefas();
+    }
+
+    @Override
+    public Instant relogio() {
+        return Instant.now();
+    }
+
+    /**
+     * Sem filtro de título, a contagem sai só dos bitsets dos índices.
+     */
+    @Override
+    public long contarTarefas(ConsultaTarefas consulta) {
+        return medir(Operacao.CONTAR, () -> tarefas.instantaneo().contar(consulta));
+    }
+
+    /**
+     * Cada contagem sai só dos bitsets dos índices, sobre um mesmo instantâneo.
+     */
+    @Override
+    public EstatisticasTarefas calcularEstatisticas() {
+        return medir(Operacao.CONTAR, () -> tarefas.instantaneo().estatisticas());
+    }
+
+    /**
+     * Usa um {@link IndiceBuscaTarefas} mantido pelos eventos deste armazenamento. Diferente do
+     * {@code $text} do MongoDB, todas as palavras precisam aparecer, e cada uma vale como prefixo.
+     */
+    @Override
+    public List<Tarefa> buscarTarefasPorTexto(String texto, int limite) {
+        return medir(Operacao.LISTAR, () -> {
+            List<Tarefa> encontradas = new ArrayList<>();
+            // O índice de texto guarda cópias resumidas; as tarefas devolvidas saem do armazenamento, com a versão atual.
+            for (Tarefa indexada : indiceTexto().buscar(texto, limite)) {
+                Tarefa tarefa = tarefas.obter(indexada.getObjectId());
+                if (tarefa != null) {
+                    encontradas.add(copiar(tarefa));
+                }
+            }
+            return encontradas;
+        });
+    }
+
+    /**
+     * Ordena as tarefas guardadas de um instantâneo (só as referências) e copia cada uma apenas
+     * quando o fluxo chega a ela. Não há lotes nem recursos a liberar.
+     */
+    @Override
+    public Stream<Tarefa> abrirFluxoTarefas(ConsultaTarefas consulta, int tamanhoLote) {
+        List<Tarefa> selecionadas = new ArrayList<>();
+        tarefas.instantaneo().percorrer(consulta, selecionadas::add);
+        selecionadas.sort(consulta.comparador());
+        return selecionadas.stream().map(TarefaRepositoryMemoria::copiar);
+    }
+
+    /**
+     * Não ordena a consulta inteira (veja {@link IndiceConcorrenteTarefas.Instantaneo#naPosicao}).
+     */
+    @Override
+    public Tarefa buscarTarefaNaPosicao(ConsultaTarefas consulta, long posicao) {
+        return medir(Operacao.LISTAR, () -> copiar(tarefas.instantaneo().naPosicao(consulta, posicao)));
+    }
+
+    /**
+     * @return Cópias das tarefas que atendem à consulta, na ordem da consulta.
+     */
+    private List<Tarefa> selecionar(ConsultaTarefas consulta) {
+        List<Tarefa> selecionadas = new ArrayList<>();
+        tarefas.instantaneo().percorrer(consulta, tarefa -> selecionadas.add(copiar(tarefa)));
+        selecionadas.sort(consulta.comparador());
+        return selecionadas;
+    }
+
+    // --- Gravação ---
+
+    /**
+     * @throws IllegalArgumentException Se já existir uma tarefa com o ID da tarefa informada.
+     */
+    @Override
+    public Tarefa adicionarTarefa(Tarefa tarefa) {
+        return medir(Operacao.INSERIR, () -> {
+            if (!inserir(tarefa)) {
+                throw new IllegalArgumentException("Ja existe uma tarefa com o ID " + tarefa.getId());
+            }
+            REGISTRO.info("inserir", "id", tarefa.getId(), "titulo", tarefa.getTitulo());
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaAdicionada(tarefa));
+            return tarefa;
+        });
+    }
+
+    @Override
+    public Tarefa atualizarStatusTarefa(String id, boolean concluida) {
+        return medir(Operacao.ATUALIZAR_STATUS, () -> alterar(id, tarefa -> {
+            tarefa.setConcluida(concluida);
+            return tarefa;
+        }));
+    }
+
+    @Override
+    public Tarefa alternarStatusTarefa(String id) {
+        return medir(Operacao.ATUALIZAR_STATUS, () -> alterar(id, tarefa -> {
+            tarefa.setConcluida(!tarefa.isConcluida());
+            return tarefa;
+        }));
+    }
+
+    @Override
+    public Tarefa atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            Document campos = camposDetalhes(novoTitulo, novaDescricao, novaPrioridade);
+            if (campos.isEmpty()) {
+                return null;
+            }
+            return alterar(id, tarefa -> TarefaCodec.aplicarCampos(tarefa, campos));
+        });
+    }
+
+    @Override
+    public ResultadoAtualizacao atualizarStatusTarefa(String id, boolean concluida, long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR_STATUS, () ->
+                atualizarNaVersao(id, versaoEsperada, new Document("concluida", concluida)));
+    }
+
+    @Override
+    public ResultadoAtualizacao atualizarTarefa(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade,
+            long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            Document campos = camposDetalhes(novoTitulo, novaDescricao, novaPrioridade);
+            if (campos.isEmpty()) {
+                return ResultadoAtualizacao.semAlteracoes();
+            }
+            return atualizarNaVersao(id, versaoEsperada, campos);
+        });
+    }
+
+    /**
+     * Aplica os campos se a tarefa estiver na versão esperada. Se não, relê a tarefa para
+     * distinguir um conflito de uma tarefa excluída.
+     */
+    private ResultadoAtualizacao atualizarNaVersao(String id, long versaoEsperada, Document campos) {
+        Tarefa atualizada = alterar(id, tarefa -> tarefa.getVersao() == versaoEsperada ? TarefaCodec.aplicarCampos(tarefa, campos) : null);
+        if (atualizada != null) {
+            return ResultadoAtualizacao.atualizada(atualizada);
+        }
+        ObjectId objectId = paraObjectIdOuNulo(id);
+        Tarefa atual = objectId == null ? null : copiar(tarefas.obter(objectId));
+        if (atual == null) {
+            return ResultadoAtualizacao.naoEncontrada();
+        }
+        REGISTRO.info("conflito", "id", id, "versaoEsperada", versaoEsperada, "versaoAtual", atual.getVersao());
+        return ResultadoAtualizacao.conflito(atual);
+    }
+
+    @Override
+    public boolean excluirTarefa(String id) {
+        return medir(Operacao.EXCLUIR, () -> {
+            Tarefa excluida = remover(id);
+            REGISTRO.info("excluir", "id", id, "removidos", excluida == null ? 0 : 1);
+            if (excluida != null) {
+                ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+            }
+            return excluida != null;
+        });
+    }
+
+    @Override
+    public boolean substituirTarefaNaVersao(Tarefa tarefa, long versaoEsperada) {
+        return medir(Operacao.ATUALIZAR, () -> {
+            Tarefa substituta = copiar(tarefa);
+            if (alterar(tarefa.getId(), atual -> atual.getVersao() == versaoEsperada ? substituta : null) == null) {
+                return false;
+            }
+            tarefa.setVersao(versaoEsperada + 1);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean excluirTarefaNaVersao(String id, long versaoEsperada) {
+        return medir(Operacao.EXCLUIR, () -> {
+            Tarefa excluida = removerNaVersao(id, versaoEsperada);
+            if (excluida == null) {
+                return false;
+            }
+            ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+            return true;
+        });
+    }
+
+    // --- Lotes ---
+
+    /**
+     * Como no {@code insertMany} do MongoDB, uma tarefa com ID repetido falha e, se o lote for
+     * ordenado, as seguintes não são inseridas. Só as tarefas inseridas ficam com o ID.
+     */
+    @Override
+    public ResultadoLote adicionarTarefasEmLote(List<Tarefa> tarefasNovas, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> ids = new ArrayList<>(tarefasNovas.size());
+            List<Tarefa> copias = new ArrayList<>(tarefasNovas.size());
+            for (Tarefa tarefa : tarefasNovas) {
+                prepararInsercao(tarefa);
+                ids.add(tarefa.getId());
+                copias.add(copiar(tarefa));
+            }
+            // Um segmento montado por faixa, e não uma cópia da faixa por tarefa.
+            boolean[] guardadas = tarefas.inserirSeAusentes(copias, opcoes.ordenado());
+            ResultadoLote resultado = new ResultadoLote(ids);
+            for (int i = 0; i < tarefasNovas.size(); i++) {
+                if (guardadas[i]) {
+                    resultado.definir(i, ResultadoLote.Situacao.SUCESSO, null);
+                    resultado.somarAfetados(1);
+                } else {
+                    resultado.definir(i, ResultadoLote.Situacao.FALHA, "ID duplicado: " + ids.get(i));
+                    if (opcoes.ordenado()) {
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < tarefasNovas.size(); i++) {
+                Tarefa tarefa = tarefasNovas.get(i);
+                if (resultado.getSituacao(i) == ResultadoLote.Situacao.SUCESSO) {
+                    ouvintes.forEach(ouvinte -> ouvinte.tarefaAdicionada(tarefa));
+                } else {
+                    tarefa.setObjectId(null);
+                }
+            }
+            REGISTRO.info("inserirLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            return resultado;
+        });
+    }
+
+    @Override
+    public ResultadoLote atualizarStatusEmLote(Map<String, Boolean> novoStatusPorId, OpcoesLote opcoes) {
+        Map<String, Document> camposPorId = new HashMap<>();
+        novoStatusPorId.forEach((id, concluida) -> camposPorId.put(id, new Document("concluida", concluida)));
+        return atualizarCamposEmLote(List.copyOf(novoStatusPorId.keySet()), camposPorId::get, "atualizarStatusLote");
+    }
+
+    @Override
+    public ResultadoLote definirStatusEmLote(Collection<String> ids, boolean concluida, OpcoesLote opcoes) {
+        Document campos = new Document("concluida", concluida);
+        return atualizarCamposEmLote(List.copyOf(ids), id -> campos, "definirStatusLote");
+    }
+
+    @Override
+    public ResultadoLote atualizarCamposEmLote(Map<String, Document> camposPorId, OpcoesLote opcoes) {
+        return atualizarCamposEmLote(List.copyOf(camposPorId.keySet()), camposPorId::get, "atualizarCamposLote");
+    }
+
+    /**
+     * Aplica os campos de cada tarefa. Como no {@code bulkWrite} do MongoDB, um ID válido que não
+     * existe conta como sucesso, mas não como afetado; não há erros que interrompam o lote.
+     */
+    private ResultadoLote atualizarCamposEmLote(List<String> ids, Function<String, Document> camposDe, String operacao) {
+        return medir(Operacao.LOTE, () -> {
+            ResultadoLote resultado = new ResultadoLote(ids);
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                if (paraObjectIdOuNulo(id) == null) {
+                    resultado.definir(i, ResultadoLote.Situacao.ID_INVALIDO, "Formato de ID invalido: " + id);
+                    continue;
+                }
+                Document campos = camposDe.apply(id);
+                resultado.definir(i, ResultadoLote.Situacao.SUCESSO, null);
+                if (alterar(id, tarefa -> TarefaCodec.aplicarCampos(tarefa, campos)) != null) {
+                    resultado.somarAfetados(1);
+                }
+            }
+            REGISTRO.info(operacao, "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            return resultado;
+        });
+    }
+
+    @Override
+    public ResultadoLote excluirTarefasEmLote(Collection<String> ids, OpcoesLote opcoes) {
+        return medir(Operacao.LOTE, () -> {
+            List<String> listaIds = List.copyOf(ids);
+            ResultadoLote resultado = new ResultadoLote(listaIds);
+            List<Tarefa> excluidas = new ArrayList<>();
+            for (int i = 0; i < listaIds.size(); i++) {
+                String id = listaIds.get(i);
+                if (paraObjectIdOuNulo(id) == null) {
+                    resultado.definir(i, ResultadoLote.Situacao.ID_INVALIDO, "Formato de ID invalido: " + id);
+                    continue;
+                }
+                resultado.definir(i, ResultadoLote.Situacao.SUCESSO, null);
+                Tarefa excluida = remover(id);
+                if (excluida != null) {
+                    resultado.somarAfetados(1);
+                    excluidas.add(excluida);
+                }
+            }
+            REGISTRO.info("excluirLote", "total", resultado.getTotal(), "sucessos", resultado.getSucessos(), "afetados", resultado.getAfetados());
+            for (Tarefa excluida : excluidas) {
+                ouvintes.forEach(ouvinte -> ouvinte.tarefaExcluida(excluida));
+            }
+            return resultado;
+        });
+    }
+
+    // --- Índice ---
+
+    /**
+     * Insere uma cópia da tarefa, gerando o ID se preciso; a versão de uma tarefa nova é 1.
+     *
+     * @return {@code false} se já existir uma tarefa com o mesmo ID.
+     */
+    private boolean inserir(Tarefa tarefa) {
+        prepararInsercao(tarefa);
+        return tarefas.inserirSeAusente(copiar(tarefa));
+    }
+
+    /**
+     * Preenche o ID (se ausente) e a versão inicial de uma tarefa que vai ser inserida.
+     */
+    private static void prepararInsercao(Tarefa tarefa) {
+        if (tarefa.getObjectId() == null) {
+            tarefa.setObjectId(new ObjectId());
+        }
+        if (tarefa.getVersao() == 0) {
+            tarefa.setVersao(1);
+        }
+    }
+
+    /**
+     * Altera uma tarefa atomicamente: a alteração recebe uma cópia do estado atual e devolve o
+     * novo estado, ou {@code null} para desistir. O novo estado recebe a versão seguinte e fica
+     * visível já nos índices certos. Os ouvintes são avisados com o estado anterior e o novo.
+     *
+     * @return Uma cópia do novo estado, ou {@code null} se a tarefa não existir, o ID for inválido
+     * ou a alteração desistir.
+     */
+    private Tarefa alterar(String id, UnaryOperator<Tarefa> alteracao) {
+        ObjectId objectId = paraObjectIdOuNulo(id);
+        if (objectId == null) {
+            REGISTRO.erro("alterar", "id", id, "erro", "ID invalido");
+            return null;
+        }
+        Tarefa[] anterior = new Tarefa[1];
+        Tarefa nova = tarefas.alterar(objectId, atual -> {
+            Tarefa alterada = alteracao.apply(copiar(atual));
+            if (alterada != null) {
+                alterada.setObjectId(objectId);
+                alterada.setVersao(atual.getVersao() + 1);
+                anterior[0] = atual;
+            }
+            return alterada;
+        });
+        if (nova == null) {
+            return null;
+        }
+        // As tarefas guardadas nunca são alteradas no lugar: as duas podem ser entregues aos ouvintes.
+        ouvintes.forEach(ouvinte -> ouvinte.tarefaAtualizada(anterior[0], nova));
+        return copiar(nova);
+    }
+
+    /**
+     * Remove uma tarefa, em qualquer versão.
+     *
+     * @return A tarefa removida, ou {@code null} se ela não existir ou o ID for inválido.
+     */
+    private Tarefa remover(String id) {
+        return remover(id, atual -> true);
+    }
+
+    /**
+     * Remove uma tarefa, se ela ainda estiver na versão esperada.
+     *
+     * @return A tarefa removida, ou {@code null} se ela não existir, estiver em outra versão
+     * ou o ID for inválido.
+     */
+    private Tarefa removerNaVersao(String id, long versaoEsperada) {
+        return remover(id, atual -> atual.getVersao() == versaoEsperada);
+    }
+
+    private Tarefa remover(String id, Predicate<Tarefa> condicao) {
+        ObjectId objectId = paraObjectIdOuNulo(id);
+        if (objectId == null) {
+            REGISTRO.erro("excluir", "id", id, "erro", "ID invalido");
+            return null;
+        }
+        return tarefas.remover(objectId, condicao);
+    }
+
+    // --- Auxiliares ---
+
+    /**
+     * Os detalhes a alterar, com os nomes do documento do MongoDB: apenas os valores não nulos e não vazios.
+     */
+    private static Document camposDetalhes(String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        Document campos = new Document();
+        if (novoTitulo != null && !novoTitulo.trim().isEmpty()) {
+            campos.append("titulo", novoTitulo.trim());
+        }
+        if (novaDescricao != null && !novaDescricao.trim().isEmpty()) {
+            campos.append("descricao", novaDescricao.trim());
+        }
+        if (novaPrioridade != null) {
+            campos.append("prioridade", novaPrioridade);
+        }
+        return campos;
+    }
+
+    /**
+     * @return O índice de texto, criado e carregado na primeira chamada.
+     */
+    private IndiceBuscaTarefas indiceTexto() {
+        IndiceBuscaTarefas indice = indiceTexto;
+        if (indice == null) {
+            synchronized (this) {
+                indice = indiceTexto;
+                if (indice == null) {
+                    indice = new IndiceBuscaTarefas(this);
+                    indice.carregar();
+                    indiceTexto = indice;
+                }
+            }
+        }
+        return indice;
+    }
+
+    private static Tarefa copiar(Tarefa tarefa) {
+        return tarefa == null ? null : tarefa.copiar();
+    }
+
+    private static ObjectId paraObjectIdOuNulo(String id) {
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id) : null;
+    }
+}
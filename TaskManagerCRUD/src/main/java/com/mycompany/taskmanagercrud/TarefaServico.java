@@ -0,0 +1,386 @@
+package com.mycompany.taskmanagercrud;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+
+/**
+ * @author Thierry
+ *
+ * Camada de serviço assíncrona sobre o {@link TarefaRepository} (normalmente o {@link TarefaDAO}).
+ * Cada chamada ao banco é executada em uma thread virtual, fora da Event Dispatch Thread (EDT),
+ * e o resultado é devolvido em um {@link CompletableFuture} que é concluído na própria EDT.
+ * Assim, os callbacks encadeados ({@code thenAccept}, {@code exceptionally}...) podem
+ * manipular componentes Swing diretamente, e a janela continua respondendo durante a consulta.
+ *
+ * Opcionalmente, as atualizações de status e de detalhes podem passar por uma
+ * {@link FilaEscritaAtrasada}, que agrupa alterações seguidas em uma única gravação,
+ * e as leituras podem ser servidas por um {@link CacheTarefas}.
+ *
+ * No modo offline, com um {@link SincronizadorTarefas}, leituras e gravações são feitas no
+ * {@link ArmazemLocal}, e cada gravação apenas solicita o envio ao MongoDB em segundo plano.
+ */
+public class TarefaServico implements AutoCloseable {
+
+    /** Executor que agenda tarefas na Event Dispatch Thread do Swing. */
+    private static final Executor EDT = SwingUtilities::invokeLater;
+
+    /** Armazenamento que efetivamente guarda as tarefas (MongoDB ou memória). */
+    private final TarefaRepository repositorio;
+
+    /** Fila de escrita atrasada, ou {@code null} se as atualizações forem gravadas imediatamente. */
+    private final FilaEscritaAtrasada filaEscrita;
+
+    /** Cache de leitura, ou {@code null} se as leituras forem sempre feitas no banco. */
+    private final CacheTarefas cache;
+
+    /** Sincronizador do modo offline, ou {@code null} se as operações forem feitas direto no banco. */
+    private final SincronizadorTarefas sincronizador;
+
+    /** Armazenamento local do modo offline, ou {@code null}. */
+    private final ArmazemLocal armazem;
+
+    /** Exportação e importação de arquivos. */
+    private final TransferenciaTarefas transferencia;
+
+    /** Executor que cria uma thread virtual por operação; o bloqueio de I/O não ocupa threads do sistema. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Número de operações iniciadas e ainda não concluídas. */
+    private final AtomicInteger emAndamento = new AtomicInteger();
+
+    /** Ouvinte notificado (na EDT) sempre que o número de operações em andamento muda. */
+    private volatile IntConsumer ouvinteEmAndamento = total -> { };
+
+    /**
+     * Cria o serviço, com as atualizações gravadas imediatamente.
+     *
+     * @param repositorio O armazenamento usado para acessar as tarefas.
+     */
+    public TarefaServico(TarefaRepository repositorio) {
+        this(repositorio, null, null, null);
+    }
+
+    /**
+     * Cria o serviço.
+     *
+     * @param repositorio O armazenamento usado para acessar as tarefas.
+     * @param filaEscrita A fila de escrita atrasada para as atualizações,
+     * ou {@code null} para gravá-las imediatamente.
+     * @param cache O cache de leitura, ou {@code null} para ler sempre do banco.
+     * @param sincronizador O sincronizador do modo offline, ou {@code null} para operar direto no banco.
+     * Nesse modo, a fila de escrita e o cache não são usados.
+     */
+    public TarefaServico(TarefaRepository repositorio, FilaEscritaAtrasada filaEscrita, CacheTarefas cache,
+            SincronizadorTarefas sincronizador) {
+        this.repositorio = repositorio;
+        this.sincronizador = sincronizador;
+        this.armazem = sincronizador != null ? sincronizador.getArmazem() : null;
+        this.filaEscrita = sincronizador != null ? null : filaEscrita;
+        this.cache = sincronizador != null ? null : cache;
+        this.transferencia = new TransferenciaTarefas(repositorio);
+    }
+
+    /**
+     * Indica se as atualizações passam pela fila de escrita atrasada.
+     * Nesse modo, quem chama deve aplicar a alteração localmente e usar
+     * {@link #enfileirarStatus} e {@link #enfileirarDetalhes}.
+     *
+     * @return {@code true} se a escrita atrasada estiver ativa.
+     */
+    public boolean isEscritaAtrasada() {
+        return filaEscrita != null;
+    }
+
+    /**
+     * @return {@code true} se a tarefa tiver alterações na fila de escrita atrasada, ainda não gravadas.
+     * @see FilaEscritaAtrasada#isPendente(String)
+     */
+    public boolean isEscritaPendente(String id) {
+        return filaEscrita != null && filaEscrita.isPendente(id);
+    }
+
+    /**
+     * Define o ouvinte que recebe o número de operações em andamento.
+     * Ele é sempre chamado na EDT, podendo atualizar a interface diretamente.
+     *
+     * @param ouvinte O ouvinte a ser notificado.
+     */
+    public void setOuvinteEmAndamento(IntConsumer ouvinte) {
+        this.ouvinteEmAndamento = ouvinte;
+    }
+
+    /** @see TarefaDAO#contarTarefas(ConsultaTarefas) */
+    public CompletableFuture<Long> contarTarefas(ConsultaTarefas consulta) {
+        return executar(() -> armazem != null ? armazem.contarTarefas(consulta)
+                : cache != null ? cache.contarTarefas(consulta) : repositorio.contarTarefas(consulta));
+    }
+
+    /** @see TarefaDAO#listarTarefas() */
+    public CompletableFuture<List<Tarefa>> listarTarefas() {
+        return executar(() -> armazem != null ? armazem.listarTarefas() : repositorio.listarTarefas());
+    }
+
+    /** @see TarefaDAO#listarTarefasPaginado(ConsultaTarefas, Tarefa, int) */
+    public CompletableFuture<List<Tarefa>> listarTarefasPaginado(ConsultaTarefas consulta, Tarefa apos, int limite) {
+        return executar(() -> armazem != null ? armazem.listarTarefasPaginado(consulta, apos, limite)
+                : cache != null ? cache.listarTarefasPaginado(consulta, apos, limite)
+                : repositorio.listarTarefasPaginado(consulta, apos, limite));
+    }
+
+    /** @see TarefaDAO#buscarTarefaPorId(String) */
+    public CompletableFuture<Tarefa> buscarTarefaPorId(String id) {
+        return executar(() -> armazem != null ? armazem.buscarTarefaPorId(id)
+                : cache != null ? cache.buscarTarefa(id) : repositorio.buscarTarefaPorId(id));
+    }
+
+    /**
+     * Busca várias tarefas pelo ID, sem passar pelo cache: usado para reler tarefas logo depois
+     * de gravá-las, quando o cache ainda pode ter a versão anterior.
+     *
+     * @see TarefaDAO#buscarTarefasPorIds(Collection)
+     */
+    public CompletableFuture<List<Tarefa>> buscarTarefasPorIds(Collection<String> ids) {
+        return executar(() -> armazem != null
+                ? ids.stream().map(armazem::buscarTarefaPorId).filter(Objects::nonNull).toList()
+                : repositorio.buscarTarefasPorIds(ids));
+    }
+
+    /** @see TarefaDAO#buscarTarefasPorTexto(String, int) */
+    public CompletableFuture<List<Tarefa>> buscarTarefasPorTexto(String texto, int limite) {
+        return executar(() -> armazem != null ? armazem.buscarTarefasPorTexto(texto, limite)
+                : repositorio.buscarTarefasPorTexto(texto, limite));
+    }
+
+    /**
+     * Carrega o índice de busca local em segundo plano.
+     *
+     * @see IndiceBuscaTarefas#carregar()
+     */
+    public CompletableFuture<Void> carregarIndiceBusca(IndiceBuscaTarefas indice) {
+        return executar(() -> {
+            indice.carregar();
+            return null;
+        });
+    }
+
+    /** @see TarefaDAO#garantirIndices() */
+    public CompletableFuture<Void> garantirIndices() {
+        return executar(() -> {
+            repositorio.garantirIndices();
+            return null;
+        });
+    }
+
+    /** @see TarefaDAO#buscarTarefaNaPosicao(ConsultaTarefas, long) */
+    public CompletableFuture<Tarefa> buscarTarefaNaPosicao(ConsultaTarefas consulta, long posicao) {
+        return executar(() -> armazem != null ? armazem.buscarTarefaNaPosicao(consulta, posicao)
+                : repositorio.buscarTarefaNaPosicao(consulta, posicao));
+    }
+
+    /** @see TarefaDAO#adicionarTarefa(Tarefa) */
+    public CompletableFuture<Tarefa> adicionarTarefa(Tarefa tarefa) {
+        return executar(() -> armazem != null ? sincronizar(armazem.adicionarTarefa(tarefa)) : repositorio.adicionarTarefa(tarefa));
+    }
+
+    /**
+     * Atualiza o status de uma tarefa, desde que ela ainda esteja na versão em que foi lida.
+     * No modo offline, a gravação local sempre é aceita; conflitos com outros clientes são
+     * resolvidos pelo {@link SincronizadorTarefas}.
+     *
+     * @see TarefaDAO#atualizarStatusTarefa(String, boolean, long)
+     */
+    public CompletableFuture<ResultadoAtualizacao> atualizarStatusTarefa(String id, boolean concluida, long versaoEsperada) {
+        return executar(() -> armazem != null ? resultadoLocal(sincronizar(armazem.atualizarStatusTarefa(id, concluida)))
+                : atualizarCache(repositorio.atualizarStatusTarefa(id, concluida, versaoEsperada)));
+    }
+
+    /**
+     * Atualiza os detalhes de uma tarefa, desde que ela ainda esteja na versão em que foi lida.
+     *
+     * @see TarefaDAO#atualizarTarefa(String, String, String, Prioridade, long)
+     */
+    public CompletableFuture<ResultadoAtualizacao> atualizarTarefa(String id, String novoTitulo, String novaDescricao,
+            Prioridade novaPrioridade, long versaoEsperada) {
+        return executar(() -> armazem != null
+                ? resultadoLocal(sincronizar(armazem.atualizarTarefa(id, novoTitulo, novaDescricao, novaPrioridade)))
+                : atualizarCache(repositorio.atualizarTarefa(id, novoTitulo, novaDescricao, novaPrioridade, versaoEsperada)));
+    }
+
+    /**
+     * Exclui uma tarefa, descartando antes as alterações dela ainda pendentes na fila de escrita.
+     *
+     * @see TarefaDAO#excluirTarefa(String)
+     */
+    public CompletableFuture<Boolean> excluirTarefa(String id) {
+        if (filaEscrita != null) {
+            filaEscrita.descartar(id);
+        }
+        return executar(() -> armazem != null ? sincronizar(armazem.excluirTarefa(id)) : repositorio.excluirTarefa(id));
+    }
+
+    /**
+     * Enfileira a alteração de status na fila de escrita atrasada.
+     * O future é concluído na EDT quando a alteração for gravada.
+     *
+     * @see FilaEscritaAtrasada#enfileirarStatus(String, boolean)
+     */
+    public CompletableFuture<Void> enfileirarStatus(String id, boolean concluida) {
+        return filaEscrita.enfileirarStatus(id, concluida).whenCompleteAsync((resultado, erro) -> { }, EDT);
+    }
+
+    /**
+     * Enfileira a alteração de detalhes na fila de escrita atrasada.
+     * O future é concluído na EDT quando a alteração for gravada.
+     *
+     * @see FilaEscritaAtrasada#enfileirarDetalhes(String, String, String, Prioridade)
+     */
+    public CompletableFuture<Void> enfileirarDetalhes(String id, String novoTitulo, String novaDescricao, Prioridade novaPrioridade) {
+        return filaEscrita.enfileirarDetalhes(id, novoTitulo, novaDescricao, novaPrioridade)
+                .whenCompleteAsync((resultado, erro) -> { }, EDT);
+    }
+
+    /** @see TarefaDAO#adicionarTarefasEmLote(List, OpcoesLote) */
+    public CompletableFuture<ResultadoLote> adicionarTarefasEmLote(List<Tarefa> tarefas, OpcoesLote opcoes) {
+        return executar(() -> armazem != null ? sincronizar(armazem.adicionarTarefasEmLote(tarefas))
+                : repositorio.adicionarTarefasEmLote(tarefas, opcoes));
+    }
+
+    /**
+     * Exporta tarefas para um arquivo em segundo plano.
+     * O progresso é entregue ao ouvinte na EDT.
+     *
+     * @see TransferenciaTarefas#exportar(Path, TransferenciaTarefas.Formato, ConsultaTarefas, Consumer)
+     */
+    public CompletableFuture<TransferenciaTarefas.Progresso> exportarTarefas(Path arquivo, TransferenciaTarefas.Formato formato,
+            ConsultaTarefas consulta, Consumer<TransferenciaTarefas.Progresso> ouvinte) {
+        return executar(() -> {
+            try {
+                return transferencia.exportar(arquivo, formato, consulta, progresso -> EDT.execute(() -> ouvinte.accept(progresso)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Importa tarefas de um arquivo em segundo plano.
+     * O progresso é entregue ao ouvinte na EDT.
+     *
+     * @see TransferenciaTarefas#importar(Path, TransferenciaTarefas.Formato, int, int, Consumer)
+     */
+    public CompletableFuture<TransferenciaTarefas.Progresso> importarTarefas(Path arquivo, TransferenciaTarefas.Formato formato,
+            int tamanhoLote, int paralelismo, Consumer<TransferenciaTarefas.Progresso> ouvinte) {
+        return executar(() -> {
+            try {
+                return transferencia.importar(arquivo, formato, tamanhoLote, paralelismo,
+                        progresso -> EDT.execute(() -> ouvinte.accept(progresso)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** @see TarefaDAO#atualizarStatusEmLote(Map, OpcoesLote) */
+    public CompletableFuture<ResultadoLote> atualizarStatusEmLote(Map<String, Boolean> novoStatusPorId, OpcoesLote opcoes) {
+        return executar(() -> armazem != null ? sincronizar(armazem.atualizarStatusEmLote(novoStatusPorId))
+                : repositorio.atualizarStatusEmLote(novoStatusPorId, opcoes));
+    }
+
+    /** @see TarefaDAO#definirStatusEmLote(Collection, boolean, OpcoesLote) */
+    public CompletableFuture<ResultadoLote> definirStatusEmLote(Collection<String> ids, boolean concluida, OpcoesLote opcoes) {
+        return executar(() -> armazem != null ? sincronizar(armazem.definirStatusEmLote(ids, concluida))
+                : repositorio.definirStatusEmLote(ids, concluida, opcoes));
+    }
+
+    /** @see TarefaDAO#excluirTarefasEmLote(Collection, OpcoesLote) */
+    public CompletableFuture<ResultadoLote> excluirTarefasEmLote(Collection<String> ids, OpcoesLote opcoes) {
+        if (filaEscrita != null) {
+            ids.forEach(filaEscrita::descartar);
+        }
+        return executar(() -> armazem != null ? sincronizar(armazem.excluirTarefasEmLote(ids))
+                : repositorio.excluirTarefasEmLote(ids, opcoes));
+    }
+
+    /**
+     * Leva ao cache o estado de uma tarefa devolvido por uma atualização (o novo, ou o atual
+     * no banco em caso de conflito), sem esperar o evento do change stream.
+     */
+    private ResultadoAtualizacao atualizarCache(ResultadoAtualizacao resultado) {
+        if (cache != null && resultado.tarefa() != null) {
+            cache.atualizar(resultado.tarefa());
+        }
+        return resultado;
+    }
+
+    /**
+     * Converte o resultado de uma atualização no armazenamento local.
+     */
+    private static ResultadoAtualizacao resultadoLocal(Tarefa atualizada) {
+        return atualizada != null ? ResultadoAtualizacao.atualizada(atualizada) : ResultadoAtualizacao.naoEncontrada();
+    }
+
+    /**
+     * Solicita o envio ao MongoDB de uma gravação feita no armazenamento local.
+     */
+    private <T> T sincronizar(T resultado) {
+        sincronizador.solicitarSincronizacao();
+        return resultado;
+    }
+
+    /**
+     * Executa uma operação do armazenamento em uma thread virtual.
+     * O future devolvido é concluído na EDT, depois que o contador de operações em andamento
+     * já foi atualizado; callbacks encadeados a ele também rodam na EDT.
+     *
+     * @param operacao A operação a ser executada.
+     * @return Um future com o resultado (ou a exceção) da operação.
+     */
+    private <T> CompletableFuture<T> executar(Supplier<T> operacao) {
+        notificarEmAndamento(emAndamento.incrementAndGet());
+        return CompletableFuture.supplyAsync(operacao, executor)
+                .whenCompleteAsync((resultado, erro) -> ouvinteEmAndamento.accept(emAndamento.decrementAndGet()), EDT);
+    }
+
+    /**
+     * Notifica o ouvinte na EDT, chamando-o diretamente se já estivermos nela.
+     */
+    private void notificarEmAndamento(int total) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            ouvinteEmAndamento.accept(total);
+        } else {
+            EDT.execute(() -> ouvinteEmAndamento.accept(total));
+        }
+    }
+
+    /**
+     * Encerra o executor, aguardando as operações que já foram iniciadas,
+     * e grava o que estiver pendente na fila de escrita atrasada (ou no armazenamento local).
+     */
+    @Override
+    public void close() {
+        executor.close();
+        if (filaEscrita != null) {
+            filaEscrita.close();
+        }
+        if (cache != null) {
+            cache.close();
+        }
+        if (sincronizador != null) {
+            sincronizador.close();
+        }
+    }
+}
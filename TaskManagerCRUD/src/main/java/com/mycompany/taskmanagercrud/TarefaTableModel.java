@@ -0,0 +1,527 @@
+package com.mycompany.taskmanagercrud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.table.AbstractTableModel;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Modelo de tabela que carrega as tarefas sob demanda, em janelas (páginas) de tamanho fixo.
+ * Em vez de manter todas as linhas da coleção em memória, como o {@code DefaultTableModel},
+ * apenas as páginas visíveis na tela (e algumas vizinhas) ficam carregadas. Cada página é
+ * buscada de forma assíncrona no {@link TarefaServico} com paginação por chave, segundo a
+ * {@link ConsultaTarefas} atual (filtros e ordenação aplicados pelo MongoDB);
+ * enquanto ela não chega, as linhas correspondentes aparecem vazias.
+ *
+ * Alterações de uma única tarefa são aplicadas diretamente na linha afetada
+ * ({@link #aplicarAtualizacao}, {@link #aplicarInsercao}, {@link #aplicarExclusao}),
+ * sem recarregar a tabela.
+ *
+ * Cada página guarda as tarefas por coluna, com arrays de tipos primitivos para o status e a
+ * prioridade (ver {@link Pagina}). Assim, pintar uma célula durante a rolagem não cria objetos:
+ * {@link #getValueAt} devolve apenas referências já existentes.
+ */
+public class TarefaTableModel extends AbstractTableModel {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(TarefaTableModel.class);
+
+    /** Número de linhas buscadas por consulta ao banco. */
+    public static final int TAMANHO_PAGINA = 100;
+
+    /** Limite de páginas mantidas em memória; as menos usadas são descartadas primeiro. */
+    private static final int MAX_PAGINAS_EM_MEMORIA = 8;
+
+    /** Nomes das colunas exibidas na tabela. */
+    private static final String[] COLUNAS = {"ID", "Título", "Descrição", "Prioridade", "Concluída"};
+
+    /** Campo da tarefa exibido em cada coluna, usado para ordenar pelo cabeçalho. */
+    private static final ConsultaTarefas.Campo[] CAMPOS_COLUNAS = {
+        ConsultaTarefas.Campo.ID, ConsultaTarefas.Campo.TITULO, ConsultaTarefas.Campo.DESCRICAO,
+        ConsultaTarefas.Campo.PRIORIDADE, ConsultaTarefas.Campo.CONCLUIDA
+    };
+
+    /** Serviço usado para buscar as páginas de tarefas fora da EDT. */
+    private final TarefaServico tarefaServico;
+
+    /**
+     * Páginas carregadas, indexadas pelo número da página.
+     * O {@link LinkedHashMap} em ordem de acesso permite descartar a página usada há mais tempo.
+     */
+    private final Map<Integer, Pagina> paginas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Pagina> maisAntiga) {
+            if (size() > MAX_PAGINAS_EM_MEMORIA) {
+                desindexar(maisAntiga.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Última página lida por {@link #getValueAt}, com o seu número. As células são pintadas linha
+     * a linha, então quase sempre é a mesma página, e a busca no mapa (que cria um {@link Integer}
+     * para páginas acima de 127) é evitada. Como essas leituras não passam pelo mapa, a página é
+     * marcada como usada em {@link #armazenarPagina}, antes de qualquer descarte.
+     */
+    private Pagina ultimaPagina;
+    private int numeroUltimaPagina = -1;
+
+    /** Índice ID → linha das tarefas que estão nas páginas carregadas. */
+    private final Map<String, Integer> linhaPorId = new HashMap<>();
+
+    /**
+     * Última tarefa de cada página completa já conhecida. É a âncora usada para buscar
+     * a página seguinte sem {@code skip}. Guarda apenas uma tarefa por página, então continua
+     * pequeno mesmo depois que as páginas em si são descartadas.
+     */
+    private final Map<Integer, Tarefa> ancoras = new HashMap<>();
+
+    /** Páginas cuja busca já foi solicitada e ainda não terminou (ou falhou). */
+    private final Set<Integer> paginasPendentes = new HashSet<>();
+
+    /**
+     * Incrementada a cada recarga. Respostas de buscas iniciadas numa geração anterior
+     * são ignoradas, pois as posições das linhas podem ter mudado.
+     */
+    private int geracao;
+
+    /** Total de linhas da tabela (total de tarefas que atendem à consulta). */
+    private int totalLinhas;
+
+    /** Filtros e ordenação das tarefas exibidas. */
+    private ConsultaTarefas consulta = ConsultaTarefas.TODAS;
+
+    /**
+     * Cria o modelo de tabela.
+     *
+     * @param tarefaServico O serviço usado para buscar as tarefas.
+     */
+    public TarefaTableModel(TarefaServico tarefaServico) {
+        this.tarefaServico = tarefaServico;
+    }
+
+    /**
+     * Reconta as tarefas e descarta todas as páginas carregadas.
+     * As linhas visíveis serão buscadas novamente apenas quando a tabela as pintar.
+     *
+     * @return Um future concluído (na EDT) quando a nova contagem já foi aplicada à tabela.
+     */
+    public CompletableFuture<Void> recarregar() {
+        ConsultaTarefas consultaDaRecarga = consulta;
+        return tarefaServico.contarTarefas(consultaDaRecarga).thenAccept(total -> {
+            if (consultaDaRecarga != consulta) {
+                // A consulta mudou enquanto a contagem era feita; a recarga mais nova prevalece.
+                return;
+            }
+            geracao++;
+            paginas.clear();
+            ultimaPagina = null;
+            linhaPorId.clear();
+            ancoras.clear();
+            paginasPendentes.clear();
+            totalLinhas = total.intValue();
+            fireTableDataChanged();
+        });
+    }
+
+    /**
+     * @return Os filtros e a ordenação das tarefas exibidas.
+     */
+    public ConsultaTarefas getConsulta() {
+        return consulta;
+    }
+
+    /**
+     * Troca os filtros e a ordenação das tarefas exibidas e recarrega a tabela.
+     *
+     * @param consulta A nova consulta.
+     * @return Um future concluído (na EDT) quando a tabela já reflete a nova consulta.
+     */
+    public CompletableFuture<Void> setConsulta(ConsultaTarefas consulta) {
+        this.consulta = consulta;
+        return recarregar();
+    }
+
+    /**
+     * Descarta as páginas que não intersectam o intervalo de linhas visível.
+     * Uma página de margem antes e depois é mantida para que a rolagem curta não refaça consultas.
+     *
+     * @param primeiraLinha A primeira linha visível.
+     * @param ultimaLinha A última linha visível.
+     */
+    public void descartarForaDaJanela(int primeiraLinha, int ultimaLinha) {
+        int primeiraPagina = primeiraLinha / TAMANHO_PAGINA - 1;
+        int ultimaPagina = ultimaLinha / TAMANHO_PAGINA + 1;
+        // Itera pelas entradas: um get() no mapa em ordem de acesso alteraria a ordem durante a iteração.
+        Iterator<Map.Entry<Integer, Pagina>> it = paginas.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Pagina> pagina = it.next();
+            if (pagina.getKey() < primeiraPagina || pagina.getKey() > ultimaPagina) {
+                desindexar(pagina.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Substitui, na linha em que está exibida, a tarefa pelo seu novo estado.
+     * Se a tarefa não estiver em uma página carregada, nada precisa ser feito:
+     * ela será buscada já atualizada quando aparecer na tela.
+     * Se a alteração mexeu em um campo filtrado ou ordenado pela consulta, a tarefa pode ter
+     * mudado de posição, e a tabela é recarregada.
+     *
+     * @param tarefa A tarefa atualizada, como devolvida pelo {@link TarefaDAO}.
+     */
+    public void aplicarAtualizacao(Tarefa tarefa) {
+        Integer linha = linhaPorId.get(tarefa.getId());
+        if (linha == null) {
+            return;
+        }
+        Pagina pagina = paginas.get(linha / TAMANHO_PAGINA);
+        // A página guarda os valores, não a instância: o estado anterior continua disponível para comparar.
+        boolean mudouPosicao = consulta.afetaPosicao(pagina.tarefa(linha % TAMANHO_PAGINA), tarefa);
+        pagina.definir(linha % TAMANHO_PAGINA, tarefa);
+        fireTableRowsUpdated(linha, linha);
+        if (mudouPosicao) {
+            recarregar();
+        }
+    }
+
+    /**
+     * Acrescenta uma tarefa recém-criada ao fim da tabela.
+     * Na ordem natural, como o {@code _id} gerado é sempre maior que os existentes, a tarefa
+     * ocupa a última linha. Com filtros ou outra ordenação, a posição depende da consulta
+     * e a tabela é recarregada.
+     *
+     * @param tarefa A tarefa criada, já com o ID preenchido.
+     */
+    public void aplicarInsercao(Tarefa tarefa) {
+        if (!consulta.isOrdemNatural()) {
+            recarregar();
+            return;
+        }
+        int linha = totalLinhas++;
+        int numeroPagina = linha / TAMANHO_PAGINA;
+        Pagina pagina = paginas.get(numeroPagina);
+        if (pagina != null && pagina.tamanho() == linha % TAMANHO_PAGINA) {
+            pagina.acrescentar(tarefa);
+            linhaPorId.put(tarefa.getId(), linha);
+            if (pagina.tamanho() == TAMANHO_PAGINA) {
+                ancoras.put(numeroPagina, tarefa);
+            }
+        }
+        fireTableRowsInserted(linha, linha);
+    }
+
+    /**
+     * Remove a linha de uma tarefa excluída.
+     *
+     * @param id O ID da tarefa excluída.
+     * @see #aplicarExclusoes(Collection)
+     */
+    public void aplicarExclusao(String id) {
+        aplicarExclusoes(List.of(id));
+    }
+
+    /**
+     * Remove as linhas de tarefas excluídas.
+     * As linhas seguintes sobem de posição, então as páginas a partir da primeira linha removida
+     * (e suas âncoras) são descartadas; as anteriores continuam válidas.
+     * Se alguma tarefa não estiver carregada, sua posição é desconhecida e a tabela é recarregada.
+     *
+     * @param ids Os IDs das tarefas excluídas.
+     */
+    public void aplicarExclusoes(Collection<String> ids) {
+        int[] linhas = new int[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            Integer linha = linhaPorId.get(id);
+            if (linha == null) {
+                recarregar();
+                return;
+            }
+            linhas[i++] = linha;
+        }
+        if (linhas.length == 0) {
+            return;
+        }
+        Arrays.sort(linhas);
+        int numeroPagina = linhas[0] / TAMANHO_PAGINA;
+        paginas.entrySet().removeIf(pagina -> {
+            if (pagina.getKey() >= numeroPagina) {
+                desindexar(pagina.getValue());
+                return true;
+            }
+            return false;
+        });
+        ancoras.keySet().removeIf(pagina -> pagina >= numeroPagina);
+        // Buscas em andamento foram calculadas com as posições antigas e serão ignoradas.
+        geracao++;
+        paginasPendentes.clear();
+        // Remove de baixo para cima, para que os índices ainda não avisados continuem corretos.
+        for (int j = linhas.length - 1; j >= 0; j--) {
+            totalLinhas--;
+            fireTableRowsDeleted(linhas[j], linhas[j]);
+        }
+    }
+
+    /**
+     * Obtém uma tarefa pelo ID, se ela estiver em uma página carregada.
+     * Cada chamada devolve uma cópia nova; para exibir uma alteração feita nela,
+     * use {@link #aplicarAtualizacao}.
+     *
+     * @param id O ID da tarefa.
+     * @return A tarefa, ou {@code null} se ela não estiver carregada.
+     */
+    public Tarefa getTarefaPorId(String id) {
+        Integer linha = linhaPorId.get(id);
+        return linha == null ? null : paginas.get(linha / TAMANHO_PAGINA).tarefa(linha % TAMANHO_PAGINA);
+    }
+
+    /**
+     * Obtém a tarefa exibida em uma linha. Se a página da linha ainda não estiver em memória,
+     * sua busca é solicitada e {@code null} é retornado; a tabela é avisada quando ela chegar.
+     * Como em {@link #getTarefaPorId}, a tarefa devolvida é uma cópia.
+     *
+     * @param linha O índice da linha na tabela.
+     * @return A tarefa da linha, ou {@code null} se ela ainda não foi carregada
+     * ou não existir mais no banco.
+     */
+    public Tarefa getTarefaAt(int linha) {
+        Pagina pagina = paginaDaLinha(linha);
+        int indice = linha % TAMANHO_PAGINA;
+        return pagina != null && indice < pagina.tamanho() ? pagina.tarefa(indice) : null;
+    }
+
+    /**
+     * Obtém a página de uma linha, solicitando a sua busca se ela ainda não estiver em memória.
+     */
+    private Pagina paginaDaLinha(int linha) {
+        int numeroPagina = linha / TAMANHO_PAGINA;
+        if (numeroPagina == numeroUltimaPagina && ultimaPagina != null) {
+            return ultimaPagina;
+        }
+        Pagina pagina = paginas.get(numeroPagina);
+        if (pagina == null) {
+            solicitarPagina(numeroPagina);
+            return null;
+        }
+        ultimaPagina = pagina;
+        numeroUltimaPagina = numeroPagina;
+        return pagina;
+    }
+
+    /**
+     * Inicia a busca assíncrona de uma página, caso ela ainda não tenha sido solicitada.
+     * Primeiro resolve a âncora (o último ID da página anterior) e depois busca as tarefas
+     * seguintes a ela. A resposta é aplicada na EDT, se ainda pertencer à geração atual.
+     */
+    private void solicitarPagina(int numeroPagina) {
+        if (!paginasPendentes.add(numeroPagina)) {
+            return;
+        }
+        int geracaoDaBusca = geracao;
+        ConsultaTarefas consultaDaBusca = consulta;
+        ancora(numeroPagina - 1)
+                .thenCompose(apos -> {
+                    if (numeroPagina > 0 && apos == null) {
+                        // A página anterior não existe mais no banco (tarefas excluídas por outro cliente).
+                        return CompletableFuture.completedFuture(new ArrayList<Tarefa>());
+                    }
+                    if (apos != null && geracaoDaBusca == geracao) {
+                        ancoras.putIfAbsent(numeroPagina - 1, apos);
+                    }
+                    return tarefaServico.listarTarefasPaginado(consultaDaBusca, apos, TAMANHO_PAGINA);
+                })
+                .whenComplete((pagina, erro) -> {
+                    if (geracaoDaBusca != geracao || consultaDaBusca != consulta) {
+                        return;
+                    }
+                    paginasPendentes.remove(numeroPagina);
+                    if (erro != null) {
+                        // A próxima pintura da linha solicita a página de novo.
+                        REGISTRO.erro("carregarPagina", "pagina", numeroPagina, "erro", erro.getMessage());
+                        return;
+                    }
+                    armazenarPagina(numeroPagina, pagina);
+                    int primeiraLinha = numeroPagina * TAMANHO_PAGINA;
+                    int ultimaLinha = Math.min(primeiraLinha + TAMANHO_PAGINA, totalLinhas) - 1;
+                    if (ultimaLinha >= primeiraLinha) {
+                        fireTableRowsUpdated(primeiraLinha, ultimaLinha);
+                    }
+                });
+    }
+
+    /**
+     * Guarda uma página recém-carregada, indexando suas tarefas e registrando sua âncora.
+     */
+    private void armazenarPagina(int numeroPagina, List<Tarefa> pagina) {
+        if (ultimaPagina != null) {
+            // Leituras pela última página não atualizam a ordem de acesso; sem isto, a página
+            // em uso poderia ser a descartada por este put.
+            paginas.get(numeroUltimaPagina);
+        }
+        paginas.put(numeroPagina, new Pagina(pagina));
+        if (numeroPagina == numeroUltimaPagina) {
+            ultimaPagina = null;
+        }
+        int primeiraLinha = numeroPagina * TAMANHO_PAGINA;
+        for (int i = 0; i < pagina.size(); i++) {
+            linhaPorId.put(pagina.get(i).getId(), primeiraLinha + i);
+        }
+        // Só páginas completas viram âncora: o fim de uma página parcial ainda pode mudar.
+        if (pagina.size() == TAMANHO_PAGINA) {
+            ancoras.put(numeroPagina, pagina.get(pagina.size() - 1));
+        }
+    }
+
+    /**
+     * Remove do índice ID → linha as tarefas de uma página que está sendo descartada.
+     */
+    private void desindexar(Pagina pagina) {
+        for (int i = 0; i < pagina.tamanho(); i++) {
+            linhaPorId.remove(pagina.ids[i]);
+        }
+        if (pagina == ultimaPagina) {
+            ultimaPagina = null;
+        }
+    }
+
+    /**
+     * Retorna a última tarefa de uma página ({@code null} para a página "-1", antes da primeira).
+     * Se a página nunca foi visitada, a âncora é resolvida diretamente pela posição.
+     */
+    private CompletableFuture<Tarefa> ancora(int numeroPagina) {
+        Tarefa tarefa = numeroPagina < 0 ? null : ancoras.get(numeroPagina);
+        if (tarefa != null || numeroPagina < 0) {
+            return CompletableFuture.completedFuture(tarefa);
+        }
+        return tarefaServico.buscarTarefaNaPosicao(consulta, (long) (numeroPagina + 1) * TAMANHO_PAGINA - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return totalLinhas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int coluna) {
+        // Marca a coluna pela qual a tabela está ordenada (exceto a ordem padrão, pelo ID crescente).
+        boolean ordemPadrao = consulta.ordenarPor() == ConsultaTarefas.Campo.ID && !consulta.decrescente();
+        if (CAMPOS_COLUNAS[coluna] == consulta.ordenarPor() && !ordemPadrao) {
+            return COLUNAS[coluna] + (consulta.decrescente() ? " ▼" : " ▲");
+        }
+        return COLUNAS[coluna];
+    }
+
+    /**
+     * @param coluna O índice da coluna.
+     * @return O campo da tarefa exibido na coluna.
+     */
+    public ConsultaTarefas.Campo getCampoDaColuna(int coluna) {
+        return CAMPOS_COLUNAS[coluna];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int coluna) {
+        return switch (coluna) {
+            case 3 -> Prioridade.class;
+            case 4 -> Boolean.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public boolean isCellEditable(int linha, int coluna) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int linha, int coluna) {
+        Pagina pagina = paginaDaLinha(linha);
+        int i = linha % TAMANHO_PAGINA;
+        if (pagina == null || i >= pagina.tamanho()) {
+            return null;
+        }
+        // Nenhum valor é criado aqui: textos e prioridades já existem, e Boolean.valueOf usa as constantes.
+        return switch (coluna) {
+            case 0 -> pagina.ids[i];
+            case 1 -> pagina.titulos[i];
+            case 2 -> pagina.descricoes[i];
+            case 3 -> Prioridade.deOrdinal(pagina.prioridades[i]);
+            default -> Boolean.valueOf(pagina.concluidas[i]);
+        };
+    }
+
+    /**
+     * Uma página de tarefas guardada por coluna: um array por campo, com a prioridade como
+     * ordinal ({@code -1} quando a tarefa não tem {@link Prioridade}) e o status
+     * como {@code boolean}. O ID em texto é calculado uma única vez, ao guardar a tarefa.
+     */
+    private static final class Pagina {
+
+        final ObjectId[] objectIds = new ObjectId[TAMANHO_PAGINA];
+        final String[] ids = new String[TAMANHO_PAGINA];
+        final String[] titulos = new String[TAMANHO_PAGINA];
+        final String[] descricoes = new String[TAMANHO_PAGINA];
+        final byte[] prioridades = new byte[TAMANHO_PAGINA];
+        final boolean[] concluidas = new boolean[TAMANHO_PAGINA];
+        final long[] versoes = new long[TAMANHO_PAGINA];
+
+        /** Número de linhas preenchidas. */
+        private int tamanho;
+
+        Pagina(List<Tarefa> tarefas) {
+            for (Tarefa tarefa : tarefas) {
+                acrescentar(tarefa);
+            }
+        }
+
+        int tamanho() {
+            return tamanho;
+        }
+
+        void acrescentar(Tarefa tarefa) {
+            definir(tamanho++, tarefa);
+        }
+
+        /** Copia os campos de uma tarefa para a linha {@code i} da página. */
+        void definir(int i, Tarefa tarefa) {
+            objectIds[i] = tarefa.getObjectId();
+            ids[i] = tarefa.getId();
+            titulos[i] = tarefa.getTitulo();
+            descricoes[i] = tarefa.getDescricao();
+            Prioridade prioridade = tarefa.getPrioridade();
+            prioridades[i] = (byte) (prioridade == null ? -1 : prioridade.ordinal());
+            concluidas[i] = tarefa.isConcluida();
+            versoes[i] = tarefa.getVersao();
+        }
+
+        /** Monta uma tarefa nova com os valores da linha {@code i}. */
+        Tarefa tarefa(int i) {
+            Tarefa tarefa = new Tarefa(titulos[i], descricoes[i], Prioridade.deOrdinal(prioridades[i]));
+            tarefa.setObjectId(objectIds[i]);
+            tarefa.setConcluida(concluidas[i]);
+            tarefa.setVersao(versoes[i]);
+            return tarefa;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.mycompany.taskmanagercrud;
 
-import com.mongodb.client.MongoDatabase;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.table.DefaultTableCellRenderer;
 
 /**
@@ -20,20 +32,23 @@ import javax.swing.table.DefaultTableCellRenderer;
  */
 public class TaskManagerCRUD extends JFrame {
 
-    /** DAO para interagir com a camada de persistência de tarefas. */
-    private final TarefaDAO tarefaDAO;
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(TaskManagerCRUD.class);
+
+    /** Serviço assíncrono que executa as operações do DAO fora da Event Dispatch Thread. */
+    private final TarefaServico tarefaServico;
 
     // --- Componentes da UI ---
     /** Tabela para exibir as tarefas. */
     private JTable tabelaTarefas;
-    /** Modelo de dados para a tabela, para facilitar a manipulação. */
-    private DefaultTableModel tableModel;
+    /** Modelo de dados para a tabela, que carrega as tarefas por páginas sob demanda. */
+    private TarefaTableModel tableModel;
     /** Campo de texto para o título da tarefa. */
     private JTextField campoTitulo;
     /** Área de texto para a descrição da tarefa. */
     private JTextArea campoDescricao;
     /** Caixa de combinação para selecionar a prioridade. */
-    private JComboBox<String> comboBoxPrioridade;
+    private JComboBox<Prioridade> comboBoxPrioridade;
     /** Botão para adicionar uma nova tarefa ou salvar uma tarefa editada. */
     private JButton botaoAdicionarSalvar;
     /** Botão para limpar os campos do formulário. */
@@ -44,47 +59,198 @@ public class TaskManagerCRUD extends JFrame {
     private JButton botaoAlternarStatus;
     /** Botão para carregar dados de uma tarefa para edição. */
     private JButton botaoCarregarParaEditar;
+    /** Barra de progresso exibida enquanto houver operações no banco em andamento. */
+    private JProgressBar barraProgresso;
+    /** Rótulo da barra de status, com o número de operações em andamento. */
+    private JLabel rotuloStatus;
+    /** Campo de busca por palavras do título ou da descrição. */
+    private JTextField campoBusca;
+    /** Lista de resultados exibida abaixo do campo de busca. */
+    private JPopupMenu popupBusca;
+    /** Índice de busca local para sugestões enquanto se digita, ou {@code null} se desativado. */
+    private IndiceBuscaTarefas indiceBusca;
+    /** Resumo das estatísticas exibido no painel lateral, ou {@code null} se desativado. */
+    private ResumoTarefas resumo;
+    /** Filtro de prioridade das tarefas exibidas. */
+    private JComboBox<String> comboFiltroPrioridade;
+    /** Filtro de status (pendentes/concluídas) das tarefas exibidas. */
+    private JComboBox<String> comboFiltroStatus;
+    /** Filtro pelo início do título das tarefas exibidas. */
+    private JTextField campoFiltroTitulo;
 
     /**
      * Armazena o ID da tarefa em edição. Se for null, o formulário está em modo de adição.
      */
     private String idTarefaEmEdicao = null;
 
+    /**
+     * Versão da tarefa em edição quando ela foi carregada no formulário; a gravação só é aceita
+     * se ninguém a alterou desde então.
+     */
+    private long versaoEmEdicao;
+
     /**
      * Construtor da classe. Inicializa a GUI, configura todos os componentes,
      * e conecta aos eventos.
+     *
+     * @param repositorio O armazenamento das tarefas.
+     * @param sincronizador O sincronizador do modo offline, já com o armazenamento local aberto,
+     * ou {@code null} para operar direto no armazenamento.
      */
-    public TaskManagerCRUD() {
-        // 1. Conecta ao Banco e inicializa o DAO
-        MongoDatabase database = ConexaoMongo.conectar();
-        this.tarefaDAO = new TarefaDAO(database);
+    public TaskManagerCRUD(TarefaRepository repositorio, SincronizadorTarefas sincronizador) {
+        // 1. Inicializa o serviço assíncrono sobre o armazenamento.
+        // Escrita atrasada (opcional, ignorada no modo offline): -Dtaskmanager.escritaAtrasada=true
+        FilaEscritaAtrasada filaEscrita = sincronizador == null && Boolean.getBoolean("taskmanager.escritaAtrasada")
+                ? new FilaEscritaAtrasada(repositorio,
+                        Integer.getInteger("taskmanager.escritaAtrasada.limite", 500),
+                        Long.getLong("taskmanager.escritaAtrasada.intervaloMs", 1000L))
+                : null;
+        // Cache de leitura com change stream (opcional, exige MongoDB em replica set, ignorado no modo offline): -Dtaskmanager.cache=true
+        CacheTarefas cache = sincronizador == null && repositorio instanceof TarefaDAO tarefaDAO
+                && Boolean.getBoolean("taskmanager.cache")
+                ? new CacheTarefas(tarefaDAO,
+                        Integer.getInteger("taskmanager.cache.capacidade", 10_000),
+                        CacheTarefas.PoliticaRemocao.valueOf(System.getProperty("taskmanager.cache.politica", "LRU")))
+                : null;
+        this.tarefaServico = new TarefaServico(repositorio, filaEscrita, cache, sincronizador);
+        // Índice de busca local para sugestões instantâneas (opcional): -Dtaskmanager.indiceBusca=true
+        if (Boolean.getBoolean("taskmanager.indiceBusca")) {
+            indiceBusca = new IndiceBuscaTarefas(repositorio);
+        }
+        // Resumo por prioridade e status no painel lateral (ativo por padrão): -Dtaskmanager.resumo=false
+        // No modo offline, é contado no armazenamento local, o mesmo que a tabela exibe.
+        if (!"false".equals(System.getProperty("taskmanager.resumo"))) {
+            long intervaloMs = Long.getLong("taskmanager.resumo.intervaloMs", 2000L);
+            resumo = sincronizador != null
+                    ? new ResumoTarefas(sincronizador.getArmazem()::calcularEstatisticas, intervaloMs)
+                    : new ResumoTarefas(repositorio, intervaloMs, Long.getLong("taskmanager.resumo.revalidacaoMs", 30_000L));
+        }
 
         // 2. Configurações da Janela Principal (o próprio JFrame)
         setTitle("Sistema de Gerenciamento de Tarefas (Swing)");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setSize(950, 750);
+        setSize(resumo != null ? 1150 : 950, 750);
         setLocationRelativeTo(null); // Centraliza a janela
         setLayout(new BorderLayout(10, 10));
         ((JPanel) getContentPane()).setBorder(new EmptyBorder(15, 15, 15, 15)); // Margem
 
-        // 3. Criação dos painéis da UI
+        // 3. Criação do menu e dos painéis da UI
+        criarMenu();
         criarPainelFormulario();
         criarPainelTabela();
         criarPainelAcoesTabela();
+        if (resumo != null) {
+            criarPainelEstatisticas();
+        }
         
         // 4. Configura a lógica de ativação/desativação dos botões baseada na seleção da tabela.
         configurarSelecaoTabela();
         
-        // 5. Configura os eventos dos botões
+        // 5. Configura os eventos dos botões e o indicador de operações em andamento
         configurarActionListeners();
+        tarefaServico.setOuvinteEmAndamento(this::atualizarIndicadorEmAndamento);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // Aguarda as operações já enviadas ao banco antes de a aplicação encerrar.
+                tarefaServico.close();
+                if (resumo != null) {
+                    resumo.close();
+                }
+            }
+        });
+
+        // Alterações feitas por outros clientes chegam pelo change stream do cache.
+        if (cache != null) {
+            configurarAlteracoesRemotas(cache);
+        }
+        // No modo offline, chegam pelo sincronizador; a tabela é recarregada do armazenamento local.
+        if (sincronizador != null) {
+            sincronizador.setOuvinteAlteracoesRemotas(() -> SwingUtilities.invokeLater(this::atualizarTabelaTarefas));
+        }
 
-        // 6. Carrega as tarefas iniciais na tabela
+        // 6. Cria os índices que faltarem (em segundo plano) e carrega as tarefas iniciais na tabela
+        tarefaServico.garantirIndices();
+        if (indiceBusca != null) {
+            tarefaServico.carregarIndiceBusca(indiceBusca).exceptionally(this::mostrarErroBanco);
+        }
         atualizarTabelaTarefas();
         
         // 7. Torna a janela visível
         setVisible(true);
     }
 
+    /**
+     * Cria a barra de menus, com a exportação e a importação de tarefas.
+     */
+    private void criarMenu() {
+        JMenu menuArquivo = new JMenu("Arquivo");
+        JMenuItem itemExportar = new JMenuItem("Exportar tarefas...");
+        itemExportar.setToolTipText("Exporta as tarefas exibidas (com os filtros atuais) para JSON Lines ou CSV.");
+        itemExportar.addActionListener(e -> exportarTarefas());
+        menuArquivo.add(itemExportar);
+        JMenuItem itemImportar = new JMenuItem("Importar tarefas...");
+        itemImportar.setToolTipText("Adiciona as tarefas de um arquivo JSON Lines ou CSV.");
+        itemImportar.addActionListener(e -> importarTarefas());
+        menuArquivo.add(itemImportar);
+
+        JMenuBar barraMenus = new JMenuBar();
+        barraMenus.add(menuArquivo);
+        setJMenuBar(barraMenus);
+    }
+
+    /**
+     * Cria o seletor de arquivos usado na exportação e na importação.
+     */
+    private JFileChooser criarSeletorArquivo() {
+        JFileChooser seletor = new JFileChooser();
+        seletor.addChoosableFileFilter(new FileNameExtensionFilter("JSON Lines (*.jsonl)", "jsonl"));
+        seletor.addChoosableFileFilter(new FileNameExtensionFilter("CSV (*.csv)", "csv"));
+        seletor.setAcceptAllFileFilterUsed(true);
+        return seletor;
+    }
+
+    /**
+     * Exporta as tarefas da consulta atual da tabela para o arquivo escolhido.
+     */
+    private void exportarTarefas() {
+        JFileChooser seletor = criarSeletorArquivo();
+        if (seletor.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path arquivo = seletor.getSelectedFile().toPath();
+        tarefaServico.exportarTarefas(arquivo, TransferenciaTarefas.Formato.doArquivo(arquivo), tableModel.getConsulta(),
+                        progresso -> rotuloStatus.setText("Exportando: " + progresso + "..."))
+                .thenAccept(progresso -> JOptionPane.showMessageDialog(this,
+                        progresso.processadas() + " tarefa(s) exportada(s) para " + arquivo.getFileName() + ".",
+                        "Exportar tarefas", JOptionPane.INFORMATION_MESSAGE))
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Importa as tarefas do arquivo escolhido e recarrega a tabela ao final.
+     */
+    private void importarTarefas() {
+        JFileChooser seletor = criarSeletorArquivo();
+        if (seletor.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path arquivo = seletor.getSelectedFile().toPath();
+        tarefaServico.importarTarefas(arquivo, TransferenciaTarefas.Formato.doArquivo(arquivo),
+                        Integer.getInteger("taskmanager.importacao.lote", 1000),
+                        Integer.getInteger("taskmanager.importacao.paralelismo", 4),
+                        progresso -> rotuloStatus.setText("Importando: " + progresso + "..."))
+                .thenAccept(progresso -> {
+                    atualizarTabelaTarefas();
+                    JOptionPane.showMessageDialog(this,
+                            progresso.gravadas() + " de " + progresso.processadas() + " tarefa(s) importada(s) de "
+                                    + arquivo.getFileName() + ".",
+                            "Importar tarefas",
+                            progresso.falhas() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                })
+                .exceptionally(this::mostrarErroBanco);
+    }
+
     /**
      * Cria e configura o painel do formulário para adicionar ou editar tarefas.
      */
@@ -114,7 +280,7 @@ public class TaskManagerCRUD extends JFrame {
         gbc.gridx = 0; gbc.gridy = 2; gbc.anchor = GridBagConstraints.WEST; gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
         painelFormulario.add(new JLabel("Prioridade:"), gbc);
         gbc.gridx = 1; gbc.gridy = 2;
-        comboBoxPrioridade = new JComboBox<>(new String[]{"Baixa", "Média", "Alta"});
+        comboBoxPrioridade = new JComboBox<>(Prioridade.values());
         painelFormulario.add(comboBoxPrioridade, gbc);
 
         JPanel painelBotoesFormulario = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
@@ -136,17 +302,10 @@ public class TaskManagerCRUD extends JFrame {
      * Cria e configura o painel com a tabela de tarefas.
      */
     private void criarPainelTabela() {
-        String[] colunas = {"ID", "Título", "Descrição", "Prioridade", "Concluída"};
-        tableModel = new DefaultTableModel(colunas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                return columnIndex == 4 ? Boolean.class : String.class;
-            }
-        };
+        tableModel = new TarefaTableModel(tarefaServico);
         tabelaTarefas = new JTable(tableModel);
-        tabelaTarefas.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Várias linhas podem ser selecionadas para alternar o status ou excluir em lote.
+        tabelaTarefas.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         tabelaTarefas.setRowHeight(28);
         tabelaTarefas.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 13));
         tabelaTarefas.setFont(new Font("Segoe UI", Font.PLAIN, 13));
@@ -161,7 +320,194 @@ public class TaskManagerCRUD extends JFrame {
         // Aplica o renderizador de cores à coluna de prioridade.
         columnModel.getColumn(3).setCellRenderer(new PrioridadeCellRenderer());
 
-        add(new JScrollPane(tabelaTarefas), BorderLayout.CENTER);
+        // Clicar no cabeçalho ordena pela coluna; clicar de novo inverte a ordem.
+        // A ordenação é feita pelo MongoDB, pois a tabela não tem todas as tarefas em memória.
+        tabelaTarefas.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int coluna = tabelaTarefas.columnAtPoint(e.getPoint());
+                if (coluna == -1) {
+                    return;
+                }
+                ConsultaTarefas.Campo campo = tableModel.getCampoDaColuna(tabelaTarefas.convertColumnIndexToModel(coluna));
+                ConsultaTarefas consulta = tableModel.getConsulta();
+                boolean decrescente = consulta.ordenarPor() == campo && !consulta.decrescente();
+                aplicarConsulta(consulta.ordenadaPor(campo, decrescente));
+            }
+        });
+
+        JScrollPane scrollTabela = new JScrollPane(tabelaTarefas);
+        // Ao rolar, descarta as páginas que saíram da área visível para manter a memória constante.
+        scrollTabela.getViewport().addChangeListener(e -> {
+            Rectangle visivel = tabelaTarefas.getVisibleRect();
+            int primeira = tabelaTarefas.rowAtPoint(visivel.getLocation());
+            int ultima = tabelaTarefas.rowAtPoint(new Point(visivel.x, visivel.y + visivel.height - 1));
+            if (primeira != -1) {
+                tableModel.descartarForaDaJanela(primeira, ultima == -1 ? tableModel.getRowCount() - 1 : ultima);
+            }
+        });
+
+        JPanel painelTabela = new JPanel(new BorderLayout(0, 5));
+        JPanel painelConsulta = new JPanel(new GridLayout(2, 1, 0, 5));
+        painelConsulta.add(criarPainelBusca());
+        painelConsulta.add(criarPainelFiltros());
+        painelTabela.add(painelConsulta, BorderLayout.NORTH);
+        painelTabela.add(scrollTabela, BorderLayout.CENTER);
+        add(painelTabela, BorderLayout.CENTER);
+    }
+
+    /**
+     * Cria o campo de busca exibido acima da tabela.
+     * Enquanto se digita, as sugestões vêm do índice local (se ativo); Enter ou o botão
+     * "Buscar" fazem a busca textual no MongoDB, ordenada por relevância.
+     */
+    private JPanel criarPainelBusca() {
+        JPanel painelBusca = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        campoBusca = new JTextField(30);
+        popupBusca = new JPopupMenu();
+        popupBusca.setFocusable(false); // O foco continua no campo enquanto se digita
+        JButton botaoBuscar = new JButton("Buscar");
+
+        botaoBuscar.addActionListener(e -> buscarNoBanco());
+        campoBusca.addActionListener(e -> buscarNoBanco());
+        if (indiceBusca != null) {
+            campoBusca.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    sugerirTarefas();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    sugerirTarefas();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    sugerirTarefas();
+                }
+            });
+        }
+
+        painelBusca.add(new JLabel("Buscar:"));
+        painelBusca.add(campoBusca);
+        painelBusca.add(botaoBuscar);
+        return painelBusca;
+    }
+
+    /**
+     * Mostra as sugestões do índice local para o texto digitado.
+     */
+    private void sugerirTarefas() {
+        String texto = campoBusca.getText();
+        if (texto.isBlank()) {
+            popupBusca.setVisible(false);
+            return;
+        }
+        mostrarResultadosBusca(indiceBusca.buscar(texto, 10));
+    }
+
+    /**
+     * Faz a busca textual no MongoDB ({@code $text}), com os resultados ordenados por relevância.
+     */
+    private void buscarNoBanco() {
+        String texto = campoBusca.getText();
+        if (texto.isBlank()) {
+            return;
+        }
+        tarefaServico.buscarTarefasPorTexto(texto, 20)
+                .thenAccept(this::mostrarResultadosBusca)
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Exibe os resultados de uma busca abaixo do campo. Escolher um resultado
+     * carrega a tarefa no formulário para edição.
+     */
+    private void mostrarResultadosBusca(List<Tarefa> resultados) {
+        popupBusca.removeAll();
+        if (resultados.isEmpty()) {
+            JMenuItem vazio = new JMenuItem("Nenhuma tarefa encontrada");
+            vazio.setEnabled(false);
+            popupBusca.add(vazio);
+        }
+        for (Tarefa tarefa : resultados) {
+            JMenuItem item = new JMenuItem(tarefa.getTitulo() + "  —  " + tarefa.getPrioridade()
+                    + (tarefa.isConcluida() ? "  ✔" : ""));
+            item.setToolTipText(tarefa.getDescricao());
+            item.addActionListener(e -> {
+                popupBusca.setVisible(false);
+                carregarTarefaParaEdicao(tarefa);
+            });
+            popupBusca.add(item);
+        }
+        popupBusca.pack();
+        if (campoBusca.isShowing()) {
+            popupBusca.show(campoBusca, 0, campoBusca.getHeight());
+        }
+    }
+
+    /**
+     * Cria a barra de filtros exibida acima da tabela.
+     */
+    private JPanel criarPainelFiltros() {
+        JPanel painelFiltros = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        comboFiltroPrioridade = new JComboBox<>();
+        comboFiltroPrioridade.addItem("Todas");
+        for (Prioridade prioridade : Prioridade.values()) {
+            comboFiltroPrioridade.addItem(prioridade.getRotulo());
+        }
+        comboFiltroStatus = new JComboBox<>(new String[]{"Todas", "Pendentes", "Concluídas"});
+        campoFiltroTitulo = new JTextField(15);
+        JButton botaoFiltrar = new JButton("Filtrar");
+        JButton botaoLimparFiltros = new JButton("Limpar filtros");
+
+        botaoFiltrar.addActionListener(e -> filtrarTarefas());
+        campoFiltroTitulo.addActionListener(e -> filtrarTarefas()); // Enter no campo também filtra
+        botaoLimparFiltros.addActionListener(e -> {
+            comboFiltroPrioridade.setSelectedIndex(0);
+            comboFiltroStatus.setSelectedIndex(0);
+            campoFiltroTitulo.setText("");
+            filtrarTarefas();
+        });
+
+        painelFiltros.add(new JLabel("Prioridade:"));
+        painelFiltros.add(comboFiltroPrioridade);
+        painelFiltros.add(new JLabel("Status:"));
+        painelFiltros.add(comboFiltroStatus);
+        painelFiltros.add(new JLabel("Título começa com:"));
+        painelFiltros.add(campoFiltroTitulo);
+        painelFiltros.add(botaoFiltrar);
+        painelFiltros.add(botaoLimparFiltros);
+        return painelFiltros;
+    }
+
+    /**
+     * Aplica os filtros escolhidos na barra de filtros, mantendo a ordenação atual.
+     */
+    private void filtrarTarefas() {
+        int indiceStatus = comboFiltroStatus.getSelectedIndex();
+        Boolean concluida = indiceStatus == 0 ? null : indiceStatus == 2;
+        Prioridade prioridade = comboFiltroPrioridade.getSelectedIndex() == 0
+                ? null : Prioridade.deRotulo((String) comboFiltroPrioridade.getSelectedItem());
+        aplicarConsulta(tableModel.getConsulta()
+                .comPrioridade(prioridade)
+                .comConcluida(concluida)
+                .comPrefixoTitulo(campoFiltroTitulo.getText()));
+    }
+
+    /**
+     * Troca a consulta da tabela, atualizando os indicadores de ordenação no cabeçalho.
+     */
+    private void aplicarConsulta(ConsultaTarefas consulta) {
+        tabelaTarefas.clearSelection();
+        tableModel.setConsulta(consulta).exceptionally(this::mostrarErroBanco);
+        TableColumnModel columnModel = tabelaTarefas.getColumnModel();
+        for (int i = 0; i < columnModel.getColumnCount(); i++) {
+            TableColumn coluna = columnModel.getColumn(i);
+            coluna.setHeaderValue(tableModel.getColumnName(coluna.getModelIndex()));
+        }
+        tabelaTarefas.getTableHeader().repaint();
     }
 
     /**
@@ -175,16 +521,74 @@ public class TaskManagerCRUD extends JFrame {
         painelAcoes.add(botaoCarregarParaEditar);
         
         botaoAlternarStatus = new JButton("Alternar Status");
-        botaoAlternarStatus.setToolTipText("Alterna o status da tarefa selecionada entre 'Concluída' e 'Pendente'.");
+        botaoAlternarStatus.setToolTipText("Alterna o status das tarefas selecionadas entre 'Concluída' e 'Pendente'.");
         painelAcoes.add(botaoAlternarStatus);
         
-        botaoExcluir = new JButton("Excluir Selecionada");
-        botaoExcluir.setToolTipText("Exclui permanentemente a tarefa selecionada da base de dados.");
+        botaoExcluir = new JButton("Excluir Selecionadas");
+        botaoExcluir.setToolTipText("Exclui permanentemente as tarefas selecionadas da base de dados.");
         botaoExcluir.setBackground(new Color(220, 53, 69));
         botaoExcluir.setForeground(Color.WHITE);
         painelAcoes.add(botaoExcluir);
-        
-        add(painelAcoes, BorderLayout.SOUTH);
+
+        // Barra de status: mostra que o banco está sendo acessado sem travar a janela.
+        JPanel painelStatus = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        barraProgresso = new JProgressBar();
+        barraProgresso.setIndeterminate(true);
+        barraProgresso.setVisible(false);
+        rotuloStatus = new JLabel(" ");
+        painelStatus.add(barraProgresso);
+        painelStatus.add(rotuloStatus);
+
+        JPanel painelInferior = new JPanel(new BorderLayout());
+        painelInferior.add(painelAcoes, BorderLayout.CENTER);
+        painelInferior.add(painelStatus, BorderLayout.SOUTH);
+        add(painelInferior, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Cria o painel lateral com o resumo das tarefas por prioridade e status. O painel é
+     * atualizado a cada segundo a partir do {@link ResumoTarefas}, que fica em memória:
+     * o custo não depende do número de tarefas.
+     */
+    private void criarPainelEstatisticas() {
+        Prioridade[] prioridades = Prioridade.values();
+        JPanel grade = new JPanel(new GridLayout(prioridades.length + 2, 4, 10, 4));
+        for (String titulo : new String[]{"", "Pendentes", "Concluídas", "Concluído"}) {
+            grade.add(new JLabel(titulo));
+        }
+        // Uma linha por prioridade e a de totais; em cada uma, pendentes, concluídas e taxa de conclusão.
+        JLabel[][] valores = new JLabel[prioridades.length + 1][3];
+        for (int linha = 0; linha < valores.length; linha++) {
+            grade.add(new JLabel(linha < prioridades.length ? prioridades[linha].getRotulo() : "Total"));
+            for (int coluna = 0; coluna < 3; coluna++) {
+                valores[linha][coluna] = new JLabel("-", SwingConstants.RIGHT);
+                grade.add(valores[linha][coluna]);
+            }
+        }
+        JPanel painelEstatisticas = new JPanel(new BorderLayout());
+        painelEstatisticas.setBorder(BorderFactory.createTitledBorder("Resumo"));
+        painelEstatisticas.add(grade, BorderLayout.NORTH);
+        add(painelEstatisticas, BorderLayout.EAST);
+
+        EstatisticasTarefas[] exibidas = {null};
+        Timer atualizacao = new Timer(1000, e -> {
+            EstatisticasTarefas estatisticas = resumo.getEstatisticas();
+            if (estatisticas == exibidas[0]) {
+                return; // Nada mudou desde a última atualização.
+            }
+            exibidas[0] = estatisticas;
+            for (int linha = 0; linha < valores.length; linha++) {
+                Prioridade prioridade = linha < prioridades.length ? prioridades[linha] : null;
+                long pendentes = prioridade != null ? estatisticas.contar(prioridade, false) : estatisticas.getPendentes();
+                long concluidas = prioridade != null ? estatisticas.contar(prioridade, true) : estatisticas.getConcluidas();
+                double taxa = prioridade != null ? estatisticas.getTaxaConclusao(prioridade) : estatisticas.getTaxaConclusao();
+                valores[linha][0].setText(String.valueOf(pendentes));
+                valores[linha][1].setText(String.valueOf(concluidas));
+                valores[linha][2].setText(Math.round(taxa * 100) + "%");
+            }
+        });
+        atualizacao.setInitialDelay(0);
+        atualizacao.start();
     }
 
     /**
@@ -200,10 +604,11 @@ public class TaskManagerCRUD extends JFrame {
         // Adiciona um ouvinte de eventos à seleção da tabela.
         tabelaTarefas.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                boolean linhaSelecionada = tabelaTarefas.getSelectedRow() != -1;
-                botaoCarregarParaEditar.setEnabled(linhaSelecionada);
-                botaoAlternarStatus.setEnabled(linhaSelecionada);
-                botaoExcluir.setEnabled(linhaSelecionada);
+                int linhasSelecionadas = tabelaTarefas.getSelectedRowCount();
+                // A edição é de uma tarefa por vez; as demais ações também valem para a seleção múltipla.
+                botaoCarregarParaEditar.setEnabled(linhasSelecionadas == 1);
+                botaoAlternarStatus.setEnabled(linhasSelecionadas > 0);
+                botaoExcluir.setEnabled(linhasSelecionadas > 0);
             }
         });
     }
@@ -225,7 +630,7 @@ public class TaskManagerCRUD extends JFrame {
     private void processarAdicionarOuSalvar() {
         String titulo = campoTitulo.getText().trim();
         String descricao = campoDescricao.getText().trim();
-        String prioridade = (String) comboBoxPrioridade.getSelectedItem();
+        Prioridade prioridade = (Prioridade) comboBoxPrioridade.getSelectedItem();
 
         if (titulo.isEmpty() || descricao.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Título e Descrição são obrigatórios!", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
@@ -233,19 +638,69 @@ public class TaskManagerCRUD extends JFrame {
         }
 
         if (idTarefaEmEdicao == null) {
-            Tarefa novaTarefa = new Tarefa(titulo, descricao, prioridade);
-            tarefaDAO.adicionarTarefa(novaTarefa);
-            JOptionPane.showMessageDialog(this, "Tarefa adicionada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            boolean sucesso = tarefaDAO.atualizarTarefa(idTarefaEmEdicao, titulo, descricao, prioridade);
-            if (sucesso) {
-                JOptionPane.showMessageDialog(this, "Tarefa atualizada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(this, "Falha ao atualizar a tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
+            tarefaServico.adicionarTarefa(new Tarefa(titulo, descricao, prioridade))
+                    .thenAccept(novaTarefa -> {
+                        tableModel.aplicarInsercao(novaTarefa);
+                        limparFormulario();
+                        JOptionPane.showMessageDialog(this, "Tarefa adicionada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                    })
+                    .exceptionally(this::mostrarErroBanco);
+        } else if (tarefaServico.isEscritaAtrasada()) {
+            // A alteração aparece na hora; a gravação acontece junto com as próximas, pela fila.
+            String id = idTarefaEmEdicao;
+            Tarefa tarefa = tableModel.getTarefaPorId(id);
+            if (tarefa != null) {
+                tarefa.setTitulo(titulo);
+                tarefa.setDescricao(descricao);
+                tarefa.setPrioridade(prioridade);
+                tableModel.aplicarAtualizacao(tarefa);
             }
+            tarefaServico.enfileirarDetalhes(id, titulo, descricao, prioridade)
+                    .thenRun(() -> recarregarGravadas(List.of(id)))
+                    .exceptionally(this::mostrarErroEscritaAtrasada);
+            limparFormulario();
+        } else {
+            salvarAlteracoes(idTarefaEmEdicao, titulo, descricao, prioridade, versaoEmEdicao);
         }
-        limparFormulario();
-        atualizarTabelaTarefas();
+    }
+
+    /**
+     * Grava a edição, condicionada à versão em que a tarefa foi carregada no formulário.
+     * Se outro usuário a alterou nesse meio-tempo, apenas a linha dela é atualizada na tabela,
+     * e o usuário escolhe entre sobrescrever (gravando sobre a versão atual) ou recarregar o formulário.
+     */
+    private void salvarAlteracoes(String id, String titulo, String descricao, Prioridade prioridade, long versao) {
+        tarefaServico.atualizarTarefa(id, titulo, descricao, prioridade, versao)
+                .thenAccept(resultado -> {
+                    switch (resultado.situacao()) {
+                        case ATUALIZADA -> {
+                            tableModel.aplicarAtualizacao(resultado.tarefa());
+                            limparFormulario();
+                            JOptionPane.showMessageDialog(this, "Tarefa atualizada com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                        case CONFLITO -> {
+                            Tarefa atual = resultado.tarefa();
+                            tableModel.aplicarAtualizacao(atual);
+                            int escolha = JOptionPane.showConfirmDialog(this,
+                                    "A tarefa '" + atual.getTitulo() + "' foi alterada por outro usuário enquanto você a editava.\n"
+                                            + "Deseja sobrescrevê-la com as suas alterações?\n"
+                                            + "(Escolha \"Não\" para carregar a versão atual no formulário.)",
+                                    "Conflito de Edição", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                            if (escolha == JOptionPane.YES_OPTION) {
+                                salvarAlteracoes(id, titulo, descricao, prioridade, atual.getVersao());
+                            } else {
+                                carregarTarefaParaEdicao(atual);
+                            }
+                        }
+                        case NAO_ENCONTRADA -> {
+                            tableModel.aplicarExclusao(id);
+                            limparFormulario();
+                            JOptionPane.showMessageDialog(this, "A tarefa foi excluída por outro usuário.", "Aviso", JOptionPane.WARNING_MESSAGE);
+                        }
+                        case SEM_ALTERACOES -> JOptionPane.showMessageDialog(this, "Falha ao atualizar a tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
+                    }
+                })
+                .exceptionally(this::mostrarErroBanco);
     }
 
     /**
@@ -259,61 +714,201 @@ public class TaskManagerCRUD extends JFrame {
             return;
         }
 
-        idTarefaEmEdicao = (String) tableModel.getValueAt(linhaSelecionada, 0);
-        String titulo = (String) tableModel.getValueAt(linhaSelecionada, 1);
-        String descricao = (String) tableModel.getValueAt(linhaSelecionada, 2);
-        String prioridade = (String) tableModel.getValueAt(linhaSelecionada, 3);
+        Tarefa tarefa = tableModel.getTarefaAt(linhaSelecionada);
+        if (tarefa == null) { return; }
+        carregarTarefaParaEdicao(tarefa);
+    }
 
-        campoTitulo.setText(titulo);
-        campoDescricao.setText(descricao);
-        comboBoxPrioridade.setSelectedItem(prioridade);
+    /**
+     * Preenche o formulário com os dados de uma tarefa e entra no modo de edição.
+     */
+    private void carregarTarefaParaEdicao(Tarefa tarefa) {
+        idTarefaEmEdicao = tarefa.getId();
+        versaoEmEdicao = tarefa.getVersao();
+        campoTitulo.setText(tarefa.getTitulo());
+        campoDescricao.setText(tarefa.getDescricao());
+        comboBoxPrioridade.setSelectedItem(tarefa.getPrioridade() == null ? Prioridade.BAIXA : tarefa.getPrioridade());
 
         botaoAdicionarSalvar.setText("Salvar Alterações");
-        setTitle("Editando Tarefa: " + titulo);
+        setTitle("Editando Tarefa: " + tarefa.getTitulo());
     }
 
     /**
-     * Exclui a tarefa selecionada na tabela.
+     * Exclui as tarefas selecionadas na tabela.
+     * Uma seleção com várias tarefas é excluída em uma única operação em lote.
      */
     private void excluirTarefa() {
-        int linhaSelecionada = tabelaTarefas.getSelectedRow();
-        if (linhaSelecionada == -1) { return; }
+        List<Tarefa> selecionadas = tarefasSelecionadas();
+        if (selecionadas.isEmpty()) { return; }
+        if (selecionadas.size() > 1) {
+            excluirTarefasEmLote(selecionadas);
+            return;
+        }
 
-        String id = (String) tableModel.getValueAt(linhaSelecionada, 0);
-        String titulo = (String) tableModel.getValueAt(linhaSelecionada, 1);
+        Tarefa tarefa = selecionadas.get(0);
+        String id = tarefa.getId();
+        String titulo = tarefa.getTitulo();
 
         int confirmacao = JOptionPane.showConfirmDialog(this,
                 "Tem certeza que deseja excluir a tarefa: '" + titulo + "'?",
                 "Confirmar Exclusão", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
         if (confirmacao == JOptionPane.YES_OPTION) {
-            if (tarefaDAO.excluirTarefa(id)) {
-                JOptionPane.showMessageDialog(this, "Tarefa excluída com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
-                if (id.equals(idTarefaEmEdicao)) {
-                    limparFormulario();
-                }
-                atualizarTabelaTarefas();
-            } else {
-                JOptionPane.showMessageDialog(this, "Falha ao excluir a tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
-            }
+            tarefaServico.excluirTarefa(id)
+                    .thenAccept(excluida -> {
+                        if (excluida) {
+                            if (id.equals(idTarefaEmEdicao)) {
+                                limparFormulario();
+                            }
+                            tableModel.aplicarExclusao(id);
+                            JOptionPane.showMessageDialog(this, "Tarefa excluída com sucesso!", "Sucesso", JOptionPane.INFORMATION_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(this, "Falha ao excluir a tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
+                        }
+                    })
+                    .exceptionally(this::mostrarErroBanco);
         }
     }
 
     /**
-     * Alterna o status de conclusão da tarefa selecionada.
+     * Exclui várias tarefas com uma única chamada em lote ao banco.
+     */
+    private void excluirTarefasEmLote(List<Tarefa> tarefas) {
+        int confirmacao = JOptionPane.showConfirmDialog(this,
+                "Tem certeza que deseja excluir as " + tarefas.size() + " tarefas selecionadas?",
+                "Confirmar Exclusão", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (confirmacao != JOptionPane.YES_OPTION) { return; }
+
+        List<String> ids = new ArrayList<>(tarefas.size());
+        for (Tarefa tarefa : tarefas) {
+            ids.add(tarefa.getId());
+        }
+        tarefaServico.excluirTarefasEmLote(ids, OpcoesLote.PADRAO)
+                .thenAccept(resultado -> {
+                    List<String> excluidas = resultado.getIdsComSucesso();
+                    if (excluidas.contains(idTarefaEmEdicao)) {
+                        limparFormulario();
+                    }
+                    tableModel.aplicarExclusoes(excluidas);
+                    mostrarResultadoLote("Exclusão em lote", resultado);
+                })
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Alterna o status de conclusão das tarefas selecionadas.
+     * Com mais de uma tarefa selecionada, todas são alteradas em uma única chamada em lote.
      */
     private void alternarStatusTarefa() {
-        int linhaSelecionada = tabelaTarefas.getSelectedRow();
-        if (linhaSelecionada == -1) { return; }
+        List<Tarefa> selecionadas = tarefasSelecionadas();
+        if (selecionadas.isEmpty()) { return; }
 
-        String id = (String) tableModel.getValueAt(linhaSelecionada, 0);
-        boolean statusAtual = (Boolean) tableModel.getValueAt(linhaSelecionada, 4);
+        if (tarefaServico.isEscritaAtrasada()) {
+            // Cada clique só altera a tabela; a fila junta cliques repetidos na mesma tarefa.
+            List<String> ids = new ArrayList<>(selecionadas.size());
+            List<CompletableFuture<Void>> gravacoes = new ArrayList<>(selecionadas.size());
+            for (Tarefa tarefa : selecionadas) {
+                tarefa.setConcluida(!tarefa.isConcluida());
+                tableModel.aplicarAtualizacao(tarefa);
+                ids.add(tarefa.getId());
+                gravacoes.add(tarefaServico.enfileirarStatus(tarefa.getId(), tarefa.isConcluida()));
+            }
+            for (CompletableFuture<Void> gravacao : gravacoes) {
+                gravacao.exceptionally(this::mostrarErroEscritaAtrasada);
+            }
+            // Uma releitura só para a seleção inteira, quando todas as gravações terminarem.
+            CompletableFuture.allOf(gravacoes.toArray(CompletableFuture[]::new))
+                    .whenComplete((nada, erro) -> recarregarGravadas(ids));
+            return;
+        }
 
-        if (tarefaDAO.atualizarStatusTarefa(id, !statusAtual)) {
-            atualizarTabelaTarefas();
-        } else {
-            JOptionPane.showMessageDialog(this, "Falha ao alterar o status da tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
+        if (selecionadas.size() == 1) {
+            Tarefa tarefa = selecionadas.get(0);
+            tarefaServico.atualizarStatusTarefa(tarefa.getId(), !tarefa.isConcluida(), tarefa.getVersao())
+                    .thenAccept(resultado -> {
+                        switch (resultado.situacao()) {
+                            case ATUALIZADA -> tableModel.aplicarAtualizacao(resultado.tarefa());
+                            case CONFLITO -> {
+                                // Só a linha da tarefa é atualizada; o usuário decide de novo sobre o estado atual.
+                                tableModel.aplicarAtualizacao(resultado.tarefa());
+                                JOptionPane.showMessageDialog(this, "A tarefa foi alterada por outro usuário e a linha foi atualizada.\n"
+                                        + "Confira o status atual e tente novamente.", "Conflito", JOptionPane.WARNING_MESSAGE);
+                            }
+                            default -> JOptionPane.showMessageDialog(this, "Falha ao alterar o status da tarefa.", "Erro", JOptionPane.ERROR_MESSAGE);
+                        }
+                    })
+                    .exceptionally(this::mostrarErroBanco);
+            return;
+        }
+
+        Map<String, Boolean> novoStatusPorId = new LinkedHashMap<>();
+        for (Tarefa tarefa : selecionadas) {
+            novoStatusPorId.put(tarefa.getId(), !tarefa.isConcluida());
+        }
+        tarefaServico.atualizarStatusEmLote(novoStatusPorId, OpcoesLote.PADRAO)
+                .thenAccept(resultado -> {
+                    recarregarGravadas(resultado.getIdsComSucesso());
+                    if (resultado.getSucessos() < resultado.getTotal()) {
+                        mostrarResultadoLote("Alteração de status em lote", resultado);
+                    }
+                })
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Relê do banco as tarefas que acabaram de ser gravadas e as leva à tabela, já com a versão nova.
+     * O lote e a fila de escrita não devolvem as tarefas gravadas; sem a releitura, a linha ficaria
+     * com a versão antiga, e a próxima gravação condicionada à versão (edição, ou alternância de uma
+     * tarefa só) acusaria um conflito com outro usuário que não existe.
+     * Tarefas que voltaram a ter alterações na fila ficam como estão: a gravação delas relê de novo.
+     *
+     * @param ids Os IDs das tarefas gravadas.
+     */
+    private void recarregarGravadas(List<String> ids) {
+        if (ids.isEmpty()) { return; }
+        tarefaServico.buscarTarefasPorIds(ids)
+                .thenAccept(atuais -> {
+                    for (Tarefa atual : atuais) {
+                        if (!tarefaServico.isEscritaPendente(atual.getId())) {
+                            tableModel.aplicarAtualizacao(atual);
+                        }
+                    }
+                })
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Obtém as tarefas das linhas selecionadas que já estão carregadas no modelo.
+     *
+     * @return As tarefas selecionadas, na ordem das linhas.
+     */
+    private List<Tarefa> tarefasSelecionadas() {
+        int[] linhas = tabelaTarefas.getSelectedRows();
+        List<Tarefa> tarefas = new ArrayList<>(linhas.length);
+        for (int linha : linhas) {
+            Tarefa tarefa = tableModel.getTarefaAt(linha);
+            // Linhas de páginas ainda não carregadas são ignoradas: seu estado atual é desconhecido.
+            if (tarefa != null) {
+                tarefas.add(tarefa);
+            }
         }
+        return tarefas;
+    }
+
+    /**
+     * Exibe o resumo de uma operação em lote, incluindo o primeiro erro, se houver.
+     */
+    private void mostrarResultadoLote(String operacao, ResultadoLote resultado) {
+        String mensagem = resultado.getSucessos() + " de " + resultado.getTotal() + " tarefa(s) processada(s) com sucesso.";
+        for (int i = 0; i < resultado.getTotal(); i++) {
+            if (resultado.getSituacao(i) != ResultadoLote.Situacao.SUCESSO) {
+                mensagem += "\nPrimeira falha (" + resultado.getId(i) + "): " + resultado.getSituacao(i)
+                        + (resultado.getMensagem(i) != null ? " - " + resultado.getMensagem(i) : "");
+                break;
+            }
+        }
+        int tipo = resultado.getSucessos() == resultado.getTotal() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE;
+        JOptionPane.showMessageDialog(this, mensagem, operacao, tipo);
     }
 
     /**
@@ -331,20 +926,116 @@ public class TaskManagerCRUD extends JFrame {
     }
 
     /**
-     * Atualiza a tabela buscando os dados mais recentes do banco.
+     * Abre o armazenamento local do modo offline e cria o sincronizador sobre ele.
+     * O diretório vem de {@code -Dtaskmanager.offline.diretorio} (padrão: {@code ~/.taskmanager/offline}).
+     * Abrir o armazenamento relê (e às vezes compacta) o log; por isso não deve ser chamado na EDT.
+     *
+     * @return O sincronizador, ou {@code null} se o armazenamento não puder ser aberto.
+     */
+    private static SincronizadorTarefas criarSincronizador(TarefaRepository repositorio) {
+        Path diretorio = Path.of(System.getProperty("taskmanager.offline.diretorio",
+                Path.of(System.getProperty("user.home"), ".taskmanager", "offline").toString()));
+        try {
+            return new SincronizadorTarefas(new ArmazemLocal(diretorio), repositorio,
+                    Long.getLong("taskmanager.offline.intervaloMs", 30_000L),
+                    Integer.getInteger("taskmanager.offline.reconciliacao", SincronizadorTarefas.RECONCILIACAO_PADRAO));
+        } catch (IOException e) {
+            REGISTRO.erro("abrirArmazemLocal", "diretorio", diretorio, "erro", e.getMessage(),
+                    "situacao", "modo offline desativado");
+            return null;
+        }
+    }
+
+    /**
+     * Atualiza a tabela com os dados mais recentes do banco.
+     * Apenas a contagem é consultada aqui; as linhas visíveis são buscadas sob demanda pelo modelo.
      */
     private void atualizarTabelaTarefas() {
         int linhaSelecionadaAnteriormente = tabelaTarefas.getSelectedRow();
-        tableModel.setRowCount(0);
-        List<Tarefa> tarefas = tarefaDAO.listarTarefas();
-        for (Tarefa t : tarefas) {
-            tableModel.addRow(new Object[]{
-                    t.getId(), t.getTitulo(), t.getDescricao(), t.getPrioridade(), t.isConcluida()
-            });
-        }
-        if (linhaSelecionadaAnteriormente != -1 && linhaSelecionadaAnteriormente < tableModel.getRowCount()) {
-            tabelaTarefas.setRowSelectionInterval(linhaSelecionadaAnteriormente, linhaSelecionadaAnteriormente);
-        }
+        tableModel.recarregar()
+                .thenRun(() -> {
+                    if (linhaSelecionadaAnteriormente != -1 && linhaSelecionadaAnteriormente < tableModel.getRowCount()) {
+                        tabelaTarefas.setRowSelectionInterval(linhaSelecionadaAnteriormente, linhaSelecionadaAnteriormente);
+                    }
+                })
+                .exceptionally(this::mostrarErroBanco);
+    }
+
+    /**
+     * Repassa à tabela as alterações recebidas pelo change stream do cache.
+     * Atualizações e exclusões de linhas carregadas são aplicadas uma a uma; inserções
+     * de outros clientes e invalidações agendam uma recarga, agrupando eventos próximos.
+     */
+    private void configurarAlteracoesRemotas(CacheTarefas cache) {
+        Timer recarga = new Timer(300, e -> atualizarTabelaTarefas());
+        recarga.setRepeats(false);
+        cache.adicionarOuvinte(new CacheTarefas.OuvinteAlteracoes() {
+            @Override
+            public void tarefaInserida(Tarefa tarefa) {
+                SwingUtilities.invokeLater(() -> {
+                    // Inserções feitas por esta janela já foram aplicadas à tabela.
+                    if (tableModel.getTarefaPorId(tarefa.getId()) == null) {
+                        recarga.restart();
+                    }
+                });
+            }
+
+            @Override
+            public void tarefaAtualizada(Tarefa tarefa) {
+                SwingUtilities.invokeLater(() -> tableModel.aplicarAtualizacao(tarefa));
+            }
+
+            @Override
+            public void tarefaExcluida(String id) {
+                SwingUtilities.invokeLater(() -> {
+                    if (tableModel.getTarefaPorId(id) != null) {
+                        tableModel.aplicarExclusao(id);
+                    }
+                });
+            }
+
+            @Override
+            public void cacheInvalidado() {
+                SwingUtilities.invokeLater(recarga::restart);
+            }
+        });
+    }
+
+    /**
+     * Mostra ou esconde o indicador de operações em andamento na barra de status.
+     * Chamado pelo {@link TarefaServico} sempre na EDT.
+     *
+     * @param total O número de operações no banco ainda não concluídas.
+     */
+    private void atualizarIndicadorEmAndamento(int total) {
+        barraProgresso.setVisible(total > 0);
+        rotuloStatus.setText(total > 0 ? "Acessando o banco de dados (" + total + " operação(ões) em andamento)..." : " ");
+    }
+
+    /**
+     * Exibe o erro de uma gravação da fila de escrita atrasada e recarrega a tabela,
+     * descartando as alterações locais que não chegaram ao banco.
+     *
+     * @param erro A exceção que fez a gravação falhar.
+     * @return Sempre {@code null}.
+     */
+    private Void mostrarErroEscritaAtrasada(Throwable erro) {
+        mostrarErroBanco(erro);
+        atualizarTabelaTarefas();
+        return null;
+    }
+
+    /**
+     * Exibe uma mensagem de erro para uma operação no banco que falhou.
+     * Usado como {@code exceptionally} dos futures do {@link TarefaServico}, já na EDT.
+     *
+     * @param erro A exceção que fez a operação falhar.
+     * @return Sempre {@code null}.
+     */
+    private Void mostrarErroBanco(Throwable erro) {
+        Throwable causa = erro.getCause() != null ? erro.getCause() : erro;
+        JOptionPane.showMessageDialog(this, "Erro ao acessar o banco de dados: " + causa.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+        return null;
     }
 
     /**
@@ -352,23 +1043,23 @@ public class TaskManagerCRUD extends JFrame {
      * especificamente para colorir a prioridade.
      */
     private static class PrioridadeCellRenderer extends DefaultTableCellRenderer {
+
+        /** Cor de fundo de cada prioridade, indexada pelo ordinal; criadas uma única vez, e não a cada pintura. */
+        private static final Color[] CORES = new Color[Prioridade.values().length];
+
+        static {
+            CORES[Prioridade.BAIXA.ordinal()] = Color.WHITE;            // Cor padrão
+            CORES[Prioridade.MEDIA.ordinal()] = new Color(255, 255, 210); // Amarelo claro
+            CORES[Prioridade.ALTA.ordinal()] = new Color(255, 220, 220);  // Vermelho claro
+        }
+
         @Override
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
             Component cellComponent = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
 
             if (!isSelected) {
-                String prioridade = (String) value;
-                switch (prioridade) {
-                    case "Alta":
-                        cellComponent.setBackground(new Color(255, 220, 220)); // Vermelho claro
-                        break;
-                    case "Média":
-                        cellComponent.setBackground(new Color(255, 255, 210)); // Amarelo claro
-                        break;
-                    default:
-                        cellComponent.setBackground(Color.WHITE); // Cor padrão
-                        break;
-                }
+                // O modelo já entrega a Prioridade: nenhuma comparação de texto nem cor nova por célula.
+                cellComponent.setBackground(value instanceof Prioridade prioridade ? CORES[prioridade.ordinal()] : Color.WHITE);
             }
             return cellComponent;
         }
@@ -376,10 +1067,30 @@ public class TaskManagerCRUD extends JFrame {
 
     /**
      * Ponto de entrada principal para iniciar a aplicação com a GUI Swing.
+     * Com argumentos, executa o comando correspondente sem abrir a janela (veja {@link LinhaDeComando}).
      */
     public static void main(String[] args) {
-        // A forma mais direta e simples de iniciar uma aplicação Swing.
-        // Cria uma nova instância da nossa janela.
-        new TaskManagerCRUD();
+        // Métricas no formato do Prometheus em uma porta própria (opcional): -Dtaskmanager.metricas.porta=9464
+        Integer portaMetricas = Integer.getInteger("taskmanager.metricas.porta");
+        if (portaMetricas != null) {
+            try {
+                MetricasTarefas.iniciarExportador(portaMetricas);
+            } catch (IOException e) {
+                REGISTRO.erro("exportarMetricas", "porta", portaMetricas, "erro", e.getMessage());
+            }
+        }
+        if (args.length > 0) {
+            System.exit(LinhaDeComando.executar(args));
+        }
+        // Abre o armazenamento nesta thread, fora da EDT: no modo offline, abrir o armazenamento
+        // local relê o log do disco, e a EDT não deve esperar por E/S.
+        // MongoDB (padrão) ou memória, sem banco: -Dtaskmanager.armazenamento=mongo|memoria
+        // Diagnóstico de índices do MongoDB (opcional): -Dtaskmanager.diagnosticoIndices=true
+        TarefaRepository repositorio = TarefaRepository.criar();
+        // Modo offline, com armazenamento local e sincronização em segundo plano (opcional): -Dtaskmanager.offline=true
+        SincronizadorTarefas sincronizador = Boolean.getBoolean("taskmanager.offline") ? criarSincronizador(repositorio) : null;
+        // Cria a janela na Event Dispatch Thread: os callbacks do TarefaServico
+        // também rodam nela, então toda a interface fica em uma única thread.
+        SwingUtilities.invokeLater(() -> new TaskManagerCRUD(repositorio, sincronizador));
     }
 }
\ No newline at end of file
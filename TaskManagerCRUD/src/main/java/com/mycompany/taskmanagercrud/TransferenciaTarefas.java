@@ -0,0 +1,468 @@
+package com.mycompany.taskmanagercrud;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.bson.BsonInvalidOperationException;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+
+/**
+ * @author Thierry
+ *
+ * Exporta e importa tarefas em arquivos JSON Lines ({@code .jsonl}, um documento por linha)
+ * ou CSV ({@code .csv}, com cabeçalho).
+ *
+ * As duas operações trabalham em fluxo e usam memória constante, qualquer que seja o tamanho
+ * da coleção ou do arquivo:
+ * <ul>
+ *   <li>a exportação percorre um cursor do MongoDB ({@link TarefaRepository#abrirFluxoTarefas}) e grava
+ *   cada tarefa assim que ela chega, por um {@link FileChannel} com buffer;</li>
+ *   <li>a importação lê o arquivo registro a registro, junta as tarefas em lotes e envia cada lote
+ *   com {@code insertMany} ({@link TarefaDAO#adicionarTarefasEmLote}). Vários lotes podem ser
+ *   enviados em paralelo, em threads virtuais; um semáforo limita quantos ficam em memória.</li>
+ * </ul>
+ *
+ * O JSON é o Extended JSON do MongoDB, gerado e lido pelo próprio {@link TarefaCodec}.
+ * Tarefas importadas mantêm o {@code _id} do arquivo, quando houver; assim, importar de novo
+ * um arquivo exportado não duplica tarefas (as repetidas são contadas como falhas).
+ */
+public class TransferenciaTarefas {
+
+    /** Registro (log) desta classe. */
+    private static final Registro REGISTRO = Registro.para(TransferenciaTarefas.class);
+
+    /** Colunas do CSV, na ordem em que são gravadas. */
+    private static final String[] COLUNAS_CSV = {"_id", "titulo", "descricao", "prioridade", "concluida"};
+
+    /** Tamanho do buffer de leitura e escrita dos arquivos. */
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    /** A cada quantas tarefas a exportação informa o progresso. */
+    private static final int INTERVALO_PROGRESSO = 1000;
+
+    /** JSON em uma única linha, com {@code _id} no formato {@code {"$oid": "..."}}. */
+    private static final JsonWriterSettings CONFIGURACAO_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+
+    /**
+     * Formato do arquivo.
+     */
+    public enum Formato {
+        /** Um documento JSON por linha. */
+        JSONL,
+        /** Valores separados por vírgula, com uma linha de cabeçalho. */
+        CSV;
+
+        /**
+         * Descobre o formato pela extensão do arquivo ({@code .csv}; qualquer outra é JSON Lines).
+         *
+         * @param arquivo O arquivo.
+         * @return O formato correspondente.
+         */
+        public static Formato doArquivo(Path arquivo) {
+            return arquivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSONL;
+        }
+    }
+
+    /**
+     * Progresso de uma exportação ou importação.
+     *
+     * @param processadas Tarefas gravadas no arquivo (exportação) ou lidas dele (importação).
+     * @param gravadas Tarefas inseridas no banco (na exportação, igual a {@code processadas}).
+     * @param falhas Registros inválidos ou tarefas rejeitadas pelo banco.
+     */
+    public record Progresso(long processadas, long gravadas, long falhas) {
+
+        @Override
+        public String toString() {
+            return processadas + " processada(s), " + gravadas + " gravada(s), " + falhas + " falha(s)";
+        }
+    }
+
+    /** Armazenamento de onde as tarefas são lidas e onde são gravadas. */
+    private final TarefaRepository repositorio;
+
+    /** Codec usado para gerar e ler o JSON de cada tarefa. */
+    private final TarefaCodec codec = new TarefaCodec();
+
+    /**
+     * Cria o exportador/importador.
+     *
+     * @param repositorio O armazenamento das tarefas.
+     */
+    public TransferenciaTarefas(TarefaRepository repositorio) {
+        this.repositorio = repositorio;
+    }
+
+    /**
+     * Exporta as tarefas de uma consulta para um arquivo, que é criado ou sobrescrito.
+     * Operação bloqueante.
+     *
+     * @param arquivo O arquivo de destino.
+     * @param formato O formato do arquivo.
+     * @param consulta As tarefas a exportar (filtros e ordem).
+     * @param ouvinte Recebe o progresso a cada {@value #INTERVALO_PROGRESSO} tarefas e ao final.
+     * @return O progresso final.
+     * @throws IOException se o arquivo não puder ser gravado.
+     */
+    public Progresso exportar(Path arquivo, Formato formato, ConsultaTarefas consulta, Consumer<Progresso> ouvinte)
+            throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer saida = new BufferedWriter(Channels.newWriter(canal, StandardCharsets.UTF_8), TAMANHO_BUFFER)) {
+            if (formato == Formato.CSV) {
+                saida.write(String.join(",", COLUNAS_CSV));
+                saida.write('\n');
+            }
+            long total = 0;
+            // O iterador deixa a IOException sair direto; fechar o fluxo fecha o cursor, mesmo em um erro.
+            try (Stream<Tarefa> tarefas = repositorio.abrirFluxoTarefas(consulta, INTERVALO_PROGRESSO)) {
+                for (Iterator<Tarefa> iterador = tarefas.iterator(); iterador.hasNext(); ) {
+                    Tarefa tarefa = iterador.next();
+                    if (formato == Formato.CSV) {
+                        escreverCsv(saida, tarefa);
+                    } else {
+                        escreverJson(saida, tarefa);
+                    }
+                    if (++total % INTERVALO_PROGRESSO == 0) {
+                        ouvinte.accept(new Progresso(total, total, 0));
+                    }
+                }
+            }
+            Progresso progresso = new Progresso(total, total, 0);
+            ouvinte.accept(progresso);
+            REGISTRO.info("exportar", "arquivo", arquivo, "gravadas", progresso.gravadas());
+            return progresso;
+        }
+    }
+
+    /**
+     * Importa as tarefas de um arquivo, enviando-as ao banco em lotes. Operação bloqueante.
+     * Registros inválidos são registrados, contados como falhas e ignorados.
+     *
+     * @param arquivo O arquivo de origem.
+     * @param formato O formato do arquivo.
+     * @param tamanhoLote Quantas tarefas são enviadas em cada {@code insertMany}.
+     * @param paralelismo Quantos lotes podem ser enviados ao mesmo tempo.
+     * @param ouvinte Recebe o progresso depois de cada lote gravado e ao final.
+     * Pode ser chamado de várias threads, mas nunca ao mesmo tempo.
+     * @return O progresso final.
+     * @throws IOException se o arquivo não puder ser lido.
+     * @throws IllegalArgumentException se o tamanho do lote ou o paralelismo não forem positivos.
+     */
+    public Progresso importar(Path arquivo, Formato formato, int tamanhoLote, int paralelismo,
+                              Consumer<Progresso> ouvinte) throws IOException {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("O paralelismo deve ser positivo: " + paralelismo);
+        }
+        OpcoesLote opcoes = new OpcoesLote(tamanhoLote, false);
+        AtomicLong lidas = new AtomicLong();
+        AtomicLong gravadas = new AtomicLong();
+        AtomicLong falhas = new AtomicLong();
+        // Cada permissão é um lote em envio; a leitura espera quando todas estão em uso.
+        Semaphore lotesEmEnvio = new Semaphore(paralelismo);
+        Object travaOuvinte = new Object();
+
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ);
+             BufferedReader entrada = new BufferedReader(Channels.newReader(canal, StandardCharsets.UTF_8), TAMANHO_BUFFER);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            LeitorRegistros leitor = formato == Formato.CSV ? new LeitorCsv(entrada) : new LeitorJson(entrada);
+            List<Tarefa> lote = new ArrayList<>(tamanhoLote);
+            boolean fim = false;
+            while (!fim) {
+                Tarefa tarefa = null;
+                try {
+                    tarefa = leitor.proxima();
+                    fim = tarefa == null;
+                } catch (IllegalArgumentException e) {
+                    lidas.incrementAndGet();
+                    falhas.incrementAndGet();
+                    REGISTRO.erro("importar", "arquivo", arquivo, "linha", leitor.getLinha(), "erro", e.getMessage());
+                }
+                if (tarefa != null) {
+                    lidas.incrementAndGet();
+                    lote.add(tarefa);
+                }
+                if (lote.size() == tamanhoLote || (fim && !lote.isEmpty())) {
+                    List<Tarefa> enviar = lote;
+                    lote = new ArrayList<>(tamanhoLote);
+                    lotesEmEnvio.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            ResultadoLote resultado = repositorio.adicionarTarefasEmLote(enviar, opcoes);
+                            gravadas.addAndGet(resultado.getSucessos());
+                            falhas.addAndGet(resultado.getTotal() - resultado.getSucessos());
+                        } catch (RuntimeException e) {
+                            falhas.addAndGet(enviar.size());
+                            REGISTRO.erro("importarLote", "tarefas", enviar.size(), "erro", e.getMessage());
+                        } finally {
+                            lotesEmEnvio.release();
+                        }
+                        synchronized (travaOuvinte) {
+                            ouvinte.accept(new Progresso(lidas.get(), gravadas.get(), falhas.get()));
+                        }
+                    });
+                }
+            }
+            // Fechar o executor (fim do try) aguarda os lotes ainda em envio.
+        }
+        Progresso progresso = new Progresso(lidas.get(), gravadas.get(), falhas.get());
+        ouvinte.accept(progresso);
+        REGISTRO.info("importar", "arquivo", arquivo, "gravadas", progresso.gravadas(), "falhas", progresso.falhas());
+        return progresso;
+    }
+
+    /**
+     * Grava uma tarefa como um documento JSON em uma linha.
+     */
+    private void escreverJson(Writer saida, Tarefa tarefa) throws IOException {
+        codec.encode(new JsonWriter(saida, CONFIGURACAO_JSON), tarefa, EncoderContext.builder().build());
+        saida.write('\n');
+    }
+
+    /**
+     * Grava uma tarefa como uma linha de CSV.
+     */
+    private static void escreverCsv(Writer saida, Tarefa tarefa) throws IOException {
+        saida.write(tarefa.getId() == null ? "" : tarefa.getId());
+        saida.write(',');
+        escreverCampoCsv(saida, tarefa.getTitulo());
+        saida.write(',');
+        escreverCampoCsv(saida, tarefa.getDescricao());
+        saida.write(',');
+        // No CSV, a prioridade continua como rótulo, legível em planilhas.
+        escreverCampoCsv(saida, tarefa.getPrioridade() == null ? null : tarefa.getPrioridade().getRotulo());
+        saida.write(',');
+        saida.write(Boolean.toString(tarefa.isConcluida()));
+        saida.write('\n');
+    }
+
+    /**
+     * Grava um campo de texto no CSV. Campos com vírgula, aspas ou quebra de linha ficam
+     * entre aspas, com as aspas internas duplicadas (RFC 4180). {@code null} vira campo vazio.
+     */
+    private static void escreverCampoCsv(Writer saida, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean aspas = valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        if (!aspas) {
+            saida.write(valor);
+            return;
+        }
+        saida.write('"');
+        saida.write(valor.replace("\"", "\"\""));
+        saida.write('"');
+    }
+
+    /**
+     * Lê as tarefas de um arquivo, uma de cada vez.
+     */
+    private interface LeitorRegistros {
+
+        /**
+         * @return A próxima tarefa, ou {@code null} no fim do arquivo.
+         * @throws IOException se o arquivo não puder ser lido.
+         * @throws IllegalArgumentException se o registro for inválido; a leitura pode continuar no seguinte.
+         */
+        Tarefa proxima() throws IOException;
+
+        /**
+         * @return O número da linha onde terminou o último registro lido.
+         */
+        long getLinha();
+    }
+
+    /**
+     * Lê um documento JSON por linha, decodificado pelo {@link TarefaCodec}. Linhas em branco são ignoradas.
+     */
+    private final class LeitorJson implements LeitorRegistros {
+
+        private final BufferedReader entrada;
+        private long linha;
+
+        LeitorJson(BufferedReader entrada) {
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Tarefa proxima() throws IOException {
+            String texto;
+            do {
+                texto = entrada.readLine();
+                if (texto == null) {
+                    return null;
+                }
+                linha++;
+            } while (texto.isBlank());
+            Tarefa tarefa;
+            try {
+                tarefa = codec.decode(new JsonReader(texto), DecoderContext.builder().build());
+            } catch (JsonParseException | BsonInvalidOperationException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+            if (tarefa.getTitulo() == null) {
+                throw new IllegalArgumentException("a tarefa nao tem titulo");
+            }
+            return tarefa;
+        }
+
+        @Override
+        public long getLinha() {
+            return linha;
+        }
+    }
+
+    /**
+     * Lê um CSV com cabeçalho. As colunas são localizadas pelo nome, então podem vir em qualquer
+     * ordem; colunas desconhecidas são ignoradas e apenas {@code titulo} é obrigatória.
+     * Campos entre aspas podem conter vírgulas e quebras de linha.
+     */
+    private static final class LeitorCsv implements LeitorRegistros {
+
+        private final Reader entrada;
+        private long linha;
+        /** Posição de cada coluna conhecida no registro, ou -1 se ela não estiver no arquivo. */
+        private int[] posicoes;
+
+        LeitorCsv(Reader entrada) {
+            this.entrada = entrada;
+        }
+
+        @Override
+        public Tarefa proxima() throws IOException {
+            if (posicoes == null) {
+                lerCabecalho();
+            }
+            List<String> campos;
+            do {
+                campos = lerRegistro();
+                if (campos == null) {
+                    return null;
+                }
+            } while (campos.size() == 1 && campos.get(0).isEmpty());
+
+            String titulo = campo(campos, 1);
+            if (titulo == null) {
+                throw new IllegalArgumentException("a tarefa nao tem titulo");
+            }
+            Tarefa tarefa = new Tarefa(titulo, campo(campos, 2), Prioridade.converter(campo(campos, 3)));
+            String id = campo(campos, 0);
+            if (id != null) {
+                if (!ObjectId.isValid(id)) {
+                    throw new IllegalArgumentException("ID invalido: " + id);
+                }
+                tarefa.setId(id);
+            }
+            String concluida = campo(campos, 4);
+            tarefa.setConcluida(concluida != null && Boolean.parseBoolean(concluida.trim()));
+            return tarefa;
+        }
+
+        @Override
+        public long getLinha() {
+            return linha;
+        }
+
+        private void lerCabecalho() throws IOException {
+            List<String> cabecalho = lerRegistro();
+            if (cabecalho == null) {
+                cabecalho = List.of();
+            }
+            posicoes = new int[COLUNAS_CSV.length];
+            for (int i = 0; i < COLUNAS_CSV.length; i++) {
+                posicoes[i] = cabecalho.indexOf(COLUNAS_CSV[i]);
+            }
+            if (posicoes[1] < 0 && !cabecalho.isEmpty()) {
+                throw new IOException("O cabecalho do CSV nao tem a coluna 'titulo': " + cabecalho);
+            }
+        }
+
+        /**
+         * @return O valor da coluna conhecida de índice {@code coluna}, ou {@code null} se estiver vazio ou ausente.
+         */
+        private String campo(List<String> campos, int coluna) {
+            int posicao = posicoes[coluna];
+            if (posicao < 0 || posicao >= campos.size() || campos.get(posicao).isEmpty()) {
+                return null;
+            }
+            return campos.get(posicao);
+        }
+
+        /**
+         * Lê um registro (que pode ocupar várias linhas, se tiver campos entre aspas).
+         *
+         * @return Os campos do registro, ou {@code null} no fim do arquivo.
+         */
+        private List<String> lerRegistro() throws IOException {
+            int c = entrada.read();
+            if (c < 0) {
+                return null;
+            }
+            linha++;
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreAspas = false;
+            while (c >= 0) {
+                if (entreAspas) {
+                    if (c == '"') {
+                        int seguinte = entrada.read();
+                        if (seguinte == '"') {
+                            campo.append('"');
+                        } else {
+                            entreAspas = false;
+                            c = seguinte;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            linha++;
+                        }
+                        campo.append((char) c);
+                    }
+                } else if (c == '"' && campo.isEmpty()) {
+                    entreAspas = true;
+                } else if (c == ',') {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    campo.append((char) c);
+                }
+                c = entrada.read();
+            }
+            if (entreAspas) {
+                throw new IllegalArgumentException("aspas nao fechadas no fim do arquivo");
+            }
+            campos.add(campo.toString());
+            return campos;
+        }
+    }
+}
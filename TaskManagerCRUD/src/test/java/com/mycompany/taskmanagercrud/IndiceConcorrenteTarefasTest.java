@@ -0,0 +1,220 @@
+package com.mycompany.taskmanagercrud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Thierry
+ *
+ * Teste de concorrência do {@link IndiceConcorrenteTarefas}: gravadores alteram, inserem e removem
+ * tarefas ao mesmo tempo em que leitores tiram instantâneos. Cada instantâneo precisa ser coerente
+ * (bitsets de acordo com as tarefas, contagens batendo com o total), e no fim nenhuma gravação
+ * pode ter se perdido.
+ */
+class IndiceConcorrenteTarefasTest {
+
+    private static final int TAREFAS_INICIAIS = 5_000;
+    private static final int GRAVADORES = 6;
+    private static final int LEITORES = 3;
+    private static final int OPERACOES_POR_GRAVADOR = 20_000;
+
+    @Test
+    void gravacoesConcorrentesMantemInstantaneosCoerentesESemPerdas() throws InterruptedException {
+        IndiceConcorrenteTarefas indice = new IndiceConcorrenteTarefas();
+        List<Tarefa> iniciais = new ArrayList<>();
+        for (int i = 0; i < TAREFAS_INICIAIS; i++) {
+            iniciais.add(nova(i));
+        }
+        boolean[] guardadas = indice.inserirSeAusentes(iniciais, false);
+        for (boolean guardada : guardadas) {
+            assertTrue(guardada);
+        }
+        List<ObjectId> ids = iniciais.stream().map(Tarefa::getObjectId).toList();
+
+        AtomicLong alteracoes = new AtomicLong();
+        AtomicLong inseridas = new AtomicLong();
+        AtomicLong removidas = new AtomicLong();
+        AtomicBoolean gravando = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Throwable> erros = new ConcurrentLinkedQueue<>();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> gravadores = new ArrayList<>();
+        List<Thread> leitores = new ArrayList<>();
+
+        for (int g = 0; g < GRAVADORES; g++) {
+            gravadores.add(Thread.ofPlatform().start(() -> executar(largada, erros, () -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                List<ObjectId> proprias = new ArrayList<>();
+                for (int i = 0; i < OPERACOES_POR_GRAVADOR; i++) {
+                    int operacao = aleatorio.nextInt(10);
+                    if (operacao < 7) {
+                        ObjectId id = ids.get(aleatorio.nextInt(ids.size()));
+                        Prioridade prioridade = sortearPrioridade(aleatorio);
+                        if (indice.alterar(id, atual -> alterada(atual, prioridade)) != null) {
+                            alteracoes.incrementAndGet();
+                        }
+                    } else if (operacao < 8) {
+                        List<Tarefa> lote = new ArrayList<>();
+                        int tamanhoLote = 1 + aleatorio.nextInt(20);
+                        for (int j = 0; j < tamanhoLote; j++) {
+                            lote.add(nova(j));
+                        }
+                        boolean[] resultado = indice.inserirSeAusentes(lote, false);
+                        for (int j = 0; j < lote.size(); j++) {
+                            assertTrue(resultado[j]);
+                            proprias.add(lote.get(j).getObjectId());
+                        }
+                        inseridas.addAndGet(lote.size());
+                    } else if (operacao < 9) {
+                        Tarefa tarefa = nova(i);
+                        assertTrue(indice.inserirSeAusente(tarefa));
+                        proprias.add(tarefa.getObjectId());
+                        inseridas.incrementAndGet();
+                    } else if (!proprias.isEmpty()) {
+                        ObjectId id = proprias.remove(aleatorio.nextInt(proprias.size()));
+                        assertTrue(indice.remover(id, tarefa -> true) != null);
+                        removidas.incrementAndGet();
+                    }
+                }
+            })));
+        }
+        for (int l = 0; l < LEITORES; l++) {
+            leitores.add(Thread.ofPlatform().start(() -> executar(largada, erros, () -> {
+                while (gravando.get()) {
+                    conferirInstantaneo(indice.instantaneo());
+                }
+            })));
+        }
+
+        largada.countDown();
+        for (Thread gravador : gravadores) {
+            gravador.join();
+        }
+        gravando.set(false);
+        for (Thread leitor : leitores) {
+            leitor.join();
+        }
+        if (!erros.isEmpty()) {
+            fail(erros.peek());
+        }
+
+        IndiceConcorrenteTarefas.Instantaneo fim = indice.instantaneo();
+        conferirInstantaneo(fim);
+        assertEquals(TAREFAS_INICIAIS + inseridas.get() - removidas.get(), fim.tamanho());
+        assertEquals(fim.tamanho(), indice.tamanho());
+
+        // Índice principal: cada tarefa do instantâneo é a que obter devolve.
+        fim.percorrer(ConsultaTarefas.TODAS, tarefa -> assertSame(tarefa, indice.obter(tarefa.getObjectId())));
+
+        // Nenhuma alteração perdida: cada uma somou 1 à versão de uma tarefa inicial.
+        long somaVersoes = 0;
+        for (ObjectId id : ids) {
+            somaVersoes += indice.obter(id).getVersao();
+        }
+        assertEquals(TAREFAS_INICIAIS + alteracoes.get(), somaVersoes);
+    }
+
+    @Test
+    void inserirSeAusentesRecusaRepetidosEParaNaPrimeiraFalhaSePedido() {
+        IndiceConcorrenteTarefas indice = new IndiceConcorrenteTarefas();
+        Tarefa existente = nova(0);
+        assertTrue(indice.inserirSeAusente(existente));
+        Tarefa repetida = nova(1);
+        repetida.setObjectId(existente.getObjectId());
+        Tarefa primeira = nova(2);
+        Tarefa depois = nova(3);
+        Tarefa repetidaNoLote = nova(4);
+        repetidaNoLote.setObjectId(primeira.getObjectId());
+
+        boolean[] semParar = indice.inserirSeAusentes(List.of(primeira, repetida, depois, repetidaNoLote), false);
+        assertTrue(semParar[0] && !semParar[1] && semParar[2] && !semParar[3]);
+        assertSame(existente, indice.obter(existente.getObjectId()));
+        assertSame(primeira, indice.obter(primeira.getObjectId()));
+
+        Tarefa ultima = nova(5);
+        boolean[] parando = indice.inserirSeAusentes(List.of(nova(6), repetida, ultima), true);
+        assertTrue(parando[0] && !parando[1] && !parando[2]);
+        assertNull(indice.obter(ultima.getObjectId()));
+        assertEquals(4, indice.tamanho());
+        conferirInstantaneo(indice.instantaneo());
+    }
+
+    /**
+     * Confere um instantâneo: cada tarefa aparece uma vez, e as contagens e os percursos por
+     * prioridade e por status (que usam os bitsets) batem com as tarefas.
+     */
+    private static void conferirInstantaneo(IndiceConcorrenteTarefas.Instantaneo instantaneo) {
+        List<Tarefa> todas = new ArrayList<>();
+        instantaneo.percorrer(ConsultaTarefas.TODAS, todas::add);
+        assertEquals(instantaneo.tamanho(), todas.size());
+        Set<ObjectId> ids = new HashSet<>();
+        for (Tarefa tarefa : todas) {
+            assertTrue(ids.add(tarefa.getObjectId()), "tarefa repetida no instantâneo");
+        }
+
+        long pendentes = instantaneo.contar(ConsultaTarefas.TODAS.comConcluida(false));
+        long concluidas = instantaneo.contar(ConsultaTarefas.TODAS.comConcluida(true));
+        assertEquals(todas.size(), pendentes + concluidas);
+
+        long comPrioridade = 0;
+        for (Prioridade prioridade : Prioridade.values()) {
+            for (boolean concluida : new boolean[] {false, true}) {
+                ConsultaTarefas consulta = ConsultaTarefas.TODAS.comPrioridade(prioridade).comConcluida(concluida);
+                long esperadas = todas.stream().filter(consulta::aceita).count();
+                long[] percorridas = {0};
+                instantaneo.percorrer(consulta, tarefa -> {
+                    assertTrue(consulta.aceita(tarefa), "bitset fora do estado da tarefa");
+                    percorridas[0]++;
+                });
+                assertEquals(esperadas, percorridas[0]);
+                assertEquals(esperadas, instantaneo.contar(consulta));
+                comPrioridade += esperadas;
+            }
+        }
+        assertEquals(todas.stream().filter(tarefa -> tarefa.getPrioridade() != null).count(), comPrioridade);
+    }
+
+    private static Tarefa nova(int i) {
+        Tarefa tarefa = new Tarefa("Tarefa " + i, "", Prioridade.values()[i % Prioridade.values().length]);
+        tarefa.setObjectId(new ObjectId());
+        tarefa.setConcluida(i % 3 == 0);
+        tarefa.setVersao(1);
+        return tarefa;
+    }
+
+    private static Tarefa alterada(Tarefa atual, Prioridade prioridade) {
+        Tarefa nova = atual.copiar();
+        nova.setConcluida(!atual.isConcluida());
+        nova.setPrioridade(prioridade);
+        nova.setVersao(atual.getVersao() + 1);
+        return nova;
+    }
+
+    private static Prioridade sortearPrioridade(ThreadLocalRandom aleatorio) {
+        int sorteio = aleatorio.nextInt(Prioridade.values().length + 1);
+        return sorteio == Prioridade.values().length ? null : Prioridade.values()[sorteio];
+    }
+
+    private static void executar(CountDownLatch largada, ConcurrentLinkedQueue<Throwable> erros, Runnable corpo) {
+        try {
+            largada.await();
+            corpo.run();
+        } catch (Throwable e) {
+            erros.add(e);
+        }
+    }
+}